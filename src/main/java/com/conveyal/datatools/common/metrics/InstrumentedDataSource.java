@@ -0,0 +1,104 @@
+package com.conveyal.datatools.common.metrics;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Wraps a pooled {@link DataSource} (such as the one created by {@link com.conveyal.gtfs.GTFS#createDataSource}, whose
+ * pool is not otherwise accessible) to record how long it takes to obtain a connection and how many connections are in
+ * use. Connections are returned to the pool as usual when they are closed.
+ */
+public class InstrumentedDataSource implements DataSource {
+    private static final Metrics.Histogram CONNECTION_WAIT = Metrics.durationHistogram(
+        "datatools_jdbc_connection_wait_seconds",
+        "Time taken to obtain a connection from the GTFS database pool"
+    );
+
+    private final DataSource dataSource;
+    private final AtomicInteger activeConnections = new AtomicInteger();
+
+    public InstrumentedDataSource(DataSource dataSource) {
+        this.dataSource = dataSource;
+        Metrics.registerGauge(
+            "datatools_jdbc_active_connections",
+            "Number of GTFS database connections in use",
+            activeConnections::get
+        );
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        try (Metrics.Timer timer = CONNECTION_WAIT.startTimer()) {
+            return track(dataSource.getConnection());
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        try (Metrics.Timer timer = CONNECTION_WAIT.startTimer()) {
+            return track(dataSource.getConnection(username, password));
+        }
+    }
+
+    /** Count the connection as active until it is closed (however many times close is called). */
+    private Connection track(Connection connection) {
+        activeConnections.incrementAndGet();
+        AtomicBoolean closed = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(
+            InstrumentedDataSource.class.getClassLoader(),
+            new Class<?>[] {Connection.class},
+            (proxy, method, args) -> {
+                boolean isClose = "close".equals(method.getName()) && method.getParameterCount() == 0;
+                if (isClose && closed.compareAndSet(false, true)) activeConnections.decrementAndGet();
+                try {
+                    return method.invoke(connection, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        );
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return dataSource.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        dataSource.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        dataSource.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return dataSource.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return dataSource.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return iface.isInstance(dataSource) ? iface.cast(dataSource) : dataSource.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(dataSource) || dataSource.isWrapperFor(iface);
+    }
+}
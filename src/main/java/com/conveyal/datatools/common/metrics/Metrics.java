@@ -0,0 +1,228 @@
+package com.conveyal.datatools.common.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A minimal registry of in-process metrics (duration histograms and gauges), written in the Prometheus text format so
+ * that they can be scraped from {@link com.conveyal.datatools.manager.controllers.api.StatusController}. Histograms are
+ * created once (e.g., as static fields of the class that records them) and are cheap to record from any thread. Gauges
+ * are read from a supplier each time the metrics are written.
+ */
+public class Metrics {
+    /** Upper bounds (in seconds) of the buckets of duration histograms, from 10 ms to one hour. */
+    private static final double[] DURATION_BUCKETS = {0.01, 0.05, 0.1, 0.5, 1, 5, 10, 30, 60, 300, 900, 3600};
+
+    // Sorted by name so that the output is stable.
+    private static final Map<String, Histogram> histograms = new ConcurrentSkipListMap<>();
+    private static final Map<String, Gauge> gauges = new ConcurrentSkipListMap<>();
+
+    /**
+     * Get the histogram of durations (in seconds) with the given name, creating it if it does not exist.
+     *
+     * @param labelNames names of the labels whose values are supplied each time a duration is recorded
+     */
+    public static Histogram durationHistogram(String name, String help, String... labelNames) {
+        return histograms.computeIfAbsent(name, key -> new Histogram(name, help, labelNames, DURATION_BUCKETS));
+    }
+
+    /**
+     * Register a gauge (replacing any gauge with the same name) whose values, keyed by the value of a single label, are
+     * read from the supplier each time the metrics are written.
+     */
+    public static void registerGauge(String name, String help, String labelName,
+                                     Supplier<Map<?, ? extends Number>> values) {
+        gauges.put(name, new Gauge(name, help, labelName, values));
+    }
+
+    /** Register a gauge (replacing any gauge with the same name) with a single unlabelled value. */
+    public static void registerGauge(String name, String help, Supplier<? extends Number> value) {
+        gauges.put(name, new Gauge(name, help, null, () -> Collections.singletonMap("", value.get())));
+    }
+
+    /** Write all metrics in the Prometheus text exposition format. */
+    public static String scrape() {
+        StringBuilder builder = new StringBuilder();
+        for (Histogram histogram : histograms.values()) histogram.writeTo(builder);
+        for (Gauge gauge : gauges.values()) gauge.writeTo(builder);
+        return builder.toString();
+    }
+
+    /** A histogram of observed values (e.g., durations), with a series for each combination of label values. */
+    public static class Histogram {
+        private final String name;
+        private final String help;
+        private final String[] labelNames;
+        private final double[] buckets;
+        private final Map<List<String>, Series> series = new ConcurrentHashMap<>();
+
+        private Histogram(String name, String help, String[] labelNames, double[] buckets) {
+            this.name = name;
+            this.help = help;
+            this.labelNames = labelNames;
+            this.buckets = buckets;
+        }
+
+        public void observe(double value, String... labelValues) {
+            if (labelValues.length != labelNames.length) {
+                throw new IllegalArgumentException(String.format("Metric %s requires labels %s", name,
+                    Arrays.toString(labelNames)));
+            }
+            series.computeIfAbsent(Arrays.asList(labelValues), key -> new Series(buckets.length)).observe(value);
+        }
+
+        public void observeMillis(long millis, String... labelValues) {
+            observe(millis / 1000.0, labelValues);
+        }
+
+        /** Start timing a duration, which is recorded with the given label values when the timer is closed. */
+        public Timer startTimer(String... labelValues) {
+            return new Timer(this, labelValues);
+        }
+
+        private void writeTo(StringBuilder builder) {
+            writeHeader(builder, name, help, "histogram");
+            List<Map.Entry<List<String>, Series>> entries = new ArrayList<>(series.entrySet());
+            entries.sort(Map.Entry.comparingByKey(Metrics::compareLabelValues));
+            for (Map.Entry<List<String>, Series> entry : entries) {
+                String labels = formatLabels(labelNames, entry.getKey());
+                Series series = entry.getValue();
+                // Read the count first so that the buckets (which are cumulative) never exceed it.
+                long count = series.count.sum();
+                long cumulative = 0;
+                for (int i = 0; i < buckets.length; i++) {
+                    cumulative += series.bucketCounts[i].sum();
+                    writeSample(builder, name + "_bucket", withLabel(labels, "le", formatValue(buckets[i])),
+                        Math.min(cumulative, count));
+                }
+                writeSample(builder, name + "_bucket", withLabel(labels, "le", "+Inf"), count);
+                writeSample(builder, name + "_sum", labels, series.sum.sum());
+                writeSample(builder, name + "_count", labels, count);
+            }
+        }
+
+        private class Series {
+            final LongAdder[] bucketCounts;
+            final LongAdder count = new LongAdder();
+            final DoubleAdder sum = new DoubleAdder();
+
+            Series(int bucketCount) {
+                bucketCounts = new LongAdder[bucketCount];
+                for (int i = 0; i < bucketCount; i++) bucketCounts[i] = new LongAdder();
+            }
+
+            void observe(double value) {
+                count.increment();
+                sum.add(value);
+                for (int i = 0; i < buckets.length; i++) {
+                    if (value <= buckets[i]) {
+                        bucketCounts[i].increment();
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Times a duration (e.g., a stage of a job) from its creation until it is closed, so that it may be used in a
+     * try-with-resources block.
+     */
+    public static class Timer implements AutoCloseable {
+        private final Histogram histogram;
+        private final String[] labelValues;
+        private final long startNanos = System.nanoTime();
+
+        private Timer(Histogram histogram, String[] labelValues) {
+            this.histogram = histogram;
+            this.labelValues = labelValues;
+        }
+
+        @Override
+        public void close() {
+            histogram.observe((System.nanoTime() - startNanos) / 1e9, labelValues);
+        }
+    }
+
+    private static class Gauge {
+        private final String name;
+        private final String help;
+        private final String labelName;
+        private final Supplier<Map<?, ? extends Number>> values;
+
+        Gauge(String name, String help, String labelName, Supplier<Map<?, ? extends Number>> values) {
+            this.name = name;
+            this.help = help;
+            this.labelName = labelName;
+            this.values = values;
+        }
+
+        private void writeTo(StringBuilder builder) {
+            writeHeader(builder, name, help, "gauge");
+            Map<?, ? extends Number> current = values.get();
+            if (current == null) return;
+            Map<String, Number> sorted = new TreeMap<>();
+            current.forEach((key, value) -> sorted.put(String.valueOf(key), value));
+            for (Map.Entry<String, Number> entry : sorted.entrySet()) {
+                String labels = labelName == null
+                    ? ""
+                    : formatLabels(new String[] {labelName}, Collections.singletonList(entry.getKey()));
+                writeSample(builder, name, labels, entry.getValue().doubleValue());
+            }
+        }
+    }
+
+    private static int compareLabelValues(List<String> a, List<String> b) {
+        for (int i = 0; i < Math.min(a.size(), b.size()); i++) {
+            int comparison = String.valueOf(a.get(i)).compareTo(String.valueOf(b.get(i)));
+            if (comparison != 0) return comparison;
+        }
+        return Integer.compare(a.size(), b.size());
+    }
+
+    private static void writeHeader(StringBuilder builder, String name, String help, String type) {
+        builder.append("# HELP ").append(name).append(' ').append(help.replace("\\", "\\\\").replace("\n", "\\n"))
+            .append('\n');
+        builder.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void writeSample(StringBuilder builder, String name, String labels, double value) {
+        builder.append(name).append(labels).append(' ').append(formatValue(value)).append('\n');
+    }
+
+    /** Format the labels as they appear after the metric name, e.g. {type="VALIDATE_FEED"}, or empty if none. */
+    private static String formatLabels(String[] labelNames, List<String> labelValues) {
+        if (labelNames.length == 0) return "";
+        StringBuilder builder = new StringBuilder("{");
+        for (int i = 0; i < labelNames.length; i++) {
+            if (i > 0) builder.append(',');
+            String value = String.valueOf(labelValues.get(i))
+                .replace("\\", "\\\\")
+                .replace("\"", "\\\"")
+                .replace("\n", "\\n");
+            builder.append(labelNames[i]).append("=\"").append(value).append('"');
+        }
+        return builder.append('}').toString();
+    }
+
+    private static String withLabel(String labels, String labelName, String labelValue) {
+        String label = labelName + "=\"" + labelValue + "\"";
+        return labels.isEmpty() ? "{" + label + "}" : labels.substring(0, labels.length() - 1) + "," + label + "}";
+    }
+
+    private static String formatValue(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            return String.valueOf((long) value);
+        }
+        return String.valueOf(value);
+    }
+}
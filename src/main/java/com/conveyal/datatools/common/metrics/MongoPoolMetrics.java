@@ -0,0 +1,61 @@
+package com.conveyal.datatools.common.metrics;
+
+import com.mongodb.event.ConnectionAddedEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionPoolListenerAdapter;
+import com.mongodb.event.ConnectionPoolWaitQueueEnteredEvent;
+import com.mongodb.event.ConnectionPoolWaitQueueExitedEvent;
+import com.mongodb.event.ConnectionRemovedEvent;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the connections in the MongoDB driver's connection pools (summed over all servers) and the threads waiting
+ * for a connection, which the driver does not otherwise expose. Add an instance to the client options with
+ * {@link com.mongodb.MongoClientOptions.Builder#addConnectionPoolListener}.
+ */
+public class MongoPoolMetrics extends ConnectionPoolListenerAdapter {
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger checkedOut = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    public MongoPoolMetrics() {
+        Metrics.registerGauge("datatools_mongo_pool_connections", "Number of open MongoDB connections",
+            connections::get);
+        Metrics.registerGauge("datatools_mongo_pool_checked_out", "Number of MongoDB connections in use",
+            checkedOut::get);
+        Metrics.registerGauge("datatools_mongo_pool_waiting", "Number of threads waiting for a MongoDB connection",
+            waiting::get);
+    }
+
+    @Override
+    public void connectionAdded(ConnectionAddedEvent event) {
+        connections.incrementAndGet();
+    }
+
+    @Override
+    public void connectionRemoved(ConnectionRemovedEvent event) {
+        connections.decrementAndGet();
+    }
+
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+        checkedOut.incrementAndGet();
+    }
+
+    @Override
+    public void connectionCheckedIn(ConnectionCheckedInEvent event) {
+        checkedOut.decrementAndGet();
+    }
+
+    @Override
+    public void waitQueueEntered(ConnectionPoolWaitQueueEnteredEvent event) {
+        waiting.incrementAndGet();
+    }
+
+    @Override
+    public void waitQueueExited(ConnectionPoolWaitQueueExitedEvent event) {
+        waiting.decrementAndGet();
+    }
+}
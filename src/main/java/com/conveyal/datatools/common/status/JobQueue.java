@@ -0,0 +1,542 @@
+package com.conveyal.datatools.common.status;
+
+import com.conveyal.datatools.manager.DataManager;
+import com.conveyal.datatools.manager.models.JobRecord;
+import com.conveyal.datatools.manager.persistence.Persistence;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Filters.lt;
+import static com.mongodb.client.model.Filters.ne;
+import static com.mongodb.client.model.Filters.nin;
+import static com.mongodb.client.model.Updates.combine;
+import static com.mongodb.client.model.Updates.inc;
+import static com.mongodb.client.model.Updates.set;
+
+/**
+ * Durable job queue backed by MongoDB. Jobs submitted through {@link #execute} are recorded as {@link JobRecord}s so
+ * that work queued or running when the server stops is not silently lost.
+ *
+ * Each record is leased by the server process that holds the job in memory, and the lease is renewed periodically for
+ * as long as the job is queued or running there. Once a lease expires (e.g., after a restart or crash), the next scan by
+ * any server process claims the record. Jobs whose type has a registered {@link JobFactory} (i.e., idempotent jobs such
+ * as fetching, validating or exporting GIS) are then recreated from their stored parameters and resubmitted. Other jobs
+ * are marked as failed so that the interruption is at least recorded.
+ *
+ * Failed attempts of resumable jobs are also retried, up to a configured number of attempts, with the delay between
+ * attempts doubling each time:
+ * <pre>
+ * application:
+ *   jobs:
+ *     max_attempts: 3
+ *     retry_delay_seconds: 60
+ * </pre>
+ *
+ * The queue also allows heavy processing to be moved off the node that serves the HTTP API (see {@link Mode}). An API
+ * node records jobs that can be recreated elsewhere without a lease, and worker nodes claim and run them, publishing
+ * each job's status to its record so that the API node can report it. Because workers read feeds from the shared s3
+ * bucket, this requires s3 storage.
+ *
+ * Note that only jobs that can be recreated from stored data are moved: fetches (including the processing of the new
+ * versions they find, which runs on the worker that fetched them), re-processing or re-validating stored versions, and
+ * merges. A new version uploaded to (or created from a snapshot on) an API node exists only on that node until it has
+ * been processed and stored, so it is still processed there.
+ */
+public class JobQueue {
+    private static final Logger LOG = LoggerFactory.getLogger(JobQueue.class);
+    /** Identifies this server process as the holder of job leases. */
+    public static final String NODE_ID = UUID.randomUUID().toString();
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final long DEFAULT_RETRY_DELAY_SECONDS = 60;
+    private static final long LEASE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final long LEASE_RENEWAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    /** How often workers look for jobs and how often job statuses are exchanged between workers and API nodes. */
+    private static final long POLL_MILLIS = TimeUnit.SECONDS.toMillis(2);
+    /** How long records of finished jobs are kept. */
+    private static final long FINISHED_RECORD_RETENTION_MILLIS = TimeUnit.DAYS.toMillis(7);
+    private static final String CONFIG_PREFIX = "application.jobs.";
+    private static final String CANCELLED_MESSAGE = "Job was cancelled.";
+    /**
+     * Job types that must run on the node that serves the API, because they write their output to its local disk (to be
+     * downloaded through the API once finished).
+     */
+    private static final Set<MonitorableJob.JobType> LOCAL_JOB_TYPES = EnumSet.of(MonitorableJob.JobType.EXPORT_GIS);
+
+    /**
+     * The role of this server process, set with application.mode in the server config.
+     */
+    public enum Mode {
+        /** Serves the API and runs all jobs (the default, for a single server). */
+        STANDALONE,
+        /** Serves the API, leaving jobs that can be recreated from their parameters to worker nodes. */
+        API,
+        /** Serves no HTTP routes and only runs jobs claimed from the shared queue. */
+        WORKER
+    }
+
+    /** Recreates a job from the owner and parameters stored in its {@link JobRecord}. */
+    public interface JobFactory {
+        /** Return the recreated job, or null if it can no longer be created (e.g., its feed source was deleted). */
+        MonitorableJob create(String owner, Map<String, String> parameters);
+    }
+
+    private static final Map<MonitorableJob.JobType, JobFactory> jobFactories = new EnumMap<>(MonitorableJob.JobType.class);
+    private static final Set<MonitorableJob.JobType> retriedJobTypes = EnumSet.noneOf(MonitorableJob.JobType.class);
+    private static final ScheduledExecutorService leaseService = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("job-queue-%d").setDaemon(true).build()
+    );
+    private static final FindOneAndUpdateOptions RETURN_UPDATED = new FindOneAndUpdateOptions()
+        .returnDocument(ReturnDocument.AFTER);
+    /** Durable jobs running in this process (only tracked on worker nodes, which publish their status). */
+    private static final Map<String, MonitorableJob> localJobs = new ConcurrentHashMap<>();
+    /** Jobs running on other nodes, whose status this API node reports (see {@link RemoteJob}). */
+    static final Map<String, MonitorableJob> remoteJobs = new ConcurrentHashMap<>();
+    private static int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private static long retryDelayMillis = TimeUnit.SECONDS.toMillis(DEFAULT_RETRY_DELAY_SECONDS);
+    private static Mode mode = Mode.STANDALONE;
+    private static boolean initialized;
+
+    /**
+     * Register the factory used to recreate jobs of the given type. Only jobs of registered types are resumed after a
+     * restart or run on worker nodes.
+     *
+     * @param retryFailures whether failed attempts should also be retried (only appropriate if failures are likely to
+     *                      be transient, e.g., a fetch that timed out)
+     */
+    public static void registerJobType(MonitorableJob.JobType type, JobFactory factory, boolean retryFailures) {
+        jobFactories.put(type, factory);
+        if (retryFailures) retriedJobTypes.add(type);
+    }
+
+    public static boolean canCreate(MonitorableJob.JobType type) {
+        return jobFactories.containsKey(type);
+    }
+
+    public static boolean isWorker() {
+        return mode == Mode.WORKER;
+    }
+
+    /**
+     * Read the queue config and begin renewing leases, recovering jobs whose leases have expired and (depending on the
+     * mode) exchanging job statuses. This must be called after {@link Persistence#initialize()}.
+     */
+    public static void initialize() {
+        Mode configuredMode = Mode.STANDALONE;
+        int configuredMaxAttempts = DEFAULT_MAX_ATTEMPTS;
+        long configuredRetryDelayMillis = TimeUnit.SECONDS.toMillis(DEFAULT_RETRY_DELAY_SECONDS);
+        if (DataManager.hasConfigProperty("application.mode")) {
+            configuredMode = Mode.valueOf(DataManager.getConfigPropertyAsText("application.mode").toUpperCase());
+        }
+        if (configuredMode != Mode.STANDALONE && !DataManager.useS3) {
+            // Jobs claimed by a worker could not read feeds stored on another node's disk.
+            throw new IllegalStateException(String.format(
+                "application.mode %s requires application.data.use_s3_storage", configuredMode.name().toLowerCase()
+            ));
+        }
+        if (DataManager.hasConfigProperty(CONFIG_PREFIX + "max_attempts")) {
+            configuredMaxAttempts = DataManager.getConfigProperty(CONFIG_PREFIX + "max_attempts").asInt();
+        }
+        if (DataManager.hasConfigProperty(CONFIG_PREFIX + "retry_delay_seconds")) {
+            configuredRetryDelayMillis = TimeUnit.SECONDS.toMillis(
+                DataManager.getConfigProperty(CONFIG_PREFIX + "retry_delay_seconds").asLong()
+            );
+        }
+        configure(configuredMode, configuredMaxAttempts, configuredRetryDelayMillis);
+        leaseService.scheduleWithFixedDelay(() -> {
+            try {
+                renewLeases();
+                // Workers claim jobs as they have capacity for them (see runWorker).
+                if (mode != Mode.WORKER) claimJobs(false);
+                removeFinishedRecords();
+            } catch (Exception e) {
+                LOG.error("Error maintaining durable job queue", e);
+            }
+        }, 0, LEASE_RENEWAL_MILLIS, TimeUnit.MILLISECONDS);
+        if (mode == Mode.WORKER) {
+            leaseService.scheduleWithFixedDelay(JobQueue::publishStatuses, POLL_MILLIS, POLL_MILLIS, TimeUnit.MILLISECONDS);
+        } else if (mode == Mode.API) {
+            leaseService.scheduleWithFixedDelay(JobQueue::syncRemoteJobs, 0, POLL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        LOG.info("Durable job queue initialized (node {}, mode {})", NODE_ID, mode);
+    }
+
+    /**
+     * Set the mode and retry policy and start recording jobs, without the periodic maintenance started by
+     * {@link #initialize()} (so that tests can run each step themselves).
+     */
+    static void configure(Mode mode, int maxAttempts, long retryDelayMillis) {
+        JobQueue.mode = mode;
+        JobQueue.maxAttempts = maxAttempts;
+        JobQueue.retryDelayMillis = retryDelayMillis;
+        initialized = true;
+    }
+
+    /** Stop recording jobs (restoring the default mode), as before {@link #initialize()} is called. */
+    static void reset() {
+        configure(Mode.STANDALONE, DEFAULT_MAX_ATTEMPTS, TimeUnit.SECONDS.toMillis(DEFAULT_RETRY_DELAY_SECONDS));
+        initialized = false;
+    }
+
+    /**
+     * Run this process as a worker node: repeatedly claim jobs from the shared queue whenever the heavy executor has
+     * capacity for them. This blocks until the thread is interrupted.
+     */
+    public static void runWorker() {
+        LOG.info("Worker node {} waiting for jobs", NODE_ID);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                claimJobs(true);
+                Thread.sleep(POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                LOG.error("Error claiming jobs", e);
+            }
+        }
+    }
+
+    /** Record the job and submit it to the heavy executor. */
+    public static MonitorableJob execute(MonitorableJob job) {
+        return execute(job, DataManager.heavyExecutor);
+    }
+
+    /**
+     * Record the job and submit it to the given executor (or, on an API node, leave it for a worker node if possible).
+     * If the queue has not been initialized (e.g., in tests that do not connect to MongoDB), the job is simply
+     * submitted.
+     *
+     * If an identical job (see {@link MonitorableJob#deduplicationKey()}) is already in progress, the given job is not
+     * submitted and its owner is attached to the job in progress instead.
+     *
+     * @return the job that will do the work: either the given job or the identical job already in progress
+     */
+    public static MonitorableJob execute(MonitorableJob job, Executor executor) {
+        MonitorableJob activeJob = DataManager.jobRegistry.attachToDuplicate(job);
+        if (activeJob != null) return activeJob;
+        if (initialized) {
+            try {
+                JobRecord record = new JobRecord(job);
+                if (mode == Mode.API && record.canResume() && !LOCAL_JOB_TYPES.contains(job.type)) {
+                    // Leave the job (without a lease, so that it may be claimed immediately) for a worker, and report
+                    // its status from the record until it finishes.
+                    record.leaseExpires = new Date(0);
+                    Persistence.jobRecords.create(record);
+                    MonitorableJob.Status status = job.status;
+                    status.apply(() -> {
+                        status.queued = true;
+                        status.message = "Waiting for an available worker...";
+                    });
+                    remoteJobs.put(job.jobId, job);
+                    return job;
+                }
+                record.leaseOwner = NODE_ID;
+                record.leaseExpires = leaseExpiration();
+                Persistence.jobRecords.create(record);
+                job.durable = true;
+            } catch (Exception e) {
+                LOG.error("Could not record job {}. It will not survive a restart.", job.jobId, e);
+            }
+        }
+        executor.execute(job);
+        return job;
+    }
+
+    /**
+     * Cancel the job (see {@link MonitorableJob#requestCancellation()}). If the job is waiting in the queue for a worker
+     * node, it is marked as failed immediately. If it is running on another node, its record is flagged so that the
+     * node running it cancels it.
+     */
+    public static void cancel(MonitorableJob job) {
+        job.requestCancellation();
+        if (!initialized) return;
+        try {
+            // Jobs that have not been claimed by a worker (or are waiting to be retried) can be cancelled outright.
+            long cancelledOutright = Persistence.jobRecords.getMongoCollection().updateOne(
+                and(eq(job.jobId), eq("state", JobRecord.State.QUEUED.name()), lt("leaseExpires", new Date())),
+                combine(
+                    set("state", JobRecord.State.FAILED.name()),
+                    set("message", CANCELLED_MESSAGE),
+                    set("cancelRequested", true),
+                    set("leaseOwner", null),
+                    set("finished", new Date()),
+                    set("lastUpdated", new Date())
+                )
+            ).getModifiedCount();
+            if (cancelledOutright == 0) {
+                Persistence.jobRecords.getMongoCollection().updateOne(
+                    and(eq(job.jobId), activeStates()),
+                    combine(set("cancelRequested", true), set("lastUpdated", new Date()))
+                );
+            }
+        } catch (Exception e) {
+            LOG.error("Could not record cancellation of job {}", job.jobId, e);
+        }
+    }
+
+    /** Called by a durable job when it starts running. */
+    static void started(MonitorableJob job) {
+        if (mode == Mode.WORKER) localJobs.put(job.jobId, job);
+        try {
+            Persistence.jobRecords.getMongoCollection().updateOne(eq(job.jobId), combine(
+                set("state", JobRecord.State.RUNNING.name()),
+                set("leaseOwner", NODE_ID),
+                set("leaseExpires", leaseExpiration()),
+                set("nextAttempt", null),
+                set("status", job.status),
+                set("lastUpdated", new Date()),
+                inc("attempts", 1)
+            ));
+        } catch (Exception e) {
+            LOG.error("Could not record start of job {}", job.jobId, e);
+        }
+    }
+
+    /**
+     * Called by a durable job when it has finished. A failed job is scheduled for another attempt if failures of its
+     * type are retried and it has attempts remaining.
+     */
+    static void finished(MonitorableJob job) {
+        localJobs.remove(job.jobId);
+        try {
+            JobRecord record = Persistence.jobRecords.getById(job.jobId);
+            if (record == null) return;
+            if (!job.status.error) {
+                updateState(record.id, JobRecord.State.COMPLETED, null, job.status);
+            } else if (job.cancellationRequested() || record.cancelRequested) {
+                updateState(record.id, JobRecord.State.FAILED, CANCELLED_MESSAGE, job.status);
+            } else if (record.canResume() && retriedJobTypes.contains(record.type) && record.attempts < maxAttempts) {
+                long delayMillis = retryDelay(record.attempts);
+                LOG.warn("Job {} ({}) failed on attempt {} of {}. Retrying in {} ms.",
+                    record.id, record.type, record.attempts, maxAttempts, delayMillis);
+                Persistence.jobRecords.getMongoCollection().updateOne(eq(record.id), combine(
+                    set("state", JobRecord.State.QUEUED.name()),
+                    set("nextAttempt", new Date(System.currentTimeMillis() + delayMillis)),
+                    set("message", job.status.message),
+                    set("lastUpdated", new Date())
+                ));
+                scheduleAttempt(record, delayMillis);
+            } else {
+                updateState(record.id, JobRecord.State.FAILED, job.status.message, job.status);
+            }
+        } catch (Exception e) {
+            LOG.error("Could not record completion of job {}", job.jobId, e);
+        }
+    }
+
+    /** Delay before the next attempt, doubling after each failed attempt (none before the first attempt). */
+    static long retryDelay(int attempts) {
+        if (attempts == 0) return 0;
+        return retryDelayMillis << Math.min(attempts - 1, 16);
+    }
+
+    private static Date leaseExpiration() {
+        return new Date(System.currentTimeMillis() + LEASE_MILLIS);
+    }
+
+    private static void updateState(String id, JobRecord.State state, String message, MonitorableJob.Status status) {
+        List<Bson> updates = new ArrayList<>();
+        updates.add(set("state", state.name()));
+        updates.add(set("message", message));
+        updates.add(set("leaseOwner", null));
+        updates.add(set("finished", new Date()));
+        updates.add(set("lastUpdated", new Date()));
+        if (status != null) updates.add(set("status", status));
+        Persistence.jobRecords.getMongoCollection().updateOne(eq(id), combine(updates));
+    }
+
+    private static void scheduleAttempt(JobRecord record, long delayMillis) {
+        leaseService.schedule(() -> {
+            try {
+                // Skip the attempt if the job has been cancelled in the meantime.
+                JobRecord current = Persistence.jobRecords.getById(record.id);
+                if (current == null || current.state != JobRecord.State.QUEUED) return;
+                if (current.cancelRequested) updateState(current.id, JobRecord.State.FAILED, CANCELLED_MESSAGE, null);
+                else resubmit(current);
+            } catch (Exception e) {
+                LOG.error("Could not resubmit job {}", record.id, e);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Recreate the job from its record (keeping the original job ID, so that clients and download tokens referring to
+     * it remain valid) and submit it to the heavy executor (or, for fetches, the fetch executor).
+     */
+    private static void resubmit(JobRecord record) {
+        try {
+            MonitorableJob job = jobFactories.get(record.type).create(record.owner, record.parameters);
+            if (job == null) {
+                updateState(record.id, JobRecord.State.FAILED, "Job could not be recreated.", null);
+                return;
+            }
+            // Replace the failed attempt (if still held in memory) with the new one.
+            job.changeJobId(record.id);
+            job.durable = true;
+            if (record.attempts > 0) {
+                job.status.setMessage(String.format("Retrying (attempt %d of %d)...", record.attempts + 1, maxAttempts));
+            }
+            LOG.info("Submitting job {} ({}) after {} previous attempt(s)", record.id, record.type, record.attempts);
+            Executor executor = record.type == MonitorableJob.JobType.FETCH_SINGLE_FEED
+                ? DataManager.fetchExecutor
+                : DataManager.heavyExecutor;
+            executor.execute(job);
+        } catch (Exception e) {
+            LOG.error("Could not resubmit job {}", record.id, e);
+            updateState(record.id, JobRecord.State.FAILED, "Job could not be recreated.", null);
+        }
+    }
+
+    /** Extend the leases on all jobs queued or running in this process. */
+    static void renewLeases() {
+        Persistence.jobRecords.getMongoCollection().updateMany(
+            and(eq("leaseOwner", NODE_ID), activeStates()),
+            set("leaseExpires", leaseExpiration())
+        );
+    }
+
+    /**
+     * Claim each queued or running job without a current lease (i.e., the process that held it has stopped, or it was
+     * left for a worker by an API node) and either submit it or, if it cannot be resumed or has no attempts remaining,
+     * mark it as failed. Each node only claims the job types it may run (see {@link Mode}).
+     *
+     * @param limitToCapacity if true, stop claiming jobs once the heavy executor has no free capacity (so that other
+     *                        workers may claim the remaining jobs)
+     */
+    static void claimJobs(boolean limitToCapacity) {
+        List<String> localTypes = LOCAL_JOB_TYPES.stream().map(Enum::name).collect(Collectors.toList());
+        Bson claimable = and(activeStates(), lt("leaseExpires", new Date()));
+        if (mode == Mode.API) claimable = and(claimable, in("type", localTypes));
+        else if (mode == Mode.WORKER) claimable = and(claimable, nin("type", localTypes));
+        while (!limitToCapacity || DataManager.heavyExecutor.hasCapacity()) {
+            // Claiming each record with an atomic update ensures that only one process runs the job.
+            JobRecord record = Persistence.jobRecords.getMongoCollection().findOneAndUpdate(
+                claimable,
+                combine(
+                    set("state", JobRecord.State.QUEUED.name()),
+                    set("leaseOwner", NODE_ID),
+                    set("leaseExpires", leaseExpiration())
+                ),
+                RETURN_UPDATED
+            );
+            if (record == null) break;
+            if (record.cancelRequested) {
+                updateState(record.id, JobRecord.State.FAILED, CANCELLED_MESSAGE, null);
+            } else if (!record.canResume()) {
+                LOG.warn("Job {} ({}) was interrupted and cannot be resumed.", record.id, record.type);
+                updateState(record.id, JobRecord.State.FAILED, "Job was interrupted by a server restart.", null);
+            } else if (record.attempts >= maxAttempts) {
+                updateState(record.id, JobRecord.State.FAILED, "Job was interrupted on its final attempt.", null);
+            } else {
+                // Honor any backoff that was pending when the job was interrupted.
+                long delayMillis = record.nextAttempt != null
+                    ? Math.max(0, record.nextAttempt.getTime() - System.currentTimeMillis())
+                    : retryDelay(record.attempts);
+                LOG.info("Claimed job {} ({}) to run in {} ms", record.id, record.type, delayMillis);
+                // Submit immediately if possible, so that the capacity check above accounts for the job.
+                if (delayMillis == 0) resubmit(record);
+                else scheduleAttempt(record, delayMillis);
+            }
+        }
+    }
+
+    /**
+     * Write the status of each job running on this worker to its record, so that API nodes can report it, and cancel
+     * any jobs whose cancellation has been requested through an API node.
+     */
+    private static void publishStatuses() {
+        if (localJobs.isEmpty()) return;
+        try {
+            for (JobRecord record : Persistence.jobRecords.getFiltered(
+                and(in("_id", localJobs.keySet()), eq("cancelRequested", true))
+            )) {
+                MonitorableJob job = localJobs.get(record.id);
+                if (job != null && !job.cancellationRequested()) {
+                    LOG.info("Cancelling job {} ({}) at the request of an API node", record.id, record.type);
+                    job.requestCancellation();
+                }
+            }
+        } catch (Exception e) {
+            LOG.error("Could not check for cancelled jobs", e);
+        }
+        for (MonitorableJob job : localJobs.values()) {
+            try {
+                Persistence.jobRecords.getMongoCollection().updateOne(eq(job.jobId), set("status", job.status));
+            } catch (Exception e) {
+                LOG.error("Could not publish status of job {}", job.jobId, e);
+            }
+        }
+    }
+
+    /**
+     * Update the status of jobs running on other nodes from their records. Jobs not yet known to this node (e.g., those
+     * submitted before a restart) are represented by a {@link RemoteJob} so that their owners can see them.
+     */
+    static void syncRemoteJobs() {
+        try {
+            for (JobRecord record : Persistence.jobRecords.getFiltered(and(
+                activeStates(),
+                ne("leaseOwner", NODE_ID),
+                nin("_id", remoteJobs.keySet())
+            ))) {
+                remoteJobs.put(record.id, new RemoteJob(record));
+            }
+            if (remoteJobs.isEmpty()) return;
+            List<JobRecord> records = Persistence.jobRecords.getByIds(remoteJobs.keySet());
+            Set<String> foundIds = records.stream().map(record -> record.id).collect(Collectors.toSet());
+            // Stop tracking any jobs whose records have been removed.
+            remoteJobs.keySet().retainAll(foundIds);
+            for (JobRecord record : records) {
+                MonitorableJob job = remoteJobs.get(record.id);
+                if (job == null) continue;
+                if (record.status != null) job.status = record.status;
+                if (record.state == JobRecord.State.COMPLETED || record.state == JobRecord.State.FAILED) {
+                    if (record.state == JobRecord.State.FAILED && !job.status.error) {
+                        job.status.fail(record.message != null ? record.message : "Job failed on worker node.");
+                    }
+                    job.status.setCompleted(true);
+                    DataManager.jobRegistry.finished(job);
+                    remoteJobs.remove(record.id);
+                } else if (NODE_ID.equals(record.leaseOwner)) {
+                    // This node has claimed the job itself (e.g., to resume it), so it is no longer remote.
+                    remoteJobs.remove(record.id);
+                }
+            }
+        } catch (Exception e) {
+            LOG.error("Could not update status of jobs running on worker nodes", e);
+        }
+    }
+
+    private static void removeFinishedRecords() {
+        Date cutoff = new Date(System.currentTimeMillis() - FINISHED_RECORD_RETENTION_MILLIS);
+        Persistence.jobRecords.removeFiltered(and(
+            in("state", JobRecord.State.COMPLETED.name(), JobRecord.State.FAILED.name()),
+            lt("finished", cutoff)
+        ));
+    }
+
+    private static Bson activeStates() {
+        return in("state", JobRecord.State.QUEUED.name(), JobRecord.State.RUNNING.name());
+    }
+}
@@ -0,0 +1,229 @@
+package com.conveyal.datatools.common.status;
+
+import com.conveyal.datatools.manager.DataManager;
+import com.google.common.collect.Sets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds the jobs known to this server so that their status can be reported through the API. Jobs are indexed by ID,
+ * owner and type, so each lookup only touches the jobs it returns.
+ *
+ * The registry also tracks the jobs in progress by their deduplication key (see
+ * {@link MonitorableJob#deduplicationKey()}), so that a request for work that is already in progress can be attached
+ * to the job doing that work (which is then visible to both requesters).
+ *
+ * Finished (completed or errored) jobs are normally removed once their owner has fetched them, but jobs that are never
+ * fetched (e.g., system jobs or jobs whose user has closed the browser) would otherwise be held forever along with any
+ * files and feed versions they reference. Finished jobs are therefore evicted once they are older than the retention
+ * period or once there are more than the maximum number of them, oldest first:
+ * <pre>
+ * application:
+ *   jobs:
+ *     retention_minutes: 60
+ *     max_finished: 1000
+ * </pre>
+ */
+public class JobRegistry {
+    private static final Logger LOG = LoggerFactory.getLogger(JobRegistry.class);
+    public static final long DEFAULT_RETENTION_MINUTES = 60;
+    public static final int DEFAULT_MAX_FINISHED = 1000;
+    private static final String CONFIG_PREFIX = "application.jobs.";
+
+    private final Map<String, MonitorableJob> jobsById = new ConcurrentHashMap<>();
+    private final Map<String, Set<MonitorableJob>> jobsByOwner = new ConcurrentHashMap<>();
+    private final Map<MonitorableJob.JobType, Set<MonitorableJob>> jobsByType = new ConcurrentHashMap<>();
+    /** Jobs in progress by deduplication key. */
+    private final Map<String, MonitorableJob> activeJobsByKey = new ConcurrentHashMap<>();
+    /** Time at which each finished job finished, in order of completion. Guarded by this. */
+    private final LinkedHashMap<MonitorableJob, Long> finishedAt = new LinkedHashMap<>();
+    private volatile long retentionMillis = TimeUnit.MINUTES.toMillis(DEFAULT_RETENTION_MINUTES);
+    private volatile int maxFinished = DEFAULT_MAX_FINISHED;
+
+    /** Read the retention of finished jobs from the server config. */
+    public void configure() {
+        long retentionMinutes = DataManager.hasConfigProperty(CONFIG_PREFIX + "retention_minutes")
+            ? DataManager.getConfigProperty(CONFIG_PREFIX + "retention_minutes").asLong()
+            : DEFAULT_RETENTION_MINUTES;
+        int maxFinished = DataManager.hasConfigProperty(CONFIG_PREFIX + "max_finished")
+            ? DataManager.getConfigProperty(CONFIG_PREFIX + "max_finished").asInt()
+            : DEFAULT_MAX_FINISHED;
+        setRetention(TimeUnit.MINUTES.toMillis(retentionMinutes), maxFinished);
+    }
+
+    /** Set how long finished jobs are retained and how many may be retained at once. */
+    public void setRetention(long retentionMillis, int maxFinished) {
+        this.retentionMillis = retentionMillis;
+        this.maxFinished = maxFinished;
+        evictFinished();
+    }
+
+    /**
+     * Add the job to the registry. A job registered again (e.g., a recurring job that is run again) is no longer
+     * considered finished.
+     */
+    public void register(MonitorableJob job) {
+        MonitorableJob previous = jobsById.put(job.jobId, job);
+        if (previous != null && previous != job) removeFromIndexes(previous);
+        addToIndex(jobsByOwner, job.owner, job);
+        for (String owner : job.sharedWith) addToIndex(jobsByOwner, owner, job);
+        addToIndex(jobsByType, job.type, job);
+        synchronized (this) {
+            finishedAt.remove(job);
+        }
+    }
+
+    /**
+     * If another job with the same deduplication key as the given job is in progress, attach the given job's owner to
+     * it (and discard the given job). Otherwise, record the given job as in progress.
+     *
+     * @return the job in progress that the given job's owner has been attached to, or null if the given job should run
+     */
+    public MonitorableJob attachToDuplicate(MonitorableJob job) {
+        String key = job.deduplicationKey();
+        if (key == null) return null;
+        MonitorableJob activeJob = activeJobsByKey.merge(key, job, (existing, newJob) ->
+            // A job in the map may have finished without being removed yet (e.g., if it was cancelled before starting).
+            existing.status.completed ? newJob : existing
+        );
+        if (activeJob == job) return null;
+        remove(job);
+        if (!activeJob.owner.equals(job.owner)) {
+            activeJob.sharedWith.add(job.owner);
+            addToIndex(jobsByOwner, job.owner, activeJob);
+        }
+        LOG.info("Attaching {} to job {} already in progress ({})", job.owner, activeJob.jobId, key);
+        return activeJob;
+    }
+
+    /** Whether the given user may see the job (i.e., the job belongs to them or they have been attached to it). */
+    public boolean isVisibleTo(MonitorableJob job, String owner) {
+        Set<MonitorableJob> jobs = jobsByOwner.get(owner);
+        return jobs != null && jobs.contains(job);
+    }
+
+    /**
+     * Remove the job from the given user's jobs (e.g., once they have seen that it has finished). The job is removed
+     * entirely once no user can see it.
+     */
+    public void removeForOwner(MonitorableJob job, String owner) {
+        removeFromIndex(jobsByOwner, owner, job);
+        job.sharedWith.remove(owner);
+        if (!isVisibleTo(job, job.owner) && job.sharedWith.isEmpty()) remove(job);
+    }
+
+    /**
+     * Change the ID of a registered job, replacing any other job registered with the new ID (e.g., a failed attempt of
+     * a job that has been recreated to retry it).
+     */
+    void changeJobId(MonitorableJob job, String jobId) {
+        jobsById.remove(job.jobId, job);
+        job.jobId = jobId;
+        register(job);
+    }
+
+    /** Record that the job has finished, so that it will be evicted if it is not fetched in time. */
+    public void finished(MonitorableJob job) {
+        releaseKey(job);
+        if (jobsById.get(job.jobId) != job) return;
+        synchronized (this) {
+            finishedAt.remove(job);
+            finishedAt.put(job, System.currentTimeMillis());
+        }
+        evictFinished();
+    }
+
+    public void remove(MonitorableJob job) {
+        if (jobsById.remove(job.jobId, job)) removeFromIndexes(job);
+    }
+
+    public MonitorableJob get(String jobId) {
+        return jobsById.get(jobId);
+    }
+
+    /** Get all jobs belonging to the given owner. The returned set is a copy. */
+    public Set<MonitorableJob> getByOwner(String owner) {
+        evictFinished();
+        return copyOf(jobsByOwner.get(owner));
+    }
+
+    /** Get all jobs of the given types. The returned set is a copy. */
+    public Set<MonitorableJob> getByType(MonitorableJob.JobType... types) {
+        evictFinished();
+        Set<MonitorableJob> jobs = new HashSet<>();
+        for (MonitorableJob.JobType type : types) {
+            Set<MonitorableJob> jobsOfType = jobsByType.get(type);
+            if (jobsOfType != null) jobs.addAll(jobsOfType);
+        }
+        return jobs;
+    }
+
+    /** Get all jobs. The returned set is a copy. */
+    public Set<MonitorableJob> getAll() {
+        evictFinished();
+        return new HashSet<>(jobsById.values());
+    }
+
+    /** Remove finished jobs that are older than the retention period or in excess of the maximum count. */
+    public void evictFinished() {
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        List<MonitorableJob> evicted = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Map.Entry<MonitorableJob, Long>> iterator = finishedAt.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<MonitorableJob, Long> entry = iterator.next();
+                if (entry.getValue() >= cutoff && finishedAt.size() <= maxFinished) break;
+                iterator.remove();
+                evicted.add(entry.getKey());
+            }
+        }
+        if (evicted.isEmpty()) return;
+        for (MonitorableJob job : evicted) remove(job);
+        LOG.debug("Evicted {} finished jobs", evicted.size());
+    }
+
+    private void releaseKey(MonitorableJob job) {
+        String key = job.deduplicationKey();
+        if (key != null) activeJobsByKey.remove(key, job);
+    }
+
+    private void removeFromIndexes(MonitorableJob job) {
+        releaseKey(job);
+        removeFromIndex(jobsByOwner, job.owner, job);
+        for (String owner : job.sharedWith) removeFromIndex(jobsByOwner, owner, job);
+        removeFromIndex(jobsByType, job.type, job);
+        synchronized (this) {
+            finishedAt.remove(job);
+        }
+    }
+
+    private static <K> void addToIndex(Map<K, Set<MonitorableJob>> index, K key, MonitorableJob job) {
+        index.compute(key, (k, jobs) -> {
+            if (jobs == null) jobs = Sets.newConcurrentHashSet();
+            jobs.add(job);
+            return jobs;
+        });
+    }
+
+    private static <K> void removeFromIndex(Map<K, Set<MonitorableJob>> index, K key, MonitorableJob job) {
+        index.computeIfPresent(key, (k, jobs) -> {
+            jobs.remove(job);
+            return jobs.isEmpty() ? null : jobs;
+        });
+    }
+
+    private static Set<MonitorableJob> copyOf(Set<MonitorableJob> jobs) {
+        return jobs == null ? Collections.emptySet() : new HashSet<>(jobs);
+    }
+}
@@ -0,0 +1,393 @@
+package com.conveyal.datatools.common.status;
+
+import com.conveyal.datatools.common.metrics.Metrics;
+import com.conveyal.datatools.manager.DataManager;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes long-running jobs with limits on how many run at once. Unlike a fixed thread pool with a single FIFO queue,
+ * this keeps a separate concurrency limit for each {@link MonitorableJob.JobType} and picks the next job to run by:
+ *
+ * 1. priority (jobs requested by users run ahead of system jobs such as nightly fetches, plus an optional configured
+ *    priority per job type), which increases by one for each interval a job has waited, so that a steady stream of
+ *    higher priority jobs cannot hold back lower priority jobs indefinitely,
+ * 2. fair share (among jobs of equal priority, the owner with the fewest running jobs goes first), and
+ * 3. submission order.
+ *
+ * While a job waits, its position in the queue and time spent waiting are reported in its {@link MonitorableJob.Status}.
+ *
+ * Sub-jobs submitted with {@link #executeSubJob} run ahead of all other jobs, so that work already underway finishes
+ * first. A job waiting on its sub-jobs should free its own slot while it waits (see {@link #releaseCurrentSlot}) so that
+ * the sub-jobs cannot be starved of slots by their parent.
+ *
+ * Limits and priorities are read from the server config, e.g.:
+ * <pre>
+ * application:
+ *   jobs:
+ *     max_concurrent: 4
+ *     concurrency:
+ *       MERGE_FEED_VERSIONS: 1
+ *     priority:
+ *       DEPLOY_TO_OTP: 5
+ *     priority_aging_seconds: 60
+ * </pre>
+ * Limits must be at least one (other values are ignored, since no job of the type could ever run).
+ *
+ * This implements {@link Executor}, so plain runnables may also be submitted (they are treated as system jobs of
+ * unknown type).
+ */
+public class JobScheduler implements Executor {
+    private static final Logger LOG = LoggerFactory.getLogger(JobScheduler.class);
+    public static final int DEFAULT_MAX_CONCURRENT_JOBS = 4;
+    /** How long a job waits for its priority to increase by one (see class comment). */
+    public static final long DEFAULT_AGING_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    /** Priority added to jobs owned by a user (rather than the system), so that interactive requests run first. */
+    public static final int INTERACTIVE_PRIORITY = 10;
+    /** Priority added to sub-jobs of a job that is already running. */
+    public static final int SUB_JOB_PRIORITY = 100;
+    public static final String SYSTEM_OWNER = "system";
+    private static final String CONFIG_PREFIX = "application.jobs.";
+    private static final Metrics.Histogram QUEUE_WAIT = Metrics.durationHistogram(
+        "datatools_job_queue_wait_seconds",
+        "Time jobs spent waiting in the scheduler queue before starting",
+        "type"
+    );
+
+    private final int maxConcurrentJobs;
+    private final Map<MonitorableJob.JobType, Integer> concurrencyLimits;
+    private final Map<MonitorableJob.JobType, Integer> typePriorities;
+    private final long agingMillis;
+    /** Threads are only requested when a slot is free, so the pool never queues work itself. */
+    private final ExecutorService threadPool = Executors.newCachedThreadPool(
+        new ThreadFactoryBuilder().setNameFormat("job-scheduler-%d").build()
+    );
+
+    // The following fields are guarded by this.
+    private final List<QueuedJob> queue = new ArrayList<>();
+    private final Map<MonitorableJob.JobType, Integer> runningByType = new EnumMap<>(MonitorableJob.JobType.class);
+    private final Map<String, Integer> runningByOwner = new HashMap<>();
+    /** The job holding a slot on each pool thread, used by jobs to release their slot while waiting on sub-jobs. */
+    private final Map<Thread, QueuedJob> jobsByThread = new HashMap<>();
+    private int running;
+    private long submitted;
+    private long completed;
+
+    /** A job waiting to run, along with the values used to order the queue. */
+    private class QueuedJob {
+        final Runnable runnable;
+        final MonitorableJob job;
+        final Runnable onFinished;
+        final MonitorableJob.JobType type;
+        final String owner;
+        final int priority;
+        final long sequence;
+        final long enqueuedMillis = System.currentTimeMillis();
+        /** Whether the job has given up its slot while it waits (see {@link #releaseCurrentSlot}). */
+        boolean released;
+
+        QueuedJob(Runnable runnable, Runnable onFinished, boolean isSubJob, long sequence) {
+            this.runnable = runnable;
+            this.onFinished = onFinished;
+            this.job = runnable instanceof MonitorableJob ? (MonitorableJob) runnable : null;
+            this.type = job != null ? job.type : MonitorableJob.JobType.UNKNOWN_TYPE;
+            this.owner = job != null ? job.owner : SYSTEM_OWNER;
+            this.priority = typePriorities.getOrDefault(type, 0) +
+                (SYSTEM_OWNER.equals(owner) ? 0 : INTERACTIVE_PRIORITY) +
+                (isSubJob ? SUB_JOB_PRIORITY : 0);
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * Orders queued jobs by priority (highest first, including the priority gained by waiting until the given time),
+     * then by the number of jobs their owner already has running, then by submission order.
+     */
+    private Comparator<QueuedJob> queueOrder(long now) {
+        return Comparator
+            .comparingLong((QueuedJob queuedJob) -> -effectivePriority(queuedJob, now))
+            .thenComparingInt(queuedJob -> runningByOwner.getOrDefault(queuedJob.owner, 0))
+            .thenComparingLong(queuedJob -> queuedJob.sequence);
+    }
+
+    private long effectivePriority(QueuedJob queuedJob, long now) {
+        return queuedJob.priority + (now - queuedJob.enqueuedMillis) / agingMillis;
+    }
+
+    public JobScheduler(
+        int maxConcurrentJobs,
+        Map<MonitorableJob.JobType, Integer> concurrencyLimits,
+        Map<MonitorableJob.JobType, Integer> typePriorities
+    ) {
+        this(maxConcurrentJobs, concurrencyLimits, typePriorities, DEFAULT_AGING_MILLIS);
+    }
+
+    /**
+     * @throws IllegalArgumentException if maxConcurrentJobs or agingMillis is less than one
+     */
+    public JobScheduler(
+        int maxConcurrentJobs,
+        Map<MonitorableJob.JobType, Integer> concurrencyLimits,
+        Map<MonitorableJob.JobType, Integer> typePriorities,
+        long agingMillis
+    ) {
+        if (maxConcurrentJobs < 1) {
+            throw new IllegalArgumentException("The maximum number of concurrent jobs must be at least one");
+        }
+        if (agingMillis < 1) throw new IllegalArgumentException("The priority aging interval must be positive");
+        this.maxConcurrentJobs = maxConcurrentJobs;
+        this.concurrencyLimits = concurrencyLimits;
+        this.typePriorities = typePriorities;
+        this.agingMillis = agingMillis;
+    }
+
+    /** Construct a scheduler with the default total concurrency and no per-type limits or priorities. */
+    public JobScheduler() {
+        this(DEFAULT_MAX_CONCURRENT_JOBS, new HashMap<>(), new HashMap<>());
+    }
+
+    /**
+     * Construct a scheduler with the limits and priorities defined in the application config (see class comment).
+     */
+    public static JobScheduler fromConfig() {
+        int maxConcurrentJobs = DataManager.hasConfigProperty(CONFIG_PREFIX + "max_concurrent")
+            ? DataManager.getConfigProperty(CONFIG_PREFIX + "max_concurrent").asInt()
+            : DEFAULT_MAX_CONCURRENT_JOBS;
+        long agingMillis = DataManager.hasConfigProperty(CONFIG_PREFIX + "priority_aging_seconds")
+            ? TimeUnit.SECONDS.toMillis(DataManager.getConfigProperty(CONFIG_PREFIX + "priority_aging_seconds").asLong())
+            : DEFAULT_AGING_MILLIS;
+        Map<MonitorableJob.JobType, Integer> concurrencyLimits = readJobTypeMap(CONFIG_PREFIX + "concurrency");
+        concurrencyLimits.entrySet().removeIf(limit -> {
+            if (limit.getValue() >= 1) return false;
+            LOG.warn("Ignoring concurrency limit {} for {} jobs (must be at least one)",
+                limit.getValue(), limit.getKey());
+            return true;
+        });
+        return new JobScheduler(
+            maxConcurrentJobs,
+            concurrencyLimits,
+            readJobTypeMap(CONFIG_PREFIX + "priority"),
+            agingMillis
+        );
+    }
+
+    private static Map<MonitorableJob.JobType, Integer> readJobTypeMap(String configProperty) {
+        Map<MonitorableJob.JobType, Integer> values = new EnumMap<>(MonitorableJob.JobType.class);
+        if (!DataManager.hasConfigProperty(configProperty)) return values;
+        JsonNode node = DataManager.getConfigProperty(configProperty);
+        Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            try {
+                values.put(MonitorableJob.JobType.valueOf(field.getKey()), field.getValue().asInt());
+            } catch (IllegalArgumentException e) {
+                LOG.warn("Ignoring unknown job type {} in {} config", field.getKey(), configProperty);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Add the job to the queue. It will start as soon as a slot is available for its type and no higher priority job
+     * is waiting.
+     */
+    @Override
+    public void execute(Runnable runnable) {
+        enqueue(runnable, null, false);
+    }
+
+    /**
+     * Add a sub-job of a running job to the queue, ahead of any other waiting jobs. The onFinished callback is run
+     * (on the pool thread) once the sub-job has completed and released its slot.
+     */
+    public void executeSubJob(MonitorableJob subJob, Runnable onFinished) {
+        enqueue(subJob, onFinished, true);
+    }
+
+    private void enqueue(Runnable runnable, Runnable onFinished, boolean isSubJob) {
+        synchronized (this) {
+            queue.add(new QueuedJob(runnable, onFinished, isSubJob, submitted++));
+        }
+        dispatch();
+    }
+
+    /** Start as many queued jobs as the limits allow. */
+    private synchronized void dispatch() {
+        while (running < maxConcurrentJobs) {
+            QueuedJob next = queue.stream()
+                .filter(queuedJob -> runningByType.getOrDefault(queuedJob.type, 0) < limitFor(queuedJob.type))
+                .min(queueOrder(System.currentTimeMillis()))
+                .orElse(null);
+            if (next == null) break;
+            queue.remove(next);
+            start(next);
+        }
+        updateQueuedStatuses();
+    }
+
+    private int limitFor(MonitorableJob.JobType type) {
+        return concurrencyLimits.getOrDefault(type, maxConcurrentJobs);
+    }
+
+    private void start(QueuedJob queuedJob) {
+        acquireSlot(queuedJob);
+        long waitMillis = System.currentTimeMillis() - queuedJob.enqueuedMillis;
+        QUEUE_WAIT.observeMillis(waitMillis, queuedJob.type.name());
+        if (queuedJob.job != null) {
+            MonitorableJob.Status status = queuedJob.job.status;
+            status.apply(() -> {
+                status.queued = false;
+                status.queuePosition = 0;
+                status.waitTime = waitMillis;
+            });
+        }
+        LOG.info("Starting {} job (owner={}) after waiting {} ms", queuedJob.type, queuedJob.owner, waitMillis);
+        threadPool.execute(() -> {
+            Thread thread = Thread.currentThread();
+            synchronized (this) {
+                jobsByThread.put(thread, queuedJob);
+            }
+            try {
+                queuedJob.runnable.run();
+            } finally {
+                finished(thread, queuedJob);
+                if (queuedJob.onFinished != null) queuedJob.onFinished.run();
+            }
+        });
+    }
+
+    private void acquireSlot(QueuedJob queuedJob) {
+        running++;
+        runningByType.merge(queuedJob.type, 1, Integer::sum);
+        runningByOwner.merge(queuedJob.owner, 1, Integer::sum);
+    }
+
+    private void releaseSlot(QueuedJob queuedJob) {
+        running--;
+        runningByType.merge(queuedJob.type, -1, Integer::sum);
+        runningByOwner.merge(queuedJob.owner, -1, (a, b) -> a + b == 0 ? null : a + b);
+    }
+
+    private void finished(Thread thread, QueuedJob queuedJob) {
+        synchronized (this) {
+            jobsByThread.remove(thread);
+            if (!queuedJob.released) releaseSlot(queuedJob);
+            completed++;
+        }
+        dispatch();
+    }
+
+    /**
+     * Whether the current thread is running a job started by this scheduler (including any sub-jobs that job runs in
+     * the same thread).
+     */
+    public synchronized boolean isSchedulerThread() {
+        return jobsByThread.containsKey(Thread.currentThread());
+    }
+
+    /**
+     * Free the slot held by the job running in the current thread so that other jobs (in particular, its sub-jobs)
+     * may start while it waits. Returns false if the current thread holds no slot, in which case
+     * {@link #reclaimCurrentSlot} should not be called.
+     */
+    public boolean releaseCurrentSlot() {
+        synchronized (this) {
+            QueuedJob queuedJob = jobsByThread.get(Thread.currentThread());
+            if (queuedJob == null || queuedJob.released) return false;
+            queuedJob.released = true;
+            releaseSlot(queuedJob);
+        }
+        dispatch();
+        return true;
+    }
+
+    /**
+     * Take back the slot freed by {@link #releaseCurrentSlot}. This does not wait for a free slot (the job is already
+     * running and generally only has a little work left to do), so the limits may briefly be exceeded.
+     */
+    public synchronized void reclaimCurrentSlot() {
+        QueuedJob queuedJob = jobsByThread.get(Thread.currentThread());
+        if (queuedJob == null || !queuedJob.released) return;
+        queuedJob.released = false;
+        acquireSlot(queuedJob);
+    }
+
+    /**
+     * Report each waiting job's position in the queue, the total queue depth and time spent waiting so far. A job's
+     * status is only changed when its position changes, so that jobs whose position is unchanged do not publish a
+     * status change on every dispatch.
+     */
+    private void updateQueuedStatuses() {
+        List<QueuedJob> ordered = new ArrayList<>(queue);
+        long now = System.currentTimeMillis();
+        ordered.sort(queueOrder(now));
+        for (int i = 0; i < ordered.size(); i++) {
+            QueuedJob queuedJob = ordered.get(i);
+            if (queuedJob.job == null) continue;
+            MonitorableJob.Status status = queuedJob.job.status;
+            int position = i + 1;
+            if (status.queued && status.queuePosition == position) continue;
+            status.apply(() -> {
+                status.queued = true;
+                status.queuePosition = position;
+                status.queueDepth = ordered.size();
+                status.waitTime = now - queuedJob.enqueuedMillis;
+            });
+        }
+    }
+
+    /** Number of jobs waiting to start, by job type. */
+    public synchronized Map<MonitorableJob.JobType, Integer> getQueueDepths() {
+        Map<MonitorableJob.JobType, Integer> depths = new EnumMap<>(MonitorableJob.JobType.class);
+        for (QueuedJob queuedJob : queue) depths.merge(queuedJob.type, 1, Integer::sum);
+        return depths;
+    }
+
+    /** Number of jobs currently running, by job type. */
+    public synchronized Map<MonitorableJob.JobType, Integer> getRunningCounts() {
+        Map<MonitorableJob.JobType, Integer> counts = new EnumMap<>(MonitorableJob.JobType.class);
+        runningByType.forEach((type, count) -> {
+            if (count > 0) counts.put(type, count);
+        });
+        return counts;
+    }
+
+    /** Whether a newly submitted job could start immediately (ignoring per-type limits). */
+    public synchronized boolean hasCapacity() {
+        return queue.isEmpty() && running < maxConcurrentJobs;
+    }
+
+    public synchronized int getQueueDepth() {
+        return queue.size();
+    }
+
+    public synchronized int getRunningCount() {
+        return running;
+    }
+
+    public synchronized long getCompletedCount() {
+        return completed;
+    }
+
+    /** Report the number of queued and running jobs of each type as metrics (see {@link Metrics}). */
+    public void registerMetrics() {
+        Metrics.registerGauge("datatools_jobs_queued", "Number of jobs waiting to start, by type", "type",
+            this::getQueueDepths);
+        Metrics.registerGauge("datatools_jobs_running", "Number of jobs running, by type", "type",
+            this::getRunningCounts);
+    }
+}
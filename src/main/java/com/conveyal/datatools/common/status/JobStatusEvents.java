@@ -0,0 +1,192 @@
+package com.conveyal.datatools.common.status;
+
+import com.conveyal.datatools.manager.DataManager;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Publishes snapshots of job statuses and records a sequence of status changes so that they can be pushed to clients
+ * (see {@link com.conveyal.datatools.manager.controllers.api.StatusController}) instead of each client repeatedly
+ * fetching the status of all of its jobs.
+ *
+ * The threads running the jobs count each change they make to a job's status (see
+ * {@link MonitorableJob.Status#changeCount()}). At a fixed interval, the registered jobs are checked and only those
+ * whose count has changed are copied: an immutable snapshot of each such status is published to its job (see
+ * {@link MonitorableJob#statusSnapshot()}) with a new version number, and the job is serialized once, however many
+ * clients are listening. The serialized job is recorded as an event whose sequence number is that version, which
+ * clients use to resume after reconnecting or to poll for only the jobs that have changed. Only the most recent events
+ * are kept, so a client that has missed older events must instead fetch the current state of its jobs.
+ */
+public class JobStatusEvents {
+    private static final Logger LOG = LoggerFactory.getLogger(JobStatusEvents.class);
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final long CHECK_INTERVAL_MILLIS = 1000;
+    private static final int MAX_EVENTS = 1000;
+
+    private final Function<MonitorableJob, String> serializer;
+    /** Guards checking for changes, which is done outside the lock on this so that clients are not held up. */
+    private final Object checkLock = new Object();
+    /** The status of each registered job as of its last published snapshot (guarded by checkLock). */
+    private Map<MonitorableJob, PublishedStatus> publishedStatuses = new HashMap<>();
+    // The following fields are guarded by this.
+    private final Deque<Event> events = new ArrayDeque<>();
+    private long lastSequence;
+    private ScheduledExecutorService checker;
+
+    /**
+     * @param serializer produces the event data for a job whose status has changed
+     */
+    public JobStatusEvents(Function<MonitorableJob, String> serializer) {
+        this.serializer = serializer;
+    }
+
+    /** A change to the status of a job. */
+    public static class Event {
+        public final long sequence;
+        /** The job's owner and any users it is shared with (see {@link MonitorableJob#deduplicationKey()}). */
+        public final Set<String> owners;
+        public final String jobId;
+        public final String data;
+
+        Event(long sequence, Set<String> owners, String jobId, String data) {
+            this.sequence = sequence;
+            this.owners = owners;
+            this.jobId = jobId;
+            this.data = data;
+        }
+    }
+
+    /** A status as of the snapshot last published for its job. */
+    private static class PublishedStatus {
+        final MonitorableJob.Status status;
+        final long changeCount;
+        final String json;
+
+        PublishedStatus(MonitorableJob.Status status, long changeCount, String json) {
+            this.status = status;
+            this.changeCount = changeCount;
+            this.json = json;
+        }
+    }
+
+    /** Begin checking the status of registered jobs for changes. */
+    public synchronized void start() {
+        if (checker != null) return;
+        checker = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("job-status-events").setDaemon(true).build()
+        );
+        checker.scheduleWithFixedDelay(() -> {
+            try {
+                checkForChanges(DataManager.jobRegistry.getAll());
+            } catch (Exception e) {
+                LOG.error("Could not check jobs for status changes", e);
+            }
+        }, 0, CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Publish a new snapshot of the status of each of the given jobs whose status has changed since the last check,
+     * recording an event for each. The snapshot's version is the sequence number of its event.
+     */
+    void checkForChanges(Set<MonitorableJob> jobs) throws IOException {
+        synchronized (checkLock) {
+            Map<MonitorableJob, PublishedStatus> statuses = new HashMap<>();
+            List<Event> newEvents = new ArrayList<>();
+            // Only this method records events, so no other sequence numbers can be issued in the meantime.
+            long sequence = lastSequence();
+            for (MonitorableJob job : jobs) {
+                MonitorableJob.Status status = job.status;
+                PublishedStatus published = publishedStatuses.get(job);
+                if (published != null && published.status == status && published.changeCount == status.changeCount()) {
+                    statuses.put(job, published);
+                    continue;
+                }
+                PublishedStatus previous = published;
+                synchronized (status) {
+                    published = new PublishedStatus(status, status.changeCount(), mapper.writeValueAsString(status));
+                }
+                statuses.put(job, published);
+                // A status that was replaced by an identical one (e.g., read again from a job record) has not changed.
+                if (previous != null && published.json.equals(previous.json)) continue;
+                // Deserialize the copy (as the same type, which may have extra fields) so that it is never modified.
+                MonitorableJob.Status snapshot = mapper.readValue(published.json, status.getClass());
+                snapshot.version = ++sequence;
+                job.publishStatusSnapshot(snapshot);
+                Set<String> owners = new HashSet<>(job.sharedWith);
+                owners.add(job.owner);
+                newEvents.add(new Event(snapshot.version, owners, job.jobId, serializer.apply(job)));
+            }
+            // Forget jobs that are no longer registered.
+            publishedStatuses = statuses;
+            if (newEvents.isEmpty()) return;
+            synchronized (this) {
+                for (Event event : newEvents) {
+                    events.addLast(event);
+                    if (events.size() > MAX_EVENTS) events.removeFirst();
+                }
+                lastSequence = sequence;
+                notifyAll();
+            }
+        }
+    }
+
+    /** The sequence number of the latest event (or zero if there have been none). */
+    public synchronized long lastSequence() {
+        return lastSequence;
+    }
+
+    /** The events for one client after a given sequence number. */
+    public static class Update {
+        /** The sequence number up to which events have been checked, from which the client should resume. */
+        public final long sequence;
+        /**
+         * The client's events (possibly none), or null if some events since the client's last sequence number are no
+         * longer kept (in which case the client must fetch the current state of its jobs).
+         */
+        public final List<Event> events;
+
+        Update(long sequence, List<Event> events) {
+            this.sequence = sequence;
+            this.events = events;
+        }
+    }
+
+    /**
+     * Wait up to the given time for any events after the given sequence number, then return those belonging to (or
+     * shared with) the owner.
+     */
+    public synchronized Update awaitEvents(String owner, long afterSequence, long timeoutMillis)
+        throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        long remaining = timeoutMillis;
+        while (lastSequence == afterSequence && remaining > 0) {
+            wait(remaining);
+            remaining = deadline - System.currentTimeMillis();
+        }
+        // A sequence number ahead of the latest event was issued before the server restarted.
+        if (afterSequence < lastSequence - events.size() || afterSequence > lastSequence) {
+            return new Update(lastSequence, null);
+        }
+        List<Event> ownerEvents = new ArrayList<>();
+        for (Event event : events) {
+            if (event.sequence > afterSequence && event.owners.contains(owner)) ownerEvents.add(event);
+        }
+        return new Update(lastSequence, ownerEvents);
+    }
+}
@@ -1,6 +1,9 @@
 package com.conveyal.datatools.common.status;
 
+import com.conveyal.datatools.common.metrics.Metrics;
 import com.conveyal.datatools.manager.DataManager;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.collect.Sets;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.slf4j.Logger;
@@ -9,10 +12,17 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -20,6 +30,19 @@ import java.util.concurrent.TimeUnit;
  */
 public abstract class MonitorableJob implements Runnable {
     private static final Logger LOG = LoggerFactory.getLogger(MonitorableJob.class);
+    /** How often the progress of a job waiting on concurrent sub-jobs is recalculated. */
+    private static final long SUB_JOB_PROGRESS_INTERVAL_MILLIS = 1000;
+    private static final String CANCELLED_MESSAGE = "Job cancelled.";
+    private static final Metrics.Histogram RUN_TIME = Metrics.durationHistogram(
+        "datatools_job_run_seconds",
+        "Time spent in the main logic of jobs (excluding sub-jobs)",
+        "type"
+    );
+    private static final Metrics.Histogram SUB_JOB_TIME = Metrics.durationHistogram(
+        "datatools_job_sub_jobs_seconds",
+        "Time jobs spent running (or waiting on) their sub-jobs",
+        "type"
+    );
     public final String owner;
 
     // Public fields will be serialized over HTTP API and visible to the web client
@@ -27,17 +50,37 @@ public abstract class MonitorableJob implements Runnable {
     public File file;
     public String parentJobId;
     public JobType parentJobType;
-    // Status is not final to allow some jobs to have extra status fields.
+    // Status is not final to allow some jobs to have extra status fields. It is not serialized directly because it may
+    // be modified while it is being serialized (see statusSnapshot).
+    @JsonIgnore
     public Status status = new Status();
+    /** The latest immutable copy of the status, published by {@link JobStatusEvents}. */
+    private volatile Status statusSnapshot;
     // Name is not final in case it needs to be amended during job processing.
     public String name;
-    public final String jobId = UUID.randomUUID().toString();
+    // Job ID is not final so that a job recreated by the JobQueue (to retry or resume it) keeps its original ID.
+    public String jobId = UUID.randomUUID().toString();
+    /** Whether this job has a durable record in the {@link JobQueue} that must be updated as it runs. */
+    boolean durable;
+    /**
+     * Users other than the owner whose requests for the same work were attached to this job (see
+     * {@link #deduplicationKey()}), and who may therefore also see the job.
+     */
+    final Set<String> sharedWith = Sets.newConcurrentHashSet();
+    /** Whether cancellation of this job has been requested (see {@link #requestCancellation()}). */
+    private volatile boolean cancellationRequested;
 
     /**
      * Additional jobs that will be run after the main logic of this job has completed.
      * This job is not considered entirely completed until its sub-jobs have all completed.
      */
-    protected List<MonitorableJob> subJobs = new ArrayList<>();
+    protected List<MonitorableJob> subJobs = new CopyOnWriteArrayList<>();
+
+    /**
+     * For each sub-job, the other sub-jobs that must complete successfully before it may start. Sub-jobs whose
+     * dependencies allow it are run concurrently (see {@link #addSubJob}).
+     */
+    private final Map<MonitorableJob, List<MonitorableJob>> subJobDependencies = new IdentityHashMap<>();
 
     public enum JobType {
         UNKNOWN_TYPE,
@@ -48,6 +91,7 @@ public abstract class MonitorableJob implements Runnable {
         PROCESS_SNAPSHOT_EXPORT,
         // ****
         LOAD_FEED,
+        UPLOAD_FEED,
         VALIDATE_FEED,
         DEPLOY_TO_OTP,
         EXPORT_GIS,
@@ -84,13 +128,22 @@ public abstract class MonitorableJob implements Runnable {
      * It is a standard start-up stage for all monitorable jobs.
      */
     private void registerJob() {
-        Set<MonitorableJob> userJobs = DataManager.userJobsMap.get(this.owner);
-        // If there are no current jobs for the user, create a new empty set. NOTE: this should be a concurrent hash
-        // set so that it is threadsafe.
-        if (userJobs == null) userJobs = Sets.newConcurrentHashSet();
-        userJobs.add(this);
+        DataManager.jobRegistry.register(this);
+    }
 
-        DataManager.userJobsMap.put(this.owner, userJobs);
+    /**
+     * The latest published snapshot of this job's status, which is serialized in place of the status itself. If no
+     * snapshot has been published yet (i.e., the job has only just been created), this is the status itself.
+     */
+    @JsonProperty("status")
+    public Status statusSnapshot() {
+        Status snapshot = statusSnapshot;
+        return snapshot != null ? snapshot : status;
+    }
+
+    /** Called by {@link JobStatusEvents} to publish a new snapshot of the status, which must not be modified again. */
+    void publishStatusSnapshot(Status snapshot) {
+        statusSnapshot = snapshot;
     }
 
     public File retrieveFile () {
@@ -102,9 +155,7 @@ public abstract class MonitorableJob implements Runnable {
      * monitorable jobs.
      */
     private void unRegisterJob () {
-        // remove this job from the user-job map
-        Set<MonitorableJob> userJobs = DataManager.userJobsMap.get(this.owner);
-        if (userJobs != null) userJobs.remove(this);
+        DataManager.jobRegistry.remove(this);
     }
 
     /**
@@ -120,55 +171,92 @@ public abstract class MonitorableJob implements Runnable {
         // do nothing by default.
     }
 
+    /**
+     * This method may be overridden to clean up after this job has been cancelled (e.g., to delete temp files or
+     * partially loaded data). It is called after the job has stopped, whether the job itself or one of its sub-jobs
+     * was running when it was cancelled.
+     */
+    public void jobCancelled () throws Exception {
+        // do nothing by default.
+    }
+
+    /**
+     * Request that this job and its sub-jobs be cancelled. Cancellation is cooperative: a job that has not started is
+     * cancelled as soon as it starts, and a running job is cancelled the next time it calls
+     * {@link #checkCancellation()}. Jobs should generally be cancelled through {@link JobQueue#cancel}, which also
+     * handles jobs running on other nodes.
+     */
+    public void requestCancellation() {
+        cancellationRequested = true;
+        for (MonitorableJob subJob : subJobs) subJob.requestCancellation();
+    }
+
+    public boolean cancellationRequested() {
+        return cancellationRequested;
+    }
+
+    /**
+     * Stop the job (by throwing a {@link CancellationException}) if its cancellation has been requested. Long-running
+     * jobs should call this regularly (e.g., on each iteration of a long loop) so that they can be cancelled.
+     */
+    protected void checkCancellation() {
+        if (cancellationRequested) throw new CancellationException(String.format("%s cancelled", name));
+    }
+
+    /**
+     * Parameters from which this job can be recreated by the factory registered for its type with
+     * {@link JobQueue#registerJobType}, so that it can be resumed after a restart or retried after failing. This may be
+     * overridden by idempotent jobs. Returns null by default (the job cannot be recreated).
+     */
+    public Map<String, String> jobParameters () {
+        return null;
+    }
+
+    /**
+     * A key identifying the work done by this job (e.g., its type and inputs), or null if the job should always run.
+     * While a job is in progress, an identical job submitted through {@link JobQueue#execute} is not run; its owner is
+     * attached to the job in progress instead. This may be overridden by jobs whose work is determined entirely by
+     * their inputs. Returns null by default.
+     */
+    public String deduplicationKey () {
+        return null;
+    }
+
     /**
      * This implements Runnable.  All monitorable jobs should use this exact sequence of steps. Don't override this method;
      * override jobLogic and jobFinished method(s).
      */
     public void run () {
         boolean parentJobErrored = false;
-        boolean subTaskErrored = false;
-        String cancelMessage = "";
+        String cancelMessage = null;
         long startTimeNanos = System.nanoTime();
+        // Register again in case this job has been run before and evicted from the registry (e.g., a recurring job).
+        registerJob();
+        if (durable) JobQueue.started(this);
         try {
+            // The job may have been cancelled while it was waiting to run.
+            checkCancellation();
             // First execute the core logic of the specific MonitorableJob subclass
-            jobLogic();
+            try (Metrics.Timer timer = RUN_TIME.startTimer(type.name())) {
+                jobLogic();
+            }
             if (status.error) {
                 parentJobErrored = true;
-                cancelMessage = String.format("Task cancelled due to error in %s task", getClass().getSimpleName());
+                cancelMessage = cancelMessageFor(this);
             }
-            // Immediately run any sub-jobs in sequence in the current thread.
-            // This hogs the current thread pool thread but makes execution order predictable.
-            int subJobNumber = 1;
-            int subJobsTotal = subJobs.size() + 1;
-
-            for (MonitorableJob subJob : subJobs) {
-                if (!parentJobErrored && !subTaskErrored) {
-                    // Run sub-task if no error has errored during parent job or previous sub-task execution.
-                    // FIXME this will overwrite a message if message is set somewhere else.
-                    // FIXME If a subtask fails, cancel the parent task and cancel or remove subsequent sub-tasks.
-//                status.message = String.format("Finished %d/%d sub-tasks", subJobNumber, subJobsTotal);
-                    status.percentComplete = subJobNumber * 100D / subJobsTotal;
-                    status.error = false; // FIXME: remove this error=false assignment
-                    subJob.run();
-
-                    // Record if there has been an error in the execution of the sub-task. (Note: this will not
-                    // incorrectly overwrite a 'true' value with 'false' because the sub-task is only run if
-                    // jobHasErrored is false.
-                    if (subJob.status.error) {
-                        subTaskErrored = true;
-                        cancelMessage = String.format("Task cancelled due to error in %s task", subJob.getClass().getSimpleName());
-                    }
-                } else {
-                    // Cancel (fail) next sub-task and continue.
-                    subJob.cancel(cancelMessage);
+            String subJobCancelMessage;
+            if (subJobs.isEmpty()) {
+                subJobCancelMessage = runSubJobs(parentJobErrored ? cancelMessage : null);
+            } else {
+                try (Metrics.Timer timer = SUB_JOB_TIME.startTimer(type.name())) {
+                    subJobCancelMessage = runSubJobs(parentJobErrored ? cancelMessage : null);
                 }
-                subJobNumber += 1;
             }
             // FIXME: should jobFinished be run if task or any sub-task fails?
-            if (subTaskErrored) {
+            if (subJobCancelMessage != null) {
                 // Cancel parent job completion if an error was encountered in task/sub-task. No need to cancel sub-task
                 // because the error presumably already occurred and has a better error message.
-                cancel(cancelMessage);
+                cancel(subJobCancelMessage);
             }
 
             // Run final steps of job pending completion or error. Note: any tasks that depend on job success should
@@ -176,10 +264,17 @@ public abstract class MonitorableJob implements Runnable {
             // TODO: should we add separate hooks depending on state of job/sub-tasks (e.g., success, catch, finally)
             jobFinished();
 
-            status.completed = true;
+            status.setCompleted(true);
 
             // We retain finished or errored jobs on the server until they are fetched via the API, which implies they
-            // could be displayed by the client.
+            // could be displayed by the client (or until they are evicted from the JobRegistry).
+        } catch (CancellationException ex) {
+            LOG.info("{} {} stopped after cancellation was requested", type, jobId);
+            status.fail(CANCELLED_MESSAGE);
+            // Sub-jobs will not be run (any that are running have also been asked to stop).
+            for (MonitorableJob subJob : subJobs) {
+                if (!subJob.status.completed) subJob.cancel(CANCELLED_MESSAGE);
+            }
         } catch (Exception ex) {
             // Set job status to failed
             // Note that when an exception occurs during job execution we do not call unRegisterJob,
@@ -187,9 +282,21 @@ public abstract class MonitorableJob implements Runnable {
             LOG.error("Job failed", ex);
             status.update(true, ex.getMessage(), 100, true);
         }
-        status.startTime = TimeUnit.NANOSECONDS.toMillis(startTimeNanos);
-        status.duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTimeNanos);
+        if (cancellationRequested && status.error) finishCancellation();
+        status.apply(() -> {
+            status.startTime = TimeUnit.NANOSECONDS.toMillis(startTimeNanos);
+            status.duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTimeNanos);
+        });
         LOG.info("{} {} {} in {} ms", type, jobId, status.error ? "errored" : "completed", status.duration);
+        if (durable) JobQueue.finished(this);
+        DataManager.jobRegistry.finished(this);
+    }
+
+    /**
+     * Change the ID of this job (e.g., so that a job recreated by the {@link JobQueue} keeps the ID of the original).
+     */
+    void changeJobId(String jobId) {
+        DataManager.jobRegistry.changeJobId(this, jobId);
     }
 
     /**
@@ -200,92 +307,334 @@ public abstract class MonitorableJob implements Runnable {
     private void cancel(String message) {
         // Updating the job status with error is all we need to do in order to move the job into completion. Once the
         // user fetches the errored job, it will be automatically removed from the system.
-        status.update(true, message, 100);
-        status.completed = true;
+        // A sub-job that never started because its job was cancelled was cancelled too (there is nothing to clean up).
+        if (cancellationRequested) {
+            status.apply(() -> {
+                status.update(true, CANCELLED_MESSAGE, 100, true);
+                status.cancelled = true;
+            });
+        } else {
+            status.update(true, message, 100, true);
+        }
+        DataManager.jobRegistry.finished(this);
         // FIXME: Do we need to run any clean up here?
     }
 
     /**
-     * Enqueues a sub-job to be run when the main logic of this job has finished.
+     * Mark this job as cancelled (rather than failed) and clean up. A sub-job cancelled in the same request will already
+     * have cleaned up after itself.
+     */
+    private void finishCancellation() {
+        status.apply(() -> {
+            status.cancelled = true;
+            status.message = CANCELLED_MESSAGE;
+        });
+        try {
+            jobCancelled();
+        } catch (Exception e) {
+            LOG.error("Could not clean up after cancelling job {}", jobId, e);
+        }
+    }
+
+    private static String cancelMessageFor(MonitorableJob job) {
+        return String.format("Task cancelled due to error in %s task", job.getClass().getSimpleName());
+    }
+
+    /**
+     * Enqueues sub-jobs to be run in sequence when the main logic of this job has finished. Each job only starts once
+     * the previously added sub-job has completed.
      */
     public void addNextJob(MonitorableJob ...jobs) {
         for (MonitorableJob job : jobs) {
-            job.parentJobId = this.jobId;
-            job.parentJobType = this.type;
-            subJobs.add(job);
+            if (subJobs.isEmpty()) addSubJob(job);
+            else addSubJob(job, subJobs.get(subJobs.size() - 1));
         }
     }
 
     /**
-     * Represents the current status of this job.
+     * Enqueues a sub-job to be run when the main logic of this job and the given sub-jobs (which must already have been
+     * added to this job) have completed successfully. Sub-jobs that do not depend on one another may run concurrently
+     * on the {@link JobScheduler}. If any sub-job fails, those not yet started are cancelled (sub-jobs already running
+     * are left to finish) and this job is cancelled.
+     */
+    public void addSubJob(MonitorableJob job, MonitorableJob ...dependsOn) {
+        for (MonitorableJob dependency : dependsOn) {
+            if (!subJobDependencies.containsKey(dependency)) {
+                throw new IllegalArgumentException("Sub-job dependencies must be added to the parent job first.");
+            }
+        }
+        job.parentJobId = this.jobId;
+        job.parentJobType = this.type;
+        if (cancellationRequested) job.requestCancellation();
+        subJobs.add(job);
+        subJobDependencies.put(job, Arrays.asList(dependsOn));
+    }
+
+    private List<MonitorableJob> dependenciesOf(MonitorableJob subJob) {
+        return subJobDependencies.getOrDefault(subJob, Collections.emptyList());
+    }
+
+    /**
+     * Run the sub-jobs of this job, respecting their dependencies. If a cancel message is provided (i.e., the main
+     * logic of this job errored), all sub-jobs are instead cancelled with that message.
+     *
+     * When this job is running on the {@link JobScheduler} and some sub-jobs are independent of one another, the
+     * sub-jobs are submitted to the scheduler as soon as their dependencies complete, and this job gives up its slot
+     * while it waits. Otherwise, the sub-jobs run one after another in the current thread.
+     *
+     * @return the message with which this job should be cancelled if a sub-job errored, otherwise null
+     */
+    private String runSubJobs(String parentCancelMessage) throws InterruptedException {
+        if (parentCancelMessage != null) {
+            for (MonitorableJob subJob : subJobs) subJob.cancel(parentCancelMessage);
+            return null;
+        }
+        JobScheduler scheduler = DataManager.heavyExecutor;
+        if (!hasIndependentSubJobs() || scheduler == null || !scheduler.isSchedulerThread()) {
+            return runSubJobsInSequence();
+        }
+        boolean slotReleased = scheduler.releaseCurrentSlot();
+        try {
+            return new SubJobGraph(scheduler).run();
+        } finally {
+            if (slotReleased) scheduler.reclaimCurrentSlot();
+        }
+    }
+
+    /** Whether any sub-job could run concurrently with another, i.e., the sub-jobs do not form a single chain. */
+    private boolean hasIndependentSubJobs() {
+        for (int i = 1; i < subJobs.size(); i++) {
+            List<MonitorableJob> dependencies = dependenciesOf(subJobs.get(i));
+            if (dependencies.size() != 1 || dependencies.get(0) != subJobs.get(i - 1)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Run sub-jobs in the current thread in the order they were added (which always satisfies their dependencies).
+     */
+    private String runSubJobsInSequence() {
+        String cancelMessage = null;
+        for (MonitorableJob subJob : subJobs) {
+            if (cancelMessage != null) {
+                // Cancel (fail) next sub-task and continue.
+                subJob.cancel(cancelMessage);
+                continue;
+            }
+            updateSubJobProgress();
+            subJob.run();
+            if (subJob.status.error) cancelMessage = cancelMessageFor(subJob);
+        }
+        return cancelMessage;
+    }
+
+    /**
+     * Set the progress of this job, counting the main job logic as one step and each sub-job as another (partially
+     * complete sub-jobs contribute their own percent complete).
+     */
+    private void updateSubJobProgress() {
+        double stepsComplete = 1;
+        for (MonitorableJob subJob : subJobs) {
+            stepsComplete += Math.min(subJob.status.percentComplete, 100) / 100;
+        }
+        status.setPercentComplete(stepsComplete * 100 / (subJobs.size() + 1));
+    }
+
+    /**
+     * Submits sub-jobs to the scheduler as soon as the sub-jobs they depend on have succeeded, and waits until all have
+     * completed (or been cancelled because another sub-job failed).
+     */
+    private class SubJobGraph {
+        private final JobScheduler scheduler;
+        // The following fields are guarded by this.
+        private final Set<MonitorableJob> waiting = new LinkedHashSet<>(subJobs);
+        private final Set<MonitorableJob> succeeded = Sets.newIdentityHashSet();
+        private int running;
+        private String cancelMessage;
+
+        SubJobGraph(JobScheduler scheduler) {
+            this.scheduler = scheduler;
+        }
+
+        synchronized String run() throws InterruptedException {
+            while (true) {
+                if (cancelMessage == null) {
+                    Iterator<MonitorableJob> iterator = waiting.iterator();
+                    while (iterator.hasNext()) {
+                        MonitorableJob subJob = iterator.next();
+                        if (succeeded.containsAll(dependenciesOf(subJob))) {
+                            iterator.remove();
+                            running++;
+                            scheduler.executeSubJob(subJob, () -> finished(subJob));
+                        }
+                    }
+                }
+                updateSubJobProgress();
+                if (running == 0) break;
+                wait(SUB_JOB_PROGRESS_INTERVAL_MILLIS);
+            }
+            // Nothing is left running, so any sub-jobs still waiting were blocked by a failed sub-job.
+            for (MonitorableJob subJob : waiting) subJob.cancel(cancelMessage);
+            return cancelMessage;
+        }
+
+        private synchronized void finished(MonitorableJob subJob) {
+            running--;
+            if (subJob.status.error) {
+                if (cancelMessage == null) cancelMessage = cancelMessageFor(subJob);
+            } else {
+                succeeded.add(subJob);
+            }
+            notifyAll();
+        }
+    }
+
+    /**
+     * Represents the current status of this job. The status is modified by the thread running the job (or the
+     * {@link JobScheduler}); other threads should read the latest published snapshot instead (see
+     * {@link #statusSnapshot()}). The fields are volatile so that changes are visible to the thread that publishes
+     * snapshots. They must only be modified through the synchronized methods below (using {@link #apply} to change
+     * several fields at once, or the fields of a subclass), so that a snapshot never includes a partial update and
+     * each change is counted (see {@link #changeCount()}).
      */
     public static class Status {
+        /**
+         * Version of this status (see {@link JobStatusEvents}), which increases with each change to the status of any
+         * job. This is zero for a status that is being modified (i.e., one that has not been published as a snapshot).
+         */
+        public volatile long version;
+
         /** What message (defined in messages.<lang>) should be displayed to the user? */
-        public String message;
+        public volatile String message;
 
         /** Detailed exception method to display to user (to help with support requests) */
-        public String exceptionType;
-        public String exceptionDetails;
+        public volatile String exceptionType;
+        public volatile String exceptionDetails;
 
         /** Is this deployment completed (successfully or unsuccessfully) */
-        public boolean completed = false;
+        public volatile boolean completed = false;
 
         /** What was the error (null if no error)? */
-        public boolean error = false;
+        public volatile boolean error = false;
 
         /** Is the item currently being uploaded to the server? */
-        public boolean uploading;
+        public volatile boolean uploading;
 
         // What is the job/task/file called
-        public String name;
+        public volatile String name;
 
         /** How much of task is complete? */
-        public double percentComplete;
+        public volatile double percentComplete;
+
+        public volatile long startTime;
+        public volatile long duration;
 
-        public long startTime;
-        public long duration;
+        /** Is the job waiting in the {@link JobScheduler} queue to start? */
+        public volatile boolean queued;
+
+        /** Position of the job in the scheduler queue (1 is next to run), or 0 if not queued. */
+        public volatile int queuePosition;
+
+        /** Total number of jobs waiting in the scheduler queue, as of the last update to this job's position. */
+        public volatile int queueDepth;
+
+        /**
+         * Time (in milliseconds) the job has spent waiting in the scheduler queue, as of the last update to its position
+         * (or in total, once started).
+         */
+        public volatile long waitTime;
 
         // When was the job initialized?
-        public String initialized = LocalDateTime.now().format(DateTimeFormatter.ISO_DATE_TIME);
+        public volatile String initialized = LocalDateTime.now().format(DateTimeFormatter.ISO_DATE_TIME);
 
         // When was the job last modified?
-        public String modified = LocalDateTime.now().format(DateTimeFormatter.ISO_DATE_TIME);
+        public volatile String modified = LocalDateTime.now().format(DateTimeFormatter.ISO_DATE_TIME);
 
         // Name of file/item once completed
-        public String completedName;
+        public volatile String completedName;
+
+        /** Was the job stopped because cancellation was requested? (If so, error is also true.) */
+        public volatile boolean cancelled;
+
+        /** Number of changes made through the methods below (written holding this). */
+        private volatile long changes;
+
+        /**
+         * The number of changes made to this status, which {@link JobStatusEvents} compares with the count when it
+         * last published a snapshot, so that only the statuses that have changed are copied and serialized.
+         */
+        public long changeCount () {
+            return changes;
+        }
+
+        /** Make a change to several fields of this status (or those of a subclass) at once. */
+        public synchronized void apply (Runnable change) {
+            change.run();
+            changes++;
+        }
+
+        public synchronized void setMessage (String message) {
+            this.message = message;
+            changes++;
+        }
+
+        public synchronized void setPercentComplete (double percentComplete) {
+            this.percentComplete = percentComplete;
+            changes++;
+        }
+
+        public synchronized void setCompleted (boolean completed) {
+            this.completed = completed;
+            changes++;
+        }
+
+        public synchronized void setUploading (boolean uploading) {
+            this.uploading = uploading;
+            changes++;
+        }
+
+        public synchronized void setQueued (boolean queued) {
+            this.queued = queued;
+            changes++;
+        }
 
-        public void update (String message, double percentComplete) {
+        public synchronized void update (String message, double percentComplete) {
             this.message = message;
             this.percentComplete = percentComplete;
+            changes++;
         }
 
-        public void update (boolean isError, String message, double percentComplete) {
+        public synchronized void update (boolean isError, String message, double percentComplete) {
             this.error = isError;
             this.message = message;
             this.percentComplete = percentComplete;
+            changes++;
         }
 
-        public void update (boolean isError, String message, double percentComplete, boolean isComplete) {
+        public synchronized void update (boolean isError, String message, double percentComplete, boolean isComplete) {
             this.error = isError;
             this.message = message;
             this.percentComplete = percentComplete;
             this.completed = isComplete;
+            changes++;
         }
 
-        public void fail (String message, Exception e) {
+        public synchronized void fail (String message, Exception e) {
             this.error = true;
             this.percentComplete = 100;
             this.completed = true;
             this.message = message;
             this.exceptionDetails = ExceptionUtils.getStackTrace(e);
             this.exceptionType = e.getMessage();
+            changes++;
         }
 
-        public void fail (String message) {
+        public synchronized void fail (String message) {
             this.error = true;
             this.percentComplete = 100;
             this.completed = true;
             this.message = message;
+            changes++;
         }
 
     }
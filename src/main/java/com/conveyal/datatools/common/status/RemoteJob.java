@@ -0,0 +1,21 @@
+package com.conveyal.datatools.common.status;
+
+import com.conveyal.datatools.manager.models.JobRecord;
+
+/**
+ * Stands in for a job running on a worker node (see {@link JobQueue.Mode}), so that an API node can report its status
+ * alongside local jobs. Its status is updated from the job's {@link JobRecord}; the job itself never runs here.
+ */
+public class RemoteJob extends MonitorableJob {
+
+    public RemoteJob(JobRecord record) {
+        super(record.owner, record.name, record.type);
+        changeJobId(record.id);
+        if (record.status != null) this.status = record.status;
+    }
+
+    @Override
+    public void jobLogic() {
+        throw new UnsupportedOperationException("Remote jobs may only be run by a worker node.");
+    }
+}
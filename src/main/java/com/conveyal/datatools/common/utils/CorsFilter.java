@@ -21,6 +21,7 @@ public final class CorsFilter {
         corsHeaders.put("Access-Control-Allow-Origin", "*");
         corsHeaders.put("Access-Control-Allow-Headers", "Content-Type,Authorization,X-Requested-With,Content-Length,Accept,Origin,");
         corsHeaders.put("Access-Control-Allow-Credentials", "true");
+        corsHeaders.put("Access-Control-Expose-Headers", "X-Next-Cursor,X-Total-Count,X-Status-Version");
     }
 
     public final static void apply() {
@@ -5,6 +5,7 @@ import com.conveyal.datatools.manager.jobs.FetchProjectFeedsJob;
 import com.conveyal.datatools.manager.models.FeedSource;
 import com.conveyal.datatools.manager.models.FeedVersion;
 import com.conveyal.datatools.manager.models.Project;
+import com.conveyal.datatools.manager.persistence.FeedStore;
 import com.conveyal.datatools.manager.persistence.Persistence;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ListMultimap;
@@ -24,9 +25,11 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 import static com.conveyal.datatools.common.utils.Utils.getTimezone;
 import static com.google.common.collect.Multimaps.synchronizedListMultimap;
+import static com.mongodb.client.model.Filters.eq;
 
 /**
  * This class centralizes the logic associated with scheduling and cancelling tasks (organized as a {@link ScheduledJob})
@@ -52,17 +55,27 @@ public class Scheduler {
      * A method to initialize all scheduled tasks upon server startup.
      */
     public static void initialize() {
+        if (FeedStore.isContentAddressed()) {
+            LOG.info("Scheduling daily deletion of unreferenced feed content");
+            // Catch any exception, because an exception thrown by the task would cancel all later runs.
+            schedulerService.scheduleAtFixedRate(() -> {
+                try {
+                    FeedStore.deleteUnreferencedBlobs();
+                } catch (Exception e) {
+                    LOG.error("Error deleting unreferenced feed content", e);
+                }
+            }, 1, 24, TimeUnit.HOURS);
+        }
         LOG.info("Scheduling recurring project auto fetches");
-        for (Project project : Persistence.projects.getAll()) {
-            if (project.autoFetchFeeds) {
-                scheduleAutoFeedFetch(project, 1);
-            }
+        // Only projects with auto fetch enabled need to be scheduled, so filter on the server side.
+        try (Stream<Project> projects = Persistence.projects.stream(eq("autoFetchFeeds", true))) {
+            projects.forEach(project -> scheduleAutoFeedFetch(project, 1));
         }
         LOG.info("Scheduling feed expiration notifications");
-        // Get all active feed sources
-        for (FeedSource feedSource : Persistence.feedSources.getAll()) {
+        // Stream all active feed sources (rather than loading the whole collection into memory).
+        try (Stream<FeedSource> feedSources = Persistence.feedSources.streamAll()) {
             // Schedule expiration notification jobs for the latest feed version
-            scheduleExpirationNotifications(feedSource);
+            feedSources.forEach(Scheduler::scheduleExpirationNotifications);
         }
     }
 
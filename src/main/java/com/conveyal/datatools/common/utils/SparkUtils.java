@@ -3,11 +3,16 @@ package com.conveyal.datatools.common.utils;
 import com.bugsnag.Bugsnag;
 import com.bugsnag.Report;
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
+import com.conveyal.datatools.manager.models.Model;
+import com.conveyal.datatools.manager.persistence.Page;
+import com.conveyal.datatools.manager.persistence.TypedPersistence;
+import com.conveyal.datatools.manager.utils.HashUtils;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.io.ByteStreams;
+import org.bson.conversions.Bson;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import spark.HaltException;
@@ -22,7 +27,9 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.security.DigestInputStream;
 import java.util.Arrays;
+import java.util.List;
 
 import static com.conveyal.datatools.manager.DataManager.getBugsnag;
 import static com.conveyal.datatools.manager.DataManager.getConfigPropertyAsText;
@@ -37,6 +44,12 @@ public class SparkUtils {
     private static final String BASE_URL = getConfigPropertyAsText("application.public_url");
     private static final int DEFAULT_LINES_TO_PRINT = 10;
     private static final int MAX_CHARACTERS_TO_PRINT = 500;
+    /** Largest page size that may be requested from a paginated list endpoint. */
+    public static final int MAX_PAGE_SIZE = 500;
+    /** Response header containing the cursor for the next page of a paginated list (absent on the last page). */
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    /** Response header containing the total number of results (only if includeTotal=true is requested). */
+    public static final String TOTAL_COUNT_HEADER = "X-Total-Count";
 
     /**
      * Write out the supplied file to the Spark response as an octet-stream.
@@ -92,6 +105,52 @@ public class SparkUtils {
         return getObjectNode(message, code, e).toString();
     }
 
+    /**
+     * Whether the request for a list endpoint asks for a single page of results (i.e., supplies the limit param).
+     * Without it, list endpoints return all results as before.
+     */
+    public static boolean isPaginated(Request req) {
+        return req.queryParams("limit") != null;
+    }
+
+    /**
+     * Get the page of results for a list endpoint described by the limit, after (cursor from the previous page) and
+     * includeTotal query params. The response body remains a JSON array of the page's items; the cursor for the next
+     * page and the optional total count are returned in the {@link #NEXT_CURSOR_HEADER} and
+     * {@link #TOTAL_COUNT_HEADER} response headers. See {@link TypedPersistence#getPage} for the other parameters.
+     */
+    public static <T extends Model> List<T> getPage(
+        Request req,
+        Response res,
+        TypedPersistence<T> persistence,
+        Bson filter,
+        Bson projection,
+        String sortField,
+        boolean descending
+    ) {
+        int limit = 0;
+        try {
+            limit = Integer.parseInt(req.queryParams("limit"));
+        } catch (NumberFormatException e) {
+            logMessageAndHalt(req, 400, "limit must be an integer");
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            logMessageAndHalt(req, 400, String.format("limit must be between 1 and %d", MAX_PAGE_SIZE));
+        }
+        boolean includeTotal = Boolean.valueOf(req.queryParams("includeTotal"));
+        Page<T> page = null;
+        try {
+            page = persistence.getPage(
+                filter, projection, sortField, descending, limit, req.queryParams("after"), includeTotal
+            );
+        } catch (IllegalArgumentException e) {
+            logMessageAndHalt(req, 400, e.getMessage());
+        }
+        if (page.next != null) res.header(NEXT_CURSOR_HEADER, page.next);
+        if (page.total != null) res.header(TOTAL_COUNT_HEADER, page.total.toString());
+        return page.items;
+    }
+
     /**
      * Wrapper around Spark halt method that formats message as JSON using {@link SparkUtils#formatJSON}.
      */
@@ -237,10 +296,13 @@ public class SparkUtils {
      * Bypass Spark's request wrapper which always caches the request body in memory that may be a very large
      * GTFS file. Also, the body of the request is the GTFS file instead of using multipart form data because
      * multipart form handling code also caches the request body.
+     *
+     * @return the hash of the file's content (see {@link HashUtils}), computed as the file is written
      */
-    public static void copyRequestStreamIntoFile(Request req, File file) {
+    public static String copyRequestStreamIntoFile(Request req, File file) {
         try {
-            ServletInputStream inputStream = ((ServletRequestWrapper) req.raw()).getRequest().getInputStream();
+            ServletInputStream servletInputStream = ((ServletRequestWrapper) req.raw()).getRequest().getInputStream();
+            DigestInputStream inputStream = HashUtils.hashingStream(servletInputStream);
             FileOutputStream fileOutputStream = new FileOutputStream(file);
             // Guava's ByteStreams.copy uses a 4k buffer (no need to wrap output stream), but does not close streams.
             ByteStreams.copy(inputStream, fileOutputStream);
@@ -251,9 +313,11 @@ public class SparkUtils {
                 throw new IOException("No file found in request body.");
             }
             LOG.info("Saving file {} from upload", file.getName());
+            return HashUtils.hashOf(inputStream);
         } catch (Exception e) {
             LOG.error("Unable to open input stream from upload");
             logMessageAndHalt(req, 500, "Unable to read uploaded file.", e);
+            return null;
         }
     }
 
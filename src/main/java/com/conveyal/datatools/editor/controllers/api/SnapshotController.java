@@ -16,6 +16,7 @@ import com.conveyal.datatools.manager.models.Snapshot;
 import com.conveyal.datatools.manager.persistence.FeedStore;
 import com.conveyal.datatools.manager.persistence.Persistence;
 import com.conveyal.datatools.manager.utils.json.JsonManager;
+import org.bson.conversions.Bson;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import spark.Request;
@@ -27,7 +28,10 @@ import java.util.Collection;
 import static com.conveyal.datatools.common.utils.S3Utils.downloadFromS3;
 import static com.conveyal.datatools.common.utils.SparkUtils.downloadFile;
 import static com.conveyal.datatools.common.utils.SparkUtils.formatJobMessage;
+import static com.conveyal.datatools.common.utils.SparkUtils.getPage;
+import static com.conveyal.datatools.common.utils.SparkUtils.isPaginated;
 import static com.conveyal.datatools.common.utils.SparkUtils.logMessageAndHalt;
+import static com.mongodb.client.model.Filters.eq;
 import static spark.Spark.delete;
 import static spark.Spark.get;
 import static spark.Spark.options;
@@ -72,6 +76,10 @@ public class SnapshotController {
         // Is this used in GTFS Data Manager to retrieveById snapshots in bulk?
 
         // Return snapshots for feed source.
+        if (isPaginated(req)) {
+            Bson filter = eq(Snapshot.FEED_SOURCE_REF, feedSource.id);
+            return getPage(req, res, Persistence.snapshots, filter, null, "version", false);
+        }
         return feedSource.retrieveSnapshots();
     }
 
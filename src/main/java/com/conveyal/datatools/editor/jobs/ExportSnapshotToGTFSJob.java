@@ -58,8 +58,9 @@ public class ExportSnapshotToGTFSJob extends MonitorableJob {
         String filename = feedVersionId != null ? feedVersionId : snapshot.id + ".zip";
         String bucketPrefix = feedVersionId != null ? "gtfs" : "snapshots";
         // FIXME: replace with use of refactored FeedStore.
-        // Store the project merged zip locally or on s3
-        if (DataManager.useS3) {
+        // Store the project merged zip locally or on s3. A feed version's file is always stored through the feed store
+        // (and uploaded to s3 once the version is processed), so that it is not uploaded twice.
+        if (DataManager.useS3 && feedVersionId == null) {
             String s3Key = String.format("%s/%s", bucketPrefix, filename);
             FeedStore.s3Client.putObject(DataManager.feedBucket, s3Key, tempFile);
             LOG.info("Storing snapshot GTFS at s3://{}/{}", DataManager.feedBucket, s3Key);
@@ -79,10 +79,7 @@ public class ProcessGtfsSnapshotMerge extends MonitorableJob {
 
 
         try {
-            synchronized (status) {
-                status.message = "Wiping old data...";
-                status.percentComplete = 2;
-            }
+            status.update("Wiping old data...", 2);
             // clear the existing data
             for(String key : feedTx.agencies.keySet()) feedTx.agencies.remove(key);
             for(String key : feedTx.routes.keySet()) feedTx.routes.remove(key);
@@ -94,20 +91,14 @@ public class ProcessGtfsSnapshotMerge extends MonitorableJob {
             for(String key : feedTx.trips.keySet()) feedTx.trips.remove(key);
             LOG.info("Cleared old data");
 
-            synchronized (status) {
-                status.message = "Loading GTFS file...";
-                status.percentComplete = 5;
-            }
+            status.update("Loading GTFS file...", 5);
 
             // retrieveById Feed connection to SQL tables for the feed version
             inputFeedTables = feedVersion.retrieveFeed();
             if(inputFeedTables == null) return;
 
             LOG.info("GtfsImporter: importing feed...");
-            synchronized (status) {
-                status.message = "Beginning feed import...";
-                status.percentComplete = 8;
-            }
+            status.update("Beginning feed import...", 8);
             // load feed_info.txt
             // FIXME add back in feed info!!
 //            if(inputFeedTables.feedInfo.size() > 0) {
@@ -135,17 +126,11 @@ public class ProcessGtfsSnapshotMerge extends MonitorableJob {
                 feedTx.agencies.put(agency.id, agency);
                 agencyIdMap.put(gtfsAgency.agency_id, agency);
             }
-            synchronized (status) {
-                status.message = "Agencies loaded: " + agencyCount;
-                status.percentComplete = 10;
-            }
+            status.update("Agencies loaded: " + agencyCount, 10);
             LOG.info("Agencies loaded: " + agencyCount);
 
             LOG.info("GtfsImporter: importing stops...");
-            synchronized (status) {
-                status.message = "Importing stops...";
-                status.percentComplete = 15;
-            }
+            status.update("Importing stops...", 15);
             // TODO: remove stop ownership inference entirely?
             // infer agency ownership of stops, if there are multiple feeds
 //            SortedSet<Tuple2<String, String>> stopsByAgency = inferAgencyStopOwnership();
@@ -167,15 +152,9 @@ public class ProcessGtfsSnapshotMerge extends MonitorableJob {
             }
 
             LOG.info("Stops loaded: " + stopCount);
-            synchronized (status) {
-                status.message = "Stops loaded: " + stopCount;
-                status.percentComplete = 25;
-            }
+            status.update("Stops loaded: " + stopCount, 25);
             LOG.info("GtfsImporter: importing routes...");
-            synchronized (status) {
-                status.message = "Importing routes...";
-                status.percentComplete = 30;
-            }
+            status.update("Importing routes...", 30);
             // import routes
             for (com.conveyal.gtfs.model.Route gtfsRoute : inputFeedTables.routes) {
                 Agency agency = agencyIdMap.get(gtfsRoute.agency_id);
@@ -195,16 +174,10 @@ public class ProcessGtfsSnapshotMerge extends MonitorableJob {
             }
 
             LOG.info("Routes loaded: " + routeCount);
-            synchronized (status) {
-                status.message = "Routes loaded: " + routeCount;
-                status.percentComplete = 35;
-            }
+            status.update("Routes loaded: " + routeCount, 35);
 
             LOG.info("GtfsImporter: importing Service Calendars...");
-            synchronized (status) {
-                status.message = "Importing service calendars...";
-                status.percentComplete = 38;
-            }
+            status.update("Importing service calendars...", 38);
             // we don't put service calendars in the database just yet, because we don't know what agency they're associated with
             // we copy them into the agency database as needed
             // GTFS service ID -> ServiceCalendar
@@ -304,15 +277,9 @@ public class ProcessGtfsSnapshotMerge extends MonitorableJob {
 //            }
 
             LOG.info("Service calendars loaded: " + serviceCalendarCount);
-            synchronized (status) {
-                status.message = "Service calendars loaded: " + serviceCalendarCount;
-                status.percentComplete = 45;
-            }
+            status.update("Service calendars loaded: " + serviceCalendarCount, 45);
             LOG.info("GtfsImporter: importing trips...");
-            synchronized (status) {
-                status.message = "Importing trips...";
-                status.percentComplete = 50;
-            }
+            status.update("Importing trips...", 50);
             // FIXME need to load patterns and trips
             // import trips, stop times and patterns all at once
 //            Map<String, Pattern> patterns = input.patterns;
@@ -378,10 +345,7 @@ public class ProcessGtfsSnapshotMerge extends MonitorableJob {
 //            }
 
             LOG.info("Trips loaded: " + tripCount);
-            synchronized (status) {
-                status.message = "Trips loaded: " + tripCount;
-                status.percentComplete = 90;
-            }
+            status.update("Trips loaded: " + tripCount, 90);
 
             LOG.info("GtfsImporter: importing fares...");
             // FIXME add in fares
@@ -392,15 +356,9 @@ public class ProcessGtfsSnapshotMerge extends MonitorableJob {
 //                fareCount++;
 //            }
             LOG.info("Fares loaded: " + fareCount);
-            synchronized (status) {
-                status.message = "Fares loaded: " + fareCount;
-                status.percentComplete = 92;
-            }
+            status.update("Fares loaded: " + fareCount, 92);
             LOG.info("Saving snapshot...");
-            synchronized (status) {
-                status.message = "Saving snapshot...";
-                status.percentComplete = 95;
-            }
+            status.update("Saving snapshot...", 95);
             // commit the feed TXs first, so that we have orphaned data rather than inconsistent data on a commit failure
             feedTx.commit();
             gtx.commit();
@@ -410,17 +368,11 @@ public class ProcessGtfsSnapshotMerge extends MonitorableJob {
 
 
             LOG.info("Imported GTFS file: " + agencyCount + " agencies; " + routeCount + " routes;" + stopCount + " stops; " +  stopTimeCount + " stopTimes; " + tripCount + " trips;" + shapePointCount + " shapePoints");
-            synchronized (status) {
-                status.message = "Import complete!";
-                status.percentComplete = 100;
-            }
+            status.update("Import complete!", 100);
         }
         catch (Exception e) {
             e.printStackTrace();
-            synchronized (status) {
-                status.message = "Failed to process GTFS snapshot.";
-                status.error = true;
-            }
+            status.update(true, "Failed to process GTFS snapshot.", status.percentComplete);
         }
         finally {
             feedTx.rollbackIfOpen();
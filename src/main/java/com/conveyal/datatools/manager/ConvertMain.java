@@ -20,7 +20,6 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import static com.conveyal.datatools.manager.DataManager.initializeApplication;
@@ -103,9 +102,9 @@ public class ConvertMain {
             Set<MonitorableJob> activeJobs = StatusController.filterActiveJobs(StatusController.getAllJobs());
             LOG.info(String.format("%d/%d jobs still active. Checking for completion again in 5 seconds...", activeJobs.size(), totalJobs));
 //            LOG.info(String.join(", ", activeJobs.stream().map(job -> job.name).collect(Collectors.toList())));
-            int jobsInExecutor = ((ThreadPoolExecutor) DataManager.heavyExecutor).getActiveCount();
+            int jobsInExecutor = DataManager.heavyExecutor.getRunningCount();
             LOG.info(String.format("Jobs in thread pool executor: %d", jobsInExecutor));
-            LOG.info(String.format("Jobs completed by executor: %d", ((ThreadPoolExecutor) DataManager.heavyExecutor).getCompletedTaskCount()));
+            LOG.info(String.format("Jobs completed by executor: %d", DataManager.heavyExecutor.getCompletedCount()));
             Thread.sleep(5000);
         }
         long durationInMillis = System.currentTimeMillis() - startTime;
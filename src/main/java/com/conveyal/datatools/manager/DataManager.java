@@ -1,6 +1,11 @@
 package com.conveyal.datatools.manager;
 
 import com.bugsnag.Bugsnag;
+import com.conveyal.datatools.common.metrics.InstrumentedDataSource;
+import com.conveyal.datatools.common.metrics.Metrics;
+import com.conveyal.datatools.common.status.JobQueue;
+import com.conveyal.datatools.common.status.JobRegistry;
+import com.conveyal.datatools.common.status.JobScheduler;
 import com.conveyal.datatools.common.status.MonitorableJob;
 import com.conveyal.datatools.common.utils.CorsFilter;
 import com.conveyal.datatools.common.utils.Scheduler;
@@ -24,6 +29,13 @@ import com.conveyal.datatools.manager.extensions.mtc.MtcFeedResource;
 import com.conveyal.datatools.manager.extensions.transitfeeds.TransitFeedsFeedResource;
 import com.conveyal.datatools.manager.extensions.transitland.TransitLandFeedResource;
 import com.conveyal.datatools.manager.jobs.FeedUpdater;
+import com.conveyal.datatools.manager.jobs.FetchScheduler;
+import com.conveyal.datatools.manager.jobs.FetchSingleFeedJob;
+import com.conveyal.datatools.manager.jobs.GisExportJob;
+import com.conveyal.datatools.manager.jobs.MergeFeedsJob;
+import com.conveyal.datatools.manager.jobs.ProcessSingleFeedJob;
+import com.conveyal.datatools.manager.jobs.ValidateFeedJob;
+import com.conveyal.datatools.manager.models.FeedSource;
 import com.conveyal.datatools.manager.persistence.FeedStore;
 import com.conveyal.datatools.manager.persistence.Persistence;
 import com.conveyal.gtfs.GTFS;
@@ -32,7 +44,6 @@ import com.conveyal.gtfs.loader.Table;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
-import com.google.common.collect.Sets;
 import com.google.common.io.Resources;
 import org.apache.commons.io.Charsets;
 import org.slf4j.Logger;
@@ -48,10 +59,9 @@ import java.net.URL;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import static com.conveyal.datatools.common.utils.SparkUtils.logMessageAndHalt;
 import static com.conveyal.datatools.common.utils.SparkUtils.logRequest;
@@ -84,20 +94,21 @@ public class DataManager {
     // TODO: define type for ExternalFeedResource Strings
     public static final Map<String, ExternalFeedResource> feedResources = new HashMap<>();
 
-    /**
-     * Stores jobs underway by user ID. NOTE: any set created and stored here must be created with
-     * {@link Sets#newConcurrentHashSet()} or similar thread-safe Set.
-     */
-    public static Map<String, Set<MonitorableJob>> userJobsMap = new ConcurrentHashMap<>();
+    /** Jobs underway (or recently finished) on this server, indexed by job ID, owner and type. */
+    public static final JobRegistry jobRegistry = new JobRegistry();
 
     // ObjectMapper that loads in YAML config files
     private static final ObjectMapper yamlMapper = new ObjectMapper(new YAMLFactory());
 
 
-    // Heavy executor should contain long-lived CPU-intensive tasks (e.g., feed loading/validation)
-    public static Executor heavyExecutor = Executors.newFixedThreadPool(4);
+    // Heavy executor should contain long-lived CPU-intensive tasks (e.g., feed loading/validation). It is replaced with
+    // a scheduler configured with per-job-type limits and priorities when the application is initialized.
+    public static JobScheduler heavyExecutor = new JobScheduler();
+    // fetch executor runs feed fetches, which mostly wait on the network, with limits on concurrent fetches per host
+    public static FetchScheduler fetchExecutor = new FetchScheduler();
     // light executor is for tasks for things that should finish quickly (e.g., email notifications)
-    public static Executor lightExecutor = Executors.newSingleThreadExecutor();
+    public static ThreadPoolExecutor lightExecutor =
+        new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
 
     public static String feedBucket;
     public static String bucketFolder;
@@ -120,6 +131,13 @@ public class DataManager {
 
         initializeApplication(args);
 
+        if (JobQueue.isWorker()) {
+            // Worker nodes serve no HTTP routes and only run jobs claimed from the shared job queue.
+            registerExternalResources();
+            JobQueue.runWorker();
+            return;
+        }
+
         registerRoutes();
 
         registerExternalResources();
@@ -142,11 +160,20 @@ public class DataManager {
         }
         useS3 = "true".equals(getConfigPropertyAsText("application.data.use_s3_storage"));
 
-        GTFS_DATA_SOURCE = GTFS.createDataSource(
+        heavyExecutor = JobScheduler.fromConfig();
+        heavyExecutor.registerMetrics();
+        fetchExecutor = FetchScheduler.fromConfig();
+        fetchExecutor.registerMetrics();
+        Metrics.registerGauge("datatools_light_executor_queued_tasks", "Number of tasks waiting on the light executor",
+            () -> lightExecutor.getQueue().size());
+        jobRegistry.configure();
+
+        // Wrap the data source to report connection pool usage as metrics.
+        GTFS_DATA_SOURCE = new InstrumentedDataSource(GTFS.createDataSource(
             getConfigPropertyAsText("GTFS_DATABASE_URL"),
             getConfigPropertyAsText("GTFS_DATABASE_USER"),
             getConfigPropertyAsText("GTFS_DATABASE_PASSWORD")
-        );
+        ));
 
         feedBucket = getConfigPropertyAsText("application.data.gtfs_s3_bucket");
         bucketFolder = FeedStore.s3Prefix;
@@ -156,9 +183,21 @@ public class DataManager {
 
         // Initialize MongoDB storage
         Persistence.initialize();
-
-        // Initialize scheduled tasks
-        Scheduler.initialize();
+        // Store the denormalized latest version summary for feed sources stored before it was introduced.
+        FeedSource.backfillLatestVersionSummaries();
+
+        // Register the jobs that may be resumed after a restart and begin recovering any that were interrupted.
+        JobQueue.registerJobType(MonitorableJob.JobType.FETCH_SINGLE_FEED, FetchSingleFeedJob::fromParameters, true);
+        JobQueue.registerJobType(MonitorableJob.JobType.PROCESS_FEED, ProcessSingleFeedJob::fromParameters, true);
+        JobQueue.registerJobType(MonitorableJob.JobType.VALIDATE_FEED, ValidateFeedJob::fromParameters, true);
+        JobQueue.registerJobType(MonitorableJob.JobType.EXPORT_GIS, GisExportJob::fromParameters, true);
+        // Merges are not retried after failing because failures (e.g., conflicting trip IDs) are not transient.
+        JobQueue.registerJobType(MonitorableJob.JobType.MERGE_FEED_VERSIONS, MergeFeedsJob::fromParameters, false);
+        JobQueue.initialize();
+
+        // Initialize scheduled tasks (only on nodes serving the API, so that scheduled fetches are not duplicated by
+        // worker nodes).
+        if (!JobQueue.isWorker()) Scheduler.initialize();
     }
 
     // intialize bugsnag
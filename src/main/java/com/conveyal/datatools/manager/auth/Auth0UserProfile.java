@@ -5,9 +5,18 @@ import com.conveyal.datatools.manager.persistence.Persistence;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import org.bson.conversions.Bson;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Filters.or;
 
 /**
  * Created by demory on 1/18/16.
@@ -15,6 +24,9 @@ import java.util.List;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class Auth0UserProfile {
+    /** Filter that matches no documents, for users without any applicable permissions. */
+    private static final Bson MATCH_NONE = in("_id", Collections.<String>emptyList());
+
     String email;
     String user_id;
     AppMetadata app_metadata;
@@ -90,6 +102,8 @@ public class Auth0UserProfile {
         @JsonIgnore
         public DatatoolsInfo getDatatoolsInfo() {
             if (Auth0Connection.authDisabled()) return null;
+            // A user without any datatools metadata has no permissions.
+            if (this.datatools == null) return null;
 
             for(int i = 0; i < this.datatools.size(); i++) {
                 DatatoolsInfo dt = this.datatools.get(i);
@@ -377,6 +391,75 @@ public class Auth0UserProfile {
         return false;
     }
 
+    /**
+     * Construct a Mongo filter matching the projects for which {@link #hasProject} is true, so that the filtering can
+     * be performed by the database rather than by loading every project.
+     * @return the filter or null if the user can access all projects
+     */
+    @JsonIgnore
+    public Bson getProjectsFilter() {
+        if (canAdministerApplication()) return null;
+        List<Bson> filters = new ArrayList<>();
+        String organizationId = getOrganizationId();
+        if (canAdministerOrganization(organizationId)) {
+            filters.add(eq("organizationId", organizationId));
+        }
+        DatatoolsInfo datatoolsInfo = app_metadata.getDatatoolsInfo();
+        if (datatoolsInfo != null && datatoolsInfo.projects != null) {
+            List<String> projectIds = new ArrayList<>();
+            for (Project project : datatoolsInfo.projects) projectIds.add(project.project_id);
+            if (!projectIds.isEmpty()) filters.add(in("_id", projectIds));
+        }
+        return filters.isEmpty() ? MATCH_NONE : or(filters);
+    }
+
+    /**
+     * Construct a Mongo filter matching the feed sources that this user can view or manage (i.e., those for which
+     * {@link #canViewFeed} or {@link #canManageFeed} is true), so that the filtering can be performed by the database
+     * rather than by loading every feed source (and its project to determine the organization).
+     * @return the filter or null if the user can access all feed sources
+     */
+    @JsonIgnore
+    public Bson getFeedSourcesFilter() {
+        if (canAdministerApplication()) return null;
+        List<Bson> filters = new ArrayList<>();
+        // Organization admins can access all feed sources in the organization's projects.
+        String organizationId = getOrganizationId();
+        if (canAdministerOrganization(organizationId)) {
+            filters.add(in("projectId", com.conveyal.datatools.manager.models.Organization.retrieveProjectIds(organizationId)));
+        }
+        DatatoolsInfo datatoolsInfo = app_metadata.getDatatoolsInfo();
+        if (datatoolsInfo != null && datatoolsInfo.projects != null) {
+            for (Project project : datatoolsInfo.projects) {
+                if (project.permissions == null) continue;
+                Set<String> feedIds = new HashSet<>();
+                boolean allFeeds = false;
+                for (Permission permission : project.permissions) {
+                    if (permission.type.equals("administer-project")) allFeeds = true;
+                }
+                // Mirror checkFeedPermission for each permission type that grants access to a feed source.
+                for (String permissionType : new String[] {"view-feed", "manage-feed"}) {
+                    String[] feeds = project.defaultFeeds;
+                    for (Permission permission : project.permissions) {
+                        if (!permission.type.equals(permissionType)) continue;
+                        if (permission.feeds != null) feeds = permission.feeds;
+                        if (feeds == null) continue;
+                        for (String feedId : feeds) {
+                            if (feedId.equals("*")) allFeeds = true;
+                            else feedIds.add(feedId);
+                        }
+                    }
+                }
+                if (allFeeds) {
+                    filters.add(eq("projectId", project.project_id));
+                } else if (!feedIds.isEmpty()) {
+                    filters.add(and(eq("projectId", project.project_id), in("_id", feedIds)));
+                }
+            }
+        }
+        return filters.isEmpty() ? MATCH_NONE : or(filters);
+    }
+
     public boolean checkFeedPermission(Project project, String feedID, String permissionType) {
         String feeds[] = project.defaultFeeds;
 
@@ -0,0 +1,61 @@
+package com.conveyal.datatools.manager.codec;
+
+import com.conveyal.datatools.manager.models.Bounds;
+import com.google.common.collect.ImmutableMap;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+import java.util.Map;
+
+import static com.conveyal.datatools.manager.codec.CodecUtils.readDouble;
+import static com.conveyal.datatools.manager.codec.CodecUtils.readFieldName;
+
+/**
+ * Hand-written codec for {@link Bounds}, which is embedded in projects and feed version summaries.
+ */
+public class BoundsCodec implements Codec<Bounds> {
+    static final Map<String, Class<?>> FIELDS = ImmutableMap.<String, Class<?>>builder()
+        .put("north", double.class)
+        .put("south", double.class)
+        .put("east", double.class)
+        .put("west", double.class)
+        .build();
+
+    @Override
+    public void encode(final BsonWriter writer, final Bounds value, final EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        writer.writeDouble("north", value.north);
+        writer.writeDouble("south", value.south);
+        writer.writeDouble("east", value.east);
+        writer.writeDouble("west", value.west);
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public Bounds decode(final BsonReader reader, final DecoderContext decoderContext) {
+        Bounds bounds = new Bounds();
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String name = readFieldName(reader);
+            if (name == null) continue;
+            switch (name) {
+                case "north": bounds.north = readDouble(reader); break;
+                case "south": bounds.south = readDouble(reader); break;
+                case "east": bounds.east = readDouble(reader); break;
+                case "west": bounds.west = readDouble(reader); break;
+                default: reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        return bounds;
+    }
+
+    @Override
+    public Class<Bounds> getEncoderClass() {
+        return Bounds.class;
+    }
+}
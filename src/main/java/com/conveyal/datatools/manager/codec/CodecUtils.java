@@ -0,0 +1,155 @@
+package com.conveyal.datatools.manager.codec;
+
+import org.bson.BsonInvalidOperationException;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Helpers shared by the hand-written codecs in this package. The read methods are lenient about numeric types so that
+ * documents written by the reflective PojoCodec (or loaded from older database dumps) decode the same way.
+ */
+public final class CodecUtils {
+    private static final Logger LOG = LoggerFactory.getLogger(CodecUtils.class);
+
+    private CodecUtils () {}
+
+    public static int readInt (BsonReader reader) {
+        switch (reader.getCurrentBsonType()) {
+            case INT32: return reader.readInt32();
+            case INT64: return (int) reader.readInt64();
+            case DOUBLE: return (int) reader.readDouble();
+            default: throw new BsonInvalidOperationException("Expected number but found " + reader.getCurrentBsonType());
+        }
+    }
+
+    public static long readLong (BsonReader reader) {
+        switch (reader.getCurrentBsonType()) {
+            case INT32: return reader.readInt32();
+            case INT64: return reader.readInt64();
+            case DOUBLE: return (long) reader.readDouble();
+            default: throw new BsonInvalidOperationException("Expected number but found " + reader.getCurrentBsonType());
+        }
+    }
+
+    public static double readDouble (BsonReader reader) {
+        switch (reader.getCurrentBsonType()) {
+            case INT32: return reader.readInt32();
+            case INT64: return reader.readInt64();
+            case DOUBLE: return reader.readDouble();
+            default: throw new BsonInvalidOperationException("Expected number but found " + reader.getCurrentBsonType());
+        }
+    }
+
+    public static Date readDate (BsonReader reader) {
+        return new Date(reader.readDateTime());
+    }
+
+    public static List<String> readStringList (BsonReader reader) {
+        List<String> values = new ArrayList<>();
+        reader.readStartArray();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            if (reader.getCurrentBsonType() == BsonType.NULL) {
+                reader.readNull();
+                values.add(null);
+            } else {
+                values.add(reader.readString());
+            }
+        }
+        reader.readEndArray();
+        return values;
+    }
+
+    /**
+     * Read the name of the next field in a document, consuming (and returning null for) BSON null values so that the
+     * field on the decoded object is left at its default, as with the reflective PojoCodec.
+     */
+    public static String readFieldName (BsonReader reader) {
+        String name = reader.readName();
+        if (reader.getCurrentBsonType() == BsonType.NULL) {
+            reader.readNull();
+            return null;
+        }
+        return name;
+    }
+
+    // Null values are omitted when encoding, matching the behavior of the reflective PojoCodec.
+
+    public static void writeString (BsonWriter writer, String name, String value) {
+        if (value != null) writer.writeString(name, value);
+    }
+
+    public static void writeDate (BsonWriter writer, String name, Date value) {
+        if (value != null) writer.writeDateTime(name, value.getTime());
+    }
+
+    public static void writeLong (BsonWriter writer, String name, Long value) {
+        if (value != null) writer.writeInt64(name, value);
+    }
+
+    public static void writeStringList (BsonWriter writer, String name, List<String> values) {
+        if (values == null) return;
+        writer.writeStartArray(name);
+        for (String value : values) {
+            if (value == null) writer.writeNull();
+            else writer.writeString(value);
+        }
+        writer.writeEndArray();
+    }
+
+    public static <V> void writeValue (
+        BsonWriter writer,
+        String name,
+        V value,
+        Codec<V> codec,
+        EncoderContext encoderContext
+    ) {
+        if (value == null) return;
+        writer.writeName(name);
+        encoderContext.encodeWithChildContext(codec, writer, value);
+    }
+
+    public static <V> V readValue (BsonReader reader, Codec<V> codec, DecoderContext decoderContext) {
+        return decoderContext.decodeWithChildContext(codec, reader);
+    }
+
+    /**
+     * Check that the public instance fields of the class (including inherited fields) are exactly those that a
+     * hand-written codec expects. A codec must only be used if this returns true: otherwise, fields added to the class
+     * (e.g., by an upgraded dependency) would be silently dropped when objects are stored.
+     */
+    public static boolean hasExpectedFields (Class<?> clazz, Map<String, Class<?>> expectedFields) {
+        Map<String, Class<?>> fields = new HashMap<>();
+        for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isPublic(modifiers) && !Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers)) {
+                    fields.put(field.getName(), field.getType());
+                }
+            }
+        }
+        if (!fields.equals(expectedFields)) {
+            LOG.warn(
+                "Fields of {} do not match its hand-written codec (expected {}, found {}). Falling back to reflective codec.",
+                clazz.getSimpleName(),
+                expectedFields,
+                fields
+            );
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,143 @@
+package com.conveyal.datatools.manager.codec;
+
+import com.conveyal.datatools.manager.models.FeedSource;
+import com.conveyal.datatools.manager.models.FeedVersion;
+import com.conveyal.gtfs.loader.FeedLoadResult;
+import com.conveyal.gtfs.validator.ValidationResult;
+import com.google.common.collect.ImmutableMap;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static com.conveyal.datatools.manager.codec.CodecUtils.readDate;
+import static com.conveyal.datatools.manager.codec.CodecUtils.readFieldName;
+import static com.conveyal.datatools.manager.codec.CodecUtils.readInt;
+import static com.conveyal.datatools.manager.codec.CodecUtils.readLong;
+import static com.conveyal.datatools.manager.codec.CodecUtils.readStringList;
+import static com.conveyal.datatools.manager.codec.CodecUtils.readValue;
+import static com.conveyal.datatools.manager.codec.CodecUtils.writeDate;
+import static com.conveyal.datatools.manager.codec.CodecUtils.writeLong;
+import static com.conveyal.datatools.manager.codec.CodecUtils.writeString;
+import static com.conveyal.datatools.manager.codec.CodecUtils.writeStringList;
+import static com.conveyal.datatools.manager.codec.CodecUtils.writeValue;
+
+/**
+ * Hand-written codec for {@link FeedVersion}, which is decoded in bulk by the feed version list endpoints and at
+ * startup by the scheduler. The nested validation and load results are delegated to the registry (see
+ * {@link PublicFieldCodec}). The document layout matches that produced by the reflective PojoCodec.
+ */
+public class FeedVersionCodec implements Codec<FeedVersion> {
+    /** Public fields of FeedVersion (and Model) handled by this codec. See {@link CodecUtils#hasExpectedFields}. */
+    static final Map<String, Class<?>> FIELDS = ImmutableMap.<String, Class<?>>builder()
+        .put("id", String.class)
+        .put("lastUpdated", Date.class)
+        .put("dateCreated", Date.class)
+        .put("userId", String.class)
+        .put("userEmail", String.class)
+        .put("noteIds", List.class)
+        .put("feedSourceId", String.class)
+        .put("retrievalMethod", FeedSource.FeedRetrievalMethod.class)
+        .put("hash", String.class)
+        .put("validationResult", ValidationResult.class)
+        .put("feedLoadResult", FeedLoadResult.class)
+        .put("updated", Date.class)
+        .put("version", int.class)
+        .put("name", String.class)
+        .put("fileSize", Long.class)
+        .put("fileTimestamp", Long.class)
+        .put("namespace", String.class)
+        .put("originNamespace", String.class)
+        .put("sentToExternalPublisher", Date.class)
+        .put("processedByExternalPublisher", Date.class)
+        .build();
+
+    private final Codec<FeedSource.FeedRetrievalMethod> retrievalMethodCodec;
+    private final Codec<ValidationResult> validationResultCodec;
+    private final Codec<FeedLoadResult> feedLoadResultCodec;
+
+    public FeedVersionCodec(CodecRegistry registry) {
+        retrievalMethodCodec = registry.get(FeedSource.FeedRetrievalMethod.class);
+        validationResultCodec = registry.get(ValidationResult.class);
+        feedLoadResultCodec = registry.get(FeedLoadResult.class);
+    }
+
+    @Override
+    public void encode(final BsonWriter writer, final FeedVersion value, final EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        writeString(writer, "_id", value.id);
+        writeDate(writer, "lastUpdated", value.lastUpdated);
+        writeDate(writer, "dateCreated", value.dateCreated);
+        writeString(writer, "userId", value.userId);
+        writeString(writer, "userEmail", value.userEmail);
+        writeStringList(writer, "noteIds", value.noteIds);
+        writeString(writer, "feedSourceId", value.feedSourceId);
+        writeValue(writer, "retrievalMethod", value.retrievalMethod, retrievalMethodCodec, encoderContext);
+        writeString(writer, "hash", value.hash);
+        writeValue(writer, "validationResult", value.validationResult, validationResultCodec, encoderContext);
+        writeValue(writer, "feedLoadResult", value.feedLoadResult, feedLoadResultCodec, encoderContext);
+        writeDate(writer, "updated", value.updated);
+        writer.writeInt32("version", value.version);
+        writeString(writer, "name", value.name);
+        writeLong(writer, "fileSize", value.fileSize);
+        writeLong(writer, "fileTimestamp", value.fileTimestamp);
+        writeString(writer, "namespace", value.namespace);
+        writeString(writer, "originNamespace", value.originNamespace);
+        writeDate(writer, "sentToExternalPublisher", value.sentToExternalPublisher);
+        writeDate(writer, "processedByExternalPublisher", value.processedByExternalPublisher);
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public FeedVersion decode(final BsonReader reader, final DecoderContext decoderContext) {
+        FeedVersion version = new FeedVersion();
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String name = readFieldName(reader);
+            if (name == null) continue;
+            switch (name) {
+                case "_id": version.id = reader.readString(); break;
+                case "lastUpdated": version.lastUpdated = readDate(reader); break;
+                case "dateCreated": version.dateCreated = readDate(reader); break;
+                case "userId": version.userId = reader.readString(); break;
+                case "userEmail": version.userEmail = reader.readString(); break;
+                case "noteIds": version.noteIds = readStringList(reader); break;
+                case "feedSourceId": version.feedSourceId = reader.readString(); break;
+                case "retrievalMethod":
+                    version.retrievalMethod = readValue(reader, retrievalMethodCodec, decoderContext);
+                    break;
+                case "hash": version.hash = reader.readString(); break;
+                case "validationResult":
+                    version.validationResult = readValue(reader, validationResultCodec, decoderContext);
+                    break;
+                case "feedLoadResult":
+                    version.feedLoadResult = readValue(reader, feedLoadResultCodec, decoderContext);
+                    break;
+                case "updated": version.updated = readDate(reader); break;
+                case "version": version.version = readInt(reader); break;
+                case "name": version.name = reader.readString(); break;
+                case "fileSize": version.fileSize = readLong(reader); break;
+                case "fileTimestamp": version.fileTimestamp = readLong(reader); break;
+                case "namespace": version.namespace = reader.readString(); break;
+                case "originNamespace": version.originNamespace = reader.readString(); break;
+                case "sentToExternalPublisher": version.sentToExternalPublisher = readDate(reader); break;
+                case "processedByExternalPublisher": version.processedByExternalPublisher = readDate(reader); break;
+                default: reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        return version;
+    }
+
+    @Override
+    public Class<FeedVersion> getEncoderClass() {
+        return FeedVersion.class;
+    }
+}
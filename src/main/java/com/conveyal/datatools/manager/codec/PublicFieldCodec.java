@@ -0,0 +1,343 @@
+package com.conveyal.datatools.manager.codec;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecConfigurationException;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.conveyal.datatools.manager.codec.CodecUtils.readFieldName;
+import static com.conveyal.datatools.manager.codec.CodecUtils.readDouble;
+import static com.conveyal.datatools.manager.codec.CodecUtils.readInt;
+import static com.conveyal.datatools.manager.codec.CodecUtils.readLong;
+
+/**
+ * A codec for simple classes that consist of public fields and a public no-arg constructor (such as gtfs-lib's
+ * FeedLoadResult, TableLoadResult and ValidationResult). The field table is built by reflection once, when the codec
+ * is created, and primitive, String and int[] fields are read and written directly rather than through per-property
+ * codec lookups as the generic PojoCodec does. Fields of any other type (e.g., LocalDate or nested objects) are
+ * delegated to the codec registry, and collections and maps keyed by strings are encoded element by element with the
+ * codec for their declared element type (the registry's codec for the raw collection type would lose the element
+ * type). A class with a field of any other generic type is left to the PojoCodec. Because the fields are discovered
+ * from the class itself, a field added by a dependency upgrade is never silently dropped (as it could be with a codec
+ * that enumerates the fields by hand).
+ *
+ * Documents are encoded exactly as the reflective PojoCodec would encode them (null values are omitted), so documents
+ * written by either codec can be read by the other.
+ */
+public class PublicFieldCodec<T> implements Codec<T> {
+    private static final Logger LOG = LoggerFactory.getLogger(PublicFieldCodec.class);
+
+    private enum Kind { INT, LONG, DOUBLE, BOOLEAN, STRING, INT_ARRAY, OTHER }
+
+    private final Class<T> clazz;
+    private final Constructor<T> constructor;
+    private final List<FieldHandler> fields = new ArrayList<>();
+    private final Map<String, FieldHandler> fieldsByName = new HashMap<>();
+    private final CodecRegistry registry;
+
+    private class FieldHandler {
+        final String name;
+        final Field field;
+        final Kind kind;
+        /** Codec for fields of other types, resolved on first use to avoid recursion while the registry is built. */
+        Codec<Object> codec;
+
+        FieldHandler(Field field) {
+            this.name = field.getName();
+            this.field = field;
+            this.kind = kindOf(field.getType());
+        }
+
+        Codec<Object> codec() {
+            if (codec == null) codec = codecFor(field.getGenericType(), registry);
+            return codec;
+        }
+    }
+
+    private PublicFieldCodec(Class<T> clazz, Constructor<T> constructor, CodecRegistry registry) {
+        this.clazz = clazz;
+        this.constructor = constructor;
+        this.registry = registry;
+        for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (!Modifier.isPublic(modifiers) || Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) {
+                    continue;
+                }
+                FieldHandler handler = new FieldHandler(field);
+                fields.add(handler);
+                fieldsByName.put(handler.name, handler);
+            }
+        }
+    }
+
+    /**
+     * Create a codec for the class, or return null if the class is not a simple public-field class (in which case the
+     * registry should fall back to another codec).
+     */
+    public static <T> PublicFieldCodec<T> create(Class<T> clazz, CodecRegistry registry) {
+        PublicFieldCodec<T> codec;
+        try {
+            codec = new PublicFieldCodec<>(clazz, clazz.getConstructor(), registry);
+        } catch (NoSuchMethodException e) {
+            LOG.warn("{} has no public no-arg constructor. Falling back to reflective codec.", clazz.getSimpleName());
+            return null;
+        }
+        for (FieldHandler handler : codec.fields) {
+            if (!isSupported(handler.field.getGenericType())) {
+                LOG.warn("{}.{} has unsupported generic type {}. Falling back to reflective codec.",
+                    clazz.getSimpleName(), handler.name, handler.field.getGenericType());
+                return null;
+            }
+        }
+        return codec;
+    }
+
+    /**
+     * Whether a codec can be built for the type: a class, or a collection (or string-keyed map) of supported types.
+     */
+    private static boolean isSupported(Type type) {
+        if (type instanceof Class) return true;
+        if (!(type instanceof ParameterizedType)) return false;
+        ParameterizedType parameterizedType = (ParameterizedType) type;
+        Class<?> rawType = (Class<?>) parameterizedType.getRawType();
+        Type[] arguments = parameterizedType.getActualTypeArguments();
+        if (Collection.class.isAssignableFrom(rawType)) return isSupported(arguments[0]);
+        if (Map.class.isAssignableFrom(rawType)) return arguments[0] == String.class && isSupported(arguments[1]);
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Codec<Object> codecFor(Type type, CodecRegistry registry) {
+        if (type instanceof Class) return (Codec<Object>) registry.get((Class<?>) type);
+        ParameterizedType parameterizedType = (ParameterizedType) type;
+        Class<?> rawType = (Class<?>) parameterizedType.getRawType();
+        Type[] arguments = parameterizedType.getActualTypeArguments();
+        if (Collection.class.isAssignableFrom(rawType)) {
+            return new CollectionCodec(rawType, codecFor(arguments[0], registry));
+        }
+        return new MapCodec(rawType, codecFor(arguments[1], registry));
+    }
+
+    /** Create an empty collection or map of the declared type (or, for an interface, a standard implementation). */
+    private static Object newContainer(Class<?> type) {
+        if (!type.isInterface() && !Modifier.isAbstract(type.getModifiers())) {
+            try {
+                return type.getConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new CodecConfigurationException("Could not create " + type.getSimpleName(), e);
+            }
+        }
+        if (Map.class.isAssignableFrom(type)) return new HashMap<>();
+        if (Set.class.isAssignableFrom(type)) return new HashSet<>();
+        return new ArrayList<>();
+    }
+
+    private static Kind kindOf(Class<?> type) {
+        if (type == int.class) return Kind.INT;
+        if (type == long.class) return Kind.LONG;
+        if (type == double.class) return Kind.DOUBLE;
+        if (type == boolean.class) return Kind.BOOLEAN;
+        if (type == String.class) return Kind.STRING;
+        if (type == int[].class) return Kind.INT_ARRAY;
+        return Kind.OTHER;
+    }
+
+    @Override
+    public void encode(final BsonWriter writer, final T value, final EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        try {
+            for (FieldHandler handler : fields) {
+                Field field = handler.field;
+                switch (handler.kind) {
+                    case INT: writer.writeInt32(handler.name, field.getInt(value)); break;
+                    case LONG: writer.writeInt64(handler.name, field.getLong(value)); break;
+                    case DOUBLE: writer.writeDouble(handler.name, field.getDouble(value)); break;
+                    case BOOLEAN: writer.writeBoolean(handler.name, field.getBoolean(value)); break;
+                    default:
+                        Object fieldValue = field.get(value);
+                        if (fieldValue == null) break;
+                        writer.writeName(handler.name);
+                        if (handler.kind == Kind.STRING) writer.writeString((String) fieldValue);
+                        else if (handler.kind == Kind.INT_ARRAY) writeIntArray(writer, (int[]) fieldValue);
+                        else encoderContext.encodeWithChildContext(handler.codec(), writer, fieldValue);
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new CodecConfigurationException("Could not encode " + clazz.getSimpleName(), e);
+        }
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public T decode(final BsonReader reader, final DecoderContext decoderContext) {
+        T instance;
+        try {
+            instance = constructor.newInstance();
+            reader.readStartDocument();
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                String name = readFieldName(reader);
+                if (name == null) continue;
+                FieldHandler handler = fieldsByName.get(name);
+                if (handler == null) {
+                    reader.skipValue();
+                    continue;
+                }
+                Field field = handler.field;
+                switch (handler.kind) {
+                    case INT: field.setInt(instance, readInt(reader)); break;
+                    case LONG: field.setLong(instance, readLong(reader)); break;
+                    case DOUBLE: field.setDouble(instance, readDouble(reader)); break;
+                    case BOOLEAN: field.setBoolean(instance, reader.readBoolean()); break;
+                    case STRING: field.set(instance, reader.readString()); break;
+                    case INT_ARRAY: field.set(instance, readIntArray(reader)); break;
+                    default: field.set(instance, decoderContext.decodeWithChildContext(handler.codec(), reader));
+                }
+            }
+            reader.readEndDocument();
+        } catch (ReflectiveOperationException e) {
+            throw new CodecConfigurationException("Could not decode " + clazz.getSimpleName(), e);
+        }
+        return instance;
+    }
+
+    private static void writeIntArray(BsonWriter writer, int[] values) {
+        writer.writeStartArray();
+        for (int v : values) writer.writeInt32(v);
+        writer.writeEndArray();
+    }
+
+    /** Read an int array without boxing (the daily service arrays in validation results can be thousands long). */
+    private static int[] readIntArray(BsonReader reader) {
+        int[] values = new int[16];
+        int size = 0;
+        reader.readStartArray();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            if (size == values.length) {
+                int[] grown = new int[values.length * 2];
+                System.arraycopy(values, 0, grown, 0, size);
+                values = grown;
+            }
+            values[size++] = readInt(reader);
+        }
+        reader.readEndArray();
+        if (size == values.length) return values;
+        int[] result = new int[size];
+        System.arraycopy(values, 0, result, 0, size);
+        return result;
+    }
+
+    @Override
+    public Class<T> getEncoderClass() {
+        return clazz;
+    }
+
+    /** Encodes a collection as an array, as the PojoCodec does. */
+    private static class CollectionCodec implements Codec<Object> {
+        private final Class<?> type;
+        private final Codec<Object> elementCodec;
+
+        CollectionCodec(Class<?> type, Codec<Object> elementCodec) {
+            this.type = type;
+            this.elementCodec = elementCodec;
+        }
+
+        @Override
+        public void encode(BsonWriter writer, Object value, EncoderContext encoderContext) {
+            writer.writeStartArray();
+            for (Object element : (Collection<?>) value) {
+                if (element == null) writer.writeNull();
+                else encoderContext.encodeWithChildContext(elementCodec, writer, element);
+            }
+            writer.writeEndArray();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Object decode(BsonReader reader, DecoderContext decoderContext) {
+            Collection<Object> collection = (Collection<Object>) newContainer(type);
+            reader.readStartArray();
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                if (reader.getCurrentBsonType() == BsonType.NULL) {
+                    reader.readNull();
+                    collection.add(null);
+                } else {
+                    collection.add(decoderContext.decodeWithChildContext(elementCodec, reader));
+                }
+            }
+            reader.readEndArray();
+            return collection;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Class<Object> getEncoderClass() {
+            return (Class<Object>) type;
+        }
+    }
+
+    /** Encodes a map keyed by strings as a document, as the PojoCodec does. */
+    private static class MapCodec implements Codec<Object> {
+        private final Class<?> type;
+        private final Codec<Object> valueCodec;
+
+        MapCodec(Class<?> type, Codec<Object> valueCodec) {
+            this.type = type;
+            this.valueCodec = valueCodec;
+        }
+
+        @Override
+        public void encode(BsonWriter writer, Object value, EncoderContext encoderContext) {
+            writer.writeStartDocument();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                writer.writeName((String) entry.getKey());
+                if (entry.getValue() == null) writer.writeNull();
+                else encoderContext.encodeWithChildContext(valueCodec, writer, entry.getValue());
+            }
+            writer.writeEndDocument();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Object decode(BsonReader reader, DecoderContext decoderContext) {
+            Map<String, Object> map = (Map<String, Object>) newContainer(type);
+            reader.readStartDocument();
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                String name = reader.readName();
+                if (reader.getCurrentBsonType() == BsonType.NULL) {
+                    reader.readNull();
+                    map.put(name, null);
+                } else {
+                    map.put(name, decoderContext.decodeWithChildContext(valueCodec, reader));
+                }
+            }
+            reader.readEndDocument();
+            return map;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Class<Object> getEncoderClass() {
+            return (Class<Object>) type;
+        }
+    }
+}
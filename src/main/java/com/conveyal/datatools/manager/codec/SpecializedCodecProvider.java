@@ -0,0 +1,38 @@
+package com.conveyal.datatools.manager.codec;
+
+import com.conveyal.datatools.manager.models.Bounds;
+import com.conveyal.datatools.manager.models.FeedVersion;
+import com.conveyal.gtfs.loader.FeedLoadResult;
+import com.conveyal.gtfs.loader.TableLoadResult;
+import com.conveyal.gtfs.validator.ValidationResult;
+import org.bson.codecs.Codec;
+import org.bson.codecs.configuration.CodecProvider;
+import org.bson.codecs.configuration.CodecRegistry;
+
+/**
+ * Provides specialized codecs for the types that dominate decoding cost: feed versions and the validation and load
+ * results embedded in them. It must be registered ahead of the reflective PojoCodecProvider. For any other type (or if
+ * a hand-written codec no longer matches the fields of its class) it returns null, so that the registry falls back to
+ * the reflective codec.
+ */
+public class SpecializedCodecProvider implements CodecProvider {
+    private static final boolean FEED_VERSION_CODEC_MATCHES =
+        CodecUtils.hasExpectedFields(FeedVersion.class, FeedVersionCodec.FIELDS);
+    private static final boolean BOUNDS_CODEC_MATCHES =
+        CodecUtils.hasExpectedFields(Bounds.class, BoundsCodec.FIELDS);
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> Codec<T> get(Class<T> clazz, CodecRegistry registry) {
+        if (clazz == FeedVersion.class && FEED_VERSION_CODEC_MATCHES) {
+            return (Codec<T>) new FeedVersionCodec(registry);
+        }
+        if (clazz == Bounds.class && BOUNDS_CODEC_MATCHES) {
+            return (Codec<T>) new BoundsCodec();
+        }
+        if (clazz == ValidationResult.class || clazz == FeedLoadResult.class || clazz == TableLoadResult.class) {
+            return PublicFieldCodec.create(clazz, registry);
+        }
+        return null;
+    }
+}
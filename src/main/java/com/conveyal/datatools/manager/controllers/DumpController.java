@@ -1,7 +1,7 @@
 package com.conveyal.datatools.manager.controllers;
 
+import com.conveyal.datatools.common.status.JobQueue;
 import com.conveyal.datatools.common.status.MonitorableJob;
-import com.conveyal.datatools.manager.DataManager;
 import com.conveyal.datatools.manager.jobs.ProcessSingleFeedJob;
 import com.conveyal.datatools.manager.jobs.ValidateFeedJob;
 import com.conveyal.datatools.manager.models.Deployment;
@@ -13,11 +13,14 @@ import com.conveyal.datatools.manager.models.Note;
 import com.conveyal.datatools.manager.models.Project;
 import com.conveyal.datatools.manager.models.Snapshot;
 import com.conveyal.datatools.manager.persistence.Persistence;
+import com.conveyal.datatools.manager.persistence.TypedPersistence;
 import com.conveyal.datatools.manager.utils.json.JsonManager;
 import com.conveyal.gtfs.validator.ValidationResult;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.MongoCursor;
+import org.bson.conversions.Bson;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import spark.Request;
@@ -133,6 +136,10 @@ public class DumpController {
             LOG.info("loading version {}", feedVersion.id);
             Persistence.feedVersions.create(feedVersion);
         }
+        // The summaries stored on the loaded feed sources (if any) may not match the loaded versions.
+        for (FeedSource feedSource : db.feedSources) {
+            feedSource.updateLatestVersionSummary();
+        }
 
         for (Note note : db.notes) {
             LOG.info("loading note {}", note.id);
@@ -345,24 +352,27 @@ public class DumpController {
      */
     public static boolean validateAll (boolean load, boolean force, String filterFeedId) throws Exception {
         LOG.info("validating all feeds...");
-        Collection<FeedVersion> allVersions = Persistence.feedVersions.getAll();
-        for(FeedVersion version: allVersions) {
-            ValidationResult result = version.validationResult;
-            if(!force && result != null && result.fatalException != null) {
-                // If the force option is not true and the validation result did not fail, re-validate.
-                continue;
-            }
-            MonitorableJob job;
-            if (filterFeedId != null && !version.feedSourceId.equals(filterFeedId)) {
-                // Skip all feeds except Cortland for now.
-                continue;
-            }
-            if (load) {
-                job = new ProcessSingleFeedJob(version, "system", false);
-            } else {
-                job = new ValidateFeedJob(version, "system", false);
+        // Stream versions from a cursor (optionally filtered to a single feed source on the server) so that the
+        // entire feed version collection (with validation results) is never held in memory at once.
+        Bson filter = filterFeedId != null ? eq("feedSourceId", filterFeedId) : null;
+        try (MongoCursor<FeedVersion> allVersions = Persistence.feedVersions.iterate(
+            filter, null, null, 0, TypedPersistence.DEFAULT_BATCH_SIZE
+        )) {
+            while (allVersions.hasNext()) {
+                FeedVersion version = allVersions.next();
+                ValidationResult result = version.validationResult;
+                if(!force && result != null && result.fatalException != null) {
+                    // If the force option is not true and the validation result did not fail, re-validate.
+                    continue;
+                }
+                MonitorableJob job;
+                if (load) {
+                    job = new ProcessSingleFeedJob(version, "system", false);
+                } else {
+                    job = new ValidateFeedJob(version, "system", false);
+                }
+                JobQueue.execute(job);
             }
-            DataManager.heavyExecutor.execute(job);
         }
         // ValidateAllFeedsJob validateAllFeedsJob = new ValidateAllFeedsJob("system", force, load);
         return true;
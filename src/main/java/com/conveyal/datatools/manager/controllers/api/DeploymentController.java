@@ -29,7 +29,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
+import static com.conveyal.datatools.common.utils.SparkUtils.getPage;
+import static com.conveyal.datatools.common.utils.SparkUtils.isPaginated;
 import static com.conveyal.datatools.common.utils.SparkUtils.logMessageAndHalt;
+import static com.mongodb.client.model.Filters.eq;
 import static spark.Spark.delete;
 import static spark.Spark.get;
 import static spark.Spark.options;
@@ -116,6 +119,9 @@ public class DeploymentController {
             if (project == null) logMessageAndHalt(req, 400, "Must provide valid projectId value.");
             if (!userProfile.canAdministerProject(projectId, project.organizationId))
                 logMessageAndHalt(req, 401, "User not authorized to view project deployments.");
+            if (isPaginated(req)) {
+                return getPage(req, res, Persistence.deployments, eq("projectId", projectId), null, "_id", false);
+            }
             return project.retrieveDeployments();
         } else if (feedSourceId != null) {
             // Return test deployments for feed source (note: these only include test deployments specific to the feed
@@ -125,11 +131,15 @@ public class DeploymentController {
             Project project = feedSource.retrieveProject();
             if (!userProfile.canViewFeed(project.organizationId, project.id, feedSourceId))
                 logMessageAndHalt(req, 401, "User not authorized to view feed source deployments.");
+            if (isPaginated(req)) {
+                return getPage(req, res, Persistence.deployments, eq("feedSourceId", feedSourceId), null, "_id", false);
+            }
             return feedSource.retrieveDeployments();
         } else {
             // If no query parameter is supplied, return all deployments for application.
             if (!userProfile.canAdministerApplication())
                 logMessageAndHalt(req, 401, "User not authorized to view application deployments.");
+            if (isPaginated(req)) return getPage(req, res, Persistence.deployments, null, null, "_id", false);
             return Persistence.deployments.getAll();
         }
     }
@@ -1,5 +1,7 @@
 package com.conveyal.datatools.manager.controllers.api;
 
+import com.conveyal.datatools.common.status.JobQueue;
+import com.conveyal.datatools.common.status.MonitorableJob;
 import com.conveyal.datatools.manager.DataManager;
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
 import com.conveyal.datatools.manager.auth.Actions;
@@ -15,6 +17,7 @@ import com.conveyal.datatools.manager.utils.json.JsonManager;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.bson.Document;
+import org.bson.conversions.Bson;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import spark.Request;
@@ -24,12 +27,18 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import static com.conveyal.datatools.common.utils.SparkUtils.formatJobMessage;
+import static com.conveyal.datatools.common.utils.SparkUtils.getPage;
+import static com.conveyal.datatools.common.utils.SparkUtils.isPaginated;
 import static com.conveyal.datatools.common.utils.SparkUtils.logMessageAndHalt;
 import static com.conveyal.datatools.manager.auth.Auth0Users.getUserById;
 import static com.conveyal.datatools.manager.models.ExternalFeedSourceProperty.constructId;
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.ne;
 import static spark.Spark.delete;
 import static spark.Spark.get;
 import static spark.Spark.post;
@@ -50,56 +59,47 @@ public class FeedSourceController {
     }
 
     public static Collection<FeedSource> getAllFeedSources(Request req, Response res) {
-        Collection<FeedSource> feedSourcesToReturn = new ArrayList<>();
         Auth0UserProfile requestingUser = req.attribute("user");
         String projectId = req.queryParams("projectId");
         Boolean publicFilter = req.pathInfo().contains("public");
         String userId = req.queryParams("userId");
 
+        // Translate the request parameters and user permissions into a Mongo filter so that only the matching feed
+        // sources are read from the database.
+        List<Bson> filters = new ArrayList<>();
         if (projectId != null) {
-            for (FeedSource source: Persistence.feedSources.getAll()) {
-                String orgId = source.organizationId();
-                if (
-                    source != null && source.projectId != null && source.projectId.equals(projectId)
-                    && requestingUser != null && (requestingUser.canManageFeed(orgId, source.projectId, source.id) || requestingUser.canViewFeed(orgId, source.projectId, source.id))
-                ) {
-                    // if requesting public sources and source is not public; skip source
-                    if (publicFilter && !source.isPublic)
-                        continue;
-                    feedSourcesToReturn.add(source);
-                }
-            }
+            // Feed sources for a project are only returned to a logged in user.
+            if (requestingUser == null) return new ArrayList<>();
+            filters.add(eq("projectId", projectId));
+            addPermissionsFilter(filters, requestingUser);
+            // if requesting public sources, skip sources that are not public
+            if (publicFilter) filters.add(eq("isPublic", true));
         } else if (userId != null) {
             // request feed sources a specified user has permissions for
             Auth0UserProfile user = getUserById(userId);
-            if (user == null) return feedSourcesToReturn;
-
-            for (FeedSource source: Persistence.feedSources.getAll()) {
-                String orgId = source.organizationId();
-                if (
-                    source != null && source.projectId != null &&
-                    (user.canManageFeed(orgId, source.projectId, source.id) || user.canViewFeed(orgId, source.projectId, source.id))
-                ) {
-
-                    feedSourcesToReturn.add(source);
-                }
-            }
+            if (user == null) return new ArrayList<>();
+            filters.add(ne("projectId", null));
+            addPermissionsFilter(filters, user);
         } else {
             // request feed sources that are public
-            for (FeedSource source: Persistence.feedSources.getAll()) {
-                String orgId = source.organizationId();
-                // if user is logged in and cannot view feed; skip source
-                if ((requestingUser != null && !requestingUser.canManageFeed(orgId, source.projectId, source.id) && !requestingUser.canViewFeed(orgId, source.projectId, source.id)))
-                    continue;
-
-                // if requesting public sources and source is not public; skip source
-                if (publicFilter && !source.isPublic)
-                    continue;
-                feedSourcesToReturn.add(source);
-            }
+            // if user is logged in, skip sources the user cannot view
+            if (requestingUser != null) addPermissionsFilter(filters, requestingUser);
+            // if requesting public sources, skip sources that are not public
+            if (publicFilter) filters.add(eq("isPublic", true));
         }
+        Bson filter = filters.isEmpty() ? null : and(filters);
+        if (isPaginated(req)) return getPage(req, res, Persistence.feedSources, filter, null, "_id", false);
+        return filter == null
+            ? Persistence.feedSources.getAll()
+            : Persistence.feedSources.getFiltered(filter);
+    }
 
-        return feedSourcesToReturn;
+    /**
+     * Add the filter restricting feed sources to those the user can view or manage (unless the user can access all).
+     */
+    private static void addPermissionsFilter(List<Bson> filters, Auth0UserProfile user) {
+        Bson permissionsFilter = user.getFeedSourcesFilter();
+        if (permissionsFilter != null) filters.add(permissionsFilter);
     }
 
     /**
@@ -150,6 +150,9 @@ public class FeedSourceController {
             if (!fieldsToUpdate.get("url").toString().equals(formerFeedSource.url.toString())) {
                 LOG.info("Feed source fetch URL has been modified. Resetting lastFetched value from {} to {}", formerFeedSource.lastFetched, null);
                 fieldsToUpdate.put("lastFetched", null);
+                // The redirect target and the validators from fetching the former URL no longer apply.
+                fieldsToUpdate.put("fetchRedirectUrl", null);
+                fieldsToUpdate.put("lastFetchHash", null);
             }
         }
         FeedSource source = Persistence.feedSources.update(feedSourceId, fieldsToUpdate.toJson());
@@ -240,12 +243,13 @@ public class FeedSourceController {
         LOG.info("Fetching feed for source {}", s.name);
 
         Auth0UserProfile userProfile = req.attribute("user");
-        // Run in heavyExecutor because ProcessSingleFeedJob is chained to this job (if update finds new version).
+        // Fetch on the fetch executor. The ProcessSingleFeedJob that follows (if the fetch finds a new version) runs on
+        // the heavy executor.
         FetchSingleFeedJob fetchSingleFeedJob = new FetchSingleFeedJob(s, userProfile.getUser_id(), false);
-        DataManager.lightExecutor.execute(fetchSingleFeedJob);
+        MonitorableJob job = JobQueue.execute(fetchSingleFeedJob, DataManager.fetchExecutor);
 
         // Return the jobId so that the requester can track the job's progress.
-        return formatJobMessage(fetchSingleFeedJob.jobId, "Fetching latest feed source.");
+        return formatJobMessage(job.jobId, "Fetching latest feed source.");
     }
 
     /**
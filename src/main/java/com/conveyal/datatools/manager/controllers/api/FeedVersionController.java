@@ -1,5 +1,7 @@
 package com.conveyal.datatools.manager.controllers.api;
 
+import com.conveyal.datatools.common.status.JobQueue;
+import com.conveyal.datatools.common.status.MonitorableJob;
 import com.conveyal.datatools.common.utils.SparkUtils;
 import com.conveyal.datatools.manager.DataManager;
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
@@ -20,6 +22,7 @@ import com.conveyal.datatools.manager.utils.HashUtils;
 import com.conveyal.datatools.manager.utils.json.JsonManager;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import org.bson.conversions.Bson;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import spark.Request;
@@ -39,6 +42,8 @@ import static com.conveyal.datatools.common.utils.S3Utils.downloadFromS3;
 import static com.conveyal.datatools.common.utils.SparkUtils.copyRequestStreamIntoFile;
 import static com.conveyal.datatools.common.utils.SparkUtils.downloadFile;
 import static com.conveyal.datatools.common.utils.SparkUtils.formatJobMessage;
+import static com.conveyal.datatools.common.utils.SparkUtils.getPage;
+import static com.conveyal.datatools.common.utils.SparkUtils.isPaginated;
 import static com.conveyal.datatools.common.utils.SparkUtils.logMessageAndHalt;
 import static com.conveyal.datatools.manager.controllers.api.FeedSourceController.checkFeedSourcePermissions;
 import static com.mongodb.client.model.Filters.eq;
@@ -63,11 +68,21 @@ public class FeedVersionController  {
 
     /**
      * Get all feed versions for a given feedSource (whose ID is specified in the request).
+     * If you pass in ?summarized=true, only the fields needed for the validation summary are fetched from the database
+     * (the full validation and load results for a version can then be fetched lazily with GET /feedversion/:id).
+     * If you pass in ?limit=n, only one page of versions (newest first) is returned (see {@link SparkUtils#getPage}).
      */
     private static Collection<FeedVersion> getAllFeedVersionsForFeedSource(Request req, Response res) {
         // Check permissions and get the FeedSource whose FeedVersions we want.
         FeedSource feedSource = requestFeedSourceById(req, Actions.VIEW);
-        return feedSource.retrieveFeedVersions();
+        boolean summarized = Boolean.valueOf(req.queryParams("summarized"));
+        if (isPaginated(req)) {
+            Bson projection = summarized ? FeedVersion.SUMMARY_PROJECTION : null;
+            return getPage(req, res, Persistence.feedVersions, eq("feedSourceId", feedSource.id), projection, "version", true);
+        }
+        return summarized
+            ? feedSource.retrieveFeedVersionSummaries()
+            : feedSource.retrieveFeedVersions();
     }
 
     public static FeedSource requestFeedSourceById(Request req, Actions action, String paramName) {
@@ -105,7 +120,7 @@ public class FeedVersionController  {
         // FIXME: Make the creation of new GTFS files generic to handle other feed creation methods, including fetching
         // by URL and loading from the editor.
         File newGtfsFile = new File(DataManager.getConfigPropertyAsText("application.data.gtfs"), newFeedVersion.id);
-        copyRequestStreamIntoFile(req, newGtfsFile);
+        newFeedVersion.hash = copyRequestStreamIntoFile(req, newGtfsFile);
         // Set last modified based on value of query param. This is determined/supplied by the client
         // request because this data gets lost in the uploadStream otherwise.
         Long lastModified = req.queryParams("lastModified") != null
@@ -116,18 +131,21 @@ public class FeedVersionController  {
             newFeedVersion.fileTimestamp = lastModified;
         }
         LOG.info("Last modified: {}", new Date(newGtfsFile.lastModified()));
+        try {
+            // Move the file into the feed store (which may already hold identical content).
+            newGtfsFile = FeedVersion.feedStore.storeFeed(newFeedVersion.id, newGtfsFile, newFeedVersion.hash, null);
+        } catch (IOException e) {
+            logMessageAndHalt(req, 500, "Unable to store uploaded file.", e);
+        }
 
-        // TODO: fix FeedVersion.hash() call when called in this context. Nothing gets hashed because the file has not been saved yet.
-        // newFeedVersion.hash();
         newFeedVersion.fileSize = newGtfsFile.length();
-        newFeedVersion.hash = HashUtils.hashFile(newGtfsFile);
 
         // Check that the hashes of the feeds don't match, i.e. that the feed has changed since the last version.
         // (as long as there is a latest version, i.e. the feed source is not completely new)
-        if (latestVersion != null && latestVersion.hash.equals(newFeedVersion.hash)) {
+        if (latestVersion != null && HashUtils.matches(latestVersion.hash, newFeedVersion.hash, newGtfsFile)) {
             // Uploaded feed matches latest. Delete GTFS file because it is a duplicate.
             LOG.error("Upload version {} matches latest version {}.", newFeedVersion.id, latestVersion.id);
-            newGtfsFile.delete();
+            FeedVersion.feedStore.discardFeed(newFeedVersion.id, newGtfsFile);
             LOG.warn("File deleted");
 
             // There is no need to delete the newFeedVersion because it has not yet been persisted to MongoDB.
@@ -220,7 +238,8 @@ public class FeedVersionController  {
 
         if (DataManager.useS3) {
             // Return pre-signed download link if using S3.
-            return downloadFromS3(FeedStore.s3Client, DataManager.feedBucket, FeedStore.s3Prefix + version.id, false, res);
+            String key = FeedVersion.feedStore.getFeedS3Key(version.id);
+            return downloadFromS3(FeedStore.s3Client, DataManager.feedBucket, key, false, res);
         } else {
             // when feeds are stored locally, single-use download token will still be used
             FeedDownloadToken token = new FeedDownloadToken(version);
@@ -287,7 +306,12 @@ public class FeedVersionController  {
             feedIds,
             userProfile.getUser_id()
         );
-        DataManager.heavyExecutor.execute(gisExportJob);
+        MonitorableJob job = JobQueue.execute(gisExportJob);
+        if (job != gisExportJob) {
+            // The same export is already in progress for this user, whose download token was created with it.
+            temp.delete();
+            return SparkUtils.formatJobMessage(job.jobId, "Generating shapefile.");
+        }
         // Do not use S3 to store the file, which should only be stored ephemerally (until requesting
         // user has downloaded file).
         FeedDownloadToken token = new FeedDownloadToken(gisExportJob);
@@ -361,8 +385,8 @@ public class FeedVersionController  {
         // Kick off merge feeds job.
         Auth0UserProfile userProfile = req.attribute("user");
         MergeFeedsJob mergeFeedsJob = new MergeFeedsJob(userProfile.getUser_id(), versions, "merged", mergeType);
-        DataManager.heavyExecutor.execute(mergeFeedsJob);
-        return SparkUtils.formatJobMessage(mergeFeedsJob.jobId, "Merging feed versions...");
+        MonitorableJob job = JobQueue.execute(mergeFeedsJob);
+        return SparkUtils.formatJobMessage(job.jobId, "Merging feed versions...");
     }
 
     /**
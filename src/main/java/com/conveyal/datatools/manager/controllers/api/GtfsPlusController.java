@@ -8,7 +8,6 @@ import com.conveyal.datatools.manager.jobs.ProcessSingleFeedJob;
 import com.conveyal.datatools.manager.models.FeedVersion;
 import com.conveyal.datatools.manager.persistence.FeedStore;
 import com.conveyal.datatools.manager.persistence.Persistence;
-import com.conveyal.datatools.manager.utils.HashUtils;
 import com.conveyal.datatools.manager.utils.json.JsonUtil;
 import com.fasterxml.jackson.databind.JsonNode;
 import org.eclipse.jetty.http.HttpStatus;
@@ -190,8 +189,10 @@ public class GtfsPlusController {
                 // skip GTFS+ and non-standard tables
                 if (gtfsPlusTables.contains(entry.getName()) || entry.getName().startsWith("_")) continue;
 
-                // create a new empty ZipEntry and copy the contents
+                // create a new empty ZipEntry and copy the contents (keeping the original time, so that publishing
+                // the same tables again produces an identical file)
                 ZipEntry newEntry = new ZipEntry(entry.getName());
+                newEntry.setTime(entry.getTime());
                 zos.putNextEntry(newEntry);
                 InputStream in = gtfsFile.getInputStream(entry);
                 while (0 < in.available()){
@@ -209,6 +210,7 @@ public class GtfsPlusController {
                 final ZipEntry entry = plusEntries.nextElement();
 
                 ZipEntry newEntry = new ZipEntry(entry.getName());
+                newEntry.setTime(entry.getTime());
                 zos.putNextEntry(newEntry);
                 InputStream in = plusZipFile.getInputStream(entry);
                 while (0 < in.available()){
@@ -230,6 +232,8 @@ public class GtfsPlusController {
         } catch (IOException e) {
             e.printStackTrace();
             logMessageAndHalt(req, 500, "Error reading GTFS file input stream", e);
+        } finally {
+            newFeed.delete();
         }
         if (newGtfsFile == null) {
             logMessageAndHalt(req, 500, "GTFS input file must not be null");
@@ -238,7 +242,6 @@ public class GtfsPlusController {
         newFeedVersion.originNamespace = feedVersion.namespace;
         newFeedVersion.fileTimestamp = newGtfsFile.lastModified();
         newFeedVersion.fileSize = newGtfsFile.length();
-        newFeedVersion.hash = HashUtils.hashFile(newGtfsFile);
 
         // Must be handled by executor because it takes a long time.
         ProcessSingleFeedJob processSingleFeedJob = new ProcessSingleFeedJob(newFeedVersion, profile.getUser_id(), true);
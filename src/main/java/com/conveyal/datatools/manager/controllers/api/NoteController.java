@@ -16,10 +16,15 @@ import spark.Response;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 
+import static com.conveyal.datatools.common.utils.SparkUtils.getPage;
+import static com.conveyal.datatools.common.utils.SparkUtils.isPaginated;
 import static com.conveyal.datatools.common.utils.SparkUtils.logMessageAndHalt;
 import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
 import static com.mongodb.client.model.Updates.push;
 import static spark.Spark.get;
 import static spark.Spark.post;
@@ -75,6 +80,10 @@ public class NoteController {
         String orgId = s.organizationId();
         // check if the user has permission
         if (userProfile.canAdministerProject(s.projectId, orgId) || userProfile.canViewFeed(orgId, s.projectId, s.id)) {
+            if (isPaginated(req)) {
+                List<String> noteIds = model.noteIds != null ? model.noteIds : Collections.emptyList();
+                return getPage(req, res, Persistence.notes, in("_id", noteIds), null, "date", false);
+            }
             return model.retrieveNotes();
         }
         else {
@@ -139,6 +148,7 @@ public class NoteController {
             // TODO: figure out a cleaner way to handle this update
             if (objectWithNote instanceof FeedSource) {
                 Persistence.feedSources.getMongoCollection().updateOne(eq(objectWithNote.id), push("noteIds", note.id));
+                Persistence.feedSources.invalidate(objectWithNote.id);
             } else {
                 Persistence.feedVersions.getMongoCollection().updateOne(eq(objectWithNote.id), push("noteIds", note.id));
             }
@@ -1,5 +1,7 @@
 package com.conveyal.datatools.manager.controllers.api;
 
+import com.conveyal.datatools.common.status.JobQueue;
+import com.conveyal.datatools.common.status.MonitorableJob;
 import com.conveyal.datatools.common.utils.Scheduler;
 import com.conveyal.datatools.manager.DataManager;
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
@@ -15,6 +17,7 @@ import com.conveyal.datatools.manager.persistence.FeedStore;
 import com.conveyal.datatools.manager.persistence.Persistence;
 import com.conveyal.datatools.manager.utils.json.JsonManager;
 import org.bson.Document;
+import org.bson.conversions.Bson;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import spark.Request;
@@ -31,6 +34,8 @@ import static com.conveyal.datatools.common.utils.SparkUtils.formatJobMessage;
 import static com.conveyal.datatools.common.utils.SparkUtils.logMessageAndHalt;
 import static com.conveyal.datatools.manager.DataManager.publicPath;
 import static com.conveyal.datatools.manager.jobs.MergeFeedsType.REGIONAL;
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
 import static spark.Spark.delete;
 import static spark.Spark.get;
 import static spark.Spark.post;
@@ -55,9 +60,12 @@ public class ProjectController {
      */
     private static Collection<Project> getAllProjects(Request req, Response res) {
         Auth0UserProfile userProfile = req.attribute("user");
-        // TODO: move this filtering into database query to reduce traffic / memory
-        return Persistence.projects.getAll().stream()
-                .filter(p -> req.pathInfo().matches(publicPath) || userProfile.hasProject(p.id, p.organizationId))
+        // Only fetch the projects the user has access to (all projects are returned for the public path).
+        Bson filter = req.pathInfo().matches(publicPath) ? null : userProfile.getProjectsFilter();
+        Collection<Project> projects = filter == null
+            ? Persistence.projects.getAll()
+            : Persistence.projects.getFiltered(filter);
+        return projects.stream()
                 .map(p -> checkProjectPermissions(req, p, "view"))
                 .collect(Collectors.toList());
     }
@@ -200,9 +208,9 @@ public class ProjectController {
 
         // If the user is not logged in, include only public feed sources
         if (publicFilter){
-            project.feedSources = project.retrieveProjectFeedSources().stream()
-                    .filter(fs -> fs.isPublic)
-                    .collect(Collectors.toList());
+            project.feedSources = Persistence.feedSources.getFiltered(
+                and(eq("projectId", project.id), eq("isPublic", true))
+            );
         } else {
             project.feedSources = null;
             if (!authorized) {
@@ -239,9 +247,9 @@ public class ProjectController {
             feedVersions.add(version);
         }
         MergeFeedsJob mergeFeedsJob = new MergeFeedsJob(userProfile.getUser_id(), feedVersions, project.id, REGIONAL);
-        DataManager.heavyExecutor.execute(mergeFeedsJob);
+        MonitorableJob job = JobQueue.execute(mergeFeedsJob);
         // Return job ID to requester for monitoring job status.
-        return formatJobMessage(mergeFeedsJob.jobId, "Merge operation is processing.");
+        return formatJobMessage(job.jobId, "Merge operation is processing.");
     }
 
     /**
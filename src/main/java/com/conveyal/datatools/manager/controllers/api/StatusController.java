@@ -1,23 +1,32 @@
 package com.conveyal.datatools.manager.controllers.api;
 
+import com.conveyal.datatools.common.metrics.Metrics;
+import com.conveyal.datatools.common.status.JobQueue;
+import com.conveyal.datatools.common.status.JobStatusEvents;
 import com.conveyal.datatools.common.status.MonitorableJob;
 import com.conveyal.datatools.manager.DataManager;
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
 import com.conveyal.datatools.manager.models.JsonViews;
 import com.conveyal.datatools.manager.utils.json.JsonManager;
-import com.google.common.collect.Sets;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import spark.Request;
 import spark.Response;
 
-import java.util.Arrays;
-import java.util.Collection;
-import java.util.Collections;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import static com.conveyal.datatools.common.utils.SparkUtils.formatJobMessage;
 import static com.conveyal.datatools.common.utils.SparkUtils.logMessageAndHalt;
+import static spark.Spark.delete;
 import static spark.Spark.get;
 
 /**
@@ -29,6 +38,42 @@ public class StatusController {
     public static JsonManager<MonitorableJob.Status> json =
             new JsonManager<>(MonitorableJob.Status.class, JsonViews.UserInterface.class);
 
+    /** Response header containing the latest job status version, for use as the since parameter when polling. */
+    public static final String STATUS_VERSION_HEADER = "X-Status-Version";
+    /** How long a job status stream is held open before the client must reconnect (resuming from its last event). */
+    private static final long STREAM_DURATION_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    /** How often a comment is sent on an idle job status stream, so that proxies do not close the connection. */
+    private static final long STREAM_HEARTBEAT_MILLIS = TimeUnit.SECONDS.toMillis(15);
+    /** How long a client should wait before reconnecting to a closed job status stream. */
+    private static final long STREAM_RETRY_MILLIS = TimeUnit.SECONDS.toMillis(3);
+    /**
+     * Each open job status stream holds a request thread, so the number of streams is limited (beyond which clients
+     * must poll). The limits may be set in the server config:
+     * <pre>
+     * application:
+     *   job_status_streams:
+     *     max_concurrent: 50
+     *     max_per_user: 2
+     * </pre>
+     */
+    private static final String STREAM_CONFIG_PREFIX = "application.job_status_streams.";
+    private static final int MAX_STREAMS = DataManager.hasConfigProperty(STREAM_CONFIG_PREFIX + "max_concurrent")
+        ? DataManager.getConfigProperty(STREAM_CONFIG_PREFIX + "max_concurrent").asInt()
+        : 50;
+    private static final int MAX_STREAMS_PER_USER = DataManager.hasConfigProperty(STREAM_CONFIG_PREFIX + "max_per_user")
+        ? DataManager.getConfigProperty(STREAM_CONFIG_PREFIX + "max_per_user").asInt()
+        : 2;
+    /** Open job status streams by user ID (guarded by itself). */
+    private static final Map<String, Integer> streamsByUser = new HashMap<>();
+
+    private static final JobStatusEvents jobStatusEvents = new JobStatusEvents(job -> {
+        try {
+            return json.write(job);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+    });
+
     // TODO: Admin API route to return active jobs for all application users.
     private static Set<MonitorableJob> getAllJobsRoute(Request req, Response res) {
         Auth0UserProfile userProfile = req.attribute("user");
@@ -39,9 +84,7 @@ public class StatusController {
     }
 
     public static Set<MonitorableJob> getAllJobs() {
-        return DataManager.userJobsMap.values().stream()
-                .flatMap(Collection::stream)
-                .collect(Collectors.toSet());
+        return DataManager.jobRegistry.getAll();
     }
 
     /**
@@ -60,77 +103,244 @@ public class StatusController {
      * @param clearCompleted if true, remove requested job if it has completed or errored
      */
     public static MonitorableJob getJobById(String userId, String jobId, boolean clearCompleted) {
-        // Get jobs set directly from userJobsMap because we may remove an element from it below.
-        Set<MonitorableJob> userJobs = DataManager.userJobsMap.get(userId);
-        if (userJobs == null) {
+        MonitorableJob job = DataManager.jobRegistry.get(jobId);
+        // Only return jobs belonging to (or shared with) the user (the job may also not be found because it doesn't
+        // exist or was completed).
+        if (job == null || !DataManager.jobRegistry.isVisibleTo(job, userId)) {
             return null;
         }
-        for (MonitorableJob job : userJobs) {
-            if (job.jobId.equals(jobId)) {
-                if (clearCompleted && (job.status.completed || job.status.error)) {
-                    // remove job if completed or errored
-                    userJobs.remove(job);
-                }
-                return job;
-            }
+        if (clearCompleted && isFinished(job)) {
+            // remove job if completed or errored
+            DataManager.jobRegistry.removeForOwner(job, userId);
         }
-        // if job is not found (because it doesn't exist or was completed).
-        return null;
+        return job;
     }
 
     /**
-     * API route that returns a set of active jobs for the currently authenticated user.
+     * API route that cancels a job belonging to the currently authenticated user (or any job, for application admins).
+     * Cancellation is cooperative, so the job may take a moment to stop (see {@link MonitorableJob#requestCancellation}).
+     */
+    private static String cancelJobRoute(Request req, Response res) {
+        String jobId = req.params("jobId");
+        Auth0UserProfile userProfile = req.attribute("user");
+        MonitorableJob job = DataManager.jobRegistry.get(jobId);
+        if (job == null || (!job.owner.equals(userProfile.getUser_id()) && !userProfile.canAdministerApplication())) {
+            logMessageAndHalt(req, 404, "Job not found.");
+        }
+        if (job.status.completed) {
+            logMessageAndHalt(req, 400, "Job has already finished.");
+        }
+        LOG.info("User {} cancelling job {} ({})", userProfile.getEmail(), jobId, job.type);
+        JobQueue.cancel(job);
+        return formatJobMessage(jobId, "Cancelling job.");
+    }
+
+    /**
+     * API route that returns a set of active jobs for the currently authenticated user. If the since query parameter
+     * is supplied, only jobs whose status has changed since that version are returned. The version to supply in the
+     * next request is returned in the {@link #STATUS_VERSION_HEADER} response header (and the version of each job's
+     * status is included in the job's status).
      */
     public static Set<MonitorableJob> getUserJobsRoute(Request req, Response res) {
         Auth0UserProfile userProfile = req.attribute("user");
         // FIXME: refactor underscore in user_id methods
         String userId = userProfile.getUser_id();
-        // Get a copy of all existing jobs before we purge the completed ones.
-        return getJobsByUserId(userId, true);
+        // Get the version before the jobs, so that any status published in between is returned again next time.
+        res.header(STATUS_VERSION_HEADER, Long.toString(jobStatusEvents.lastSequence()));
+        String since = req.queryParams("since");
+        if (since == null) {
+            // Get a copy of all existing jobs before we purge the completed ones.
+            return getJobsByUserId(userId, true);
+        }
+        long sinceVersion = 0;
+        try {
+            sinceVersion = Long.parseLong(since);
+        } catch (NumberFormatException e) {
+            logMessageAndHalt(req, 400, "since must be a status version number");
+        }
+        return getJobsChangedSince(userId, sinceVersion);
+    }
+
+    /**
+     * API route that streams the jobs of the currently authenticated user as server-sent events. The stream begins with
+     * a "jobs" event containing all of the user's jobs, followed by a "job" event containing a job each time its status
+     * changes. Each event has a sequence number as its ID; a client that reconnects with the Last-Event-ID header (or
+     * lastEventId query parameter) receives only the events it missed (or, if those are no longer available, another
+     * "jobs" event). Unlike {@link #getUserJobsRoute}, finished jobs are not removed once sent (they are evicted by the
+     * {@link com.conveyal.datatools.common.status.JobRegistry}).
+     *
+     * Note: the stream requires the same Authorization header as other secure routes, so clients must read it with
+     * fetch rather than EventSource. Clients that cannot stream should continue to poll {@link #getUserJobsRoute}, as
+     * should clients refused a stream (with a 503 response) because too many are open.
+     */
+    private static HttpServletResponse streamUserJobsRoute(Request req, Response res) {
+        Auth0UserProfile userProfile = req.attribute("user");
+        String userId = userProfile.getUser_id();
+        if (!openStream(userId)) {
+            res.header("Retry-After", Long.toString(TimeUnit.MILLISECONDS.toSeconds(STREAM_DURATION_MILLIS)));
+            logMessageAndHalt(req, 503, "Too many job status streams are open. Poll for job status instead.");
+        }
+        try {
+            return streamUserJobs(req, res, userId);
+        } finally {
+            closeStream(userId);
+        }
+    }
+
+    /** Count a new stream for the user, returning false if the user or server already has the maximum open. */
+    private static boolean openStream(String userId) {
+        synchronized (streamsByUser) {
+            int userStreams = streamsByUser.getOrDefault(userId, 0);
+            int streams = streamsByUser.values().stream().mapToInt(Integer::intValue).sum();
+            if (userStreams >= MAX_STREAMS_PER_USER || streams >= MAX_STREAMS) return false;
+            streamsByUser.put(userId, userStreams + 1);
+            return true;
+        }
+    }
+
+    private static void closeStream(String userId) {
+        synchronized (streamsByUser) {
+            int userStreams = streamsByUser.get(userId) - 1;
+            if (userStreams > 0) streamsByUser.put(userId, userStreams);
+            else streamsByUser.remove(userId);
+        }
+    }
+
+    private static HttpServletResponse streamUserJobs(Request req, Response res, String userId) {
+        long sequence = lastEventId(req);
+        HttpServletResponse raw = res.raw();
+        raw.setContentType("text/event-stream");
+        raw.setHeader("Cache-Control", "no-cache");
+        // Override the gzip content encoding applied to standard API responses, which would buffer events.
+        res.header("Content-Encoding", "identity");
+        long streamEnd = System.currentTimeMillis() + STREAM_DURATION_MILLIS;
+        try {
+            ServletOutputStream outputStream = raw.getOutputStream();
+            writeEvent(outputStream, String.format("retry: %d\n\n", STREAM_RETRY_MILLIS));
+            if (sequence < 0) sequence = writeAllJobs(outputStream, userId, jobStatusEvents.lastSequence());
+            while (System.currentTimeMillis() < streamEnd) {
+                JobStatusEvents.Update update = jobStatusEvents.awaitEvents(userId, sequence, STREAM_HEARTBEAT_MILLIS);
+                if (update.events == null) {
+                    sequence = writeAllJobs(outputStream, userId, update.sequence);
+                    continue;
+                }
+                if (update.events.isEmpty() && update.sequence == sequence) writeEvent(outputStream, ": heartbeat\n\n");
+                for (JobStatusEvents.Event event : update.events) {
+                    writeEvent(outputStream, String.format("id: %d\nevent: job\ndata: %s\n\n", event.sequence, event.data));
+                }
+                sequence = update.sequence;
+            }
+        } catch (IOException e) {
+            // The client has disconnected.
+            LOG.debug("Job status stream for {} closed", userId);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return raw;
+    }
+
+    /**
+     * Get the sequence number of the last event received by a reconnecting client, or -1 if the client has not
+     * received any.
+     */
+    private static long lastEventId(Request req) {
+        String lastEventId = req.headers("Last-Event-ID");
+        if (lastEventId == null) lastEventId = req.queryParams("lastEventId");
+        if (lastEventId == null) return -1;
+        try {
+            return Long.parseLong(lastEventId);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /** Write an event containing all of the user's jobs, returning the sequence number to resume from. */
+    private static long writeAllJobs(ServletOutputStream outputStream, String userId, long sequence) throws IOException {
+        String jobs = json.write(getJobsByUserId(userId, false));
+        writeEvent(outputStream, String.format("id: %d\nevent: jobs\ndata: %s\n\n", sequence, jobs));
+        return sequence;
+    }
+
+    private static void writeEvent(ServletOutputStream outputStream, String event) throws IOException {
+        outputStream.write(event.getBytes(StandardCharsets.UTF_8));
+        outputStream.flush();
     }
 
     public static Set<MonitorableJob> filterJobsByType (MonitorableJob.JobType ...jobType) {
-        return getAllJobs().stream()
-                .filter(job -> Arrays.asList(jobType).contains(job.type))
-                .collect(Collectors.toSet());
+        return DataManager.jobRegistry.getByType(jobType);
     }
 
     /**
-     * Get set of active jobs by user ID.
+     * Get set of jobs by user ID.
      *
-     * @param clearCompleted if true, remove all completed and errored jobs for this user.
+     * @param clearCompleted if true, remove all completed and errored jobs for this user (after they are returned).
      */
     private static Set<MonitorableJob> getJobsByUserId(String userId, boolean clearCompleted) {
-        Set<MonitorableJob> allJobsForUser = DataManager.userJobsMap.get(userId);
-        if (allJobsForUser == null) {
-            return Collections.EMPTY_SET;
-        }
+        Set<MonitorableJob> allJobsForUser = DataManager.jobRegistry.getByOwner(userId);
         if (clearCompleted) {
             // Any active jobs will still have their status updated, so they need to be retrieved again with any status
             // updates. All completed or errored jobs are in their final state and will not be updated any longer, so we
             // remove them once the client has seen them.
-            Set<MonitorableJob> jobsStillActive = filterActiveJobs(allJobsForUser);
-
-            DataManager.userJobsMap.put(userId, jobsStillActive);
+            allJobsForUser.stream()
+                .filter(StatusController::isFinished)
+                .forEach(job -> DataManager.jobRegistry.removeForOwner(job, userId));
         }
         return allJobsForUser;
     }
 
+    /**
+     * Get the user's jobs whose status has changed since the given version (a job whose status has not been published
+     * yet will be returned once it has). As for {@link #getJobsByUserId}, completed and errored jobs are removed once
+     * they have been returned.
+     */
+    private static Set<MonitorableJob> getJobsChangedSince(String userId, long version) {
+        Set<MonitorableJob> changedJobs = DataManager.jobRegistry.getByOwner(userId).stream()
+            .filter(job -> job.statusSnapshot().version > version)
+            .collect(Collectors.toSet());
+        changedJobs.stream()
+            .filter(StatusController::isFinished)
+            .forEach(job -> DataManager.jobRegistry.removeForOwner(job, userId));
+        return changedJobs;
+    }
+
+    /**
+     * Whether the job has completed or errored according to its published status (i.e., the status the client will
+     * see), so that it may be removed once returned.
+     */
+    private static boolean isFinished(MonitorableJob job) {
+        MonitorableJob.Status status = job.statusSnapshot();
+        return status.completed || status.error;
+    }
+
+    /**
+     * API route that returns the server's metrics (job timings, queue depths and connection pool usage) in the
+     * Prometheus text format, for scraping by a monitoring system.
+     */
+    private static String getMetricsRoute(Request req, Response res) {
+        res.type("text/plain; version=0.0.4");
+        return Metrics.scrape();
+    }
+
     public static Set<MonitorableJob> filterActiveJobs(Set<MonitorableJob> jobs) {
-        // Note: this must be a thread-safe set in case it is placed into the DataManager#userJobsMap.
-        Set<MonitorableJob> jobsStillActive = Sets.newConcurrentHashSet();
-        jobs.stream()
+        return jobs.stream()
                 .filter(job -> !job.status.completed && !job.status.error)
-                .forEach(jobsStillActive::add);
-        return jobsStillActive;
+                .collect(Collectors.toSet());
     }
 
     public static void register (String apiPrefix) {
+        jobStatusEvents.start();
 
         // These endpoints return all jobs for the current user, all application jobs, or a specific job
         get(apiPrefix + "secure/status/jobs", StatusController::getUserJobsRoute, json::write);
         // FIXME Change endpoint for all jobs (to avoid overlap with jobId param)?
         get(apiPrefix + "secure/status/jobs/all", StatusController::getAllJobsRoute, json::write);
+        // Streams changes to the current user's jobs (the endpoints above remain available for polling).
+        get(apiPrefix + "secure/status/jobs/stream", StatusController::streamUserJobsRoute);
         get(apiPrefix + "secure/status/jobs/:jobId", StatusController::getOneJobRoute, json::write);
+        delete(apiPrefix + "secure/status/jobs/:jobId", StatusController::cancelJobRoute, json::write);
+        // Metrics are unauthenticated (so that they can be scraped), so they are only served if enabled.
+        if ("true".equals(DataManager.getConfigPropertyAsText("application.metrics_enabled"))) {
+            get(apiPrefix + "public/metrics", StatusController::getMetricsRoute);
+        }
     }
 }
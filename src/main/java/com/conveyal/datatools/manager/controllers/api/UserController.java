@@ -36,7 +36,10 @@ import java.net.URLEncoder;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -250,10 +253,8 @@ public class UserController {
         for (Auth0UserProfile.Subscription sub : subscriptions) {
             switch (sub.getType()) {
                 case "feed-updated":
-                    for (String targetId : sub.getTarget()) {
-                        FeedSource fs = Persistence.feedSources.getById(targetId);
-                        if (fs == null) continue;
-
+                    // Fetch all subscribed feed sources at once, skipping any that don't resolve to actual feed sources
+                    for (FeedSource fs : Persistence.feedSources.getByIds(Arrays.asList(sub.getTarget()))) {
                         // FeedSource comments
                         for (Note note : fs.retrieveNotes()) {
                             ZonedDateTime datePosted = toZonedDateTime(note.date);
@@ -261,8 +262,19 @@ public class UserController {
                             activityList.add(new FeedSourceCommentActivity(note, fs));
                         }
 
+                        Collection<FeedVersion> versions = fs.retrieveFeedVersions();
+                        // Fetch the comments for all of this feed's versions in a single query.
+                        List<String> versionNoteIds = new ArrayList<>();
+                        for (FeedVersion version : versions) {
+                            if (version.noteIds != null) versionNoteIds.addAll(version.noteIds);
+                        }
+                        Map<String, Note> versionNotesById = new HashMap<>();
+                        for (Note note : Persistence.notes.getByIds(versionNoteIds)) {
+                            versionNotesById.put(note.id, note);
+                        }
+
                         // Iterate through this Feed's FeedVersions
-                        for(FeedVersion version : fs.retrieveFeedVersions()) {
+                        for(FeedVersion version : versions) {
                             // FeedVersion creation event
                             ZonedDateTime dateCreated = toZonedDateTime(fs.dateCreated);
                             if (dateCreated.isAfter(from) && dateCreated.isBefore(to)) {
@@ -270,7 +282,10 @@ public class UserController {
                             }
 
                             // FeedVersion comments
-                            for (Note note : version.retrieveNotes()) {
+                            if (version.noteIds == null) continue;
+                            for (String noteId : version.noteIds) {
+                                Note note = versionNotesById.get(noteId);
+                                if (note == null) continue;
                                 ZonedDateTime datePosted = toZonedDateTime(note.date);
                                 if (datePosted.isBefore(from) || datePosted.isAfter(to)) continue;
                                 activityList.add(new FeedVersionCommentActivity(note, fs, version));
@@ -281,9 +296,7 @@ public class UserController {
 
                 case "project-updated":
                     // Iterate through Project IDs, skipping any that don't resolve to actual projects
-                    for (String targetId : sub.getTarget()) {
-                        Project proj = Persistence.projects.getById(targetId);
-                        if (proj == null) continue;
+                    for (Project proj : Persistence.projects.getByIds(Arrays.asList(sub.getTarget()))) {
 
                         // Iterate through Project's FeedSources, creating "Feed created" items as needed
                         for (FeedSource fs : proj.retrieveProjectFeedSources()) {
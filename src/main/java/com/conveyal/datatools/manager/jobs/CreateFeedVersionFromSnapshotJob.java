@@ -22,7 +22,7 @@ public class CreateFeedVersionFromSnapshotJob extends MonitorableJob {
         super(owner, "Creating Feed Version from Snapshot for " + feedVersion.parentFeedSource().name, JobType.CREATE_FEEDVERSION_FROM_SNAPSHOT);
         this.feedVersion = feedVersion;
         this.snapshot = snapshot;
-        status.message = "Initializing...";
+        status.setMessage("Initializing...");
     }
 
     @Override
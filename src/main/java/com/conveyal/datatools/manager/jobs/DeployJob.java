@@ -58,8 +58,8 @@ public class DeployJob extends MonitorableJob {
     /** Temporary file that contains the deployment data */
     private File deploymentTempFile;
 
-    /** This hides the status field on the parent class, providing additional fields. */
-    public DeployStatus status;
+    /** The status of this job (the same object as the status field on the parent class), with additional fields. */
+    private final DeployStatus deployStatus;
 
     @JsonProperty
     public String getDeploymentId () {
@@ -72,11 +72,14 @@ public class DeployJob extends MonitorableJob {
         this.deployment = deployment;
         this.otpServer = otpServer;
         // Use a special subclass of status here that has additional fields
-        this.status = new DeployStatus();
-        status.message = "Initializing...";
-        status.built = false;
-        status.numServersCompleted = 0;
-        status.totalServers = otpServer.internalUrl == null ? 0 : otpServer.internalUrl.size();
+        this.deployStatus = new DeployStatus();
+        this.status = deployStatus;
+        deployStatus.apply(() -> {
+            deployStatus.message = "Initializing...";
+            deployStatus.built = false;
+            deployStatus.numServersCompleted = 0;
+            deployStatus.totalServers = otpServer.internalUrl == null ? 0 : otpServer.internalUrl.size();
+        });
     }
 
     public void jobLogic () {
@@ -99,7 +102,7 @@ public class DeployJob extends MonitorableJob {
 
         // Dump the deployment bundle to the temp file.
         try {
-            status.message = "Creating OTP Bundle";
+            status.setMessage("Creating OTP Bundle");
             this.deployment.dump(deploymentTempFile, true, true, true);
             tasksCompleted++;
         } catch (Exception e) {
@@ -110,9 +113,13 @@ public class DeployJob extends MonitorableJob {
             return;
         }
 
-        status.percentComplete = 100.0 * (double) tasksCompleted / totalTasks;
-        LOG.info("Deployment pctComplete = {}", status.percentComplete);
-        status.built = true;
+        double percentComplete = 100.0 * (double) tasksCompleted / totalTasks;
+        deployStatus.apply(() -> {
+            deployStatus.percentComplete = percentComplete;
+            deployStatus.built = true;
+        });
+        LOG.info("Deployment pctComplete = {}", percentComplete);
+        checkCancellation();
 
         // Upload to S3, if applicable
         if(otpServer.s3Bucket != null) {
@@ -122,8 +129,10 @@ public class DeployJob extends MonitorableJob {
                 status.fail(message);
                 return;
             }
-            status.message = "Uploading to S3";
-            status.uploadingS3 = true;
+            deployStatus.apply(() -> {
+                deployStatus.message = "Uploading to S3";
+                deployStatus.uploadingS3 = true;
+            });
             LOG.info("Uploading deployment {} to s3", deployment.name);
             String key = null;
             try {
@@ -132,7 +141,8 @@ public class DeployJob extends MonitorableJob {
                 final Upload upload = tx.upload(otpServer.s3Bucket, key, deploymentTempFile);
 
                 upload.addProgressListener((ProgressListener) progressEvent -> {
-                    status.percentUploaded = upload.getProgress().getPercentTransferred();
+                    double percentUploaded = upload.getProgress().getPercentTransferred();
+                    deployStatus.apply(() -> deployStatus.percentUploaded = percentUploaded);
                 });
 
                 upload.waitForCompletion();
@@ -155,12 +165,12 @@ public class DeployJob extends MonitorableJob {
                 return;
             }
 
-            status.uploadingS3 = false;
+            deployStatus.apply(() -> deployStatus.uploadingS3 = false);
         }
 
         // If there are no OTP targets (i.e. we're only deploying to S3), we're done.
         if(otpServer.internalUrl == null) {
-            status.completed = true;
+            status.setCompleted(true);
             return;
         }
 
@@ -169,9 +179,14 @@ public class DeployJob extends MonitorableJob {
 
         // Send the deployment file over the wire to each OTP server.
         for (String rawUrl : otpServer.internalUrl) {
-            status.message = "Deploying to " + rawUrl;
-            status.uploading = true;
-            LOG.info(status.message);
+            // Note: servers that have already received the bundle keep it if the job is cancelled.
+            checkCancellation();
+            String deployingMessage = "Deploying to " + rawUrl;
+            status.apply(() -> {
+                status.message = deployingMessage;
+                status.uploading = true;
+            });
+            LOG.info(deployingMessage);
 
             URL url;
             try {
@@ -182,8 +197,7 @@ public class DeployJob extends MonitorableJob {
 
                 // do not set percentComplete to 100 because we continue to the next server
                 // TODO: should this return instead so that the job is cancelled?
-                status.error = true;
-                status.message = statusMessage;
+                status.update(true, statusMessage, status.percentComplete);
                 continue;
             }
 
@@ -197,8 +211,7 @@ public class DeployJob extends MonitorableJob {
 
                 // do not set percentComplete to 100 because we continue to the next server
                 // TODO: should this return instead so that the job is cancelled?
-                status.error = true;
-                status.message = statusMessage;
+                status.update(true, statusMessage, status.percentComplete);
                 continue;
             }
 
@@ -267,7 +280,7 @@ public class DeployJob extends MonitorableJob {
                 LOG.warn("Could not close input stream for deployment file.");
             }
 
-            status.uploading = false;
+            status.setUploading(false);
 
             // wait for the server to build the graph
             // TODO: timeouts?
@@ -296,13 +309,25 @@ public class DeployJob extends MonitorableJob {
                 status.fail(statusMessage);
             }
 
-            status.numServersCompleted++;
             tasksCompleted++;
-            status.percentComplete = 100.0 * (double) tasksCompleted / totalTasks;
+            double serverPercentComplete = 100.0 * (double) tasksCompleted / totalTasks;
+            deployStatus.apply(() -> {
+                deployStatus.numServersCompleted++;
+                deployStatus.percentComplete = serverPercentComplete;
+            });
         }
 
-        status.completed = true;
-        status.baseUrl = otpServer.publicUrl;
+        deployStatus.apply(() -> {
+            deployStatus.completed = true;
+            deployStatus.baseUrl = otpServer.publicUrl;
+        });
+    }
+
+    @Override
+    public void jobCancelled () {
+        if (deploymentTempFile != null && deploymentTempFile.exists() && !deploymentTempFile.delete()) {
+            LOG.error("Deployment {} not deleted! Disk space in danger of filling up.", deployment.id);
+        }
     }
 
     @Override
@@ -336,22 +361,22 @@ public class DeployJob extends MonitorableJob {
     public static class DeployStatus extends Status {
         private static final long serialVersionUID = 1L;
         /** Did the manager build the bundle successfully */
-        public boolean built;
+        public volatile boolean built;
 
         /** Is the bundle currently being uploaded to an S3 bucket? */
-        public boolean uploadingS3;
+        public volatile boolean uploadingS3;
 
         /** How much of the bundle has been uploaded? */
-        public double percentUploaded;
+        public volatile double percentUploaded;
 
         /** To how many servers have we successfully deployed thus far? */
-        public int numServersCompleted;
+        public volatile int numServersCompleted;
 
         /** How many servers are we attempting to deploy to? */
-        public int totalServers;
+        public volatile int totalServers;
 
         /** Where can the user see the result? */
-        public String baseUrl;
+        public volatile String baseUrl;
 
     }
 }
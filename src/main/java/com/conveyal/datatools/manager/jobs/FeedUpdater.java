@@ -16,8 +16,8 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
+import java.security.DigestInputStream;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.Date;
@@ -198,18 +198,18 @@ public class FeedUpdater {
         String filename = keyName.split("/")[1];
         String feedId = filename.replace(".zip", "");
         S3Object object = FeedStore.s3Client.getObject(feedBucket, keyName);
-        InputStream in = object.getObjectContent();
+        DigestInputStream in = HashUtils.hashingStream(object.getObjectContent());
         File file = new File(FeedStore.basePath, filename);
         OutputStream out = new FileOutputStream(file);
         ByteStreams.copy(in, out);
-        String md5 = HashUtils.hashFile(file);
+        String hash = HashUtils.hashOf(in);
         Collection<FeedVersion> versions = feedSource.retrieveFeedVersions();
-        LOG.info("Searching for md5 {} across {} versions for {} ({})", md5, versions.size(), feedSource.name, feedSource.id);
+        LOG.info("Searching for hash {} across {} versions for {} ({})", hash, versions.size(), feedSource.name, feedSource.id);
         FeedVersion matchingVersion = null;
         int count = 0;
         for (FeedVersion feedVersion : versions) {
-            LOG.info("version {} md5: {}", count++, feedVersion.hash);
-            if (feedVersion.hash.equals(md5)) {
+            LOG.info("version {} hash: {}", count++, feedVersion.hash);
+            if (HashUtils.matches(feedVersion.hash, hash, file)) {
                 matchingVersion = feedVersion;
                 LOG.info("Found local version that matches latest file on S3  (SQL namespace={})", feedVersion.namespace);
                 if (!feedVersion.namespace.equals(feedSource.publishedVersionId)) {
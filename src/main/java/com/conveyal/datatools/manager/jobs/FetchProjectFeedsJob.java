@@ -1,5 +1,6 @@
 package com.conveyal.datatools.manager.jobs;
 
+import com.conveyal.datatools.common.status.JobQueue;
 import com.conveyal.datatools.common.status.MonitorableJob;
 import com.conveyal.datatools.common.utils.Scheduler;
 import com.conveyal.datatools.manager.DataManager;
@@ -51,11 +52,10 @@ public class FetchProjectFeedsJob extends MonitorableJob {
             }
             // No need to track overall status on this FetchProjectFeedsJob. All "child" jobs execute in threadpool,
             // so we don't know their status.
-            FetchSingleFeedJob fetchSingleFeedJob = new FetchSingleFeedJob(feedSource, owner, true);
-            // Run this in a heavy executor with continueThread = true, so that fetch/process jobs for each
-            // feed source execute in order (i.e., fetch feed source A, then process; next, fetch feed source b, then
-            // process).
-            DataManager.heavyExecutor.execute(fetchSingleFeedJob);
+            FetchSingleFeedJob fetchSingleFeedJob = new FetchSingleFeedJob(feedSource, owner, false);
+            // Fetch on the fetch executor (which limits concurrent fetches overall and per host). Each fetched version
+            // is then processed on the heavy executor, so later feeds are downloaded while earlier ones are processed.
+            JobQueue.execute(fetchSingleFeedJob, DataManager.fetchExecutor);
         }
     }
 
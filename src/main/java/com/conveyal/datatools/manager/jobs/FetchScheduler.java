@@ -0,0 +1,137 @@
+package com.conveyal.datatools.manager.jobs;
+
+import com.conveyal.datatools.common.metrics.Metrics;
+import com.conveyal.datatools.common.status.JobScheduler;
+import com.conveyal.datatools.common.status.MonitorableJob;
+import com.conveyal.datatools.manager.DataManager;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs feed fetches ({@link FetchSingleFeedJob}s) on threads separate from the {@link JobScheduler}, because fetches
+ * mostly wait on the network rather than use the CPU. At most a fixed number of fetches run at once, and at most a
+ * smaller number from the same host (many agencies publish their feeds through the same vendor). Fetches that cannot
+ * start yet wait in submission order, but a fetch whose host is busy does not hold up fetches from other hosts.
+ *
+ * A fetched version is processed on the heavy executor (see {@link FetchSingleFeedJob#jobLogic()}), so this executor is
+ * free to download the next feeds while earlier ones are loaded and validated. The limits may be set in the server
+ * config:
+ * <pre>
+ * application:
+ *   fetch:
+ *     max_concurrent: 8
+ *     max_per_host: 2
+ * </pre>
+ */
+public class FetchScheduler implements Executor {
+    private static final Logger LOG = LoggerFactory.getLogger(FetchScheduler.class);
+    public static final int DEFAULT_MAX_CONCURRENT = 8;
+    public static final int DEFAULT_MAX_PER_HOST = 2;
+    private static final String CONFIG_PREFIX = "application.fetch.";
+
+    private final int maxConcurrent;
+    private final int maxPerHost;
+    /** Threads are only requested when a fetch may start, so the pool never queues work itself. */
+    private final ExecutorService threadPool = Executors.newCachedThreadPool(
+        new ThreadFactoryBuilder().setNameFormat("fetch-%d").build()
+    );
+
+    // The following fields are guarded by this.
+    private final List<Runnable> queue = new LinkedList<>();
+    private final Map<String, Integer> runningByHost = new HashMap<>();
+    private int running;
+
+    public FetchScheduler() {
+        this(DEFAULT_MAX_CONCURRENT, DEFAULT_MAX_PER_HOST);
+    }
+
+    public FetchScheduler(int maxConcurrent, int maxPerHost) {
+        this.maxConcurrent = maxConcurrent;
+        this.maxPerHost = maxPerHost;
+    }
+
+    /** Construct a scheduler with the limits defined in the application config (see class comment). */
+    public static FetchScheduler fromConfig() {
+        int maxConcurrent = DataManager.hasConfigProperty(CONFIG_PREFIX + "max_concurrent")
+            ? DataManager.getConfigProperty(CONFIG_PREFIX + "max_concurrent").asInt()
+            : DEFAULT_MAX_CONCURRENT;
+        int maxPerHost = DataManager.hasConfigProperty(CONFIG_PREFIX + "max_per_host")
+            ? DataManager.getConfigProperty(CONFIG_PREFIX + "max_per_host").asInt()
+            : DEFAULT_MAX_PER_HOST;
+        LOG.info("Fetching at most {} feeds at once ({} per host)", maxConcurrent, maxPerHost);
+        return new FetchScheduler(maxConcurrent, maxPerHost);
+    }
+
+    @Override
+    public synchronized void execute(Runnable runnable) {
+        queue.add(runnable);
+        if (runnable instanceof MonitorableJob) {
+            ((MonitorableJob) runnable).status.setQueued(true);
+        }
+        startReady();
+    }
+
+    /** Start queued fetches, in order, until the overall limit is reached (skipping those whose host is busy). */
+    private synchronized void startReady() {
+        Iterator<Runnable> iterator = queue.iterator();
+        while (running < maxConcurrent && iterator.hasNext()) {
+            Runnable runnable = iterator.next();
+            String host = hostOf(runnable);
+            if (host != null && runningByHost.getOrDefault(host, 0) >= maxPerHost) continue;
+            iterator.remove();
+            running++;
+            if (host != null) runningByHost.merge(host, 1, Integer::sum);
+            if (runnable instanceof MonitorableJob) ((MonitorableJob) runnable).status.setQueued(false);
+            threadPool.execute(() -> {
+                try {
+                    runnable.run();
+                } catch (Exception e) {
+                    LOG.error("Fetch failed", e);
+                } finally {
+                    finished(host);
+                }
+            });
+        }
+    }
+
+    private synchronized void finished(String host) {
+        running--;
+        if (host != null) runningByHost.merge(host, -1, (a, b) -> a + b == 0 ? null : a + b);
+        startReady();
+    }
+
+    /** The host that the task fetches from, or null if it is not subject to a per-host limit. */
+    private static String hostOf(Runnable runnable) {
+        return runnable instanceof FetchSingleFeedJob ? ((FetchSingleFeedJob) runnable).host() : null;
+    }
+
+    public synchronized int getQueueDepth() {
+        return queue.size();
+    }
+
+    public synchronized int getRunningCount() {
+        return running;
+    }
+
+    /** Number of fetches currently running, by host. */
+    public synchronized Map<String, Integer> getRunningCountsByHost() {
+        return new HashMap<>(runningByHost);
+    }
+
+    /** Report the number of queued and running fetches as metrics (see {@link Metrics}). */
+    public void registerMetrics() {
+        Metrics.registerGauge("datatools_fetches_queued", "Number of feed fetches waiting to start",
+            this::getQueueDepth);
+        Metrics.registerGauge("datatools_fetches_running", "Number of feed fetches running", this::getRunningCount);
+    }
+}
@@ -4,7 +4,12 @@ import com.conveyal.datatools.common.status.MonitorableJob;
 import com.conveyal.datatools.manager.DataManager;
 import com.conveyal.datatools.manager.models.FeedSource;
 import com.conveyal.datatools.manager.models.FeedVersion;
+import com.conveyal.datatools.manager.persistence.Persistence;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableMap;
+
+import java.net.URL;
+import java.util.Map;
 
 public class FetchSingleFeedJob extends MonitorableJob {
 
@@ -22,9 +27,30 @@ public class FetchSingleFeedJob extends MonitorableJob {
         this.feedSource = feedSource;
         this.result = null;
         this.continueThread = continueThread;
-        status.message = "Fetching...";
-        status.percentComplete = 0.0;
-        status.uploading = true;
+        status.update("Fetching...", 0.0);
+        status.setUploading(true);
+    }
+
+    /** Recreate a fetch job (see {@link #jobParameters()}) or return null if the feed source no longer exists. */
+    public static FetchSingleFeedJob fromParameters (String owner, Map<String, String> parameters) {
+        FeedSource feedSource = Persistence.feedSources.getById(parameters.get("feedSourceId"));
+        if (feedSource == null) return null;
+        return new FetchSingleFeedJob(feedSource, owner, Boolean.parseBoolean(parameters.get("continueThread")));
+    }
+
+    /** Fetching is idempotent (an unchanged feed is not stored again), so this job may be retried or resumed. */
+    @Override
+    public Map<String, String> jobParameters () {
+        return ImmutableMap.of(
+            "feedSourceId", feedSource.id,
+            "continueThread", String.valueOf(continueThread)
+        );
+    }
+
+    /** Fetches of the same feed source (e.g., by a user while the nightly fetch is running) produce the same result. */
+    @Override
+    public String deduplicationKey () {
+        return type + ":" + feedSource.id;
     }
 
     /**
@@ -44,6 +70,15 @@ public class FetchSingleFeedJob extends MonitorableJob {
         return result != null ? result.parentFeedSource().id : null;
     }
 
+    /**
+     * The host the feed is fetched from (the target of a stored permanent redirect, if any), used to limit concurrent
+     * fetches per host (see {@link FetchScheduler}).
+     */
+    String host () {
+        URL url = feedSource.effectiveFetchUrl();
+        return url != null ? url.getHost().toLowerCase() : null;
+    }
+
     @Override
     public void jobLogic () {
         // TODO: fetch automatically vs. manually vs. in-house
@@ -58,8 +93,8 @@ public class FetchSingleFeedJob extends MonitorableJob {
             // quickly and the "processing" happens over time. So, we run the processing in a separate thread in order
             // to match this user and system expectation.
             //
-            // The exception (continueThread = true) is provided for FetchProjectFeedsJob, when we want the feeds to
-            // fetch and then process in sequence.
+            // The exception (continueThread = true) is provided for when we want the feed to fetch and then process in
+            // sequence in the same thread.
             ProcessSingleFeedJob processSingleFeedJob = new ProcessSingleFeedJob(result, this.owner, true);
             if (continueThread) {
                 addNextJob(processSingleFeedJob);
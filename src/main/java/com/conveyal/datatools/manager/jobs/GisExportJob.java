@@ -11,6 +11,7 @@ import com.conveyal.gtfs.loader.Table;
 import com.conveyal.gtfs.model.Agency;
 import com.conveyal.gtfs.model.Route;
 import com.conveyal.gtfs.model.Stop;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.io.Files;
 import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.GeometryFactory;
@@ -39,10 +40,13 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
 
 /** Export routes or stops for a GTFS feed version as a shapefile. */
 public class GisExportJob extends MonitorableJob {
@@ -62,6 +66,38 @@ public class GisExportJob extends MonitorableJob {
         status.update("Beginning export", 5);
     }
 
+    /** Recreate an export job (see {@link #jobParameters()}). */
+    public static GisExportJob fromParameters (String owner, Map<String, String> parameters) {
+        return new GisExportJob(
+            ExportType.valueOf(parameters.get("exportType")),
+            new File(parameters.get("file")),
+            Arrays.asList(parameters.get("feedIds").split(",")),
+            owner
+        );
+    }
+
+    /**
+     * Exports may be retried or resumed. The output is written to the same file, so the download token for the
+     * original job remains valid.
+     */
+    @Override
+    public Map<String, String> jobParameters () {
+        return ImmutableMap.of(
+            "exportType", exportType.name(),
+            "file", file.getAbsolutePath(),
+            "feedIds", String.join(",", feedIds)
+        );
+    }
+
+    /**
+     * Exports of the same feeds are only shared with the same owner, because the exported file is deleted once it has
+     * been downloaded (see {@link com.conveyal.datatools.manager.models.FeedDownloadToken}).
+     */
+    @Override
+    public String deduplicationKey () {
+        return String.join(":", type.name(), owner, exportType.name(), String.join(",", new TreeSet<>(feedIds)));
+    }
+
     @Override public void jobLogic() {
         LOG.info("Storing shapefile for feeds {} at {}", feedIds, file.getAbsolutePath());
         File outDir = Files.createTempDir();
@@ -116,6 +152,7 @@ public class GisExportJob extends MonitorableJob {
             // not connecting multiple times.
             connection = DataManager.GTFS_DATA_SOURCE.getConnection();
             for (String feedId : feedIds) {
+                checkCancellation();
                 // Get feed version and connection to RDBMS feed.
                 FeedVersion version = Persistence.feedVersions.getById(feedId);
                 if (version == null) {
@@ -137,6 +174,7 @@ public class GisExportJob extends MonitorableJob {
                     datastore.createSchema(STOP_TYPE);
                     featureBuilder = new SimpleFeatureBuilder(STOP_TYPE);
                     for (Stop stop : feed.stops) {
+                        checkCancellation();
                         Point point = geometryFactory.createPoint(
                             new Coordinate(stop.stop_lon, stop.stop_lat)
                         );
@@ -169,6 +207,7 @@ public class GisExportJob extends MonitorableJob {
                     // we loop over trip patterns. Note that this will yield several lines for routes that have
                     // multiple patterns. There's no real good way to reconcile the shapes of multiple patterns.
                     while (resultSet.next()) {
+                        checkCancellation();
                         String pattern_id = resultSet.getString("pattern_id");
                         String route_id = resultSet.getString("route_id");
                         String name = resultSet.getString("name");
@@ -281,12 +320,13 @@ public class GisExportJob extends MonitorableJob {
             DirectoryZip.zip(outDir, file);
 
             // Clean up temporary files.
-            for (File f : outDir.listFiles()) {
-                f.delete();
-            }
-            outDir.delete();
+            deleteTempDir(outDir);
             status.update(false, "Export complete!", 100);
-            status.completed = true;
+            status.setCompleted(true);
+        } catch (CancellationException e) {
+            // Discard the partially written shapefile.
+            deleteTempDir(outDir);
+            throw e;
         } catch (Exception e) {
             String message = "An exception occurred during the GIS export";
             LOG.error(message);
@@ -297,5 +337,15 @@ public class GisExportJob extends MonitorableJob {
         }
     }
 
+    private static void deleteTempDir(File outDir) {
+        File[] files = outDir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        outDir.delete();
+    }
+
     public enum ExportType { ROUTES, STOPS }
 }
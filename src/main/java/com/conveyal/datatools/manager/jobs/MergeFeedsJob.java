@@ -1,11 +1,13 @@
 package com.conveyal.datatools.manager.jobs;
 
+import com.conveyal.datatools.common.metrics.Metrics;
 import com.conveyal.datatools.common.status.MonitorableJob;
 import com.conveyal.datatools.manager.DataManager;
 import com.conveyal.datatools.manager.gtfsplus.tables.GtfsPlusTable;
 import com.conveyal.datatools.manager.models.FeedSource;
 import com.conveyal.datatools.manager.models.FeedVersion;
 import com.conveyal.datatools.manager.persistence.FeedStore;
+import com.conveyal.datatools.manager.persistence.Persistence;
 import com.conveyal.gtfs.error.NewGTFSError;
 import com.conveyal.gtfs.error.NewGTFSErrorType;
 import com.conveyal.gtfs.loader.Field;
@@ -13,6 +15,7 @@ import com.conveyal.gtfs.loader.ReferenceTracker;
 import com.conveyal.gtfs.loader.Table;
 import com.csvreader.CsvReader;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.supercsv.io.CsvListWriter;
@@ -35,6 +38,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
 import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
@@ -118,6 +122,11 @@ import static com.conveyal.gtfs.loader.Field.getFieldIndex;
 public class MergeFeedsJob extends MonitorableJob {
 
     private static final Logger LOG = LoggerFactory.getLogger(MergeFeedsJob.class);
+    private static final Metrics.Histogram TABLE_MERGE_TIME = Metrics.durationHistogram(
+        "datatools_merge_table_seconds",
+        "Time spent merging each GTFS table",
+        "table"
+    );
     public static final ObjectMapper mapper = new ObjectMapper();
     private final Set<FeedVersion> feedVersions;
     private final FeedSource feedSource;
@@ -156,6 +165,48 @@ public class MergeFeedsJob extends MonitorableJob {
         this.mergeFeedsResult = new MergeFeedsResult(mergeType);
     }
 
+    /**
+     * Recreate a merge job (see {@link #jobParameters()}) or return null if any of the versions no longer exist.
+     */
+    public static MergeFeedsJob fromParameters(String owner, Map<String, String> parameters) {
+        List<String> versionIds = Arrays.asList(parameters.get("feedVersionIds").split(","));
+        List<FeedVersion> versions = Persistence.feedVersions.getByIds(versionIds);
+        if (versions.size() != versionIds.size()) return null;
+        MergeFeedsJob job = new MergeFeedsJob(
+            owner,
+            new HashSet<>(versions),
+            parameters.get("file"),
+            MergeFeedsType.valueOf(parameters.get("mergeType"))
+        );
+        job.failOnDuplicateTripId = Boolean.parseBoolean(parameters.get("failOnDuplicateTripId"));
+        return job;
+    }
+
+    /**
+     * A merge only reads existing versions (and writes a new file or version), so it may be recreated to run on a
+     * worker node or to resume after a restart.
+     */
+    @Override
+    public Map<String, String> jobParameters() {
+        return ImmutableMap.of(
+            "feedVersionIds", feedVersions.stream().map(version -> version.id).collect(Collectors.joining(",")),
+            "file", filename.substring(0, filename.length() - ".zip".length()),
+            "mergeType", mergeType.name(),
+            "failOnDuplicateTripId", String.valueOf(failOnDuplicateTripId)
+        );
+    }
+
+    /** Merges of the same set of versions (in any order) produce the same merged version. */
+    @Override
+    public String deduplicationKey () {
+        return String.join(":",
+            type.name(),
+            mergeType.name(),
+            String.valueOf(failOnDuplicateTripId),
+            feedVersions.stream().map(version -> version.id).sorted().collect(Collectors.joining(","))
+        );
+    }
+
     /**
      * The final stage handles clean up (deleting temp file) and adding the next job to process the
      * new merged version (assuming the merge did not fail).
@@ -171,6 +222,15 @@ public class MergeFeedsJob extends MonitorableJob {
         }
     }
 
+    @Override
+    public void jobCancelled() {
+        if (mergedTempFile != null && mergedTempFile.exists() && !mergedTempFile.delete()) {
+            LOG.error(
+                "Merged feed file {} not deleted. This may contribute to storage space shortages.",
+                mergedTempFile.getAbsolutePath());
+        }
+    }
+
     /**
      * Primary job logic handles collecting and sorting versions, creating a merged table for all versions, and writing
      * the resulting zip file to storage.
@@ -195,32 +255,42 @@ public class MergeFeedsJob extends MonitorableJob {
             tablesToMerge.addAll(Arrays.asList(GtfsPlusTable.tables));
         }
         int numberOfTables = tablesToMerge.size();
-        // Loop over GTFS tables and merge each feed one table at a time.
-        for (int i = 0; i < numberOfTables; i++) {
-            Table table = tablesToMerge.get(i);
-            if (mergeType.equals(REGIONAL) && table.name.equals(Table.FEED_INFO.name)) {
-                // It does not make sense to include the feed_info table when performing a
-                // regional feed merge because this file is intended to contain data specific to
-                // a single agency feed.
-                // TODO: Perhaps future work can generate a special feed_info file for the merged
-                //  file.
-                LOG.warn("Skipping feed_info table for regional merge.");
-                continue;
-            }
-            if (table.name.equals(Table.PATTERNS.name) || table.name.equals(Table.PATTERN_STOP.name)) {
-                LOG.warn("Skipping editor-only table {}.", table.name);
-                continue;
-            }
-            double percentComplete = Math.round((double) i / numberOfTables * 10000d) / 100d;
-            status.update("Merging " + table.name, percentComplete);
-            // Perform the merge.
-            LOG.info("Writing {} to merged feed", table.name);
-            int mergedLineNumber = constructMergedTable(table, feedsToMerge, out);
-            if (mergedLineNumber == 0) {
-                LOG.warn("Skipping {} table. No entries found in zip files.", table.name);
-            } else if (mergedLineNumber == -1) {
-                LOG.error("Merge {} table failed!", table.name);
+        try {
+            // Loop over GTFS tables and merge each feed one table at a time.
+            for (int i = 0; i < numberOfTables; i++) {
+                checkCancellation();
+                Table table = tablesToMerge.get(i);
+                if (mergeType.equals(REGIONAL) && table.name.equals(Table.FEED_INFO.name)) {
+                    // It does not make sense to include the feed_info table when performing a
+                    // regional feed merge because this file is intended to contain data specific to
+                    // a single agency feed.
+                    // TODO: Perhaps future work can generate a special feed_info file for the merged
+                    //  file.
+                    LOG.warn("Skipping feed_info table for regional merge.");
+                    continue;
+                }
+                if (table.name.equals(Table.PATTERNS.name) || table.name.equals(Table.PATTERN_STOP.name)) {
+                    LOG.warn("Skipping editor-only table {}.", table.name);
+                    continue;
+                }
+                double percentComplete = Math.round((double) i / numberOfTables * 10000d) / 100d;
+                status.update("Merging " + table.name, percentComplete);
+                // Perform the merge.
+                LOG.info("Writing {} to merged feed", table.name);
+                int mergedLineNumber;
+                try (Metrics.Timer timer = TABLE_MERGE_TIME.startTimer(table.name)) {
+                    mergedLineNumber = constructMergedTable(table, feedsToMerge, out);
+                }
+                if (mergedLineNumber == 0) {
+                    LOG.warn("Skipping {} table. No entries found in zip files.", table.name);
+                } else if (mergedLineNumber == -1) {
+                    LOG.error("Merge {} table failed!", table.name);
+                }
             }
+        } catch (CancellationException e) {
+            // Release the partially written file (which is deleted in jobCancelled).
+            out.close();
+            throw e;
         }
         // Close output stream for zip file.
         out.close();
@@ -288,10 +358,9 @@ public class MergeFeedsJob extends MonitorableJob {
                 }
             }
         } else {
-            // Store the zip file for the merged feed version.
+            // Store the zip file for the merged feed version (which also hashes it).
             try {
-                FeedVersion.feedStore
-                    .newFeed(mergedVersion.id, new FileInputStream(mergedTempFile), feedSource);
+                mergedVersion.newGtfsFile(new FileInputStream(mergedTempFile));
             } catch (IOException e) {
                 LOG.error("Could not store merged feed for new version");
                 throw e;
@@ -388,6 +457,7 @@ public class MergeFeedsJob extends MonitorableJob {
                 int lineNumber = 0;
                 // Iterate over rows in table, writing them to the out file.
                 while (csvReader.readRecord()) {
+                    checkCancellation();
                     String keyValue = csvReader.get(keyFieldIndex);
                     if (feedIndex > 0 && mergeType.equals(MTC)) {
                         // Always prefer the "future" file for the feed_info table, which means
@@ -794,6 +864,8 @@ public class MergeFeedsJob extends MonitorableJob {
             }
             writer.flush();
             out.closeEntry();
+        } catch (CancellationException e) {
+            throw e;
         } catch (Exception e) {
             LOG.error("Error merging feed sources: {}",
                 feedVersions.stream().map(version -> version.parentFeedSource().name)
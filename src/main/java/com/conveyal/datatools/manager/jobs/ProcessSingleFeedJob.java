@@ -1,11 +1,18 @@
 package com.conveyal.datatools.manager.jobs;
 
 import com.conveyal.datatools.common.status.MonitorableJob;
+import com.conveyal.datatools.manager.DataManager;
+import com.conveyal.datatools.manager.models.FeedSource;
 import com.conveyal.datatools.manager.models.FeedVersion;
+import com.conveyal.datatools.manager.persistence.Persistence;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.sql.SQLException;
+import java.util.Map;
+
 /**
  * Process/validate a single GTFS feed. This chains together multiple server jobs. Loading the feed and validating the
  * feed are chained regardless. However, depending on which modules are enabled, other jobs may be
@@ -17,6 +24,8 @@ public class ProcessSingleFeedJob extends MonitorableJob {
     private FeedVersion feedVersion;
     private String owner;
     private final boolean isNewVersion;
+    /** Uploads the GTFS file to s3 alongside validation. The version is only made public if this succeeded. */
+    private UploadFeedJob uploadFeedJob;
     private static final Logger LOG = LoggerFactory.getLogger(ProcessSingleFeedJob.class);
 
     /**
@@ -28,7 +37,37 @@ public class ProcessSingleFeedJob extends MonitorableJob {
         this.owner = owner;
         this.isNewVersion = isNewVersion;
         status.update(false,  "Processing...", 0);
-        status.uploading = true;
+        status.setUploading(true);
+    }
+
+    /** Recreate a job to re-process a stored version (see {@link #jobParameters()}). */
+    public static ProcessSingleFeedJob fromParameters (String owner, Map<String, String> parameters) {
+        FeedVersion feedVersion = Persistence.feedVersions.getById(parameters.get("feedVersionId"));
+        if (feedVersion == null) return null;
+        return new ProcessSingleFeedJob(feedVersion, owner, false);
+    }
+
+    /**
+     * Re-processing a version that is already stored may be retried or resumed. A new version cannot be, because it is
+     * only held in memory until it has been validated (so it is always processed on the node that created it, even if
+     * other jobs are left to worker nodes; see {@link com.conveyal.datatools.common.status.JobQueue}).
+     */
+    @Override
+    public Map<String, String> jobParameters () {
+        if (isNewVersion) return null;
+        return ImmutableMap.of("feedVersionId", feedVersion.id);
+    }
+
+    /**
+     * Re-processing the same stored version twice at once (e.g., from repeated requests to re-validate all versions)
+     * would repeat the work. A new version always has a new ID, so it has no key: attaching it to a job processing other
+     * content from the same feed source would leave its file stored but never processed (duplicate content is instead
+     * discarded before processing; see {@link FeedSource#fetch} and the upload route).
+     */
+    @Override
+    public String deduplicationKey () {
+        if (isNewVersion) return null;
+        return type + ":" + feedVersion.id;
     }
 
     /**
@@ -50,19 +89,38 @@ public class ProcessSingleFeedJob extends MonitorableJob {
     public void jobLogic () {
         LOG.info("Processing feed for {}", feedVersion.id);
 
-        // First, load the feed into database. During this stage, the GTFS file will be uploaded to S3 (and deleted locally).
-        addNextJob(new LoadFeedJob(feedVersion, owner, isNewVersion));
+        // First, load the feed into database.
+        LoadFeedJob loadFeedJob = new LoadFeedJob(feedVersion, owner, isNewVersion);
+        addSubJob(loadFeedJob);
 
-        // Next, validate the feed.
-        addNextJob(new ValidateFeedJob(feedVersion, owner, isNewVersion));
+        // Next, validate the feed. Meanwhile, the GTFS file is uploaded to S3 (and deleted locally).
+        addSubJob(new ValidateFeedJob(feedVersion, owner, isNewVersion), loadFeedJob);
+        uploadFeedJob = new UploadFeedJob(feedVersion, owner, isNewVersion);
+        addSubJob(uploadFeedJob, loadFeedJob);
 
         // TODO: Any other activities that need to be run (e.g., module-specific activities).
     }
 
+    @Override
+    public void jobCancelled () throws SQLException {
+        // Drop any tables that were loaded for the version, unless the version was stored before processing stopped.
+        if (Persistence.feedVersions.getById(feedVersion.id) == null) feedVersion.deleteNamespace();
+    }
+
     @Override
     public void jobFinished () {
         if (!status.error) {
             // Note: storing a new feed version in database is handled at completion of the ValidateFeedJob subtask.
+            FeedSource feedSource = feedVersion.parentFeedSource();
+            boolean uploaded = uploadFeedJob != null && !uploadFeedJob.status.error;
+            if (DataManager.useS3 && feedSource.isPublic && uploaded) {
+                // Make the new version public. This must wait until the version has been both uploaded and stored.
+                try {
+                    feedSource.makePublic();
+                } catch (Exception e) {
+                    LOG.error("Could not make version {} public", feedVersion.id, e);
+                }
+            }
             status.update(false, "New version saved.", 100, true);
         } else {
             // Processing did not complete. Depending on which sub-task this occurred in,
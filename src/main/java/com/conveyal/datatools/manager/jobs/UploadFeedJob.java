@@ -0,0 +1,45 @@
+package com.conveyal.datatools.manager.jobs;
+
+import com.conveyal.datatools.common.status.MonitorableJob;
+import com.conveyal.datatools.manager.models.FeedVersion;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Uploads the GTFS file for a loaded feed version to S3 (if using S3) and deletes the local copy. Nothing in the
+ * validation stage reads the GTFS file, so this runs alongside {@link ValidateFeedJob} in a {@link ProcessSingleFeedJob}.
+ * If the upload fails, this job fails (keeping the local copy), so that the parent job records the error and does not
+ * make the version public.
+ */
+public class UploadFeedJob extends MonitorableJob {
+    private static final Logger LOG = LoggerFactory.getLogger(UploadFeedJob.class);
+
+    private FeedVersion feedVersion;
+    private final boolean isNewVersion;
+
+    public UploadFeedJob(FeedVersion version, String owner, boolean isNewVersion) {
+        super(owner, "Uploading GTFS", JobType.UPLOAD_FEED);
+        feedVersion = version;
+        this.isNewVersion = isNewVersion;
+        status.update(false, "Waiting to upload feed...", 0);
+    }
+
+    @JsonProperty
+    public String getFeedVersionId () {
+        return feedVersion.id;
+    }
+
+    @Override
+    public void jobLogic () {
+        LOG.info("Running UploadFeedJob for {}", feedVersion.id);
+        feedVersion.upload(status, isNewVersion);
+    }
+
+    @Override
+    public void jobFinished () {
+        if (!status.error) {
+            status.update(false, "Upload stage complete!", 100, true);
+        }
+    }
+}
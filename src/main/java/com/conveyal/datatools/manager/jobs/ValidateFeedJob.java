@@ -2,13 +2,17 @@ package com.conveyal.datatools.manager.jobs;
 
 import com.conveyal.datatools.common.status.MonitorableJob;
 import com.conveyal.datatools.common.utils.Scheduler;
+import com.conveyal.datatools.manager.models.FeedSource;
 import com.conveyal.datatools.manager.models.FeedVersion;
 import com.conveyal.datatools.manager.persistence.Persistence;
 import com.conveyal.gtfs.validator.ValidationResult;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Map;
+
 /**
  * This job handles the validation of a given feed version. If the version is not new, it will simply replace the
  * existing version with the version object that has updated validation info.
@@ -26,6 +30,29 @@ public class ValidateFeedJob extends MonitorableJob {
         status.update(false, "Waiting to begin validation...", 0);
     }
 
+    /** Recreate a job to re-validate a stored version (see {@link #jobParameters()}). */
+    public static ValidateFeedJob fromParameters (String owner, Map<String, String> parameters) {
+        FeedVersion feedVersion = Persistence.feedVersions.getById(parameters.get("feedVersionId"));
+        if (feedVersion == null) return null;
+        return new ValidateFeedJob(feedVersion, owner, false);
+    }
+
+    /**
+     * Re-validating a stored version (outside of a process feed job) may be retried or resumed, since its result is
+     * stored once the job finishes (see {@link #jobFinished()}).
+     */
+    @Override
+    public Map<String, String> jobParameters () {
+        if (isNewVersion || parentJobId != null) return null;
+        return ImmutableMap.of("feedVersionId", feedVersion.id);
+    }
+
+    /** Validating the same version twice at once (e.g., a re-validation of all versions) would repeat the work. */
+    @Override
+    public String deduplicationKey () {
+        return type + ":" + feedVersion.id;
+    }
+
     @Override
     public void jobLogic () {
         LOG.info("Running ValidateFeedJob for {}", feedVersion.id);
@@ -48,12 +75,20 @@ public class ValidateFeedJob extends MonitorableJob {
                 } else {
                     Persistence.feedVersions.replace(feedVersion.id, feedVersion);
                 }
+                FeedSource feedSource = feedVersion.parentFeedSource();
+                // Keep the latest version summary stored on the feed source up to date.
+                feedSource.updateLatestVersionSummary();
 
                 // schedule expiration notification jobs
-                Scheduler.scheduleExpirationNotifications(feedVersion.parentFeedSource());
+                Scheduler.scheduleExpirationNotifications(feedSource);
+            } else if (!isNewVersion) {
+                // Re-validating a stored version (e.g., to apply a new validation stage): store the updated result.
+                // Only the result is written, so that changes made to the version in the meantime are kept.
+                Persistence.feedVersions.updateField(feedVersion.id, "validationResult", feedVersion.validationResult);
+                FeedSource feedSource = feedVersion.parentFeedSource();
+                feedSource.updateLatestVersionSummary();
+                Scheduler.scheduleExpirationNotifications(feedSource);
             }
-            // TODO: If ValidateFeedJob is called without a parent job (e.g., to "re-validate" a feed), we should handle
-            // storing the updated ValidationResult in Mongo.
 
             status.update(false, "Validation finished!", 100, true);
         }
@@ -1,6 +1,7 @@
 package com.conveyal.datatools.manager.models;
 
 import com.conveyal.datatools.manager.DataManager;
+import com.conveyal.datatools.manager.persistence.MongoIndex;
 import com.conveyal.datatools.manager.persistence.Persistence;
 import com.conveyal.datatools.manager.utils.StringUtils;
 import com.conveyal.datatools.manager.utils.json.JsonManager;
@@ -32,6 +33,8 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -47,6 +50,8 @@ import static com.mongodb.client.model.Filters.eq;
  * @author mattwigway
  *
  */
+@MongoIndex("projectId")
+@MongoIndex("feedSourceId")
 @JsonInclude(Include.ALWAYS)
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class Deployment extends Model implements Serializable {
@@ -71,16 +76,9 @@ public class Deployment extends Model implements Serializable {
 
     /** All of the feed versions used in this deployment */
     public List<FeedVersion> retrieveFullFeedVersions() {
-        ArrayList<FeedVersion> ret = new ArrayList<>(feedVersionIds.size());
-
-        for (String id : feedVersionIds) {
-            FeedVersion v = Persistence.feedVersions.getById(id);
-            if (v != null)
-                ret.add(v);
-            else
-                LOG.error("Reference integrity error for deployment {} ({}), feed version {} does not exist", this.name, this.id, id);
-        }
-
+        // Fetch all versions in a single query.
+        List<FeedVersion> ret = Persistence.feedVersions.getByIds(feedVersionIds);
+        logMissingFeedVersions(ret);
         return ret;
     }
 
@@ -90,19 +88,27 @@ public class Deployment extends Model implements Serializable {
         // return empty array if feedVersionIds is null
         if (feedVersionIds == null) return new ArrayList<>();
 
-        ArrayList<SummarizedFeedVersion> ret = new ArrayList<>(feedVersionIds.size());
+        List<FeedVersion> versions = Persistence.feedVersions.getByIds(feedVersionIds);
+        // should never happen but can if someone monkeyed around with dump/restore
+        logMissingFeedVersions(versions);
+        ArrayList<SummarizedFeedVersion> ret = new ArrayList<>(versions.size());
+        for (FeedVersion v : versions) {
+            ret.add(new SummarizedFeedVersion(v));
+        }
+        return ret;
+    }
 
+    /**
+     * Log an error for any of this deployment's feed version IDs that were not found in the database.
+     */
+    private void logMissingFeedVersions(List<FeedVersion> foundVersions) {
+        if (feedVersionIds == null || foundVersions.size() == feedVersionIds.size()) return;
+        Set<String> foundIds = foundVersions.stream().map(v -> v.id).collect(Collectors.toSet());
         for (String id : feedVersionIds) {
-            FeedVersion v = Persistence.feedVersions.getById(id);
-
-            // should never happen but can if someone monkeyed around with dump/restore
-            if (v != null)
-                ret.add(new SummarizedFeedVersion(Persistence.feedVersions.getById(id)));
-            else
+            if (!foundIds.contains(id)) {
                 LOG.error("Reference integrity error for deployment {} ({}), feed version {} does not exist", this.name, this.id, id);
+            }
         }
-
-        return ret;
     }
 
     public void storeFeedVersions(Collection<FeedVersion> versions) {
@@ -152,13 +158,7 @@ public class Deployment extends Model implements Serializable {
         if (invalidFeedSourceIds == null)
             return null;
 
-        ArrayList<FeedSource> ret = new ArrayList<FeedSource>(invalidFeedSourceIds.size());
-
-        for (String id : invalidFeedSourceIds) {
-            ret.add(Persistence.feedSources.getById(id));
-        }
-
-        return ret;
+        return Persistence.feedSources.getByIds(invalidFeedSourceIds);
     }
 
     /** Create a single-agency (testing) deployment for the given feed source */
@@ -0,0 +1,21 @@
+package com.conveyal.datatools.manager.models;
+
+import com.conveyal.datatools.manager.persistence.FeedStore;
+import com.conveyal.datatools.manager.persistence.MongoIndex;
+
+/**
+ * A file stored once in a content-addressed {@link FeedStore}, identified by the hash of its content (see
+ * {@link com.conveyal.datatools.manager.utils.HashUtils}). Any number of names (e.g., feed version IDs and the latest
+ * file for a feed source) may refer to the same blob through {@link FeedBlobReference}s. The last updated time is set
+ * whenever a reference is added, so that a blob is only deleted once it has been unreferenced for some time.
+ */
+@MongoIndex("lastUpdated")
+public class FeedBlob extends Model {
+    private static final long serialVersionUID = 1L;
+
+    /** Size of the content in bytes. */
+    public long size;
+
+    /** No-arg constructor for de-serialization. */
+    public FeedBlob () { }
+}
@@ -0,0 +1,20 @@
+package com.conveyal.datatools.manager.models;
+
+import com.conveyal.datatools.manager.persistence.FeedStore;
+import com.conveyal.datatools.manager.persistence.MongoIndex;
+
+/**
+ * A name in a content-addressed {@link FeedStore} (e.g., a feed version ID) and the {@link FeedBlob} it refers to. The
+ * ID is the name, prefixed with the store's subdirectory if it has one. The number of references to a blob is its
+ * reference count, so a blob with no references may be deleted.
+ */
+@MongoIndex("hash")
+public class FeedBlobReference extends Model {
+    private static final long serialVersionUID = 1L;
+
+    /** ID of the referenced {@link FeedBlob}. */
+    public String hash;
+
+    /** No-arg constructor for de-serialization. */
+    public FeedBlobReference () { }
+}
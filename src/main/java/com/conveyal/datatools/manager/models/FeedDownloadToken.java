@@ -1,6 +1,7 @@
 package com.conveyal.datatools.manager.models;
 
 import com.conveyal.datatools.common.status.MonitorableJob;
+import com.conveyal.datatools.manager.persistence.MongoIndex;
 import com.conveyal.datatools.manager.persistence.Persistence;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
@@ -12,6 +13,7 @@ import java.util.Date;
  *
  * Created by demory on 4/14/16.
  */
+@MongoIndex("jobId")
 public class FeedDownloadToken extends Model {
 
     private static final long serialVersionUID = 1L;
@@ -4,18 +4,27 @@ import com.amazonaws.services.s3.model.CannedAccessControlList;
 import com.amazonaws.services.s3.model.DeleteObjectsRequest;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.conveyal.datatools.common.status.MonitorableJob;
+import com.conveyal.datatools.common.utils.Scheduler;
 import com.conveyal.datatools.manager.DataManager;
+import com.conveyal.datatools.manager.jobs.FeedExpirationNotificationJob;
 import com.conveyal.datatools.manager.jobs.NotifyUsersForSubscriptionJob;
 import com.conveyal.datatools.manager.persistence.FeedStore;
+import com.conveyal.datatools.manager.persistence.MongoIndex;
 import com.conveyal.datatools.manager.persistence.Persistence;
+import com.conveyal.datatools.manager.persistence.TypedPersistence;
 import com.conveyal.datatools.manager.utils.HashUtils;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonView;
-import com.mongodb.client.FindIterable;
+import com.google.common.collect.Lists;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Projections;
 import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import org.bson.Document;
+import org.bson.conversions.Bson;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -24,18 +33,31 @@ import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.conveyal.datatools.manager.utils.StringUtils.getCleanName;
 import static com.mongodb.client.model.Filters.and;
 import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.exists;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Updates.combine;
+import static com.mongodb.client.model.Updates.pullAll;
+import static com.mongodb.client.model.Updates.set;
 
 /**
  * Created by demory on 3/22/16.
  */
+@MongoIndex("projectId")
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class FeedSource extends Model implements Cloneable {
 
@@ -43,6 +65,12 @@ public class FeedSource extends Model implements Cloneable {
 
     public static final Logger LOG = LoggerFactory.getLogger(FeedSource.class);
 
+    /** Maximum number of redirects followed when fetching a feed. */
+    static final int MAX_FETCH_REDIRECTS = 5;
+    // Not defined by HttpURLConnection.
+    private static final int HTTP_TEMPORARY_REDIRECT = 307;
+    private static final int HTTP_PERMANENT_REDIRECT = 308;
+
     /**
      * The collection of which this feed is a part
      */
@@ -99,6 +127,26 @@ public class FeedSource extends Model implements Cloneable {
      */
     public URL url;
 
+    /**
+     * Target of a permanent redirect from the fetch URL, which is fetched from directly instead (see {@link #fetch}).
+     * Reset when the fetch URL changes.
+     */
+    @JsonIgnore
+    public String fetchRedirectUrl;
+
+    /**
+     * The ETag and Last-Modified headers and content length of the response that last delivered the feed with hash
+     * {@link #lastFetchHash}, used to avoid downloading an unchanged feed (see {@link #fetch}).
+     */
+    @JsonIgnore
+    public String lastFetchETag;
+    @JsonIgnore
+    public String lastFetchLastModified;
+    @JsonIgnore
+    public Long lastFetchContentLength;
+    @JsonIgnore
+    public String lastFetchHash;
+
     /**
      * Where the feed exists on s3
      */
@@ -124,6 +172,19 @@ public class FeedSource extends Model implements Cloneable {
 
     public String editorNamespace;
 
+    /**
+     * Summary of the latest {@link FeedVersion} for this feed source. This is denormalized onto the feed source (and
+     * maintained by {@link #updateLatestVersionSummary()} whenever a version is stored or deleted) so that serializing
+     * a feed source does not require querying for its latest version. Null if there are no versions or if the summary
+     * has not been computed yet (e.g., for feed sources stored before this field was added).
+     */
+    @JsonIgnore
+    public FeedValidationResultSummary latestVersionSummary;
+
+    /** When the latest version was uploaded/fetched (see {@link #latestVersionSummary}). */
+    @JsonIgnore
+    public Date latestVersionUpdated;
+
     /**
      * Create a new feed.
      */
@@ -146,15 +207,19 @@ public class FeedSource extends Model implements Cloneable {
         return fetch(status, null);
     }
     /**
-     * Fetch the latest version of the feed. Optionally provide an override URL from which to fetch the feed. This
-     * optional URL is used for a one-level deep recursive call of fetch when a redirect is encountered.
+     * Fetch the latest version of the feed. Optionally provide an override URL from which to fetch the feed instead of
+     * the fetch URL.
      *
-     * FIXME: Should the FeedSource fetch URL field be updated if a recursive call with new URL is successful?
+     * To avoid downloading a feed that has not changed, the validators (ETag and Last-Modified headers) from the
+     * response that delivered the latest version are replayed as If-None-Match and If-Modified-Since. Because some
+     * servers ignore these headers on GET requests, a HEAD request first checks whether the validators and length still
+     * match. Redirects are followed (up to {@link #MAX_FETCH_REDIRECTS}), and if all are permanent, later fetches go
+     * directly to the target until it fails or the fetch URL changes.
      *
      * @return the fetched FeedVersion if a new version is available or null if nothing needs to be updated.
      */
     public FeedVersion fetch (MonitorableJob.Status status, String optionalUrlOverride) {
-        status.message = "Downloading file";
+        status.setMessage("Downloading file");
 
         // We create a new FeedVersion now, so that the fetched date is (milliseconds) before
         // fetch occurs. That way, in the highly unlikely event that a feed is updated while we're
@@ -163,81 +228,92 @@ public class FeedSource extends Model implements Cloneable {
         version.retrievalMethod = FeedRetrievalMethod.FETCHED_AUTOMATICALLY;
 
         // build the URL from which to fetch
-        URL url = null;
+        URL url;
+        boolean usingRedirectTarget = false;
         try {
-            // If an optional URL is provided (in the case of a recursive fetch) use that. Otherwise, use the fetch URL
-            url = optionalUrlOverride != null ? new URL(optionalUrlOverride) : this.url;
+            // If an optional URL is provided use that. Otherwise, use the target of a permanent redirect from the fetch
+            // URL if there is one, or the fetch URL itself.
+            if (optionalUrlOverride != null) {
+                url = new URL(optionalUrlOverride);
+            } else if (fetchRedirectUrl != null) {
+                url = new URL(fetchRedirectUrl);
+                usingRedirectTarget = true;
+            } else {
+                url = this.url;
+            }
         } catch (MalformedURLException e) {
             e.printStackTrace();
-            status.fail(String.format("Could not connect to bad redirect URL %s", optionalUrlOverride));
-        }
-        LOG.info("Fetching from {}", url.toString());
-
-        // make the request, using the proper HTTP caching headers to prevent refetch, if applicable
-        HttpURLConnection conn;
-        try {
-            conn = (HttpURLConnection) url.openConnection();
-            // Set user agent request header in order to avoid 403 Forbidden response from some servers.
-            // https://stackoverflow.com/questions/13670692/403-forbidden-with-java-but-not-web-browser
-            conn.setRequestProperty(
-                    "User-Agent",
-                    "Mozilla/5.0 (Windows NT 6.1; WOW64) AppleWebKit/537.11 (KHTML, like Gecko) Chrome/23.0.1271.95 Safari/537.11"
-            );
-        } catch (IOException e) {
-            String message = String.format("Unable to open connection to %s; not fetching feed %s", url, this.name);
-            LOG.error(message);
-            // TODO use this update function throughout this class
-            status.update(true, message, 0);
+            status.fail(String.format("Could not connect to bad URL %s", optionalUrlOverride));
             return null;
         }
+        LOG.info("Fetching from {}", url.toString());
 
-        conn.setDefaultUseCaches(true);
         // Get latest version to check that the fetched version does not duplicate a feed already loaded.
         FeedVersion latest = retrieveLatest();
-        // lastFetched is set to null when the URL changes and when latest feed version is deleted
-        if (latest != null && this.lastFetched != null)
-            conn.setIfModifiedSince(Math.min(latest.updated.getTime(), this.lastFetched.getTime()));
+        // lastFetched is set to null when the URL changes and when latest feed version is deleted. The stored
+        // validators only apply if they came with the latest version (and not, e.g., a version that failed to load).
+        boolean checkModified = latest != null && this.lastFetched != null;
+        boolean useValidators = checkModified && latest.hash != null && latest.hash.equals(lastFetchHash);
+        if (useValidators && unchangedSinceLastFetch(url)) {
+            String message = String.format("Feed %s has not been modified", this.name);
+            LOG.warn(message);
+            status.update(false, message, 100.0);
+            return null;
+        }
 
+        // make the request, using the proper HTTP caching headers to prevent refetch, if applicable
+        HttpURLConnection conn;
         File newGtfsFile;
-
+        int redirects = 0;
+        boolean permanentRedirects = true;
         try {
-            conn.connect();
+            while (true) {
+                conn = openFetchConnection(url, "GET");
+                if (checkModified) {
+                    conn.setIfModifiedSince(Math.min(latest.updated.getTime(), this.lastFetched.getTime()));
+                }
+                if (useValidators) {
+                    if (lastFetchETag != null) conn.setRequestProperty("If-None-Match", lastFetchETag);
+                    // Prefer the server's own date, which need not match our clock.
+                    if (lastFetchLastModified != null) conn.setRequestProperty("If-Modified-Since", lastFetchLastModified);
+                }
+                conn.connect();
+                int responseCode = conn.getResponseCode();
+                if (!isRedirect(responseCode)) break;
+                // Get redirect url from "location" header field
+                String location = conn.getHeaderField("Location");
+                conn.disconnect();
+                if (location == null || ++redirects > MAX_FETCH_REDIRECTS) {
+                    String message = String.format("Too many redirects for fetch URL detected. Please try fetch again with latest URL: %s", location);
+                    LOG.error(message);
+                    status.fail(message);
+                    return null;
+                }
+                permanentRedirects &= responseCode == HttpURLConnection.HTTP_MOVED_PERM ||
+                    responseCode == HTTP_PERMANENT_REDIRECT;
+                url = new URL(url, location);
+                LOG.info("Following redirect ({}) to {}", responseCode, url);
+            }
             String message;
             int responseCode = conn.getResponseCode();
             LOG.info("Fetch feed response code={}", responseCode);
             switch (responseCode) {
                 case HttpURLConnection.HTTP_NOT_MODIFIED:
+                    if (redirects > 0) rememberRedirect(url, permanentRedirects, optionalUrlOverride);
                     message = String.format("Feed %s has not been modified", this.name);
                     LOG.warn(message);
                     status.update(false, message, 100.0);
                     return null;
                 case HttpURLConnection.HTTP_OK:
+                    if (redirects > 0) rememberRedirect(url, permanentRedirects, optionalUrlOverride);
                     // Response is OK. Continue on to save the GTFS file.
                     message = String.format("Saving %s feed.", this.name);
                     LOG.info(message);
                     status.update(false, message, 75.0);
                     newGtfsFile = version.newGtfsFile(conn.getInputStream());
                     break;
-                case HttpURLConnection.HTTP_MOVED_TEMP:
-                case HttpURLConnection.HTTP_MOVED_PERM:
-                case HttpURLConnection.HTTP_SEE_OTHER:
-                    // Get redirect url from "location" header field
-                    String newUrl = conn.getHeaderField("Location");
-                    if (optionalUrlOverride != null) {
-                        // Only permit recursion one level deep. If more than one redirect is detected, fail the job and
-                        // suggest that user try again with new URL.
-                        message = String.format("More than one redirects for fetch URL detected. Please try fetch again with latest URL: %s", newUrl);
-                        LOG.error(message);
-                        status.fail(message);
-                        return null;
-                    } else {
-                        // If override URL is null, this is the zeroth fetch. Recursively call fetch, but only one time
-                        // to prevent multiple (possibly infinite?) redirects. Any more redirects than one should
-                        // probably be met with user action to update the fetch URL.
-                        LOG.info("Recursively calling fetch feed with new URL: {}", newUrl);
-                        return fetch(status, newUrl);
-                    }
                 default:
+                    if (usingRedirectTarget) return fetchAfterRedirectTargetFailed(status);
                     // Any other HTTP codes result in failure.
                     // FIXME Are there "success" codes we're not accounting for?
                     message = String.format("HTTP status (%d: %s) retrieving %s feed", responseCode, conn.getResponseMessage(), this.name);
@@ -246,6 +322,7 @@ public class FeedSource extends Model implements Cloneable {
                     return null;
             }
         } catch (IOException e) {
+            if (usingRedirectTarget) return fetchAfterRedirectTargetFailed(status);
             String message = String.format("Unable to connect to %s; not fetching %s feed", url, this.name);
             LOG.error(message);
             status.fail(message);
@@ -254,16 +331,16 @@ public class FeedSource extends Model implements Cloneable {
         }
 
         // note that anything other than a new feed fetched successfully will have already returned from the function
-        version.hash = HashUtils.hashFile(newGtfsFile);
-
-
-        if (latest != null && version.hash.equals(latest.hash)) {
+        // (the version's hash was computed as the file was saved).
+        if (latest != null && HashUtils.matches(latest.hash, version.hash, newGtfsFile)) {
             // If new version hash equals the hash for the latest version, do not error. Simply indicate that server
             // operators should add If-Modified-Since support to avoid wasting bandwidth.
             String message = String.format("Feed %s was fetched but has not changed; server operators should add If-Modified-Since support to avoid wasting bandwidth", this.name);
             LOG.warn(message);
+            // The validators may still let the next fetch be skipped (e.g., with a HEAD request).
+            rememberFetchValidators(conn, latest.hash);
             String filePath = newGtfsFile.getAbsolutePath();
-            if (newGtfsFile.delete()) {
+            if (FeedVersion.feedStore.discardFeed(version.id, newGtfsFile)) {
                 LOG.info("Deleting redundant GTFS file: {}", filePath);
             } else {
                 LOG.warn("Failed to delete unneeded GTFS file at: {}", filePath);
@@ -276,6 +353,7 @@ public class FeedSource extends Model implements Cloneable {
 
             // Update last fetched value for feed source.
             Persistence.feedSources.updateField(this.id, "lastFetched", version.updated);
+            rememberFetchValidators(conn, version.hash);
 
             // Set file timestamp according to last modified header from connection
             version.fileTimestamp = conn.getLastModified();
@@ -290,6 +368,110 @@ public class FeedSource extends Model implements Cloneable {
         }
     }
 
+    /**
+     * The URL that {@link #fetch} requests first: the target of a permanent redirect from the fetch URL if one is
+     * stored, or else the fetch URL itself (null if there is none).
+     */
+    public URL effectiveFetchUrl () {
+        if (fetchRedirectUrl != null) {
+            try {
+                return new URL(fetchRedirectUrl);
+            } catch (MalformedURLException e) {
+                LOG.warn("Ignoring malformed redirect target {} for {} feed", fetchRedirectUrl, this.name);
+            }
+        }
+        return url;
+    }
+
+    /** Open a connection to fetch the feed from the URL, following no redirects (see {@link #fetch}). */
+    private static HttpURLConnection openFetchConnection(URL url, String method) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        conn.setRequestMethod(method);
+        // Redirects are followed by fetch, which also follows those that change protocol (e.g., from http to https).
+        conn.setInstanceFollowRedirects(false);
+        // Set user agent request header in order to avoid 403 Forbidden response from some servers.
+        // https://stackoverflow.com/questions/13670692/403-forbidden-with-java-but-not-web-browser
+        conn.setRequestProperty(
+                "User-Agent",
+                "Mozilla/5.0 (Windows NT 6.1; WOW64) AppleWebKit/537.11 (KHTML, like Gecko) Chrome/23.0.1271.95 Safari/537.11"
+        );
+        conn.setDefaultUseCaches(true);
+        return conn;
+    }
+
+    private static boolean isRedirect(int responseCode) {
+        switch (responseCode) {
+            case HttpURLConnection.HTTP_MOVED_PERM:
+            case HttpURLConnection.HTTP_MOVED_TEMP:
+            case HttpURLConnection.HTTP_SEE_OTHER:
+            case HTTP_TEMPORARY_REDIRECT:
+            case HTTP_PERMANENT_REDIRECT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Check with a HEAD request whether the feed at the URL is unchanged since the last fetch, for servers that ignore
+     * conditional GET requests. The feed is only considered unchanged if the server returns the same ETag (or, lacking
+     * one, the same Last-Modified date) and the same length as when it was last fetched.
+     */
+    private boolean unchangedSinceLastFetch(URL url) {
+        if (lastFetchETag == null && lastFetchLastModified == null) return false;
+        HttpURLConnection conn = null;
+        try {
+            conn = openFetchConnection(url, "HEAD");
+            if (conn.getResponseCode() != HttpURLConnection.HTTP_OK) return false;
+            boolean sameValidator = lastFetchETag != null
+                ? lastFetchETag.equals(conn.getHeaderField("ETag"))
+                : lastFetchLastModified.equals(conn.getHeaderField("Last-Modified"));
+            long contentLength = conn.getContentLengthLong();
+            boolean sameLength = lastFetchContentLength == null || contentLength < 0 ||
+                lastFetchContentLength == contentLength;
+            return sameValidator && sameLength;
+        } catch (IOException e) {
+            LOG.warn("HEAD request to {} failed; fetching {} feed without it", url, this.name);
+            return false;
+        } finally {
+            if (conn != null) conn.disconnect();
+        }
+    }
+
+    /**
+     * Store the validators from the response that delivered the feed with the given hash, so that they can be replayed
+     * on the next fetch. These are fetch state rather than edits of the feed source, so lastUpdated is not changed.
+     */
+    private void rememberFetchValidators(HttpURLConnection conn, String hash) {
+        long contentLength = conn.getContentLengthLong();
+        Document validators = new Document("lastFetchETag", conn.getHeaderField("ETag"))
+            .append("lastFetchLastModified", conn.getHeaderField("Last-Modified"))
+            .append("lastFetchContentLength", contentLength >= 0 ? contentLength : null)
+            .append("lastFetchHash", hash);
+        Persistence.feedSources.setFields(this.id, validators);
+    }
+
+    /**
+     * Store the URL that the fetch URL redirected to if all redirects were permanent (or forget a stored URL if the
+     * redirect is now temporary). A URL that overrides the fetch URL is not stored.
+     */
+    private void rememberRedirect(URL target, boolean permanent, String optionalUrlOverride) {
+        if (optionalUrlOverride != null) return;
+        String redirectUrl = permanent ? target.toString() : null;
+        if (Objects.equals(redirectUrl, fetchRedirectUrl)) return;
+        if (permanent) LOG.info("Fetch URL for {} feed permanently redirects to {}", this.name, redirectUrl);
+        Persistence.feedSources.updateField(this.id, "fetchRedirectUrl", redirectUrl);
+        fetchRedirectUrl = redirectUrl;
+    }
+
+    /** Forget the target of a permanent redirect that has failed and fetch from the fetch URL itself. */
+    private FeedVersion fetchAfterRedirectTargetFailed(MonitorableJob.Status status) {
+        LOG.warn("Fetch from redirect target {} failed; fetching {} feed from {}", fetchRedirectUrl, this.name, this.url);
+        Persistence.feedSources.updateField(this.id, "fetchRedirectUrl", null);
+        fetchRedirectUrl = null;
+        return fetch(status, null);
+    }
+
     public int compareTo(FeedSource o) {
         return this.name.compareTo(o.name);
     }
@@ -329,10 +511,46 @@ public class FeedSource extends Model implements Cloneable {
         return publishedVersion;
     }
 
+    /**
+     * Recompute the denormalized {@link #latestVersionSummary} from the latest stored version and persist it. This must
+     * be called whenever a version for this feed source is stored or deleted.
+     */
+    public void updateLatestVersionSummary() {
+        FeedVersion latest = retrieveLatest();
+        latestVersionSummary = latest != null ? new FeedValidationResultSummary(latest) : null;
+        latestVersionUpdated = latest != null ? latest.updated : null;
+        Document update = new Document("latestVersionSummary", latestVersionSummary)
+            .append("latestVersionUpdated", latestVersionUpdated);
+        // The summary follows the versions, so updating it is not an edit of the feed source.
+        Persistence.feedSources.setFields(this.id, update);
+    }
+
+    /**
+     * Store the {@link #latestVersionSummary} of each feed source that has none (i.e., those stored before it was
+     * introduced or loaded from a dump). Once stored, the summary is null rather than missing for a feed source without
+     * versions, so after the first run this only finds feed sources that still need a summary.
+     *
+     * @return the number of feed sources updated
+     */
+    public static int backfillLatestVersionSummaries() {
+        int updated = 0;
+        for (FeedSource feedSource : Persistence.feedSources.getFiltered(exists("latestVersionSummary", false))) {
+            feedSource.updateLatestVersionSummary();
+            updated++;
+        }
+        if (updated > 0) LOG.info("Stored latest version summary for {} feed sources", updated);
+        return updated;
+    }
+
     @JsonInclude(JsonInclude.Include.NON_NULL)
     @JsonView(JsonViews.UserInterface.class)
     @JsonProperty("publishedValidationSummary")
     private FeedValidationResultSummary publishedValidationSummary() {
+        if (this.publishedVersionId == null) return null;
+        // The published version is usually the latest version, in which case the stored summary can be used.
+        if (latestVersionSummary != null && this.publishedVersionId.equals(latestVersionSummary.namespace)) {
+            return latestVersionSummary;
+        }
         FeedVersion publishedVersion = retrievePublishedVersion();
         return publishedVersion != null ? new FeedValidationResultSummary(publishedVersion) : null;
     }
@@ -341,6 +559,7 @@ public class FeedSource extends Model implements Cloneable {
     @JsonView(JsonViews.UserInterface.class)
     @JsonProperty("latestVersionId")
     public String latestVersionId() {
+        if (latestVersionSummary != null) return latestVersionSummary.feedVersionId;
         FeedVersion latest = retrieveLatest();
         return latest != null ? latest.id : null;
     }
@@ -355,6 +574,7 @@ public class FeedSource extends Model implements Cloneable {
     @JsonView(JsonViews.UserInterface.class)
     @JsonProperty("lastUpdated")
     public Date lastUpdated() {
+        if (latestVersionSummary != null) return latestVersionUpdated;
         FeedVersion latest = retrieveLatest();
         return latest != null ? latest.updated : null;
     }
@@ -364,6 +584,7 @@ public class FeedSource extends Model implements Cloneable {
     @JsonView(JsonViews.UserInterface.class)
     @JsonProperty("latestValidation")
     public FeedValidationResultSummary latestValidation() {
+        if (latestVersionSummary != null) return latestVersionSummary;
         FeedVersion latest = retrieveLatest();
         return latest != null ? new FeedValidationResultSummary(latest) : null;
     }
@@ -411,6 +632,20 @@ public class FeedSource extends Model implements Cloneable {
         return Persistence.feedVersions.getFiltered(eq("feedSourceId", this.id));
     }
 
+    /**
+     * Get all of the feed versions for this source with only the fields in {@link FeedVersion#SUMMARY_PROJECTION}
+     * decoded. The returned versions are read-only and should not be stored back to the database.
+     * @return collection of summarized feed versions, sorted by version number
+     */
+    @JsonIgnore
+    public Collection<FeedVersion> retrieveFeedVersionSummaries() {
+        return Persistence.feedVersions.getFiltered(
+            eq("feedSourceId", this.id),
+            FeedVersion.SUMMARY_PROJECTION,
+            Sorts.ascending("version")
+        );
+    }
+
     /**
      * Get all of the snapshots for this source
      * @return collection of snapshots
@@ -432,7 +667,7 @@ public class FeedSource extends Model implements Cloneable {
 //    @JsonView(JsonViews.UserInterface.class)
 //    @JsonProperty("feedVersionCount")
     public int feedVersionCount() {
-        return retrieveFeedVersions().size();
+        return (int) Persistence.feedVersions.count(eq("feedSourceId", this.id));
     }
 
     @JsonView(JsonViews.UserInterface.class)
@@ -446,10 +681,12 @@ public class FeedSource extends Model implements Cloneable {
     }
 
     public void makePublic() {
-        String sourceKey = FeedStore.s3Prefix + this.id + ".zip";
+        // If feeds are stored by content, the latest file and version may share a blob, whose access is not changed.
+        String sourceKey = FeedVersion.feedStore.getFeedS3Key(this.id + ".zip");
         String publicKey = toPublicKey();
         String versionId = this.latestVersionId();
-        String latestVersionKey = FeedStore.s3Prefix + versionId;
+        String latestVersionKey = FeedVersion.feedStore.getFeedS3Key(versionId);
+        boolean setSourceAccess = !FeedStore.isContentAddressed();
 
         // only deploy to public if storing feeds on s3 (no mechanism for downloading/publishing
         // them otherwise)
@@ -467,30 +704,38 @@ public class FeedSource extends Model implements Cloneable {
                     sourceMetadata.getETag().equals(latestVersionMetadata.getETag());
             if (sourceExists && latestVersionMatchesSource) {
                 LOG.info("copying feed {} to s3 public folder", this);
-                FeedStore.s3Client.setObjectAcl(DataManager.feedBucket, sourceKey, CannedAccessControlList.PublicRead);
+                if (setSourceAccess) {
+                    FeedStore.s3Client.setObjectAcl(DataManager.feedBucket, sourceKey, CannedAccessControlList.PublicRead);
+                }
                 FeedStore.s3Client.copyObject(DataManager.feedBucket, sourceKey, DataManager.feedBucket, publicKey);
                 FeedStore.s3Client.setObjectAcl(DataManager.feedBucket, publicKey, CannedAccessControlList.PublicRead);
             } else {
                 LOG.warn("Latest feed source {} on s3 at {} does not exist or does not match latest version. Using latest version instead.", this, sourceKey);
                 if (FeedStore.s3Client.doesObjectExist(DataManager.feedBucket, latestVersionKey)) {
                     LOG.info("copying feed version {} to s3 public folder", versionId);
-                    FeedStore.s3Client.setObjectAcl(DataManager.feedBucket, latestVersionKey, CannedAccessControlList.PublicRead);
+                    if (setSourceAccess) {
+                        FeedStore.s3Client.setObjectAcl(DataManager.feedBucket, latestVersionKey, CannedAccessControlList.PublicRead);
+                    }
                     FeedStore.s3Client.copyObject(DataManager.feedBucket, latestVersionKey, DataManager.feedBucket, publicKey);
                     FeedStore.s3Client.setObjectAcl(DataManager.feedBucket, publicKey, CannedAccessControlList.PublicRead);
 
-                    // also copy latest version to feedStore latest
-                    FeedStore.s3Client.copyObject(DataManager.feedBucket, latestVersionKey, DataManager.feedBucket, sourceKey);
+                    // also copy latest version to feedStore latest (a blob is already shared by the latest version)
+                    if (!FeedStore.isContentAddressed()) {
+                        FeedStore.s3Client.copyObject(DataManager.feedBucket, latestVersionKey, DataManager.feedBucket, sourceKey);
+                    }
                 }
             }
         }
     }
 
     public void makePrivate() {
-        String sourceKey = FeedStore.s3Prefix + this.id + ".zip";
+        String sourceKey = FeedVersion.feedStore.getFeedS3Key(this.id + ".zip");
         String publicKey = toPublicKey();
         if (FeedStore.s3Client.doesObjectExist(DataManager.feedBucket, sourceKey)) {
             LOG.info("removing feed {} from s3 public folder", this);
-            FeedStore.s3Client.setObjectAcl(DataManager.feedBucket, sourceKey, CannedAccessControlList.AuthenticatedRead);
+            if (!FeedStore.isContentAddressed()) {
+                FeedStore.s3Client.setObjectAcl(DataManager.feedBucket, sourceKey, CannedAccessControlList.AuthenticatedRead);
+            }
             FeedStore.s3Client.deleteObject(DataManager.feedBucket, publicKey);
         }
     }
@@ -498,29 +743,58 @@ public class FeedSource extends Model implements Cloneable {
     // TODO don't number the versions just timestamp them
     // FIXME for a brief moment feed version numbers are incoherent. Do this in a single operation or eliminate feed version numbers.
     public void renumberFeedVersions() {
-        int i = 1;
-        FindIterable<FeedVersion> orderedFeedVersions = Persistence.feedVersions.getMongoCollection()
-                .find(eq("feedSourceId", this.id))
-                .sort(Sorts.ascending("updated"));
-        for (FeedVersion feedVersion : orderedFeedVersions) {
-            // Yes it's ugly to pass in a string, but we need to change the parameter type of update to take a Document.
-            Persistence.feedVersions.update(feedVersion.id, String.format("{version:%d}", i));
-            i += 1;
+        List<UpdateOneModel<FeedVersion>> updates = new ArrayList<>();
+        Date now = new Date();
+        // Only the ID and current version number are needed to determine which versions must be renumbered.
+        try (MongoCursor<FeedVersion> orderedFeedVersions = Persistence.feedVersions.iterate(
+            eq("feedSourceId", this.id),
+            Projections.include("version"),
+            Sorts.ascending("updated"),
+            0,
+            TypedPersistence.DEFAULT_BATCH_SIZE
+        )) {
+            int i = 1;
+            while (orderedFeedVersions.hasNext()) {
+                FeedVersion feedVersion = orderedFeedVersions.next();
+                if (feedVersion.version != i) {
+                    updates.add(new UpdateOneModel<>(
+                        eq(feedVersion.id),
+                        combine(set("version", i), set("lastUpdated", now))
+                    ));
+                }
+                i += 1;
+            }
         }
+        Persistence.feedVersions.bulkWrite(updates);
+        // Renumbering (or the deletion of a version that prompted it) may change which version is the latest.
+        updateLatestVersionSummary();
     }
 
     // TODO don't number the snapshots just timestamp them
     // FIXME for a brief moment snapshot numbers are incoherent. Do this in a single operation or eliminate snapshot version numbers.
     public void renumberSnapshots() {
-        int i = 1;
-        FindIterable<Snapshot> orderedSnapshots = Persistence.snapshots.getMongoCollection()
-                .find(eq(Snapshot.FEED_SOURCE_REF, this.id))
-                .sort(Sorts.ascending("snapshotTime"));
-        for (Snapshot snapshot : orderedSnapshots) {
-            // Yes it's ugly to pass in a string, but we need to change the parameter type of update to take a Document.
-            Persistence.snapshots.updateField(snapshot.id, "version", i);
-            i += 1;
+        List<UpdateOneModel<Snapshot>> updates = new ArrayList<>();
+        Date now = new Date();
+        try (MongoCursor<Snapshot> orderedSnapshots = Persistence.snapshots.iterate(
+            eq(Snapshot.FEED_SOURCE_REF, this.id),
+            Projections.include("version"),
+            Sorts.ascending("snapshotTime"),
+            0,
+            TypedPersistence.DEFAULT_BATCH_SIZE
+        )) {
+            int i = 1;
+            while (orderedSnapshots.hasNext()) {
+                Snapshot snapshot = orderedSnapshots.next();
+                if (snapshot.version != i) {
+                    updates.add(new UpdateOneModel<>(
+                        eq(snapshot.id),
+                        combine(set("version", i), set("lastUpdated", now))
+                    ));
+                }
+                i += 1;
+            }
         }
+        Persistence.snapshots.bulkWrite(updates);
     }
 
     /**
@@ -539,26 +813,74 @@ public class FeedSource extends Model implements Cloneable {
      */
     public boolean delete() {
         try {
-            retrieveFeedVersions().forEach(FeedVersion::delete);
+            return deleteAll(Collections.singletonList(this));
+        } catch (Exception e) {
+            LOG.error("Could not delete feed source", e);
+            return false;
+        }
+    }
 
-            // Delete latest copy of feed source on S3.
-            if (DataManager.useS3) {
+    /**
+     * Delete the supplied feed sources and everything that they contain. Rather than deleting each feed version in
+     * turn with {@link FeedVersion#delete()} (which renumbers the remaining versions and reschedules notifications after
+     * every deletion), the related objects for all of the feed sources are removed with a fixed number of batched
+     * operations, regardless of how many feed sources or versions there are.
+     *
+     * FIXME: Use a Mongo transaction to handle the deletion of these related objects.
+     * @return whether any feed sources were deleted
+     */
+    public static boolean deleteAll(Collection<FeedSource> feedSources) {
+        if (feedSources.isEmpty()) return false;
+        List<String> feedSourceIds = feedSources.stream().map(feedSource -> feedSource.id).collect(Collectors.toList());
+        Bson feedSourceFilter = in("feedSourceId", feedSourceIds);
+        List<String> feedVersionIds;
+        try (Stream<FeedVersion> feedVersions = Persistence.feedVersions.stream(
+            feedSourceFilter, Projections.include("_id"), null, 0, TypedPersistence.DEFAULT_BATCH_SIZE
+        )) {
+            feedVersionIds = feedVersions.map(feedVersion -> feedVersion.id).collect(Collectors.toList());
+        }
+        LOG.info("Deleting {} feed sources with {} feed versions", feedSourceIds.size(), feedVersionIds.size());
+
+        // Delete the GTFS files for all versions.
+        FeedVersion.feedStore.deleteFeeds(feedVersionIds);
+        // Delete latest copies of feed sources (or, when storing feeds by content, the references to their content).
+        FeedVersion.feedStore.deleteFeeds(
+            feedSourceIds.stream().map(feedSourceId -> feedSourceId + ".zip").collect(Collectors.toList())
+        );
+        // Delete public copies of feed sources on S3.
+        if (DataManager.useS3) {
+            List<String> keys = new ArrayList<>();
+            for (FeedSource feedSource : feedSources) {
+                keys.add("public/" + feedSource.name + ".zip");
+            }
+            for (List<String> batch : Lists.partition(keys, FeedStore.MAX_KEYS_PER_DELETE)) {
                 DeleteObjectsRequest delete = new DeleteObjectsRequest(DataManager.feedBucket);
-                delete.withKeys("public/" + this.name + ".zip", FeedStore.s3Prefix + this.id + ".zip");
+                delete.withKeys(batch.toArray(new String[0]));
                 FeedStore.s3Client.deleteObjects(delete);
             }
-            // Remove all external properties for this feed source.
-            Persistence.externalFeedSourceProperties.removeFiltered(eq("feedSourceId", this.id));
-
-            // FIXME: Should this delete related feed versions from the SQL database (for both published versions and
-            // editor snapshots)?
-
-            // Finally, delete the feed source mongo document.
-            return Persistence.feedSources.removeById(this.id);
-        } catch (Exception e) {
-            LOG.error("Could not delete feed source", e);
-            return false;
         }
+        if (!feedVersionIds.isEmpty()) {
+            // Remove the feed versions from all deployments in the feed sources' projects.
+            Set<String> projectIds = feedSources.stream()
+                .map(feedSource -> feedSource.projectId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+            Persistence.deployments.getMongoCollection()
+                .updateMany(in("projectId", projectIds), pullAll("feedVersionIds", feedVersionIds));
+            Persistence.feedVersions.removeFiltered(feedSourceFilter);
+        }
+        // Remove the snapshots of these feed sources (their tables are left in the SQL database, see below).
+        Persistence.snapshots.removeFiltered(in(Snapshot.FEED_SOURCE_REF, feedSourceIds));
+        // Remove all external properties for these feed sources.
+        Persistence.externalFeedSourceProperties.removeFiltered(feedSourceFilter);
+        // Cancel any expiration notifications for the (now deleted) versions.
+        feedSourceIds.forEach(id -> Scheduler.removeFeedSourceJobsOfType(id, FeedExpirationNotificationJob.class, true));
+
+        // FIXME: Should this delete related feed versions from the SQL database (for both published versions and
+        // editor snapshots)?
+
+        // Finally, delete the feed source mongo documents.
+        return Persistence.feedSources.removeFiltered(in("_id", feedSourceIds));
     }
 
     public FeedSource clone () throws CloneNotSupportedException {
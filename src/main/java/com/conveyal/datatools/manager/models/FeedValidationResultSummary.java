@@ -46,6 +46,12 @@ public class FeedValidationResultSummary implements Serializable {
     @JsonInclude(Include.ALWAYS)
     public Bounds bounds;
 
+    /**
+     * No-arg constructor for decoding summaries embedded in other MongoDB documents (e.g.,
+     * {@link FeedSource#latestVersionSummary}).
+     */
+    public FeedValidationResultSummary () {}
+
     /**
      * Construct a summarized version of the given FeedValidationResult.
      */
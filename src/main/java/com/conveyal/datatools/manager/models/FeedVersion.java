@@ -1,9 +1,11 @@
 package com.conveyal.datatools.manager.models;
 
+import com.conveyal.datatools.common.metrics.Metrics;
 import com.conveyal.datatools.common.status.MonitorableJob;
 import com.conveyal.datatools.common.utils.Scheduler;
 import com.conveyal.datatools.manager.DataManager;
 import com.conveyal.datatools.manager.persistence.FeedStore;
+import com.conveyal.datatools.manager.persistence.MongoIndex;
 import com.conveyal.datatools.manager.persistence.Persistence;
 import com.conveyal.datatools.manager.utils.HashUtils;
 import com.conveyal.gtfs.BaseGTFSCache;
@@ -16,7 +18,10 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonView;
+import com.mongodb.client.model.Projections;
+import org.apache.commons.io.FileUtils;
 import org.bson.codecs.pojo.annotations.BsonProperty;
+import org.bson.conversions.Bson;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,6 +30,10 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
+import java.security.DigestInputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.time.LocalDate;
@@ -40,6 +49,8 @@ import static com.mongodb.client.model.Updates.pull;
  * @author mattwigway
  *
  */
+@MongoIndex({"feedSourceId", "-version"})
+@MongoIndex("namespace")
 @JsonInclude(Include.ALWAYS)
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class FeedVersion extends Model implements Serializable {
@@ -47,9 +58,30 @@ public class FeedVersion extends Model implements Serializable {
     private static final String VERSION_ID_DATE_FORMAT = "yyyyMMdd'T'HHmmssX";
     private static final String HUMAN_READABLE_TIMESTAMP_FORMAT = "MM/dd/yyyy H:mm";
     private static final Logger LOG = LoggerFactory.getLogger(FeedVersion.class);
+    private static final Metrics.Histogram STAGE_TIME = Metrics.durationHistogram(
+        "datatools_feed_version_stage_seconds",
+        "Time spent in each stage of loading, storing and validating feed versions",
+        "stage"
+    );
     // FIXME: move this out of FeedVersion (also, it should probably not be public)?
     public static FeedStore feedStore = new FeedStore();
 
+    /**
+     * Projection selecting only the fields needed to list feed versions and construct a
+     * {@link FeedValidationResultSummary}. The full {@link #validationResult} (which contains per-day service arrays)
+     * and {@link #feedLoadResult} (which contains per-table results) can be large, so list views should use this
+     * projection and fetch the complete version by ID only when needed.
+     */
+    public static final Bson SUMMARY_PROJECTION = Projections.include(
+        "feedSourceId", "retrievalMethod", "updated", "version", "name", "fileSize", "fileTimestamp", "namespace",
+        "originNamespace", "sentToExternalPublisher", "processedByExternalPublisher",
+        "lastUpdated", "dateCreated", "userId", "userEmail", "noteIds",
+        "validationResult.fatalException", "validationResult.errorCount", "validationResult.firstCalendarDate",
+        "validationResult.lastCalendarDate", "validationResult.fullBounds",
+        "feedLoadResult.uniqueIdentifier", "feedLoadResult.agency.rowCount", "feedLoadResult.routes.rowCount",
+        "feedLoadResult.stops.rowCount", "feedLoadResult.trips.rowCount", "feedLoadResult.stopTimes.rowCount"
+    );
+
     /**
      * We generate IDs manually, but we need a bit of information to do so
      */
@@ -131,7 +163,7 @@ public class FeedVersion extends Model implements Serializable {
     }
 
     /**
-     * The hash of the feed file, for quick checking if the file has been updated
+     * The hash of the feed file's content (see {@link HashUtils}), for quick checking if the file has been updated
      */
     @JsonView(JsonViews.DataDump.class)
     public String hash;
@@ -140,8 +172,16 @@ public class FeedVersion extends Model implements Serializable {
         return feedStore.getFeed(id);
     }
 
+    /**
+     * Store the GTFS file for this version from the input stream, hashing its content as it is written. The hash is
+     * passed on to the feed store, so the content is only hashed once.
+     */
     public File newGtfsFile(InputStream inputStream) throws IOException {
-        File file = feedStore.newFeed(id, inputStream, parentFeedSource());
+        File tempFile = feedStore.newTempFile(id);
+        DigestInputStream hashingStream = HashUtils.hashingStream(inputStream);
+        FileUtils.copyInputStreamToFile(hashingStream, tempFile);
+        this.hash = HashUtils.hashOf(hashingStream);
+        File file = feedStore.storeFeed(id, tempFile, hash, parentFeedSource());
         // fileSize field will not be stored until new FeedVersion is stored in MongoDB (usually in
         // the final steps of ValidateFeedJob).
         this.fileSize = file.length();
@@ -227,9 +267,15 @@ public class FeedVersion extends Model implements Serializable {
                 throw new IOException("Empty GTFS file supplied");
             }
             // If feed version has not been hashed, hash it here.
-            if (hash == null) hash = HashUtils.hashFile(gtfsFile);
+            if (hash == null) {
+                try (Metrics.Timer timer = STAGE_TIME.startTimer("hash")) {
+                    hash = HashUtils.hashFile(gtfsFile);
+                }
+            }
             String gtfsFilePath = gtfsFile.getPath();
-            this.feedLoadResult = GTFS.load(gtfsFilePath, DataManager.GTFS_DATA_SOURCE);
+            try (Metrics.Timer timer = STAGE_TIME.startTimer("gtfs_load")) {
+                this.feedLoadResult = GTFS.load(gtfsFilePath, DataManager.GTFS_DATA_SOURCE);
+            }
             // FIXME? duplication of namespace (also stored as feedLoadResult.uniqueIdentifier)
             this.namespace = feedLoadResult.uniqueIdentifier;
             LOG.info("Loaded GTFS into SQL {}", feedLoadResult.uniqueIdentifier);
@@ -250,37 +296,43 @@ public class FeedVersion extends Model implements Serializable {
             // FIXME: Delete local copy of feed version after failed load?
             return;
         }
+    }
 
-        // STEP 2. Upload GTFS to S3 (storage on local machine is done when feed is fetched/uploaded)
-        if (DataManager.useS3) {
-            try {
-                boolean fileUploaded = false;
-                if (isNewVersion) {
-                    // Only upload file to S3 if it is a new version (otherwise, it would have been downloaded from here.
+    /**
+     * Upload the GTFS file for this version to S3 (if using S3) and delete the local copy. This is separate from
+     * {@link #load} so that it can run while the loaded feed is validated. Failure to upload is logged but does not
+     * fail the job, since the version can still be used from the local copy.
+     */
+    public void upload(MonitorableJob.Status status, boolean isNewVersion) {
+        // Storage on local machine is done when feed is fetched/uploaded.
+        if (!DataManager.useS3) return;
+        try {
+            status.update("Uploading feed...", 50);
+            File gtfsFile = retrieveGtfsFile();
+            boolean fileUploaded = false;
+            if (isNewVersion) {
+                // Only upload file to S3 if it is a new version (otherwise, it would have been downloaded from here.
+                try (Metrics.Timer timer = STAGE_TIME.startTimer("s3_upload")) {
                     fileUploaded = FeedVersion.feedStore.uploadToS3(gtfsFile, this.id, this.parentFeedSource());
                 }
-                if (fileUploaded || !isNewVersion) {
-                    // Note: If feed is not a new version, it is presumed to already exist on S3, so uploading is not required.
-                    // Delete local copy of feed version after successful s3 upload
-                    boolean fileDeleted = gtfsFile.delete();
-                    if (fileDeleted) {
-                        LOG.info("Local GTFS file deleted after s3 upload");
-                    } else {
-                        LOG.error("Local GTFS file failed to delete. Server may encounter storage capacity issues!");
-                    }
+            }
+            if (fileUploaded || !isNewVersion) {
+                // Note: If feed is not a new version, it is presumed to already exist on S3, so uploading is not required.
+                // Delete local copy of feed version after successful s3 upload
+                boolean fileDeleted = FeedVersion.feedStore.deleteLocalCopy(this.id, gtfsFile);
+                if (fileDeleted) {
+                    LOG.info("Local GTFS file deleted after s3 upload");
                 } else {
-                    LOG.error("Local GTFS file not uploaded not successfully to s3!");
-                }
-                // FIXME: should this happen here?
-                FeedSource fs = parentFeedSource();
-                if (fs.isPublic) {
-                    // make feed version public... this shouldn't take very long
-                    fs.makePublic();
+                    LOG.error("Local GTFS file failed to delete. Server may encounter storage capacity issues!");
                 }
-            } catch (Exception e) {
-                LOG.error("Could not upload version {} to s3 bucket", this.id);
-                e.printStackTrace();
+            } else {
+                // Keep the local copy, which is the only one, and fail so that the version is not made public.
+                LOG.error("Local GTFS file not uploaded not successfully to s3!");
+                status.fail("Could not upload feed to s3.");
             }
+        } catch (Exception e) {
+            LOG.error("Could not upload version {} to s3 bucket", this.id, e);
+            status.fail("Could not upload feed to s3.", e);
         }
     }
 
@@ -306,7 +358,9 @@ public class FeedVersion extends Model implements Serializable {
             // run validation on feed version
             // FIXME: pass status to validate? Or somehow listen to events?
             status.update("Validating feed...", 33);
-            validationResult = GTFS.validate(feedLoadResult.uniqueIdentifier, DataManager.GTFS_DATA_SOURCE);
+            try (Metrics.Timer timer = STAGE_TIME.startTimer("validate")) {
+                validationResult = GTFS.validate(feedLoadResult.uniqueIdentifier, DataManager.GTFS_DATA_SOURCE);
+            }
         } catch (Exception e) {
             String message = String.format("Unable to validate feed %s", this.id);
             LOG.error(message, e);
@@ -403,6 +457,7 @@ public class FeedVersion extends Model implements Serializable {
             Persistence.deployments.getMongoCollection().updateMany(eq("projectId", this.parentFeedSource().projectId),
                     pull("feedVersionIds", this.id));
             Persistence.feedVersions.removeById(this.id);
+            // This also recomputes the latest version summary stored on the feed source.
             this.parentFeedSource().renumberFeedVersions();
 
             // recalculate feed expiration notifications in case the latest version has changed
@@ -413,4 +468,21 @@ public class FeedVersion extends Model implements Serializable {
             LOG.warn("Error deleting version", e);
         }
     }
+
+    /**
+     * Drop the SQL tables loaded for this version (e.g., if processing the version was cancelled before the version was
+     * stored).
+     */
+    public void deleteNamespace() throws SQLException {
+        if (namespace == null) return;
+        try (Connection connection = DataManager.GTFS_DATA_SOURCE.getConnection()) {
+            connection.createStatement().execute(String.format("drop schema if exists %s cascade", namespace));
+            PreparedStatement deleteFeedStatement = connection.prepareStatement("delete from feeds where namespace = ?");
+            deleteFeedStatement.setString(1, namespace);
+            deleteFeedStatement.executeUpdate();
+            connection.commit();
+        }
+        LOG.info("Dropped namespace {} for version {}", namespace, id);
+        namespace = null;
+    }
 }
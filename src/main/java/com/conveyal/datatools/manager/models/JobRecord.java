@@ -0,0 +1,67 @@
+package com.conveyal.datatools.manager.models;
+
+import com.conveyal.datatools.common.status.JobQueue;
+import com.conveyal.datatools.common.status.MonitorableJob;
+import com.conveyal.datatools.manager.persistence.MongoIndex;
+
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * A durable record of a job submitted through the {@link JobQueue}, stored so that queued and running jobs survive a
+ * restart of the server. The record ID matches the ID of the job it tracks, and the job's type and parameters are
+ * enough to recreate the job (if its type is resumable).
+ */
+@MongoIndex({"state", "leaseExpires"})
+@MongoIndex("leaseOwner")
+public class JobRecord extends Model {
+    private static final long serialVersionUID = 1L;
+
+    public enum State {
+        /** Waiting to run (possibly until {@link #nextAttempt} after a failed attempt). */
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        /** Failed on its final attempt or could not be resumed. */
+        FAILED
+    }
+
+    public MonitorableJob.JobType type;
+    public String name;
+    public String owner;
+    /** Values needed to recreate the job (see {@link MonitorableJob#jobParameters()}), or null if not resumable. */
+    public Map<String, String> parameters;
+    public State state;
+    /** Number of times the job has been started. */
+    public int attempts;
+    /** Earliest time at which a retry may start. */
+    public Date nextAttempt;
+    /** ID of the server process that holds this job (see {@link JobQueue#NODE_ID}). */
+    public String leaseOwner;
+    /** The job may be claimed by another server process once this time has passed without the lease being renewed. */
+    public Date leaseExpires;
+    /** Error message from the last failed attempt. */
+    public String message;
+    public Date finished;
+    /** Whether cancellation of the job has been requested (the node running the job will then cancel it). */
+    public boolean cancelRequested;
+    /** Latest status of the job, published by the node running it so that other nodes can report it. */
+    public MonitorableJob.Status status;
+
+    /** No-arg constructor for de-serialization. */
+    public JobRecord () { }
+
+    public JobRecord (MonitorableJob job) {
+        this.id = job.jobId;
+        this.type = job.type;
+        this.name = job.name;
+        this.owner = job.owner;
+        this.parameters = job.jobParameters();
+        this.state = State.QUEUED;
+    }
+
+    /** Whether the job can be recreated from this record to be retried or resumed. */
+    public boolean canResume () {
+        return parameters != null && JobQueue.canCreate(type);
+    }
+}
@@ -66,16 +66,8 @@ public abstract class Model implements Serializable {
     // notes are handled through a separate controller and in a separate DB
     @JsonIgnore
     public List<Note> retrieveNotes() {
-        ArrayList<Note> ret = new ArrayList<>(noteIds != null ? noteIds.size() : 0);
-
-        if (noteIds != null) {
-            for (String id : noteIds) {
-                ret.add(Persistence.notes.getById(id));
-            }
-        }
-
-        // even if there were no notes, return an empty list
-        return ret;
+        // Fetch all notes in a single query. Even if there were no notes, this returns an empty list.
+        return Persistence.notes.getByIds(noteIds);
     }
     /**
      * Get the user who owns this object.
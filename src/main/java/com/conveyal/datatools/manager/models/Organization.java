@@ -1,6 +1,7 @@
 package com.conveyal.datatools.manager.models;
 
 import com.conveyal.datatools.manager.persistence.Persistence;
+import com.conveyal.datatools.manager.persistence.TypedPersistence;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
@@ -8,10 +9,13 @@ import java.io.Serializable;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Projections.include;
 
 /**
  * An organization represents a group of users and projects (with contained feed sources). Currently, a user can only
@@ -40,6 +44,17 @@ public class Organization extends Model implements Serializable {
         return Persistence.projects.getFiltered(eq("organizationId", id));
     }
 
+    /**
+     * Get the IDs of the projects belonging to an organization without decoding the full project documents.
+     */
+    public static List<String> retrieveProjectIds(String organizationId) {
+        try (Stream<Project> projects = Persistence.projects.stream(
+            eq("organizationId", organizationId), include("_id"), null, 0, TypedPersistence.DEFAULT_BATCH_SIZE
+        )) {
+            return projects.map(project -> project.id).collect(Collectors.toList());
+        }
+    }
+
     @JsonProperty("totalServiceSeconds")
     public long totalServiceSeconds() {
         return projects().stream()
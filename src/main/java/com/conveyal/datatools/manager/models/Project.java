@@ -1,5 +1,6 @@
 package com.conveyal.datatools.manager.models;
 
+import com.conveyal.datatools.manager.persistence.MongoIndex;
 import com.conveyal.datatools.manager.persistence.Persistence;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import org.slf4j.Logger;
@@ -7,7 +8,6 @@ import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import static com.mongodb.client.model.Filters.eq;
 
@@ -20,6 +20,7 @@ import static com.mongodb.client.model.Filters.eq;
  * @author mattwigway
  *
  */
+@MongoIndex("organizationId")
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class Project extends Model {
     private static final long serialVersionUID = 1L;
@@ -79,10 +80,7 @@ public class Project extends Model {
      * Get all the feed sources for this project.
      */
     public Collection<FeedSource> retrieveProjectFeedSources() {
-        // TODO: use index, but not important for now because we generally only have one FeedCollection
-        return Persistence.feedSources.getAll().stream()
-                .filter(fs -> this.id.equals(fs.projectId))
-                .collect(Collectors.toList());
+        return Persistence.feedSources.getFiltered(eq("projectId", this.id));
     }
 
     // Note: Previously a numberOfFeeds() dynamic Jackson JsonProperty was in place here. But when the number of projects
@@ -111,10 +109,10 @@ public class Project extends Model {
 //        ClientSession clientSession = Persistence.startSession();
 //        clientSession.startTransaction();
 
-        // Delete each feed source in the project (which in turn deletes each feed version).
-        retrieveProjectFeedSources().forEach(FeedSource::delete);
-        // Delete each deployment in the project.
-        retrieveDeployments().forEach(Deployment::delete);
+        // Delete the feed sources in the project (along with their feed versions) in batches.
+        FeedSource.deleteAll(retrieveProjectFeedSources());
+        // Delete all deployments in the project in a single operation.
+        Persistence.deployments.removeFiltered(eq("projectId", this.id));
         // Finally, delete the project.
         return Persistence.projects.removeById(this.id);
     }
@@ -1,5 +1,6 @@
 package com.conveyal.datatools.manager.models;
 
+import com.conveyal.datatools.manager.persistence.MongoIndex;
 import com.conveyal.gtfs.loader.FeedLoadResult;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonAlias;
@@ -11,6 +12,7 @@ import java.util.Date;
  * @author mattwigway
  *
  */
+@MongoIndex({Snapshot.FEED_SOURCE_REF, "version"})
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class Snapshot extends Model {
     public static final long serialVersionUID = 1L;
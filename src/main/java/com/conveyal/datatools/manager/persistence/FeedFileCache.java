@@ -0,0 +1,238 @@
+package com.conveyal.datatools.manager.persistence;
+
+import com.conveyal.datatools.common.metrics.Metrics;
+import com.conveyal.datatools.manager.DataManager;
+import com.google.common.collect.ImmutableMap;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A local disk cache of files downloaded from s3 (see {@link FeedStore#getFeed}), so that feeds used repeatedly (e.g.,
+ * by merges, deployments, GTFS+ validation and GIS exports) are not downloaded each time. The files take up at most a
+ * configured number of bytes, beyond which the least recently used files are deleted. Concurrent requests for a file
+ * that is not cached share a single download.
+ *
+ * A file may be deleted once it is evicted, so callers should open a file soon after getting it (open files remain
+ * readable). Files cached by a previous run are kept, in order of their last modified time. The budget may be set in
+ * the server config:
+ * <pre>
+ * application:
+ *   data:
+ *     s3_cache_max_bytes: 10737418240
+ * </pre>
+ */
+public class FeedFileCache {
+    private static final Logger LOG = LoggerFactory.getLogger(FeedFileCache.class);
+    public static final long DEFAULT_MAX_BYTES = 10L * 1024 * 1024 * 1024;
+    private static final Metrics.Histogram DOWNLOAD_TIME = Metrics.durationHistogram(
+        "datatools_feed_cache_download_seconds", "Time to download a feed file missing from the local cache");
+
+    /** Writes the content for a key to the given file. */
+    public interface Downloader {
+        void download(String key, File target) throws IOException;
+    }
+
+    private final File directory;
+    private final long maxBytes;
+
+    // The following fields are guarded by this.
+    /** Cached files by key, in order of access (least recently used first). */
+    private final LinkedHashMap<String, File> files = new LinkedHashMap<>(16, 0.75f, true);
+    /** Size of each cached file when it was added (which is still known if the file has been deleted). */
+    private final Map<String, Long> sizes = new HashMap<>();
+    private final Map<String, CompletableFuture<File>> downloads = new HashMap<>();
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public FeedFileCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        directory.mkdirs();
+        indexExistingFiles();
+    }
+
+    /** Construct a cache in the directory with the budget defined in the application config (see class comment). */
+    public static FeedFileCache fromConfig(File directory) {
+        long maxBytes = DataManager.hasConfigProperty("application.data.s3_cache_max_bytes")
+            ? DataManager.getConfigProperty("application.data.s3_cache_max_bytes").asLong()
+            : DEFAULT_MAX_BYTES;
+        LOG.info("Caching up to {} MB of files from s3 in {}", maxBytes / 1024 / 1024, directory);
+        return new FeedFileCache(directory, maxBytes);
+    }
+
+    /**
+     * Get the file for the key, downloading it if it is not cached (or waiting for a download already in progress).
+     * The file is named by the last segment of the key.
+     */
+    public File get(String key, Downloader downloader) throws IOException {
+        CompletableFuture<File> download;
+        boolean downloading = false;
+        synchronized (this) {
+            File file = files.get(key);
+            if (file != null && file.exists()) {
+                hits++;
+                // Record the use, so that the order of use is known after a restart (see indexExistingFiles).
+                file.getParentFile().setLastModified(System.currentTimeMillis());
+                return file;
+            }
+            // The file may have been deleted by its user.
+            if (file != null) remove(key);
+            download = downloads.get(key);
+            if (download == null) {
+                misses++;
+                download = new CompletableFuture<>();
+                downloads.put(key, download);
+                downloading = true;
+            } else {
+                hits++;
+            }
+        }
+        if (downloading) {
+            try {
+                download.complete(download(key, downloader));
+            } catch (IOException | RuntimeException e) {
+                download.completeExceptionally(e);
+            } finally {
+                synchronized (this) {
+                    downloads.remove(key);
+                }
+            }
+        }
+        try {
+            return download.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for download of " + key, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException("Could not download " + key, e.getCause());
+        }
+    }
+
+    private File download(String key, Downloader downloader) throws IOException {
+        File keyDirectory = new File(directory, encode(key));
+        keyDirectory.mkdirs();
+        File file = new File(keyDirectory, key.substring(key.lastIndexOf('/') + 1));
+        // Download to a temporary file, so that a partial download is never mistaken for a cached file.
+        File partialFile = new File(directory, encode(key) + ".part");
+        try (Metrics.Timer timer = DOWNLOAD_TIME.startTimer()) {
+            downloader.download(key, partialFile);
+            FileUtils.deleteQuietly(file);
+            FileUtils.moveFile(partialFile, file);
+        } finally {
+            FileUtils.deleteQuietly(partialFile);
+        }
+        synchronized (this) {
+            add(key, file);
+            evict(key);
+        }
+        return file;
+    }
+
+    /** Delete least recently used files (except the one for the key just added) until the cache fits its budget. */
+    private synchronized void evict(String keptKey) {
+        Iterator<Map.Entry<String, File>> iterator = files.entrySet().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, File> entry = iterator.next();
+            if (entry.getKey().equals(keptKey)) continue;
+            LOG.info("Evicting {} from local cache", entry.getKey());
+            bytes -= sizes.remove(entry.getKey());
+            FileUtils.deleteQuietly(entry.getValue().getParentFile());
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    /** Delete the cached file for the key (e.g., because the file has been deleted from s3), if there is one. */
+    public synchronized void remove(String key) {
+        File file = files.remove(key);
+        if (file == null) return;
+        bytes -= sizes.remove(key);
+        FileUtils.deleteQuietly(file.getParentFile());
+    }
+
+    private synchronized void add(String key, File file) {
+        long size = file.length();
+        Long previousSize = sizes.put(key, size);
+        if (previousSize != null) bytes -= previousSize;
+        files.put(key, file);
+        bytes += size;
+    }
+
+    /** Add files cached by a previous run, in order of last use, and delete any partial downloads. */
+    private synchronized void indexExistingFiles() {
+        File[] entries = directory.listFiles();
+        if (entries == null) return;
+        Arrays.sort(entries, Comparator.comparingLong(File::lastModified));
+        for (File entry : entries) {
+            File[] contents = entry.listFiles();
+            if (contents == null || contents.length != 1) {
+                FileUtils.deleteQuietly(entry);
+                continue;
+            }
+            add(decode(entry.getName()), contents[0]);
+        }
+        evict(null);
+    }
+
+    private static String encode(String key) {
+        try {
+            return URLEncoder.encode(key, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String decode(String name) {
+        try {
+            return URLDecoder.decode(name, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int getFileCount() {
+        return files.size();
+    }
+
+    /** Number of requests for files, by whether the file was cached (or already being downloaded) or downloaded. */
+    public synchronized Map<String, Long> getRequestCounts() {
+        return ImmutableMap.of("hit", hits, "miss", misses);
+    }
+
+    /** Report the cache's size and hit rate as metrics (see {@link Metrics}). */
+    public void registerMetrics() {
+        Metrics.registerGauge("datatools_feed_cache_bytes", "Bytes of files cached locally from s3", this::getBytes);
+        Metrics.registerGauge("datatools_feed_cache_files", "Number of files cached locally from s3",
+            this::getFileCount);
+        Metrics.registerGauge("datatools_feed_cache_requests", "Requests for files from s3 by whether they were cached",
+            "result", this::getRequestCounts);
+        Metrics.registerGauge("datatools_feed_cache_evictions", "Files evicted from the local cache of s3 files",
+            this::getEvictions);
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+}
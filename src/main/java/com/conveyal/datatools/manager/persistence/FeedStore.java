@@ -8,6 +8,7 @@ import com.amazonaws.auth.profile.ProfileCredentialsProvider;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
 import com.amazonaws.services.s3.model.CopyObjectRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
 import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.amazonaws.services.s3.model.S3Object;
@@ -15,11 +16,15 @@ import com.amazonaws.services.s3.transfer.TransferManager;
 import com.amazonaws.services.s3.transfer.TransferManagerBuilder;
 import com.amazonaws.services.s3.transfer.Upload;
 import com.conveyal.datatools.manager.DataManager;
+import com.conveyal.datatools.manager.models.FeedBlob;
+import com.conveyal.datatools.manager.models.FeedBlobReference;
 import com.conveyal.datatools.manager.models.FeedSource;
+import com.conveyal.datatools.manager.utils.HashUtils;
+import com.google.common.collect.Lists;
+import com.mongodb.client.model.UpdateOptions;
 import gnu.trove.list.TLongList;
 import gnu.trove.list.array.TLongArrayList;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,13 +33,37 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.security.DigestInputStream;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static com.conveyal.datatools.manager.DataManager.hasConfigProperty;
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Filters.lt;
+import static com.mongodb.client.model.Updates.combine;
+import static com.mongodb.client.model.Updates.set;
+import static com.mongodb.client.model.Updates.setOnInsert;
 
 /**
  * Store a feed on the file system or s3
+ *
+ * If application.data.content_addressed is true, the content of each feed is stored once as a blob named by the hash
+ * of the content (see {@link HashUtils}), and feed IDs (e.g., feed version IDs and the [feedSourceId].zip latest file
+ * for a feed source) refer to blobs through {@link FeedBlobReference}s. Storing a feed identical to one already stored
+ * then costs no extra storage or upload bandwidth, and "copying" a feed only adds a reference. Blobs that have had no
+ * references for {@link #BLOB_GRACE_PERIOD_MILLIS} are deleted by {@link #deleteUnreferencedBlobs}. Feeds stored before
+ * enabling this mode (or directly at {@link #getPathToFeed}) are still found under their IDs.
  * @author mattwigway
  *
  */
@@ -45,10 +74,37 @@ public class FeedStore {
     /** Local file storage path if working offline */
     public static final File basePath = new File(DataManager.getConfigPropertyAsText("application.data.gtfs"));
     private final File path;
+    /** Optional subdirectory, which also namespaces the references to blobs. */
+    private final String subdir;
+    private final boolean contentAddressed;
     /** An optional AWS S3 bucket to store the feeds */
     private static String s3Bucket;
 
     public static final String s3Prefix = "gtfs/";
+    /** The maximum number of keys S3 accepts in a single multi-object delete request. */
+    public static final int MAX_KEYS_PER_DELETE = 1000;
+
+    /** Whether feeds are stored by the hash of their content (see class comment) by default. */
+    private static final boolean CONTENT_ADDRESSED =
+        "true".equals(DataManager.getConfigPropertyAsText("application.data.content_addressed"));
+    private static final String BLOB_DIRECTORY = "blobs";
+    /** Local directory (and, under {@link #s3Prefix}, s3 folder) that holds blobs. */
+    private static final File blobPath = new File(basePath, BLOB_DIRECTORY);
+    /**
+     * Blobs are only deleted once they have had no references for this long, so that a blob whose last reference has
+     * just been removed may still be referenced again (e.g., by the next fetch of an unchanged feed) without a race.
+     */
+    public static final long BLOB_GRACE_PERIOD_MILLIS = TimeUnit.DAYS.toMillis(1);
+    /** Guards adding references to and deleting blobs within this process. */
+    private static final Object blobLock = new Object();
+    /**
+     * References to each blob from feeds stored in this process that have not yet released its local copy (guarded by
+     * {@link #blobLock}). The local copy is only deleted once none are left, because a job may still be reading it for
+     * another feed with the same content.
+     */
+    private static final Map<String, Set<String>> localBlobUsers = new HashMap<>();
+    /** Local copies of feeds downloaded from s3. */
+    private static final FeedFileCache s3Cache = FeedFileCache.fromConfig(new File(basePath, "s3-cache"));
 
     // FIXME: this should not be static most likely
     public static AmazonS3 s3Client;
@@ -65,11 +121,17 @@ public class FeedStore {
      * @param subdir
      */
     public FeedStore(String subdir) {
+        this(subdir, CONTENT_ADDRESSED);
+    }
 
+    FeedStore(String subdir, boolean contentAddressed) {
         // even with s3 storage, we keep a local copy, so we'll still set path.
         String pathString = basePath.getAbsolutePath();
         if (subdir != null) pathString += File.separator + subdir;
         path = getPath(pathString);
+        this.subdir = subdir;
+        this.contentAddressed = contentAddressed;
+        if (contentAddressed) blobPath.mkdirs();
     }
 
     static {
@@ -97,6 +159,8 @@ public class FeedStore {
                 throw new IllegalArgumentException("Fatal error initializing s3Bucket or s3Client");
             }
         }
+        s3Cache.registerMetrics();
+        if (CONTENT_ADDRESSED) LOG.info("Storing feeds by content hash in {}", blobPath);
     }
 
     private static File getPath (String pathString) {
@@ -108,6 +172,10 @@ public class FeedStore {
         return path;
     }
 
+    public static boolean isContentAddressed() {
+        return CONTENT_ADDRESSED;
+    }
+
     public List<String> getAllFeeds () {
         ArrayList<String> ret = new ArrayList<String>();
         // s3 storage
@@ -125,6 +193,8 @@ public class FeedStore {
     }
 
     public Long getFeedLastModified (String id) {
+        FeedBlobReference reference = getReference(id);
+        if (reference != null) return reference.lastUpdated.getTime();
         // s3 storage
         if (DataManager.useS3){
             return s3Client.doesObjectExist(s3Bucket, getS3Key(id)) ? s3Client.getObjectMetadata(s3Bucket, getS3Key(id)).getLastModified().getTime() : null;
@@ -136,9 +206,12 @@ public class FeedStore {
     }
 
     public void deleteFeed (String id) {
+        // Only the reference is removed, because other IDs may refer to the same blob.
+        if (contentAddressed && unreference(id)) return;
         // s3 storage
         if (DataManager.useS3){
             s3Client.deleteObject(s3Bucket, getS3Key(id));
+            s3Cache.remove(getS3Key(id));
         }
         else {
             File feed = getFeed(id);
@@ -147,7 +220,42 @@ public class FeedStore {
         }
     }
 
+    /**
+     * Delete several feeds at once. On S3, this issues a single multi-object delete request per
+     * {@link #MAX_KEYS_PER_DELETE} feeds rather than one request per feed.
+     */
+    public void deleteFeeds (Collection<String> ids) {
+        if (contentAddressed) {
+            // Remove the references and only delete the remaining feeds (stored before content addressing) directly.
+            List<String> referenceIds = ids.stream().map(this::referenceId).collect(Collectors.toList());
+            Set<String> referencedIds = new HashSet<>();
+            synchronized (blobLock) {
+                List<FeedBlobReference> references = Persistence.feedBlobReferences.getByIds(referenceIds);
+                if (!references.isEmpty()) {
+                    references.forEach(reference -> referencedIds.add(reference.id));
+                    markUnreferenced(references.stream().map(reference -> reference.hash).collect(Collectors.toSet()));
+                    Persistence.feedBlobReferences.removeFiltered(in("_id", referencedIds));
+                }
+            }
+            ids = ids.stream().filter(id -> !referencedIds.contains(referenceId(id))).collect(Collectors.toList());
+        }
+        if (DataManager.useS3) {
+            List<String> keys = ids.stream().map(FeedStore::getS3Key).collect(Collectors.toList());
+            for (List<String> batch : Lists.partition(keys, MAX_KEYS_PER_DELETE)) {
+                s3Client.deleteObjects(new DeleteObjectsRequest(s3Bucket).withKeys(batch.toArray(new String[0])));
+            }
+            keys.forEach(s3Cache::remove);
+        } else {
+            ids.forEach(this::deleteFeed);
+        }
+    }
+
     public Long getFeedSize (String id) {
+        String hash = getHash(id);
+        if (hash != null) {
+            FeedBlob blob = Persistence.feedBlobs.getById(hash);
+            return blob != null ? blob.size : null;
+        }
         // s3 storage
         if (DataManager.useS3) {
             return s3Client.doesObjectExist(s3Bucket, getS3Key(id)) ? s3Client.getObjectMetadata(s3Bucket, getS3Key(id)).getContentLength() : null;
@@ -171,6 +279,18 @@ public class FeedStore {
         return s3Prefix + id;
     }
 
+    private static String getBlobS3Key (String hash) {
+        return s3Prefix + BLOB_DIRECTORY + "/" + hash;
+    }
+
+    /**
+     * Get the key of the feed with the given ID on s3 (which is the key of its blob if the feed is stored by content).
+     */
+    public String getFeedS3Key (String id) {
+        String hash = getHash(id);
+        return hash != null ? getBlobS3Key(hash) : getS3Key(id);
+    }
+
     public String getPathToFeed (String id) {
         return new File(path, id).getAbsolutePath();
     }
@@ -179,6 +299,12 @@ public class FeedStore {
      * Get the feed with the given ID.
      */
     public File getFeed (String id) {
+        String hash = getHash(id);
+        if (hash != null) {
+            File blob = new File(blobPath, hash);
+            if (blob.exists()) return blob;
+            return DataManager.useS3 ? download(getBlobS3Key(hash)) : null;
+        }
         // local storage
         File feed = new File(path, id);
         // Whether storing locally or on s3, return local version if it exists.
@@ -189,31 +315,27 @@ public class FeedStore {
 
         // s3 storage
         if (DataManager.useS3) {
-            String key = getS3Key(id);
-
-            LOG.info("Downloading feed from s3://{}/{}", s3Bucket, key);
-            InputStream objectData = null;
-            try {
-                S3Object object = s3Client.getObject(
-                    new GetObjectRequest(s3Bucket, key));
-                objectData = object.getObjectContent();
-            } catch (AmazonServiceException ase) {
-                LOG.error("Error downloading s3://{}/{}", s3Bucket, key);
-                ase.printStackTrace();
-                return null;
-            }
-
-            // FIXME: Figure out how to manage temp files created here. Currently, deleteOnExit is called in createTempFile
-            try {
-                return createTempFile(id, objectData);
-            } catch (IOException e) {
-                LOG.error("Error creating temp file");
-                e.printStackTrace();
-            }
+            return download(getS3Key(id));
         }
         return null;
     }
 
+    /** Get the file from s3 through the local cache (downloading it if it is not cached). */
+    private static File download (String key) {
+        try {
+            return s3Cache.get(key, (s3Key, target) -> {
+                LOG.info("Downloading feed from s3://{}/{}", s3Bucket, s3Key);
+                S3Object object = s3Client.getObject(new GetObjectRequest(s3Bucket, s3Key));
+                try (InputStream objectData = object.getObjectContent()) {
+                    FileUtils.copyInputStreamToFile(objectData, target);
+                }
+            });
+        } catch (IOException e) {
+            LOG.error("Error downloading s3://{}/{}", s3Bucket, key, e);
+            return null;
+        }
+    }
+
     /**
      * Store GTFS file locally. This method is used when a new feed version or generated GTFS file
      * (e.g., the product of merging multiple GTFS files from a project) needs to be stored locally for
@@ -223,8 +345,13 @@ public class FeedStore {
     public File newFeed (String id, InputStream inputStream, FeedSource feedSource) throws IOException {
         // write feed to specified ID.
         // NOTE: depending on the feed store, there may not be a feedSource provided (e.g., gtfsplus)
-
-        File feed = writeFileUsingInputStream(id, inputStream);
+        if (contentAddressed) {
+            File tempFile = newTempFile(id);
+            DigestInputStream hashingStream = HashUtils.hashingStream(inputStream);
+            writeFileUsingInputStream(tempFile, hashingStream);
+            return storeFeed(id, tempFile, HashUtils.hashOf(hashingStream), feedSource);
+        }
+        File feed = writeFileUsingInputStream(new File(path, id), inputStream);
         if (feedSource != null && !DataManager.useS3) {
             // Store latest as feed-source-id.zip if feedSource provided and if not using s3
             copyVersionToLatest(feed, feedSource);
@@ -232,15 +359,91 @@ public class FeedStore {
         return feed;
     }
 
+    /**
+     * Create a temporary file in the store's directory, so that a feed written to it can be stored with
+     * {@link #storeFeed} (once its hash is known) without copying it between file systems.
+     */
+    public File newTempFile (String id) throws IOException {
+        return File.createTempFile(id, ".tmp", contentAddressed ? blobPath : path);
+    }
+
+    /**
+     * Store a GTFS file that has already been written (e.g., from an upload), with the given hash of its content. The
+     * file is moved into the store (if it is not already there), so the returned file should be used instead.
+     */
+    public File storeFeed (String id, File file, String hash, FeedSource feedSource) throws IOException {
+        if (contentAddressed) {
+            File blob = storeBlob(hash, file);
+            reference(id, hash);
+            if (DataManager.useS3) {
+                synchronized (blobLock) {
+                    localBlobUsers.computeIfAbsent(hash, h -> new HashSet<>()).add(referenceId(id));
+                }
+            }
+            // On s3, the latest reference is updated once the blob is uploaded (see uploadToS3).
+            if (feedSource != null && !DataManager.useS3) reference(latestId(feedSource), hash);
+            return blob;
+        }
+        File feed = new File(path, id);
+        if (!file.getAbsoluteFile().equals(feed)) FileUtils.moveFile(file, feed);
+        if (feedSource != null && !DataManager.useS3) copyVersionToLatest(feed, feedSource);
+        return feed;
+    }
+
+    /**
+     * Discard a feed that was just stored with {@link #newFeed} or {@link #storeFeed} but is not needed after all (e.g.,
+     * because it is identical to the latest version). Unlike deleting the file, this does not affect other IDs that
+     * refer to the same content.
+     *
+     * @return whether the feed was discarded
+     */
+    public boolean discardFeed (String id, File file) {
+        if (!contentAddressed) return file.delete();
+        String hash = file.getName();
+        synchronized (blobLock) {
+            boolean removed = unreference(id);
+            // The local copy of a blob already on s3 is not needed (it is downloaded again if needed), unless another
+            // feed with the same content is still using it.
+            if (DataManager.useS3 && !releaseLocalBlob(hash, referenceId(id)) && s3Client.doesObjectExist(s3Bucket, getBlobS3Key(hash))) {
+                file.delete();
+            }
+            return removed;
+        }
+    }
+
+    /**
+     * Delete the local copy of a feed that is stored on s3 (e.g., after {@link #uploadToS3}), since it is downloaded
+     * again if needed. When storing by content, the local copy of the blob is kept while other feeds with the same
+     * content stored in this process (which may still be reading it) have not yet been uploaded.
+     *
+     * @return false if the local copy should have been deleted but could not be
+     */
+    public boolean deleteLocalCopy (String id, File file) {
+        String hash = getHash(id);
+        if (hash == null) return file.delete();
+        File blob = new File(blobPath, hash);
+        synchronized (blobLock) {
+            if (releaseLocalBlob(hash, referenceId(id))) {
+                LOG.info("Keeping local copy of feed content {} that is still in use", hash);
+                return true;
+            }
+            return blob.delete() || !blob.exists();
+        }
+    }
+
     private void copyVersionToLatest(File version, FeedSource feedSource) throws IOException {
-        File latest = new File(String.valueOf(path), feedSource.id + ".zip");
+        File latest = new File(String.valueOf(path), latestId(feedSource));
         LOG.info("Copying version to latest {}", feedSource);
         FileUtils.copyFile(version, latest, true);
     }
 
-    private File writeFileUsingInputStream(String filename, InputStream inputStream) throws IOException {
-        File out = new File(path, filename);
-        LOG.info("Writing file to {}/{}", path, filename);
+    /** ID of the latest feed stored for the feed source. */
+    private static String latestId (FeedSource feedSource) {
+        return feedSource.id + ".zip";
+    }
+
+    private File writeFileUsingInputStream(File out, InputStream inputStream) throws IOException {
+        LOG.info("Writing file to {}", out);
         OutputStream output = new FileOutputStream(out);
         byte[] buf = new byte[1024];
         int bytesRead;
@@ -252,60 +455,154 @@ public class FeedStore {
         return out;
     }
 
-    private File createTempFile (String name, InputStream in) throws IOException {
-        final File tempFile = new File(new File(System.getProperty("java.io.tmpdir")), name);
-        tempFile.deleteOnExit();
-        FileOutputStream out = new FileOutputStream(tempFile);
-        IOUtils.copy(in, out);
-        out.close();
-        return tempFile;
+    private String referenceId (String id) {
+        return subdir != null ? subdir + "/" + id : id;
+    }
+
+    private FeedBlobReference getReference (String id) {
+        return contentAddressed ? Persistence.feedBlobReferences.getById(referenceId(id)) : null;
+    }
+
+    /** The hash of the feed with the given ID, or null if it is not stored by content. */
+    private String getHash (String id) {
+        FeedBlobReference reference = getReference(id);
+        return reference != null ? reference.hash : null;
+    }
+
+    /**
+     * Move the file into the (local) blob for the hash, unless the blob is already there, in which case the file is
+     * deleted. The blob is marked as referenced, so it is not deleted before {@link #reference} completes.
+     */
+    private static File storeBlob (String hash, File file) throws IOException {
+        File blob = new File(blobPath, hash);
+        synchronized (blobLock) {
+            Date now = new Date();
+            Persistence.feedBlobs.getMongoCollection().updateOne(
+                eq(hash),
+                combine(set("lastUpdated", now), setOnInsert("dateCreated", now), setOnInsert("size", file.length())),
+                new UpdateOptions().upsert(true)
+            );
+            if (blob.exists()) {
+                LOG.info("Feed content {} is already stored", hash);
+                file.delete();
+            } else {
+                FileUtils.moveFile(file, blob);
+            }
+        }
+        return blob;
+    }
+
+    /**
+     * Release the local copy of the blob used by the reference (see {@link #localBlobUsers}). Must be called holding
+     * {@link #blobLock}.
+     *
+     * @return whether other feeds stored in this process still use the local copy
+     */
+    private static boolean releaseLocalBlob (String hash, String referenceId) {
+        Set<String> users = localBlobUsers.get(hash);
+        if (users == null) return false;
+        users.remove(referenceId);
+        if (!users.isEmpty()) return true;
+        localBlobUsers.remove(hash);
+        return false;
+    }
+
+    /**
+     * Remove the reference from the ID, if there is one. The blob is marked as updated first, so that the grace period
+     * before it may be deleted (see {@link #deleteUnreferencedBlobs}) starts when it loses its last reference.
+     *
+     * @return whether there was a reference
+     */
+    private boolean unreference (String id) {
+        synchronized (blobLock) {
+            FeedBlobReference reference = getReference(id);
+            if (reference == null) return false;
+            markUnreferenced(Collections.singleton(reference.hash));
+            return Persistence.feedBlobReferences.removeById(reference.id);
+        }
+    }
+
+    /** Mark the blobs as updated before removing references to them (see {@link #unreference}). */
+    private static void markUnreferenced (Collection<String> hashes) {
+        Persistence.feedBlobs.getMongoCollection().updateMany(in("_id", hashes), set("lastUpdated", new Date()));
+    }
+
+    /** Refer to the blob from the ID (replacing any blob the ID referred to before). */
+    private void reference (String id, String hash) {
+        synchronized (blobLock) {
+            Date now = new Date();
+            // Mark the blob as referenced first, so that it is not deleted while the reference is added.
+            Persistence.feedBlobs.getMongoCollection().updateOne(eq(hash), set("lastUpdated", now));
+            Persistence.feedBlobReferences.getMongoCollection().updateOne(
+                eq(referenceId(id)),
+                combine(set("hash", hash), set("lastUpdated", now), setOnInsert("dateCreated", now)),
+                new UpdateOptions().upsert(true)
+            );
+        }
+    }
+
+    /**
+     * Delete blobs that have had no references for at least {@link #BLOB_GRACE_PERIOD_MILLIS}, both locally and on s3.
+     *
+     * @return the number of blobs deleted
+     */
+    public static int deleteUnreferencedBlobs () {
+        if (!CONTENT_ADDRESSED) return 0;
+        return deleteUnreferencedBlobs(BLOB_GRACE_PERIOD_MILLIS);
+    }
+
+    static int deleteUnreferencedBlobs (long gracePeriodMillis) {
+        Date cutoff = new Date(System.currentTimeMillis() - gracePeriodMillis);
+        int deleted = 0;
+        for (FeedBlob blob : Persistence.feedBlobs.getFiltered(lt("lastUpdated", cutoff))) {
+            try {
+                synchronized (blobLock) {
+                    if (Persistence.feedBlobReferences.count(eq("hash", blob.id)) > 0) continue;
+                    // The blob may have been referenced since it was listed (possibly by another process).
+                    if (!Persistence.feedBlobs.removeFiltered(and(eq(blob.id), lt("lastUpdated", cutoff)))) continue;
+                    new File(blobPath, blob.id).delete();
+                    localBlobUsers.remove(blob.id);
+                    if (DataManager.useS3) {
+                        s3Client.deleteObject(s3Bucket, getBlobS3Key(blob.id));
+                        s3Cache.remove(getBlobS3Key(blob.id));
+                    }
+                }
+                deleted++;
+            } catch (Exception e) {
+                LOG.error("Could not delete unreferenced feed content {}", blob.id, e);
+            }
+        }
+        LOG.info("Deleted {} unreferenced feed blobs", deleted);
+        return deleted;
     }
 
     public boolean uploadToS3 (File gtfsFile, String s3FileName, FeedSource feedSource) {
         if (s3Bucket != null) {
             try {
-                LOG.info("Uploading feed {} to S3 from {}", s3FileName, gtfsFile.getAbsolutePath());
-                TransferManager tm = TransferManagerBuilder.standard().withS3Client(s3Client).build();
-                PutObjectRequest request = new PutObjectRequest(s3Bucket, getS3Key(s3FileName), gtfsFile);
-                // Subscribe to the event and provide event handler.
-                TLongList transferredBytes = new TLongArrayList();
-                long totalBytes = gtfsFile.length();
-                LOG.info("Total kilobytes: {}", totalBytes / 1000);
-                request.setGeneralProgressListener(progressEvent -> {
-                    if (transferredBytes.size() == 75) {
-                        LOG.info("Each dot is {} kilobytes",transferredBytes.sum() / 1000);
-                    }
-                    if (transferredBytes.size() % 75 == 0) {
-                        System.out.print(".");
-                    }
-//                    LOG.info("Uploaded {}/{}", transferredBytes.sum(), totalBytes);
-                    transferredBytes.add(progressEvent.getBytesTransferred());
-                });
-                // TransferManager processes all transfers asynchronously,
-                // so this call will return immediately.
-                Upload upload = tm.upload(request);
-
-                try {
-                    // You can block and wait for the upload to finish
-                    upload.waitForCompletion();
-                } catch (AmazonClientException | InterruptedException e) {
-                    LOG.error("Unable to upload file, upload aborted.", e);
+                String hash = getHash(s3FileName);
+                if (hash == null) {
+                    if (!upload(gtfsFile, getS3Key(s3FileName))) return false;
+                    // Any cached copy of an object stored under the same key is out of date.
+                    s3Cache.remove(getS3Key(s3FileName));
+                } else if (s3Client.doesObjectExist(s3Bucket, getBlobS3Key(hash))) {
+                    LOG.info("Feed content for {} is already stored on s3", s3FileName);
+                } else if (!upload(gtfsFile, getBlobS3Key(hash))) {
                     return false;
                 }
 
-                // Shutdown the Transfer Manager, but don't shut down the underlying S3 client.
-                // The default behavior for shutdownNow shut's down the underlying s3 client
-                // which will cause any following s3 operations to fail.
-                tm.shutdownNow(false);
-
                 if (feedSource != null){
                     LOG.info("Copying feed on s3 to latest version");
-
-                    // copy to [feedSourceId].zip
-                    String copyKey = s3Prefix + feedSource.id + ".zip";
-                    CopyObjectRequest copyObjRequest = new CopyObjectRequest(
-                            s3Bucket, getS3Key(s3FileName), s3Bucket, copyKey);
-                    s3Client.copyObject(copyObjRequest);
+                    if (hash != null) {
+                        // Only the reference needs to be updated.
+                        reference(latestId(feedSource), hash);
+                    } else {
+                        // copy to [feedSourceId].zip
+                        String copyKey = s3Prefix + latestId(feedSource);
+                        CopyObjectRequest copyObjRequest = new CopyObjectRequest(
+                                s3Bucket, getS3Key(s3FileName), s3Bucket, copyKey);
+                        s3Client.copyObject(copyObjRequest);
+                        s3Cache.remove(copyKey);
+                    }
                 }
                 return true;
             } catch (AmazonServiceException e) {
@@ -315,4 +612,41 @@ public class FeedStore {
         }
         return false;
     }
-}
\ No newline at end of file
+
+    private boolean upload (File gtfsFile, String key) {
+        LOG.info("Uploading feed {} to S3 from {}", key, gtfsFile.getAbsolutePath());
+        TransferManager tm = TransferManagerBuilder.standard().withS3Client(s3Client).build();
+        PutObjectRequest request = new PutObjectRequest(s3Bucket, key, gtfsFile);
+        // Subscribe to the event and provide event handler.
+        TLongList transferredBytes = new TLongArrayList();
+        long totalBytes = gtfsFile.length();
+        LOG.info("Total kilobytes: {}", totalBytes / 1000);
+        request.setGeneralProgressListener(progressEvent -> {
+            if (transferredBytes.size() == 75) {
+                LOG.info("Each dot is {} kilobytes",transferredBytes.sum() / 1000);
+            }
+            if (transferredBytes.size() % 75 == 0) {
+                System.out.print(".");
+            }
+//            LOG.info("Uploaded {}/{}", transferredBytes.sum(), totalBytes);
+            transferredBytes.add(progressEvent.getBytesTransferred());
+        });
+        // TransferManager processes all transfers asynchronously,
+        // so this call will return immediately.
+        Upload upload = tm.upload(request);
+
+        try {
+            // You can block and wait for the upload to finish
+            upload.waitForCompletion();
+        } catch (AmazonClientException | InterruptedException e) {
+            LOG.error("Unable to upload file, upload aborted.", e);
+            return false;
+        }
+
+        // Shutdown the Transfer Manager, but don't shut down the underlying S3 client.
+        // The default behavior for shutdownNow shut's down the underlying s3 client
+        // which will cause any following s3 operations to fail.
+        tm.shutdownNow(false);
+        return true;
+    }
+}
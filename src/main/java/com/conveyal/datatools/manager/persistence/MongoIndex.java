@@ -0,0 +1,27 @@
+package com.conveyal.datatools.manager.persistence;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares an index on the MongoDB collection that stores the annotated {@link com.conveyal.datatools.manager.models.Model}
+ * class. Declared indexes are created (or verified) by {@link TypedPersistence#reconcileIndexes()} when
+ * {@link Persistence#initialize()} runs at startup, so model classes should declare an index for any field they are
+ * routinely queried or sorted by.
+ *
+ * Example: {@code @MongoIndex({"feedSourceId", "-version"})} creates a compound index on feedSourceId (ascending)
+ * and version (descending).
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Repeatable(MongoIndexes.class)
+public @interface MongoIndex {
+    /** Field names in index order. Prefix a field name with "-" to index it in descending order. */
+    String[] value();
+
+    /** Whether the index should enforce uniqueness. */
+    boolean unique() default false;
+}
@@ -0,0 +1,15 @@
+package com.conveyal.datatools.manager.persistence;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Container annotation for repeated {@link MongoIndex} declarations on a model class.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface MongoIndexes {
+    MongoIndex[] value();
+}
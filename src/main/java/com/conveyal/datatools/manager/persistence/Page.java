@@ -0,0 +1,19 @@
+package com.conveyal.datatools.manager.persistence;
+
+import java.util.List;
+
+/**
+ * One page of results from {@link TypedPersistence#getPage}, along with the opaque cursor needed to request the next
+ * page (null if this is the last page) and, if requested, the total number of objects matching the query.
+ */
+public class Page<T> {
+    public final List<T> items;
+    public final String next;
+    public final Long total;
+
+    public Page(List<T> items, String next, Long total) {
+        this.items = items;
+        this.next = next;
+        this.total = total;
+    }
+}
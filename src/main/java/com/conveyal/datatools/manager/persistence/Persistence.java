@@ -1,14 +1,19 @@
 package com.conveyal.datatools.manager.persistence;
 
+import com.conveyal.datatools.common.metrics.MongoPoolMetrics;
 import com.conveyal.datatools.manager.DataManager;
 import com.conveyal.datatools.manager.codec.IntArrayCodec;
 import com.conveyal.datatools.manager.codec.LocalDateCodec;
+import com.conveyal.datatools.manager.codec.SpecializedCodecProvider;
 import com.conveyal.datatools.manager.codec.URLCodec;
 import com.conveyal.datatools.manager.models.Deployment;
 import com.conveyal.datatools.manager.models.ExternalFeedSourceProperty;
+import com.conveyal.datatools.manager.models.FeedBlob;
+import com.conveyal.datatools.manager.models.FeedBlobReference;
 import com.conveyal.datatools.manager.models.FeedDownloadToken;
 import com.conveyal.datatools.manager.models.FeedSource;
 import com.conveyal.datatools.manager.models.FeedVersion;
+import com.conveyal.datatools.manager.models.JobRecord;
 import com.conveyal.datatools.manager.models.Note;
 import com.conveyal.datatools.manager.models.Organization;
 import com.conveyal.datatools.manager.models.Project;
@@ -23,6 +28,8 @@ import org.bson.codecs.pojo.PojoCodecProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
+
 import static org.bson.codecs.configuration.CodecRegistries.fromProviders;
 import static org.bson.codecs.configuration.CodecRegistries.fromRegistries;
 
@@ -34,6 +41,9 @@ public class Persistence {
     private static final Logger LOG = LoggerFactory.getLogger(Persistence.class);
     private static final String MONGO_URI = "MONGO_URI";
     private static final String MONGO_DB_NAME = "MONGO_DB_NAME";
+    private static final String MONGO_CACHE_TTL_SECONDS = "MONGO_CACHE_TTL_SECONDS";
+    private static final String MONGO_CACHE_MAX_SIZE = "MONGO_CACHE_MAX_SIZE";
+    private static final long DEFAULT_CACHE_MAX_SIZE = 1000;
 
     private static MongoClient mongo;
     private static MongoDatabase mongoDatabase;
@@ -49,9 +59,19 @@ public class Persistence {
     public static TypedPersistence<ExternalFeedSourceProperty> externalFeedSourceProperties;
     public static TypedPersistence<FeedDownloadToken> tokens;
     public static TypedPersistence<Snapshot> snapshots;
+    public static TypedPersistence<JobRecord> jobRecords;
+    public static TypedPersistence<FeedBlob> feedBlobs;
+    public static TypedPersistence<FeedBlobReference> feedBlobReferences;
 
-    public static void initialize () {
-
+    /**
+     * Build the codec registry used to store our models in MongoDB.
+     *
+     * @param useSpecializedCodecs whether to use the specialized codecs for feed versions and their validation/load
+     *                             results (see {@link SpecializedCodecProvider}) ahead of the reflective PojoCodec. This
+     *                             is always true in the application; the reflective-only registry is for comparison in
+     *                             tests and benchmarks.
+     */
+    public static CodecRegistry buildCodecRegistry (boolean useSpecializedCodecs) {
         PojoCodecProvider pojoCodecProvider = PojoCodecProvider.builder()
                 .register("com.conveyal.datatools.manager.models")
                 .register("com.conveyal.gtfs.loader")
@@ -65,13 +85,24 @@ public class Persistence {
                 new URLCodec(),
                 new LocalDateCodec());
 
-        pojoCodecRegistry = fromRegistries(MongoClient.getDefaultCodecRegistry(),
+        if (!useSpecializedCodecs) {
+            return fromRegistries(MongoClient.getDefaultCodecRegistry(),
+                    customRegistry,
+                    fromProviders(pojoCodecProvider));
+        }
+        return fromRegistries(MongoClient.getDefaultCodecRegistry(),
                 customRegistry,
-                fromProviders(pojoCodecProvider));
+                fromProviders(new SpecializedCodecProvider(), pojoCodecProvider));
+    }
+
+    public static void initialize () {
+
+        pojoCodecRegistry = buildCodecRegistry(true);
 
         MongoClientOptions.Builder builder = MongoClientOptions.builder()
 //                .sslEnabled(true)
-                .codecRegistry(pojoCodecRegistry);
+                .codecRegistry(pojoCodecRegistry)
+                .addConnectionPoolListener(new MongoPoolMetrics());
 
         if (DataManager.hasConfigProperty(MONGO_URI)) {
             mongo = new MongoClient(new MongoClientURI(DataManager.getConfigPropertyAsText(MONGO_URI), builder));
@@ -92,12 +123,33 @@ public class Persistence {
         externalFeedSourceProperties = new TypedPersistence(mongoDatabase, ExternalFeedSourceProperty.class);
         tokens = new TypedPersistence(mongoDatabase, FeedDownloadToken.class);
         snapshots = new TypedPersistence(mongoDatabase, Snapshot.class);
+        jobRecords = new TypedPersistence(mongoDatabase, JobRecord.class);
+        feedBlobs = new TypedPersistence(mongoDatabase, FeedBlob.class);
+        feedBlobReferences = new TypedPersistence(mongoDatabase, FeedBlobReference.class);
+
+        // Optionally cache the entities that are looked up by ID on nearly every request (e.g., for permissions checks).
+        long cacheTtlSeconds = DataManager.hasConfigProperty(MONGO_CACHE_TTL_SECONDS)
+            ? DataManager.getConfigProperty(MONGO_CACHE_TTL_SECONDS).asLong()
+            : 0;
+        if (cacheTtlSeconds > 0) {
+            long cacheMaxSize = DataManager.hasConfigProperty(MONGO_CACHE_MAX_SIZE)
+                ? DataManager.getConfigProperty(MONGO_CACHE_MAX_SIZE).asLong()
+                : DEFAULT_CACHE_MAX_SIZE;
+            projects.enableCache(cacheMaxSize, cacheTtlSeconds);
+            feedSources.enableCache(cacheMaxSize, cacheTtlSeconds);
+            organizations.enableCache(cacheMaxSize, cacheTtlSeconds);
+        }
+
+        // Create or verify the indexes declared on each model class (see MongoIndex).
+        for (TypedPersistence collection : Arrays.asList(feedSources, projects, feedVersions, deployments, notes,
+                organizations, externalFeedSourceProperties, tokens, snapshots, jobRecords, feedBlobs,
+                feedBlobReferences)) {
+            collection.reconcileIndexes();
+        }
+    }
 
-        // TODO: Set up indexes on feed versions by feedSourceId, version #? deployments, feedSources by projectId.
-//        deployments.getMongoCollection().createIndex(Indexes.descending("projectId"));
-//        feedSources.getMongoCollection().createIndex(Indexes.descending("projectId"));
-//        feedVersions.getMongoCollection().createIndex(Indexes.descending("feedSourceId", "version"));
-//        snapshots.getMongoCollection().createIndex(Indexes.descending("feedSourceId", "version"));
+    /** The database holding the collections (e.g., for tests that need a {@link TypedPersistence} of their own). */
+    static MongoDatabase getMongoDatabase () {
+        return mongoDatabase;
     }
-    
 }
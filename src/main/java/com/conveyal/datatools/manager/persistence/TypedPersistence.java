@@ -2,22 +2,61 @@ package com.conveyal.datatools.manager.persistence;
 
 import com.conveyal.datatools.manager.auth.Auth0UserProfile;
 import com.conveyal.datatools.manager.models.Model;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.mongodb.MongoException;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.IndexOptions;
 import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.WriteModel;
 import com.mongodb.client.result.DeleteResult;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.configuration.CodecRegistry;
 import org.bson.conversions.Bson;
+import org.bson.json.JsonParseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Constructor;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import static com.mongodb.client.model.Filters.and;
 import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.gt;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Filters.lt;
+import static com.mongodb.client.model.Filters.ne;
+import static com.mongodb.client.model.Filters.or;
 import static com.mongodb.client.model.Updates.set;
 
 /**
@@ -47,13 +86,33 @@ import static com.mongodb.client.model.Updates.set;
 public class TypedPersistence<T extends Model> {
 
     private static final Logger LOG = LoggerFactory.getLogger(TypedPersistence.class);
+    /** Number of documents fetched from the server per cursor batch when streaming results. */
+    public static final int DEFAULT_BATCH_SIZE = 100;
 
+    private MongoDatabase mongoDatabase;
     private MongoCollection<T> mongoCollection;
+    private Class<T> clazz;
     private Constructor<T> noArgConstructor;
     private String collectionName;
     private final FindOneAndUpdateOptions findOneAndUpdateOptions = new FindOneAndUpdateOptions();
 
+    /**
+     * Optional read-through cache for {@link #getById(String)}, enabled with {@link #enableCache(long, long)}. Raw BSON
+     * is cached (rather than decoded objects) so that every caller receives its own copy of the object and can never
+     * mutate the cached state.
+     */
+    private Cache<String, RawBsonDocument> cache;
+    private MongoCollection<RawBsonDocument> rawCollection;
+    private Codec<T> codec;
+    /**
+     * Incremented on every invalidation so that a cache miss which raced with a write does not store the document it
+     * read before the write.
+     */
+    private final AtomicLong invalidationCount = new AtomicLong();
+
     public TypedPersistence(MongoDatabase mongoDatabase, Class<T> clazz) {
+        this.mongoDatabase = mongoDatabase;
+        this.clazz = clazz;
         mongoCollection = mongoDatabase.getCollection(clazz.getSimpleName(), clazz);
         collectionName = clazz.getSimpleName();
         try {
@@ -68,6 +127,104 @@ public class TypedPersistence<T extends Model> {
 //        findOneAndUpdateOptions.upsert(true);
     }
 
+    /**
+     * Enable a bounded, TTL-based read-through cache for {@link #getById(String)}. Entries are invalidated by any write
+     * made through this instance (update, replace, remove), so the TTL only bounds staleness for writes made by other
+     * processes or directly on the {@link #getMongoCollection()} (callers doing the latter should {@link #invalidate}).
+     */
+    public void enableCache (long maximumSize, long ttlSeconds) {
+        cache = CacheBuilder.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+            .recordStats()
+            .build();
+        rawCollection = mongoCollection.withDocumentClass(RawBsonDocument.class);
+        codec = mongoCollection.getCodecRegistry().get(clazz);
+        LOG.info("Enabled {} cache (max size={}, ttl={}s)", collectionName, maximumSize, ttlSeconds);
+    }
+
+    /** Remove the object with the given ID from the cache (if enabled). */
+    public void invalidate (String id) {
+        invalidationCount.incrementAndGet();
+        if (cache != null && id != null) cache.invalidate(id);
+    }
+
+    /** Remove all objects from the cache (if enabled). */
+    public void invalidateAll () {
+        invalidationCount.incrementAndGet();
+        if (cache != null) cache.invalidateAll();
+    }
+
+    /** @return the hit/miss statistics for the cache or null if caching is not enabled. */
+    public CacheStats getCacheStats () {
+        return cache != null ? cache.stats() : null;
+    }
+
+    /**
+     * Create any indexes declared on the model class with {@link MongoIndex} that do not yet exist on the collection
+     * and log any drift between the declared and existing indexes. Undeclared indexes found on the collection are left
+     * in place (dropping indexes is left to a database administrator) but are reported so that they can be cleaned up
+     * or declared on the model.
+     */
+    public void reconcileIndexes () {
+        try {
+            // Key existing indexes on their field/direction signature so that they can be compared with declarations.
+            Map<String, Document> existingIndexes = new HashMap<>();
+            for (Document index : mongoCollection.listIndexes()) {
+                existingIndexes.put(indexSignature((Document) index.get("key")), index);
+            }
+            Set<String> declaredSignatures = new HashSet<>();
+            for (MongoIndex declaredIndex : clazz.getAnnotationsByType(MongoIndex.class)) {
+                Document keys = indexKeys(declaredIndex);
+                String signature = indexSignature(keys);
+                declaredSignatures.add(signature);
+                Document existingIndex = existingIndexes.get(signature);
+                if (existingIndex == null) {
+                    LOG.info("Creating index {} on {}", keys.toJson(), collectionName);
+                    mongoCollection.createIndex(keys, new IndexOptions().unique(declaredIndex.unique()));
+                } else if (declaredIndex.unique() != Boolean.TRUE.equals(existingIndex.getBoolean("unique"))) {
+                    LOG.warn(
+                        "Index {} on {} does not match declaration (declared unique={})",
+                        existingIndex.getString("name"),
+                        collectionName,
+                        declaredIndex.unique()
+                    );
+                }
+            }
+            for (Document existingIndex : existingIndexes.values()) {
+                String name = existingIndex.getString("name");
+                if (!"_id_".equals(name) && !declaredSignatures.contains(indexSignature((Document) existingIndex.get("key")))) {
+                    LOG.warn("Index {} on {} is not declared on {}", name, collectionName, clazz.getSimpleName());
+                }
+            }
+        } catch (MongoException e) {
+            LOG.error("Could not reconcile indexes for {}", collectionName, e);
+        }
+    }
+
+    /** Convert a {@link MongoIndex} declaration into an index keys document (e.g., {feedSourceId: 1, version: -1}). */
+    private static Document indexKeys (MongoIndex index) {
+        Document keys = new Document();
+        for (String field : index.value()) {
+            if (field.startsWith("-")) keys.append(field.substring(1), -1);
+            else keys.append(field, 1);
+        }
+        return keys;
+    }
+
+    /**
+     * Construct a comparable signature for an index keys document. Directions are normalized to integers because
+     * indexes created by other clients may store them as doubles.
+     */
+    private static String indexSignature (Document keys) {
+        return keys.entrySet().stream()
+            .map(entry -> {
+                Object direction = entry.getValue();
+                return entry.getKey() + "_" + (direction instanceof Number ? ((Number) direction).intValue() : direction);
+            })
+            .collect(Collectors.joining("_"));
+    }
+
     public T create (String updateJson) {
         T item = null;
         try {
@@ -92,6 +249,7 @@ public class TypedPersistence<T extends Model> {
 
     public void replace (String id, T replaceObject) {
         mongoCollection.replaceOne(eq(id), replaceObject);
+        invalidate(id);
     }
 
     /**
@@ -100,7 +258,9 @@ public class TypedPersistence<T extends Model> {
     public T update (String id, Document updateDocument) {
         // Set last updated.
         updateDocument.put("lastUpdated", new Date());
-        return mongoCollection.findOneAndUpdate(eq(id), new Document("$set", updateDocument), findOneAndUpdateOptions);
+        T updatedItem = mongoCollection.findOneAndUpdate(eq(id), new Document("$set", updateDocument), findOneAndUpdateOptions);
+        invalidate(id);
+        return updatedItem;
     }
 
     /**
@@ -117,19 +277,63 @@ public class TypedPersistence<T extends Model> {
         return update(id, new Document(fieldName, value));
     }
 
+    /**
+     * Set the fields of the Mongo object referenced by ID without changing its lastUpdated date, for fields maintained by
+     * the application (e.g., cached summaries) whose changes are not edits of the object.
+     */
+    public void setFields (String id, Document fields) {
+        mongoCollection.updateOne(eq(id), new Document("$set", fields));
+        invalidate(id);
+    }
+
     public T updateUser (String id, Auth0UserProfile profile) {
         String updateJson = String.format("{userId: %s, userEmail: %s}", profile.getUser_id(), profile.getEmail());
         Document updateDocument = Document.parse(updateJson);
-        return mongoCollection.findOneAndUpdate(eq(id), new Document("$set", updateDocument), findOneAndUpdateOptions);
+        T updatedItem = mongoCollection.findOneAndUpdate(eq(id), new Document("$set", updateDocument), findOneAndUpdateOptions);
+        invalidate(id);
+        return updatedItem;
     }
 
     public T getById (String id) {
-        return mongoCollection.find(eq(id)).first();
+        if (cache == null || id == null) {
+            return mongoCollection.find(eq(id)).first();
+        }
+        RawBsonDocument document = cache.getIfPresent(id);
+        if (document == null) {
+            long invalidationsBeforeRead = invalidationCount.get();
+            document = rawCollection.find(eq(id)).first();
+            if (document == null) return null;
+            // Only cache the document if no write was made while it was being read.
+            if (invalidationCount.get() == invalidationsBeforeRead) cache.put(id, document);
+        }
+        // Decode a new object for each caller.
+        return document.decode(codec);
     }
 
     /**
-     * This is not memory efficient.
-     * TODO: Always use iterators / streams, always perform selection of subsets on the Mongo server side ("where clause").
+     * Get the objects for the supplied IDs with a single $in query (rather than one query per ID). Objects are returned
+     * in the order of the supplied IDs. IDs that do not match any object are skipped, so callers that need to report
+     * missing references should compare the result size with the number of IDs.
+     */
+    public List<T> getByIds (Collection<String> ids) {
+        List<T> results = new ArrayList<>(ids != null ? ids.size() : 0);
+        if (ids == null || ids.isEmpty()) return results;
+        Map<String, T> objectsById = new HashMap<>(ids.size());
+        try (MongoCursor<T> cursor = mongoCollection.find(in("_id", ids)).iterator()) {
+            while (cursor.hasNext()) {
+                T object = cursor.next();
+                objectsById.put(object.id, object);
+            }
+        }
+        for (String id : ids) {
+            T object = objectsById.get(id);
+            if (object != null) results.add(object);
+        }
+        return results;
+    }
+
+    /**
+     * This is not memory efficient. Prefer {@link #streamAll()} or {@link #stream(Bson)} with a server side filter.
      */
     public List<T> getAll () {
         return mongoCollection.find().into(new ArrayList<>());
@@ -144,6 +348,194 @@ public class TypedPersistence<T extends Model> {
         return mongoCollection.find(filter).into(new ArrayList<T>());
     }
 
+    /**
+     * Get all objects satisfying the supplied Mongo filter, decoding only the fields selected by the projection (see
+     * {@link #iterate(Bson, Bson, Bson, int, int)} for parameters). Fields excluded by the projection are left at their
+     * default values, so the returned objects are read-only views: they must never be passed back to
+     * {@link #replace(String, Model)}, which would overwrite the stored document with the partial one.
+     */
+    public List<T> getFiltered (Bson filter, Bson projection, Bson sortBy) {
+        List<T> results = new ArrayList<>();
+        try (MongoCursor<T> cursor = iterate(filter, projection, sortBy, 0, DEFAULT_BATCH_SIZE)) {
+            cursor.forEachRemaining(results::add);
+        }
+        return results;
+    }
+
+    /**
+     * Open a cursor over the objects satisfying the supplied Mongo filter. Unlike {@link #getFiltered(Bson)}, documents
+     * are decoded one batch at a time as the cursor advances, so heap usage does not grow with collection size. The
+     * caller is responsible for closing the returned cursor (it is {@link java.io.Closeable}).
+     *
+     * @param filter     query filter (null matches all documents)
+     * @param projection fields to include/exclude (null returns full documents)
+     * @param sortBy     sort order (null for natural order)
+     * @param limit      maximum number of documents to return (0 for no limit)
+     * @param batchSize  number of documents to fetch per round trip (0 for the server default)
+     */
+    public MongoCursor<T> iterate (Bson filter, Bson projection, Bson sortBy, int limit, int batchSize) {
+        FindIterable<T> findIterable = filter != null ? mongoCollection.find(filter) : mongoCollection.find();
+        if (projection != null) findIterable = findIterable.projection(projection);
+        if (sortBy != null) findIterable = findIterable.sort(sortBy);
+        if (limit > 0) findIterable = findIterable.limit(limit);
+        if (batchSize > 0) findIterable = findIterable.batchSize(batchSize);
+        return findIterable.iterator();
+    }
+
+    /**
+     * Stream the objects satisfying the supplied Mongo filter, backed by a server-side cursor (see
+     * {@link #iterate(Bson, Bson, Bson, int, int)} for parameters). The stream must be closed (e.g., with
+     * try-with-resources) so that the underlying cursor is released if the stream is not fully consumed.
+     */
+    public Stream<T> stream (Bson filter, Bson projection, Bson sortBy, int limit, int batchSize) {
+        MongoCursor<T> cursor = iterate(filter, projection, sortBy, limit, batchSize);
+        return StreamSupport
+            .stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED | Spliterator.NONNULL), false)
+            .onClose(cursor::close);
+    }
+
+    /** Convenience wrapper for {@link #stream(Bson, Bson, Bson, int, int)} with full documents and default batching. */
+    public Stream<T> stream (Bson filter) {
+        return stream(filter, null, null, 0, DEFAULT_BATCH_SIZE);
+    }
+
+    /** Stream every object in the collection. Use this in place of {@link #getAll()} wherever possible. */
+    public Stream<T> streamAll () {
+        return stream(null);
+    }
+
+    /**
+     * Count the objects satisfying the supplied Mongo filter (null counts all objects) without decoding them.
+     */
+    public long count (Bson filter) {
+        return filter != null ? mongoCollection.count(filter) : mongoCollection.count();
+    }
+
+    /**
+     * Get one page of the objects satisfying the supplied Mongo filter using keyset (rather than offset) pagination:
+     * results are sorted by the supplied field with the document ID as a tiebreaker, and each page resumes after the
+     * sort key of the last object on the previous page. Unlike skip/limit, the cost of fetching a page does not grow
+     * with its position in the result set, provided the sort field is indexed (see {@link MongoIndex}). Objects with a
+     * null (or missing) sort value are ordered as MongoDB sorts them: before all other values (after them if
+     * descending).
+     *
+     * @param filter       query filter (null matches all documents)
+     * @param projection   fields to include/exclude (null returns full documents)
+     * @param sortField    top-level field to sort on ("_id" to sort on ID alone)
+     * @param descending   whether to sort in descending order
+     * @param limit        maximum number of objects to return in the page
+     * @param after        opaque cursor returned as {@link Page#next} for the previous page (null for the first page)
+     * @param includeTotal whether to also count all objects matching the filter (requires an additional query)
+     * @throws IllegalArgumentException if the cursor cannot be parsed or the projection excludes the sort field
+     */
+    public Page<T> getPage (
+        Bson filter,
+        Bson projection,
+        String sortField,
+        boolean descending,
+        int limit,
+        String after,
+        boolean includeTotal
+    ) {
+        boolean sortById = "_id".equals(sortField);
+        if (!sortById && projection != null && excludes(projection, sortField)) {
+            throw new IllegalArgumentException("Projection for paginated " + collectionName + " must include " + sortField);
+        }
+        List<String> sortFields = sortById ? Arrays.asList("_id") : Arrays.asList(sortField, "_id");
+        Bson sortBy = descending ? Sorts.descending(sortFields) : Sorts.ascending(sortFields);
+        List<Bson> filters = new ArrayList<>();
+        if (filter != null) filters.add(filter);
+        if (after != null) filters.add(pageCursorFilter(after, sortField, descending));
+        Bson pageFilter = filters.isEmpty() ? null : and(filters);
+        // Fetch one object beyond the limit to determine whether there is another page. The raw documents are kept so
+        // that the cursor can be built from the last object on the page as it was read.
+        List<RawBsonDocument> documents = new ArrayList<>();
+        FindIterable<RawBsonDocument> findIterable = pageFilter != null
+            ? mongoCollection.withDocumentClass(RawBsonDocument.class).find(pageFilter)
+            : mongoCollection.withDocumentClass(RawBsonDocument.class).find();
+        if (projection != null) findIterable = findIterable.projection(projection);
+        findIterable = findIterable.sort(sortBy).limit(limit + 1).batchSize(limit + 1);
+        try (MongoCursor<RawBsonDocument> cursor = findIterable.iterator()) {
+            cursor.forEachRemaining(documents::add);
+        }
+        String next = null;
+        if (documents.size() > limit) {
+            documents.remove(limit);
+            next = encodePageCursor(documents.get(limit - 1), sortField);
+        }
+        Codec<T> pageCodec = mongoCollection.getCodecRegistry().get(clazz);
+        List<T> items = documents.stream().map(document -> document.decode(pageCodec)).collect(Collectors.toList());
+        Long total = includeTotal ? count(filter) : null;
+        return new Page<>(items, next, total);
+    }
+
+    /**
+     * Encode the ID and sort value of the last object on a page as an opaque (base64-encoded JSON) cursor. The sort
+     * value is read from the document as returned by the page query rather than the decoded object so that it retains
+     * its BSON type. A missing sort value is encoded as null, which MongoDB treats the same when sorting.
+     */
+    private String encodePageCursor (RawBsonDocument lastDocument, String sortField) {
+        Document cursor = new Document("id", lastDocument.getString("_id").getValue());
+        if (!"_id".equals(sortField)) cursor.append("value", lastDocument.get(sortField));
+        return Base64.getUrlEncoder().encodeToString(cursor.toJson().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Construct a filter that matches the objects sorted after the position encoded in the supplied cursor.
+     */
+    private static Bson pageCursorFilter (String after, String sortField, boolean descending) {
+        String id;
+        Object value;
+        try {
+            Document cursor = Document.parse(new String(Base64.getUrlDecoder().decode(after), StandardCharsets.UTF_8));
+            id = cursor.getString("id");
+            value = cursor.get("value");
+        } catch (IllegalArgumentException | ClassCastException | JsonParseException e) {
+            throw new IllegalArgumentException("Invalid pagination cursor: " + after, e);
+        }
+        if (id == null) throw new IllegalArgumentException("Invalid pagination cursor: " + after);
+        Bson afterId = descending ? lt("_id", id) : gt("_id", id);
+        if ("_id".equals(sortField)) return afterId;
+        // Range operators never match null (or missing) values, which sort before all others, so these are matched
+        // separately. Note: eq(field, null) matches both null and missing values.
+        Bson sameValue = and(eq(sortField, value), afterId);
+        if (value == null) return descending ? sameValue : or(sameValue, ne(sortField, null));
+        Bson afterValue = descending ? lt(sortField, value) : gt(sortField, value);
+        return descending ? or(afterValue, sameValue, eq(sortField, null)) : or(afterValue, sameValue);
+    }
+
+    /**
+     * Whether the supplied projection leaves out the field, either by excluding it or by including only other fields.
+     * Operators such as $slice neither include nor exclude other fields.
+     */
+    private boolean excludes (Bson projection, String field) {
+        BsonDocument fields = projection.toBsonDocument(BsonDocument.class, mongoCollection.getCodecRegistry());
+        BsonValue value = fields.get(field);
+        if (value != null) return isExclusion(value);
+        // Any other field included (apart from _id, which is included by default) makes this an inclusion projection.
+        return fields.entrySet().stream().anyMatch(entry ->
+            !"_id".equals(entry.getKey()) && !entry.getValue().isDocument() && !isExclusion(entry.getValue())
+        );
+    }
+
+    /** Whether the projection value (e.g., 0 or false) excludes its field. */
+    private static boolean isExclusion (BsonValue value) {
+        if (value.isBoolean()) return !value.asBoolean().getValue();
+        return value.isNumber() && value.asNumber().intValue() == 0;
+    }
+
+    /**
+     * Run the MongoDB explain command (query planner verbosity) for a find with the supplied filter and sort. This is
+     * primarily useful for verifying that a query is supported by one of the indexes declared with {@link MongoIndex}.
+     */
+    public Document explain (Bson filter, Bson sortBy) {
+        CodecRegistry codecRegistry = mongoCollection.getCodecRegistry();
+        Document find = new Document("find", collectionName)
+            .append("filter", filter.toBsonDocument(Document.class, codecRegistry));
+        if (sortBy != null) find.append("sort", sortBy.toBsonDocument(Document.class, codecRegistry));
+        return mongoDatabase.runCommand(new Document("explain", find).append("verbosity", "queryPlanner"));
+    }
+
     /**
      * Expose the internal MongoCollection to the caller.
      * This ties our persistence directly to Mongo for now but is expedient.
@@ -171,8 +563,28 @@ public class TypedPersistence<T extends Model> {
         return getOneFiltered(filter, null);
     }
 
+    /**
+     * Execute the supplied inserts, updates, replacements and deletes in as few round trips to the database as
+     * possible (the driver splits the list into batches as needed). The operations are unordered, so they must not
+     * depend on one another. Because the affected IDs are not known in advance, this clears the cache if enabled.
+     */
+    public BulkWriteResult bulkWrite (List<? extends WriteModel<? extends T>> requests) {
+        if (requests.isEmpty()) return BulkWriteResult.acknowledged(0, 0, 0, 0, Collections.emptyList());
+        BulkWriteResult result = mongoCollection.bulkWrite(requests, new BulkWriteOptions().ordered(false));
+        invalidateAll();
+        LOG.info(
+            "Bulk write to {}: {} inserted, {} modified, {} deleted",
+            collectionName,
+            result.getInsertedCount(),
+            result.getModifiedCount(),
+            result.getDeletedCount()
+        );
+        return result;
+    }
+
     public boolean removeById (String id) {
         DeleteResult result = mongoCollection.deleteOne(eq(id));
+        invalidate(id);
         if (result.getDeletedCount() == 1) {
             LOG.info("Deleted object id={} type={}", id, collectionName);
             return true;
@@ -186,6 +598,7 @@ public class TypedPersistence<T extends Model> {
 
     public boolean removeFiltered (Bson filter) {
         DeleteResult result = mongoCollection.deleteMany(filter);
+        invalidateAll();
         long count = result.getDeletedCount();
         if (count >= 1) {
             LOG.info("Deleted {} objects of type {}", count, collectionName);
@@ -7,19 +7,71 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.security.DigestInputStream;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 
+/**
+ * Feed files are identified by the SHA-256 hash of their full content. The hash is normally computed while the file is
+ * first written (see {@link #hashingStream}), so that the file never needs to be read again just to hash it.
+ *
+ * Versions stored before full-content hashing have a legacy MD5 hash of only the file size and a sample of the
+ * content, which {@link #matches} still recognizes so that unchanged feeds are not stored again after upgrading.
+ */
 public class HashUtils {
 
     public static final Logger LOG = LoggerFactory.getLogger(MtcFeedResource.class);
+    public static final String HASH_ALGORITHM = "SHA-256";
+    /** Length of a legacy (hex-encoded MD5) hash. */
+    private static final int LEGACY_HASH_LENGTH = 32;
 
     /**
-     * Get MD5 hash for the specified file.
+     * Wrap the input stream so that the full content read through it is hashed (see {@link #hashOf}).
+     */
+    public static DigestInputStream hashingStream(InputStream inputStream) {
+        return new DigestInputStream(inputStream, newDigest());
+    }
+
+    /**
+     * Get the hash of everything read so far through a stream created with {@link #hashingStream}.
+     */
+    public static String hashOf(DigestInputStream hashingStream) {
+        return new String(Hex.encodeHex(hashingStream.getMessageDigest().digest()));
+    }
+
+    /**
+     * Get the hash of the full content of the specified file. Prefer computing the hash while the file is written
+     * (see {@link #hashingStream}), which avoids reading the file again.
      */
     public static String hashFile(File file)  {
+        try (DigestInputStream dis = hashingStream(new FileInputStream(file))) {
+            byte[] buffer = new byte[64 * 1024];
+            while (dis.read(buffer) != -1) { }
+            return hashOf(dis);
+        } catch(Exception e) {
+            LOG.warn("Failed to hash file, returning empty string instead");
+            e.printStackTrace();
+            return "";
+        }
+    }
+
+    /**
+     * Whether the file with the given (full-content) hash has the same content as the file with the stored hash, which
+     * may be a legacy hash (in which case the legacy hash of the file is computed to compare).
+     */
+    public static boolean matches(String storedHash, String hash, File file) {
+        if (storedHash == null || storedHash.isEmpty()) return false;
+        if (storedHash.length() == LEGACY_HASH_LENGTH) return storedHash.equals(legacyHashFile(file));
+        return storedHash.equals(hash);
+    }
+
+    /**
+     * Get the legacy MD5 hash (of the size, the first 1000 bytes and 5000 bytes from the middle) of the specified file.
+     */
+    private static String legacyHashFile(File file)  {
         try {
             MessageDigest md = MessageDigest.getInstance("MD5");
             FileInputStream fis = new FileInputStream(file);
@@ -50,4 +102,13 @@ public class HashUtils {
             return "";
         }
     }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
 }
@@ -0,0 +1,39 @@
+package com.conveyal.datatools.common.metrics;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+
+/**
+ * Tests that {@link Metrics} are written in the Prometheus text format.
+ */
+public class MetricsTest {
+
+    @Test
+    public void writesCumulativeHistogramBuckets() {
+        Metrics.Histogram histogram = Metrics.durationHistogram("test_duration_seconds", "Test durations", "stage");
+        histogram.observeMillis(20, "load");
+        histogram.observeMillis(2000, "load");
+        histogram.observe(7200, "validate");
+
+        String metrics = Metrics.scrape();
+        assertThat(metrics, containsString("# TYPE test_duration_seconds histogram\n"));
+        assertThat(metrics, containsString("test_duration_seconds_bucket{stage=\"load\",le=\"0.01\"} 0\n"));
+        assertThat(metrics, containsString("test_duration_seconds_bucket{stage=\"load\",le=\"0.05\"} 1\n"));
+        assertThat(metrics, containsString("test_duration_seconds_bucket{stage=\"load\",le=\"5\"} 2\n"));
+        assertThat(metrics, containsString("test_duration_seconds_bucket{stage=\"validate\",le=\"3600\"} 0\n"));
+        assertThat(metrics, containsString("test_duration_seconds_bucket{stage=\"validate\",le=\"+Inf\"} 1\n"));
+        assertThat(metrics, containsString("test_duration_seconds_count{stage=\"load\"} 2\n"));
+    }
+
+    @Test
+    public void writesLabelledGauges() {
+        Metrics.registerGauge("test_queued", "Test queue depths", "type",
+            () -> Collections.singletonMap("FETCH_SINGLE_FEED", 3));
+
+        assertThat(Metrics.scrape(), containsString("test_queued{type=\"FETCH_SINGLE_FEED\"} 3\n"));
+    }
+}
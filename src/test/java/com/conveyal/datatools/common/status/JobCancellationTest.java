@@ -0,0 +1,68 @@
+package com.conveyal.datatools.common.status;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ * Tests that jobs stop and clean up when their cancellation is requested.
+ */
+public class JobCancellationTest {
+
+    @Test(timeout = 10000)
+    public void canCancelRunningJob() throws InterruptedException {
+        LoopingJob job = new LoopingJob();
+        LoopingJob subJob = new LoopingJob();
+        job.addNextJob(subJob);
+        Thread thread = new Thread(job);
+        thread.start();
+        job.started.await();
+        job.requestCancellation();
+        thread.join();
+
+        assertThat(job.status.completed, equalTo(true));
+        assertThat(job.status.error, equalTo(true));
+        assertThat(job.status.cancelled, equalTo(true));
+        assertThat(job.cleanedUp, equalTo(true));
+        // The sub-job never started, so it is cancelled without needing to clean up.
+        assertThat(subJob.status.cancelled, equalTo(true));
+        assertThat(subJob.cleanedUp, equalTo(false));
+    }
+
+    @Test
+    public void jobCancelledBeforeStartingDoesNotRun() {
+        LoopingJob job = new LoopingJob();
+        job.requestCancellation();
+        job.run();
+
+        assertThat(job.started.getCount(), equalTo(1L));
+        assertThat(job.status.cancelled, equalTo(true));
+    }
+
+    /** A job that runs until it is cancelled. */
+    private static class LoopingJob extends MonitorableJob {
+        final CountDownLatch started = new CountDownLatch(1);
+        volatile boolean cleanedUp;
+
+        LoopingJob() {
+            super("test-user", "Looping job", JobType.UNKNOWN_TYPE);
+        }
+
+        @Override
+        public void jobLogic() throws InterruptedException {
+            started.countDown();
+            while (true) {
+                checkCancellation();
+                Thread.sleep(5);
+            }
+        }
+
+        @Override
+        public void jobCancelled() {
+            cleanedUp = true;
+        }
+    }
+}
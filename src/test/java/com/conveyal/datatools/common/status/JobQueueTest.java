@@ -0,0 +1,239 @@
+package com.conveyal.datatools.common.status;
+
+import com.conveyal.datatools.DatatoolsTest;
+import com.conveyal.datatools.manager.models.JobRecord;
+import com.conveyal.datatools.manager.persistence.Persistence;
+import com.google.common.collect.ImmutableMap;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Updates.combine;
+import static com.mongodb.client.model.Updates.set;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ * Tests that the durable {@link JobQueue} recovers, retries and cancels jobs through their records in MongoDB, and
+ * hands jobs off from an API node to worker nodes. The queue's periodic maintenance is not started; each test runs
+ * the steps it needs itself.
+ */
+public class JobQueueTest {
+    private static final MonitorableJob.JobType RESUMABLE_TYPE = MonitorableJob.JobType.BUILD_TRANSPORT_NETWORK;
+    /** Type without a registered factory, so that its jobs cannot be resumed. */
+    private static final MonitorableJob.JobType UNREGISTERED_TYPE = MonitorableJob.JobType.PROCESS_SNAPSHOT_EXPORT;
+    private static final int MAX_ATTEMPTS = 3;
+    /** Jobs recreated by the registered factory. */
+    private static final List<TestJob> recreatedJobs = new CopyOnWriteArrayList<>();
+
+    @BeforeClass
+    public static void setUp() {
+        DatatoolsTest.setUp();
+        Persistence.initialize();
+        JobQueue.registerJobType(RESUMABLE_TYPE, (owner, parameters) -> {
+            TestJob job = new TestJob(Boolean.parseBoolean(parameters.get("fail")));
+            recreatedJobs.add(job);
+            return job;
+        }, true);
+    }
+
+    @Before
+    public void configure() {
+        // Retry without delay, so that the tests need not wait for retries.
+        JobQueue.configure(JobQueue.Mode.STANDALONE, MAX_ATTEMPTS, 0);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        JobQueue.reset();
+    }
+
+    @Test(timeout = 10000)
+    public void resubmitsJobWithExpiredLease() throws InterruptedException {
+        JobRecord record = createRecord(RESUMABLE_TYPE, JobRecord.State.RUNNING, "stopped-node", new Date(0));
+        record.attempts = 1;
+        Persistence.jobRecords.create(record);
+
+        JobQueue.claimJobs(false);
+        JobRecord finished = waitForState(record.id, JobRecord.State.COMPLETED);
+        assertThat(finished.attempts, equalTo(2));
+        assertThat(finished.leaseOwner, equalTo(null));
+        // The recreated job keeps the original job ID.
+        assertThat(recreatedJobs.stream().filter(job -> job.jobId.equals(record.id)).count(), equalTo(1L));
+    }
+
+    @Test
+    public void doesNotReclaimCurrentLease() {
+        Date leaseExpires = new Date(System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(5));
+        JobRecord record = createRecord(RESUMABLE_TYPE, JobRecord.State.RUNNING, "running-node", leaseExpires);
+        Persistence.jobRecords.create(record);
+
+        JobQueue.claimJobs(false);
+        JobRecord current = Persistence.jobRecords.getById(record.id);
+        assertThat(current.state, equalTo(JobRecord.State.RUNNING));
+        assertThat(current.leaseOwner, equalTo("running-node"));
+    }
+
+    @Test
+    public void renewsOwnLeases() {
+        JobRecord record = createRecord(RESUMABLE_TYPE, JobRecord.State.RUNNING, JobQueue.NODE_ID, new Date(0));
+        Persistence.jobRecords.create(record);
+
+        JobQueue.renewLeases();
+        JobRecord current = Persistence.jobRecords.getById(record.id);
+        assertThat(current.leaseExpires.after(new Date()), equalTo(true));
+        assertThat(current.leaseOwner, equalTo(JobQueue.NODE_ID));
+    }
+
+    @Test
+    public void failsJobWithoutFactory() {
+        JobRecord record = createRecord(UNREGISTERED_TYPE, JobRecord.State.RUNNING, "stopped-node", new Date(0));
+        Persistence.jobRecords.create(record);
+
+        JobQueue.claimJobs(false);
+        JobRecord failed = Persistence.jobRecords.getById(record.id);
+        assertThat(failed.state, equalTo(JobRecord.State.FAILED));
+        assertThat(failed.message, equalTo("Job was interrupted by a server restart."));
+        assertThat(failed.leaseOwner, equalTo(null));
+    }
+
+    @Test(timeout = 10000)
+    public void stopsRetryingAtMaxAttempts() throws InterruptedException {
+        TestJob job = new TestJob(true);
+        JobQueue.execute(job);
+
+        JobRecord failed = waitForState(job.jobId, JobRecord.State.FAILED);
+        assertThat(failed.attempts, equalTo(MAX_ATTEMPTS));
+        assertThat(failed.message, equalTo("Test failure"));
+        // Each attempt after the first ran a job recreated with the original ID.
+        assertThat(recreatedJobs.stream().filter(recreated -> recreated.jobId.equals(job.jobId)).count(),
+            equalTo((long) MAX_ATTEMPTS - 1));
+    }
+
+    @Test
+    public void doublesRetryDelay() {
+        JobQueue.configure(JobQueue.Mode.STANDALONE, MAX_ATTEMPTS, 1000);
+        assertThat(JobQueue.retryDelay(0), equalTo(0L));
+        assertThat(JobQueue.retryDelay(1), equalTo(1000L));
+        assertThat(JobQueue.retryDelay(2), equalTo(2000L));
+        assertThat(JobQueue.retryDelay(3), equalTo(4000L));
+    }
+
+    @Test
+    public void cancelsUnclaimedJobOutright() {
+        TestJob job = new TestJob(false);
+        JobRecord record = createRecord(RESUMABLE_TYPE, JobRecord.State.QUEUED, null, new Date(0));
+        record.id = job.jobId;
+        Persistence.jobRecords.create(record);
+
+        JobQueue.cancel(job);
+        JobRecord cancelled = Persistence.jobRecords.getById(record.id);
+        assertThat(cancelled.state, equalTo(JobRecord.State.FAILED));
+        assertThat(cancelled.message, equalTo("Job was cancelled."));
+        assertThat(cancelled.cancelRequested, equalTo(true));
+    }
+
+    @Test
+    public void leavesResumableJobForWorkerInApiMode() {
+        JobQueue.configure(JobQueue.Mode.API, MAX_ATTEMPTS, 0);
+        List<Runnable> submitted = new CopyOnWriteArrayList<>();
+        TestJob job = new TestJob(false);
+
+        assertThat(JobQueue.execute(job, submitted::add), equalTo(job));
+        assertThat(submitted.isEmpty(), equalTo(true));
+        assertThat(job.status.queued, equalTo(true));
+        JobRecord record = Persistence.jobRecords.getById(job.jobId);
+        assertThat(record.state, equalTo(JobRecord.State.QUEUED));
+        assertThat(record.leaseExpires, equalTo(new Date(0)));
+        assertThat(record.leaseOwner, equalTo(null));
+        assertThat(record.parameters, equalTo(job.jobParameters()));
+    }
+
+    @Test
+    public void reportsFailureOfRemoteJob() {
+        JobQueue.configure(JobQueue.Mode.API, MAX_ATTEMPTS, 0);
+        TestJob job = new TestJob(false);
+        JobQueue.execute(job, runnable -> { });
+        assertThat(JobQueue.remoteJobs.containsKey(job.jobId), equalTo(true));
+
+        // A worker claims the job, then fails it.
+        Persistence.jobRecords.getMongoCollection().updateOne(eq(job.jobId), combine(
+            set("state", JobRecord.State.FAILED.name()),
+            set("leaseOwner", null),
+            set("message", "Worker failure")
+        ));
+        JobQueue.syncRemoteJobs();
+        assertThat(job.status.error, equalTo(true));
+        assertThat(job.status.completed, equalTo(true));
+        assertThat(job.status.message, equalTo("Worker failure"));
+        assertThat(JobQueue.remoteJobs.containsKey(job.jobId), equalTo(false));
+    }
+
+    @Test
+    public void requestsCancellationOfJobRunningElsewhere() {
+        TestJob job = new TestJob(false);
+        Date leaseExpires = new Date(System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(5));
+        JobRecord record = createRecord(RESUMABLE_TYPE, JobRecord.State.RUNNING, "worker-node", leaseExpires);
+        record.id = job.jobId;
+        Persistence.jobRecords.create(record);
+
+        JobQueue.cancel(job);
+        JobRecord current = Persistence.jobRecords.getById(record.id);
+        // The job keeps running until the worker running it sees the request.
+        assertThat(current.state, equalTo(JobRecord.State.RUNNING));
+        assertThat(current.cancelRequested, equalTo(true));
+    }
+
+    /** Create (but do not store) a record for a job that succeeds when recreated. */
+    static JobRecord createRecord(
+        MonitorableJob.JobType type, JobRecord.State state, String leaseOwner, Date leaseExpires
+    ) {
+        JobRecord record = new JobRecord();
+        record.id = UUID.randomUUID().toString();
+        record.type = type;
+        record.name = "Test job";
+        record.owner = "test-user";
+        record.parameters = ImmutableMap.of("fail", "false");
+        record.state = state;
+        record.leaseOwner = leaseOwner;
+        record.leaseExpires = leaseExpires;
+        return record;
+    }
+
+    private static JobRecord waitForState(String id, JobRecord.State state) throws InterruptedException {
+        while (true) {
+            JobRecord record = Persistence.jobRecords.getById(id);
+            if (record != null && record.state == state) return record;
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+
+    static class TestJob extends MonitorableJob {
+        private final boolean fail;
+
+        TestJob(boolean fail) {
+            super("test-user", "Test job", RESUMABLE_TYPE);
+            this.fail = fail;
+        }
+
+        @Override
+        public Map<String, String> jobParameters() {
+            return ImmutableMap.of("fail", Boolean.toString(fail));
+        }
+
+        @Override
+        public void jobLogic() {
+            if (fail) status.fail("Test failure");
+            else status.update("Done", 100);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.conveyal.datatools.common.status;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Tests that the {@link JobRegistry} indexes jobs and evicts finished jobs.
+ */
+public class JobRegistryTest {
+
+    @Test
+    public void canLookUpJobsByIdOwnerAndType() {
+        JobRegistry registry = new JobRegistry();
+        MonitorableJob fetch = new TestJob("alice", MonitorableJob.JobType.FETCH_SINGLE_FEED);
+        MonitorableJob validate = new TestJob("alice", MonitorableJob.JobType.VALIDATE_FEED);
+        MonitorableJob otherFetch = new TestJob("bob", MonitorableJob.JobType.FETCH_SINGLE_FEED);
+        registry.register(fetch);
+        registry.register(validate);
+        registry.register(otherFetch);
+
+        assertThat(registry.get(validate.jobId), equalTo(validate));
+        assertThat(registry.getByOwner("alice"), containsInAnyOrder(fetch, validate));
+        assertThat(registry.getByType(MonitorableJob.JobType.FETCH_SINGLE_FEED), containsInAnyOrder(fetch, otherFetch));
+
+        registry.remove(fetch);
+        assertThat(registry.get(fetch.jobId), nullValue());
+        assertThat(registry.getByOwner("alice"), contains(validate));
+        assertThat(registry.getByType(MonitorableJob.JobType.FETCH_SINGLE_FEED), contains(otherFetch));
+    }
+
+    @Test
+    public void evictsOldestFinishedJobsBeyondMaximum() {
+        JobRegistry registry = new JobRegistry();
+        registry.setRetention(TimeUnit.MINUTES.toMillis(60), 1);
+        MonitorableJob first = new TestJob("system", MonitorableJob.JobType.FETCH_PROJECT_FEEDS);
+        MonitorableJob second = new TestJob("system", MonitorableJob.JobType.FETCH_PROJECT_FEEDS);
+        MonitorableJob running = new TestJob("system", MonitorableJob.JobType.FETCH_PROJECT_FEEDS);
+        registry.register(first);
+        registry.register(second);
+        registry.register(running);
+        registry.finished(first);
+        registry.finished(second);
+
+        assertThat(registry.getAll(), containsInAnyOrder(second, running));
+    }
+
+    @Test
+    public void evictsFinishedJobsAfterRetentionPeriod() throws InterruptedException {
+        JobRegistry registry = new JobRegistry();
+        registry.setRetention(0, 100);
+        MonitorableJob job = new TestJob("system", MonitorableJob.JobType.FETCH_PROJECT_FEEDS);
+        registry.register(job);
+        registry.finished(job);
+        Thread.sleep(10);
+
+        assertThat(registry.getByOwner("system"), empty());
+    }
+
+    @Test
+    public void keepsJobIdWhenChanged() {
+        JobRegistry registry = new JobRegistry();
+        MonitorableJob failedAttempt = new TestJob("alice", MonitorableJob.JobType.FETCH_SINGLE_FEED);
+        MonitorableJob retry = new TestJob("alice", MonitorableJob.JobType.FETCH_SINGLE_FEED);
+        registry.register(failedAttempt);
+        registry.register(retry);
+        registry.changeJobId(retry, failedAttempt.jobId);
+
+        assertThat(registry.get(failedAttempt.jobId), equalTo(retry));
+        assertThat(registry.getByOwner("alice"), contains(retry));
+    }
+
+    @Test
+    public void attachesDuplicateJobsToJobInProgress() {
+        JobRegistry registry = new JobRegistry();
+        MonitorableJob job = new TestJob("alice", MonitorableJob.JobType.VALIDATE_FEED, "version-1");
+        MonitorableJob duplicate = new TestJob("bob", MonitorableJob.JobType.VALIDATE_FEED, "version-1");
+        MonitorableJob other = new TestJob("bob", MonitorableJob.JobType.VALIDATE_FEED, "version-2");
+        assertThat(registry.attachToDuplicate(job), nullValue());
+        registry.register(job);
+
+        assertThat(registry.attachToDuplicate(duplicate), equalTo(job));
+        assertThat(registry.attachToDuplicate(other), nullValue());
+        assertThat(registry.isVisibleTo(job, "bob"), equalTo(true));
+        assertThat(registry.getByOwner("bob"), contains(job));
+
+        // The job remains until both users have seen it finish, and is no longer in progress.
+        job.status.setCompleted(true);
+        registry.finished(job);
+        registry.removeForOwner(job, "alice");
+        assertThat(registry.get(job.jobId), equalTo(job));
+        registry.removeForOwner(job, "bob");
+        assertThat(registry.get(job.jobId), nullValue());
+        MonitorableJob rerun = new TestJob("bob", MonitorableJob.JobType.VALIDATE_FEED, "version-1");
+        assertThat(registry.attachToDuplicate(rerun), nullValue());
+    }
+
+    private static class TestJob extends MonitorableJob {
+        private final String input;
+
+        TestJob(String owner, JobType type) {
+            this(owner, type, null);
+        }
+
+        TestJob(String owner, JobType type, String input) {
+            super(owner, "Test job", type);
+            this.input = input;
+        }
+
+        @Override
+        public String deduplicationKey() {
+            return input == null ? null : type + ":" + input;
+        }
+
+        @Override
+        public void jobLogic() { }
+    }
+}
@@ -0,0 +1,113 @@
+package com.conveyal.datatools.common.status;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ * Tests that the {@link JobScheduler} runs higher priority jobs first without starving lower priority jobs.
+ */
+public class JobSchedulerTest {
+
+    @Test(timeout = 10000)
+    public void runsUserJobsBeforeSystemJobs() throws InterruptedException {
+        List<String> started = runAfterBlocker(TimeUnit.HOURS.toMillis(1), 0);
+        assertThat(started, equalTo(Arrays.asList("user", "system")));
+    }
+
+    /**
+     * A system job that has waited longer than the aging interval times the difference in priority should start
+     * before a user job submitted later.
+     */
+    @Test(timeout = 10000)
+    public void runsLongWaitingSystemJobsFirst() throws InterruptedException {
+        List<String> started = runAfterBlocker(10, 200);
+        assertThat(started, equalTo(Arrays.asList("system", "user")));
+    }
+
+    /** A queued job whose position does not change should not have its status changed when other jobs are queued. */
+    @Test(timeout = 10000)
+    public void onlyUpdatesStatusWhenQueuePositionChanges() throws InterruptedException {
+        JobScheduler scheduler = new JobScheduler(1, new HashMap<>(), new HashMap<>(), TimeUnit.HOURS.toMillis(1));
+        List<String> started = new ArrayList<>();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(2);
+        TestJob blocker = new TestJob("test-user", started, release, null);
+        scheduler.execute(blocker);
+        while (!blocker.ran) TimeUnit.MILLISECONDS.sleep(10);
+
+        TestJob first = new TestJob("test-user", started, null, finished);
+        scheduler.execute(first);
+        assertThat(first.status.queuePosition, equalTo(1));
+        long changes = first.status.changeCount();
+        TestJob second = new TestJob("test-user", started, null, finished);
+        scheduler.execute(second);
+        assertThat(second.status.queuePosition, equalTo(2));
+        assertThat(first.status.changeCount(), equalTo(changes));
+
+        release.countDown();
+        finished.await();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsZeroConcurrentJobs() {
+        new JobScheduler(0, new HashMap<>(), new HashMap<>());
+    }
+
+    /**
+     * Occupy the scheduler's only slot, submit a system job and (after the given delay) a user job, then free the
+     * slot and return the order in which the two jobs started.
+     */
+    private static List<String> runAfterBlocker(long agingMillis, long delayMillis) throws InterruptedException {
+        JobScheduler scheduler = new JobScheduler(1, new HashMap<>(), new HashMap<>(), agingMillis);
+        List<String> started = new ArrayList<>();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(2);
+        TestJob blocker = new TestJob("test-user", started, release, null);
+        scheduler.execute(blocker);
+        while (!blocker.ran) TimeUnit.MILLISECONDS.sleep(10);
+
+        scheduler.execute(new TestJob(JobScheduler.SYSTEM_OWNER, started, null, finished));
+        TimeUnit.MILLISECONDS.sleep(delayMillis);
+        scheduler.execute(new TestJob("test-user", started, null, finished));
+        release.countDown();
+        finished.await();
+        synchronized (started) {
+            // The first entry is the blocker.
+            return started.subList(1, started.size());
+        }
+    }
+
+    private static class TestJob extends MonitorableJob {
+        private final List<String> started;
+        private final CountDownLatch release;
+        private final CountDownLatch finished;
+        volatile boolean ran;
+
+        TestJob(String owner, List<String> started, CountDownLatch release, CountDownLatch finished) {
+            super(owner, "Test job", JobType.UNKNOWN_TYPE);
+            this.started = started;
+            this.release = release;
+            this.finished = finished;
+        }
+
+        @Override
+        public void jobLogic() throws Exception {
+            synchronized (started) {
+                started.add(JobScheduler.SYSTEM_OWNER.equals(owner) ? "system" : "user");
+            }
+            ran = true;
+            if (release != null) release.await();
+            status.update("Done", 100);
+            if (finished != null) finished.countDown();
+        }
+    }
+}
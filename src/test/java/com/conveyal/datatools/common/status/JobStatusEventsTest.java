@@ -0,0 +1,78 @@
+package com.conveyal.datatools.common.status;
+
+import com.google.common.collect.Sets;
+import org.junit.Test;
+
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Tests that {@link JobStatusEvents} publishes a versioned snapshot and records an event for each job status change.
+ */
+public class JobStatusEventsTest {
+
+    @Test
+    public void recordsEventsForChangedJobs() throws Exception {
+        JobStatusEvents events = new JobStatusEvents(job -> job.jobId);
+        MonitorableJob aliceJob = new TestJob("alice");
+        MonitorableJob bobJob = new TestJob("bob");
+        Set<MonitorableJob> jobs = Sets.newHashSet(aliceJob, bobJob);
+        events.checkForChanges(jobs);
+        assertThat(events.lastSequence(), equalTo(2L));
+
+        // Only jobs whose status has changed produce new events.
+        aliceJob.status.update("Halfway there", 50);
+        events.checkForChanges(jobs);
+        JobStatusEvents.Update update = events.awaitEvents("alice", 2, 0);
+        assertThat(update.sequence, equalTo(3L));
+        assertThat(update.events, hasSize(1));
+        assertThat(update.events.get(0).data, equalTo(aliceJob.jobId));
+        // The published snapshot carries the event's sequence number as its version and is not affected by later
+        // changes to the job's status.
+        assertThat(aliceJob.statusSnapshot().version, equalTo(3L));
+        aliceJob.status.update("Almost done", 90);
+        assertThat(aliceJob.statusSnapshot().percentComplete, equalTo(50D));
+        assertThat(events.awaitEvents("bob", 2, 0).events, hasSize(0));
+    }
+
+    @Test
+    public void ignoresUnchangedStatuses() throws Exception {
+        JobStatusEvents events = new JobStatusEvents(job -> job.jobId);
+        MonitorableJob job = new TestJob("alice");
+        Set<MonitorableJob> jobs = Sets.newHashSet(job);
+        events.checkForChanges(jobs);
+        long changeCount = job.status.changeCount();
+        job.status.update("Halfway there", 50);
+        assertThat(job.status.changeCount(), equalTo(changeCount + 1));
+        events.checkForChanges(jobs);
+        // A status replaced by an identical copy (as when read again from a job record) is not a change.
+        MonitorableJob.Status copy = new MonitorableJob.Status();
+        copy.update("Halfway there", 50);
+        copy.initialized = job.status.initialized;
+        copy.modified = job.status.modified;
+        job.status = copy;
+        events.checkForChanges(jobs);
+        assertThat(events.lastSequence(), equalTo(2L));
+    }
+
+    @Test
+    public void reportsMissedEventsForUnknownSequence() throws Exception {
+        JobStatusEvents events = new JobStatusEvents(job -> job.jobId);
+        events.checkForChanges(Sets.newHashSet(new TestJob("alice")));
+        // A sequence number from before a restart cannot be resumed from.
+        assertThat(events.awaitEvents("alice", 50, 0).events, nullValue());
+    }
+
+    private static class TestJob extends MonitorableJob {
+        TestJob(String owner) {
+            super(owner, "Test job", JobType.UNKNOWN_TYPE);
+        }
+
+        @Override
+        public void jobLogic() { }
+    }
+}
@@ -0,0 +1,100 @@
+package com.conveyal.datatools.common.status;
+
+import com.conveyal.datatools.manager.DataManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ * Tests that sub-jobs are run according to their dependencies on the {@link JobScheduler}.
+ */
+public class SubJobExecutionTest {
+    private JobScheduler originalExecutor;
+
+    @Before
+    public void setUp() {
+        originalExecutor = DataManager.heavyExecutor;
+        // Two slots: enough for two sibling sub-jobs to run at once only if the parent releases its slot while waiting.
+        DataManager.heavyExecutor = new JobScheduler(2, new HashMap<>(), new HashMap<>());
+    }
+
+    @After
+    public void tearDown() {
+        DataManager.heavyExecutor = originalExecutor;
+    }
+
+    /**
+     * Sub-jobs that both depend only on the first sub-job should run concurrently (each waits for the other to start).
+     */
+    @Test(timeout = 10000)
+    public void canRunIndependentSubJobsConcurrently() throws InterruptedException {
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        TestJob parent = new TestJob(null);
+        TestJob first = new TestJob(null);
+        TestJob left = new TestJob(bothStarted);
+        TestJob right = new TestJob(bothStarted);
+        parent.addSubJob(first);
+        parent.addSubJob(left, first);
+        parent.addSubJob(right, first);
+
+        runAndWait(parent);
+        assertThat(parent.status.error, equalTo(false));
+        assertThat(left.status.completed, equalTo(true));
+        assertThat(right.status.completed, equalTo(true));
+        assertThat(parent.status.percentComplete, equalTo(100D));
+    }
+
+    /**
+     * A failed sub-job should cancel the sub-jobs that depend on it and the parent job.
+     */
+    @Test(timeout = 10000)
+    public void failedSubJobCancelsDependents() throws InterruptedException {
+        TestJob parent = new TestJob(null);
+        TestJob failing = new TestJob(null);
+        failing.fail = true;
+        TestJob independent = new TestJob(null);
+        TestJob dependent = new TestJob(null);
+        parent.addSubJob(failing);
+        parent.addSubJob(independent);
+        parent.addSubJob(dependent, failing);
+
+        runAndWait(parent);
+        assertThat(parent.status.error, equalTo(true));
+        assertThat(dependent.ran, equalTo(false));
+        assertThat(dependent.status.error, equalTo(true));
+    }
+
+    private static void runAndWait(TestJob job) throws InterruptedException {
+        DataManager.heavyExecutor.execute(job);
+        while (!job.status.completed) TimeUnit.MILLISECONDS.sleep(10);
+    }
+
+    private static class TestJob extends MonitorableJob {
+        private final CountDownLatch latch;
+        boolean fail;
+        volatile boolean ran;
+
+        TestJob(CountDownLatch latch) {
+            super("test-user", "Test job", JobType.UNKNOWN_TYPE);
+            this.latch = latch;
+        }
+
+        @Override
+        public void jobLogic() throws Exception {
+            ran = true;
+            if (latch != null) {
+                latch.countDown();
+                latch.await();
+            }
+            if (fail) status.fail("Test failure");
+            else status.update("Done", 100);
+        }
+    }
+}
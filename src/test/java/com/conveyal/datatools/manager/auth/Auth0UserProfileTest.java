@@ -0,0 +1,192 @@
+package com.conveyal.datatools.manager.auth;
+
+import com.conveyal.datatools.DatatoolsTest;
+import com.conveyal.datatools.manager.DataManager;
+import com.conveyal.datatools.manager.models.FeedSource;
+import com.conveyal.datatools.manager.models.Project;
+import com.conveyal.datatools.manager.persistence.Persistence;
+import org.bson.conversions.Bson;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.in;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ * Tests that the Mongo filters built from a user's permissions match exactly the projects and feed sources that the
+ * user may access. Each test uses two organizations, each with public and private feed sources.
+ */
+public class Auth0UserProfileTest {
+    private static String organizationId;
+    private static String otherOrganizationId;
+    private static Project project;
+    private static Project secondProject;
+    private static Project otherProject;
+    private static FeedSource publicFeed;
+    private static FeedSource privateFeed;
+    private static FeedSource secondProjectFeed;
+    private static FeedSource otherPublicFeed;
+    private static FeedSource otherPrivateFeed;
+    private static List<String> projectIds;
+    private static List<String> feedSourceIds;
+
+    @BeforeClass
+    public static void setUp() {
+        DatatoolsTest.setUp();
+        Persistence.initialize();
+        organizationId = UUID.randomUUID().toString();
+        otherOrganizationId = UUID.randomUUID().toString();
+        project = createProject(organizationId);
+        secondProject = createProject(organizationId);
+        otherProject = createProject(otherOrganizationId);
+        publicFeed = createFeedSource(project, true);
+        privateFeed = createFeedSource(project, false);
+        secondProjectFeed = createFeedSource(secondProject, false);
+        otherPublicFeed = createFeedSource(otherProject, true);
+        otherPrivateFeed = createFeedSource(otherProject, false);
+        projectIds = Arrays.asList(project.id, secondProject.id, otherProject.id);
+        feedSourceIds = Arrays.asList(
+            publicFeed.id, privateFeed.id, secondProjectFeed.id, otherPublicFeed.id, otherPrivateFeed.id
+        );
+    }
+
+    @Test
+    public void applicationAdminCanAccessEverything() {
+        Auth0UserProfile user = createUser(
+            new Auth0UserProfile.Permission[] {permission("administer-application")},
+            null,
+            null
+        );
+        assertProjects(user, project, secondProject, otherProject);
+        assertFeedSources(user, publicFeed, privateFeed, secondProjectFeed, otherPublicFeed, otherPrivateFeed);
+    }
+
+    @Test
+    public void organizationAdminCanAccessOrganization() {
+        Auth0UserProfile user = createUser(
+            null,
+            new Auth0UserProfile.Organization(organizationId, new Auth0UserProfile.Permission[] {
+                permission("administer-organization")
+            }),
+            null
+        );
+        assertProjects(user, project, secondProject);
+        assertFeedSources(user, publicFeed, privateFeed, secondProjectFeed);
+    }
+
+    @Test
+    public void projectAdminCanAccessProject() {
+        Auth0UserProfile user = createUser(
+            null,
+            new Auth0UserProfile.Organization(organizationId, new Auth0UserProfile.Permission[0]),
+            new Auth0UserProfile.Project[] {
+                new Auth0UserProfile.Project(project.id, new Auth0UserProfile.Permission[] {
+                    permission("administer-project")
+                }, null)
+            }
+        );
+        assertProjects(user, project);
+        assertFeedSources(user, publicFeed, privateFeed);
+    }
+
+    @Test
+    public void feedPermissionsOnlyGrantThoseFeeds() {
+        Auth0UserProfile user = createUser(
+            null,
+            new Auth0UserProfile.Organization(organizationId, new Auth0UserProfile.Permission[0]),
+            new Auth0UserProfile.Project[] {
+                // The view permission names its feed. The edit permission (with the default feeds) grants no access.
+                new Auth0UserProfile.Project(project.id, new Auth0UserProfile.Permission[] {
+                    new Auth0UserProfile.Permission("view-feed", new String[] {privateFeed.id}),
+                    permission("edit-gtfs")
+                }, new String[] {publicFeed.id}),
+                // The manage permission applies to the project's default feeds.
+                new Auth0UserProfile.Project(otherProject.id, new Auth0UserProfile.Permission[] {
+                    permission("manage-feed")
+                }, new String[] {otherPublicFeed.id})
+            }
+        );
+        assertProjects(user, project, otherProject);
+        assertFeedSources(user, privateFeed, otherPublicFeed);
+    }
+
+    @Test
+    public void userWithoutPermissionsCanAccessNothing() {
+        Auth0UserProfile user = createUser(null, null, null);
+        assertProjects(user);
+        assertFeedSources(user);
+    }
+
+    @Test
+    public void anonymousUserCanAccessNothing() {
+        Auth0UserProfile user = new Auth0UserProfile();
+        user.setApp_metadata(new Auth0UserProfile.AppMetadata());
+        assertProjects(user);
+        assertFeedSources(user);
+    }
+
+    private static Auth0UserProfile createUser(
+        Auth0UserProfile.Permission[] permissions,
+        Auth0UserProfile.Organization organization,
+        Auth0UserProfile.Project[] projects
+    ) {
+        Auth0UserProfile user = new Auth0UserProfile("test@example.com", "auth0|" + UUID.randomUUID());
+        user.getApp_metadata().setDatatoolsInfo(new Auth0UserProfile.DatatoolsInfo(
+            DataManager.getConfigPropertyAsText("AUTH0_CLIENT_ID"),
+            projects != null ? projects : new Auth0UserProfile.Project[0],
+            permissions != null ? permissions : new Auth0UserProfile.Permission[0],
+            organization != null ? new Auth0UserProfile.Organization[] {organization} : null,
+            null
+        ));
+        return user;
+    }
+
+    private static Auth0UserProfile.Permission permission(String type) {
+        return new Auth0UserProfile.Permission(type, null);
+    }
+
+    /** Check that the user's filter matches exactly the given projects (among those created for this test). */
+    private static void assertProjects(Auth0UserProfile user, Project... expected) {
+        Set<String> ids = Persistence.projects.getFiltered(withinTest(user.getProjectsFilter(), projectIds)).stream()
+            .map(p -> p.id)
+            .collect(Collectors.toSet());
+        assertThat(ids, equalTo(Arrays.stream(expected).map(p -> p.id).collect(Collectors.toSet())));
+    }
+
+    /** Check that the user's filter matches exactly the given feed sources (among those created for this test). */
+    private static void assertFeedSources(Auth0UserProfile user, FeedSource... expected) {
+        Bson filter = withinTest(user.getFeedSourcesFilter(), feedSourceIds);
+        Set<String> ids = Persistence.feedSources.getFiltered(filter).stream()
+            .map(f -> f.id)
+            .collect(Collectors.toSet());
+        assertThat(ids, equalTo(Arrays.stream(expected).map(f -> f.id).collect(Collectors.toSet())));
+    }
+
+    /** Restrict the filter (which is null if the user can access everything) to the given IDs. */
+    private static Bson withinTest(Bson filter, List<String> ids) {
+        return filter == null ? in("_id", ids) : and(in("_id", ids), filter);
+    }
+
+    private static Project createProject(String organizationId) {
+        Project project = new Project();
+        project.organizationId = organizationId;
+        Persistence.projects.create(project);
+        return project;
+    }
+
+    private static FeedSource createFeedSource(Project project, boolean isPublic) {
+        FeedSource feedSource = new FeedSource((isPublic ? "public" : "private") + " permissions test feed");
+        feedSource.projectId = project.id;
+        feedSource.isPublic = isPublic;
+        Persistence.feedSources.create(feedSource);
+        return feedSource;
+    }
+}
@@ -0,0 +1,147 @@
+package com.conveyal.datatools.manager.codec;
+
+import com.conveyal.datatools.DatatoolsTest;
+import com.conveyal.datatools.manager.models.FeedSource;
+import com.conveyal.datatools.manager.models.FeedVersion;
+import com.conveyal.datatools.manager.persistence.Persistence;
+import com.conveyal.gtfs.loader.FeedLoadResult;
+import com.conveyal.gtfs.validator.ValidationResult;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Checks that the specialized codecs produce exactly the same documents as the reflective PojoCodec, so that documents
+ * written by either can be read by the other.
+ */
+public class SpecializedCodecTest {
+    private static CodecRegistry specializedRegistry;
+    private static CodecRegistry reflectiveRegistry;
+
+    @BeforeClass
+    public static void setUp() {
+        DatatoolsTest.setUp();
+        specializedRegistry = Persistence.buildCodecRegistry(true);
+        reflectiveRegistry = Persistence.buildCodecRegistry(false);
+    }
+
+    @Test
+    public void specializedCodecsAreUsed() {
+        assertEquals(FeedVersionCodec.class, specializedRegistry.get(FeedVersion.class).getClass());
+        assertEquals(PublicFieldCodec.class, specializedRegistry.get(ValidationResult.class).getClass());
+        assertNotEquals(FeedVersionCodec.class, reflectiveRegistry.get(FeedVersion.class).getClass());
+    }
+
+    @Test
+    public void feedVersionDocumentsMatchReflectiveCodec() throws IllegalAccessException {
+        FeedVersion feedVersion = createFeedVersion();
+        BsonDocument specialized = encode(specializedRegistry.get(FeedVersion.class), feedVersion);
+        BsonDocument reflective = encode(reflectiveRegistry.get(FeedVersion.class), feedVersion);
+        assertEquals("Specialized codec should encode the same document.", reflective, specialized);
+
+        // Documents written by the reflective codec should round trip through the specialized codec.
+        FeedVersion decoded = decode(specializedRegistry.get(FeedVersion.class), reflective);
+        assertEquals(reflective, encode(reflectiveRegistry.get(FeedVersion.class), decoded));
+    }
+
+    /** Raw documents (as read from the cache and by paginated queries) should decode to the same feed version. */
+    @Test
+    public void decodesRawFeedVersionDocuments() throws IllegalAccessException {
+        Codec<FeedVersion> reflectiveCodec = reflectiveRegistry.get(FeedVersion.class);
+        BsonDocument expected = encode(reflectiveCodec, createFeedVersion());
+        RawBsonDocument document = new RawBsonDocument(expected, new BsonDocumentCodec());
+        assertEquals(expected, encode(reflectiveCodec, document.decode(specializedRegistry.get(FeedVersion.class))));
+    }
+
+    /**
+     * Collection fields should be encoded with the codec for their element type (here, LocalDate, which the codec for a
+     * raw List would not decode), in the same documents as the reflective codec.
+     */
+    @Test
+    public void genericFieldsRoundTrip() {
+        GenericFields value = new GenericFields();
+        value.dates = Arrays.asList(LocalDate.of(2019, 1, 1), null, LocalDate.of(2019, 12, 31));
+        value.datesByName = new HashMap<>();
+        value.datesByName.put("holidays", Arrays.asList(LocalDate.of(2019, 7, 4)));
+        value.names = new HashSet<>(Arrays.asList("a", "b"));
+        Codec<GenericFields> codec = PublicFieldCodec.create(GenericFields.class, specializedRegistry);
+        BsonDocument specialized = encode(codec, value);
+        assertEquals(encode(reflectiveRegistry.get(GenericFields.class), value), specialized);
+
+        GenericFields decoded = decode(codec, specialized);
+        assertEquals(value.dates, decoded.dates);
+        assertEquals(value.datesByName, decoded.datesByName);
+        assertEquals(value.names, decoded.names);
+    }
+
+    public static class GenericFields {
+        public List<LocalDate> dates;
+        public Map<String, List<LocalDate>> datesByName;
+        public Set<String> names;
+    }
+
+    /**
+     * Create a feed version with populated validation and load results. Public int[] fields of the validation result
+     * (the daily service arrays) are filled by reflection.
+     */
+    private static FeedVersion createFeedVersion() throws IllegalAccessException {
+        FeedVersion feedVersion = new FeedVersion();
+        feedVersion.id = "test-version.zip";
+        feedVersion.feedSourceId = "test-feed-source";
+        feedVersion.retrievalMethod = FeedSource.FeedRetrievalMethod.MANUALLY_UPLOADED;
+        feedVersion.updated = new Date();
+        feedVersion.version = 3;
+        feedVersion.name = "Test version";
+        feedVersion.fileSize = 1024L;
+        feedVersion.namespace = "abcd_efgh";
+        feedVersion.noteIds = Arrays.asList("note-1", "note-2");
+        feedVersion.feedLoadResult = new FeedLoadResult(true);
+        feedVersion.feedLoadResult.uniqueIdentifier = feedVersion.namespace;
+        feedVersion.feedLoadResult.routes.rowCount = 12;
+        feedVersion.feedLoadResult.stopTimes.rowCount = 123456;
+        ValidationResult validationResult = new ValidationResult();
+        validationResult.errorCount = 42;
+        validationResult.firstCalendarDate = LocalDate.of(2019, 1, 1);
+        validationResult.lastCalendarDate = LocalDate.of(2019, 12, 31);
+        for (Field field : ValidationResult.class.getFields()) {
+            if (field.getType() == int[].class) {
+                int[] values = new int[365];
+                Arrays.fill(values, 3600);
+                field.set(validationResult, values);
+            }
+        }
+        feedVersion.validationResult = validationResult;
+        return feedVersion;
+    }
+
+    private static <T> BsonDocument encode(Codec<T> codec, T value) {
+        BsonDocument document = new BsonDocument();
+        codec.encode(new BsonDocumentWriter(document), value, EncoderContext.builder().build());
+        return document;
+    }
+
+    private static <T> T decode(Codec<T> codec, BsonDocument document) {
+        return codec.decode(new BsonDocumentReader(document), DecoderContext.builder().build());
+    }
+}
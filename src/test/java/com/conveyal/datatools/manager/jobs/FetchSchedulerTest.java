@@ -0,0 +1,67 @@
+package com.conveyal.datatools.manager.jobs;
+
+import com.conveyal.datatools.manager.models.FeedSource;
+import org.junit.Test;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ * Tests that the {@link FetchScheduler} limits concurrent fetches per host without holding up other hosts.
+ */
+public class FetchSchedulerTest {
+
+    @Test
+    public void limitsConcurrentFetchesPerHost() throws Exception {
+        FetchScheduler scheduler = new FetchScheduler(3, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(2);
+        scheduler.execute(new BlockingFetchJob("http://vendor.example.com/a.zip", started, release));
+        scheduler.execute(new BlockingFetchJob("http://vendor.example.com/b.zip", started, release));
+        scheduler.execute(new BlockingFetchJob("http://agency.example.org/gtfs.zip", started, release));
+
+        // The fetch from the second host starts although the second fetch from the first host must wait.
+        assertThat(started.await(5, TimeUnit.SECONDS), equalTo(true));
+        assertThat(scheduler.getRunningCount(), equalTo(2));
+        assertThat(scheduler.getQueueDepth(), equalTo(1));
+        assertThat(scheduler.getRunningCountsByHost().get("vendor.example.com"), equalTo(1));
+
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (scheduler.getRunningCount() > 0 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        assertThat(scheduler.getRunningCount(), equalTo(0));
+        assertThat(scheduler.getQueueDepth(), equalTo(0));
+    }
+
+    private static class BlockingFetchJob extends FetchSingleFeedJob {
+        private final CountDownLatch started;
+        private final CountDownLatch release;
+
+        BlockingFetchJob(String url, CountDownLatch started, CountDownLatch release) throws MalformedURLException {
+            super(feedSourceWithUrl(url), "test", false);
+            this.started = started;
+            this.release = release;
+        }
+
+        @Override
+        public void jobLogic() {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private static FeedSource feedSourceWithUrl(String url) throws MalformedURLException {
+            FeedSource feedSource = new FeedSource("Test feed");
+            feedSource.url = new URL(url);
+            return feedSource;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.conveyal.datatools.manager.models;
+
+import com.conveyal.datatools.DatatoolsTest;
+import com.conveyal.datatools.common.status.MonitorableJob;
+import com.conveyal.datatools.manager.persistence.Persistence;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Tests {@link FeedSource#fetch} against a local HTTP server: conditional requests, feeds that change without their
+ * validators changing, and redirects.
+ */
+public class FeedSourceFetchTest {
+    private static HttpServer server;
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        DatatoolsTest.setUp();
+        Persistence.initialize();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.start();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        server.stop(0);
+    }
+
+    /** A feed that the server reports as not modified (304) should not be downloaded again. */
+    @Test
+    public void skipsFeedThatHasNotBeenModified() throws IOException {
+        AtomicInteger downloads = new AtomicInteger();
+        String path = serve(exchange -> {
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                // Some servers do not support HEAD, in which case the conditional GET must be relied on.
+                respond(exchange, 405, null, null);
+            } else if ("v1".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                respond(exchange, 304, null, null);
+            } else {
+                downloads.incrementAndGet();
+                respond(exchange, 200, "v1", "feed content");
+            }
+        });
+        FeedSource feedSource = createFeedSource(path);
+        storeVersion(fetch(feedSource, false));
+
+        assertThat(fetch(reload(feedSource), false), nullValue());
+        assertThat(downloads.get(), equalTo(1));
+    }
+
+    /** Fetching a feed that has not changed should not look like an edit of the feed source. */
+    @Test
+    public void keepsLastUpdatedWhenFeedHasNotChanged() throws IOException {
+        String path = serve(exchange -> {
+            // The server supports neither HEAD nor conditional requests.
+            if ("HEAD".equals(exchange.getRequestMethod())) respond(exchange, 405, null, null);
+            else respond(exchange, 200, "v1", "feed content");
+        });
+        FeedSource feedSource = createFeedSource(path);
+        storeVersion(fetch(feedSource, false));
+        FeedSource fetched = reload(feedSource);
+
+        assertThat(fetch(fetched, false), nullValue());
+        assertThat(reload(feedSource).lastUpdated, equalTo(fetched.lastUpdated));
+    }
+
+    /** A feed that changes without its ETag changing (but with a new length) should be downloaded again. */
+    @Test
+    public void fetchesChangedFeedWithSameValidators() throws IOException {
+        String[] content = {"feed content"};
+        AtomicInteger downloads = new AtomicInteger();
+        String path = serve(exchange -> {
+            // The server ignores conditional requests and always returns the same ETag.
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Content-Length", Integer.toString(content[0].length()));
+                respond(exchange, 200, "same", null);
+            } else {
+                downloads.incrementAndGet();
+                respond(exchange, 200, "same", content[0]);
+            }
+        });
+        FeedSource feedSource = createFeedSource(path);
+        FeedVersion first = fetch(feedSource, false);
+        storeVersion(first);
+
+        // Unchanged content is not downloaded again.
+        assertThat(fetch(reload(feedSource), false), nullValue());
+        assertThat(downloads.get(), equalTo(1));
+
+        content[0] = "changed feed content";
+        FeedVersion second = fetch(reload(feedSource), false);
+        assertThat(second, notNullValue());
+        assertThat(second.hash, not(equalTo(first.hash)));
+    }
+
+    /** Redirects should be followed up to the limit, and a permanent redirect target fetched from directly. */
+    @Test
+    public void followsRedirectsUpToLimit() throws IOException {
+        String base = "/" + UUID.randomUUID();
+        AtomicInteger targetRequests = new AtomicInteger();
+        server.createContext(base + "/hop/", exchange -> {
+            int hop = Integer.parseInt(exchange.getRequestURI().getPath().substring((base + "/hop/").length()));
+            if (hop == 0) {
+                targetRequests.incrementAndGet();
+                respond(exchange, 200, null, "feed content " + UUID.randomUUID());
+            } else {
+                exchange.getResponseHeaders().set("Location", base + "/hop/" + (hop - 1));
+                respond(exchange, 301, null, null);
+            }
+        });
+
+        FeedSource tooManyRedirects = createFeedSource(base + "/hop/" + (FeedSource.MAX_FETCH_REDIRECTS + 1));
+        fetch(tooManyRedirects, true);
+        assertThat(targetRequests.get(), equalTo(0));
+
+        FeedSource feedSource = createFeedSource(base + "/hop/" + FeedSource.MAX_FETCH_REDIRECTS);
+        storeVersion(fetch(feedSource, false));
+        String target = url(base + "/hop/0").toString();
+        assertThat(Persistence.feedSources.getById(feedSource.id).fetchRedirectUrl, equalTo(target));
+    }
+
+    /** A redirect loop should fail rather than be followed indefinitely. */
+    @Test(timeout = 10000)
+    public void failsOnRedirectLoop() throws IOException {
+        AtomicInteger requests = new AtomicInteger();
+        String[] path = new String[1];
+        path[0] = serve(exchange -> {
+            requests.incrementAndGet();
+            exchange.getResponseHeaders().set("Location", path[0]);
+            respond(exchange, 302, null, null);
+        });
+        fetch(createFeedSource(path[0]), true);
+        assertThat(requests.get(), equalTo(FeedSource.MAX_FETCH_REDIRECTS + 1));
+    }
+
+    /** If the stored target of a permanent redirect fails, the feed should be fetched from the fetch URL instead. */
+    @Test
+    public void fallsBackToFetchUrlWhenRedirectTargetFails() throws IOException {
+        boolean[] moved = {true};
+        AtomicInteger targetRequests = new AtomicInteger();
+        String targetPath = serve(exchange -> {
+            targetRequests.incrementAndGet();
+            if (moved[0]) respond(exchange, 200, null, "feed content");
+            else respond(exchange, 404, null, null);
+        });
+        String path = serve(exchange -> {
+            if (moved[0]) {
+                exchange.getResponseHeaders().set("Location", targetPath);
+                respond(exchange, 301, null, null);
+            } else {
+                respond(exchange, 200, null, "feed content moved back");
+            }
+        });
+        FeedSource feedSource = createFeedSource(path);
+        storeVersion(fetch(feedSource, false));
+        assertThat(reload(feedSource).fetchRedirectUrl, equalTo(url(targetPath).toString()));
+
+        moved[0] = false;
+        assertThat(fetch(reload(feedSource), false), notNullValue());
+        assertThat(targetRequests.get(), equalTo(2));
+        assertThat(reload(feedSource).fetchRedirectUrl, nullValue());
+    }
+
+    /** Fetch the feed, checking whether the fetch failed. */
+    private static FeedVersion fetch(FeedSource feedSource, boolean shouldFail) {
+        MonitorableJob.Status status = new MonitorableJob.Status();
+        FeedVersion version = feedSource.fetch(status);
+        assertThat(status.message, status.error, equalTo(shouldFail));
+        return version;
+    }
+
+    /** Store the fetched version, as processing the version would, so that the next fetch is compared against it. */
+    private static void storeVersion(FeedVersion version) {
+        assertThat(version, notNullValue());
+        Persistence.feedVersions.create(version);
+    }
+
+    /** Get the stored feed source, which includes the fetch state updated by the previous fetch. */
+    private static FeedSource reload(FeedSource feedSource) {
+        return Persistence.feedSources.getById(feedSource.id);
+    }
+
+    private static FeedSource createFeedSource(String path) throws IOException {
+        FeedSource feedSource = new FeedSource("fetch test feed source");
+        feedSource.retrievalMethod = FeedSource.FeedRetrievalMethod.FETCHED_AUTOMATICALLY;
+        feedSource.url = url(path);
+        Persistence.feedSources.create(feedSource);
+        return feedSource;
+    }
+
+    /** Serve requests at a new path with the handler, returning the path. */
+    private static String serve(HttpHandler handler) {
+        String path = "/" + UUID.randomUUID() + "/feed.zip";
+        server.createContext(path, handler);
+        return path;
+    }
+
+    private static URL url(String path) throws IOException {
+        return new URL("http", server.getAddress().getHostString(), server.getAddress().getPort(), path);
+    }
+
+    private static void respond(HttpExchange exchange, int code, String eTag, String body) throws IOException {
+        if (eTag != null) exchange.getResponseHeaders().set("ETag", eTag);
+        if (body == null || "HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(code, -1);
+        } else {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(code, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+        exchange.close();
+    }
+}
@@ -0,0 +1,113 @@
+package com.conveyal.datatools.manager.models;
+
+import com.conveyal.datatools.DatatoolsTest;
+import com.conveyal.datatools.manager.persistence.Persistence;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.UUID;
+
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Updates.unset;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Tests that the latest version summary stored on a {@link FeedSource} follows its versions, and that deleting feed
+ * sources removes everything they contain.
+ */
+public class FeedSourceTest {
+
+    @BeforeClass
+    public static void setUp() {
+        DatatoolsTest.setUp();
+        Persistence.initialize();
+    }
+
+    @Test
+    public void backfillsMissingSummaries() {
+        FeedSource feedSource = new FeedSource("backfill test feed source");
+        Persistence.feedSources.create(feedSource);
+        createVersion(feedSource, 1, new Date(1000));
+        FeedVersion latest = createVersion(feedSource, 2, new Date(2000));
+        FeedSource emptyFeedSource = new FeedSource("backfill test feed source without versions");
+        Persistence.feedSources.create(emptyFeedSource);
+        // Remove the summaries, as for feed sources stored before summaries were introduced.
+        for (FeedSource source : new FeedSource[] {feedSource, emptyFeedSource}) {
+            Persistence.feedSources.getMongoCollection().updateOne(eq(source.id), unset("latestVersionSummary"));
+        }
+
+        FeedSource.backfillLatestVersionSummaries();
+        assertThat(Persistence.feedSources.getById(feedSource.id).latestVersionSummary.feedVersionId, equalTo(latest.id));
+        assertThat(Persistence.feedSources.getById(emptyFeedSource.id).latestVersionSummary, nullValue());
+        // Feed sources that have been backfilled (including those without versions) are not updated again.
+        assertThat(FeedSource.backfillLatestVersionSummaries(), equalTo(0));
+    }
+
+    @Test
+    public void renumberingUpdatesSummary() {
+        FeedSource feedSource = new FeedSource("renumber test feed source");
+        Persistence.feedSources.create(feedSource);
+        // Versions are numbered by the order in which they were updated, so these numbers are out of order.
+        FeedVersion newest = createVersion(feedSource, 1, new Date(2000));
+        FeedVersion oldest = createVersion(feedSource, 2, new Date(1000));
+        feedSource.updateLatestVersionSummary();
+        assertThat(Persistence.feedSources.getById(feedSource.id).latestVersionSummary.feedVersionId, equalTo(oldest.id));
+
+        feedSource.renumberFeedVersions();
+        assertThat(Persistence.feedSources.getById(feedSource.id).latestVersionSummary.feedVersionId, equalTo(newest.id));
+    }
+
+    /** The summary follows the versions, so updating it should not look like an edit of the feed source. */
+    @Test
+    public void updatingSummaryKeepsLastUpdated() {
+        FeedSource feedSource = new FeedSource("summary test feed source");
+        Persistence.feedSources.create(feedSource);
+        Date lastUpdated = Persistence.feedSources.getById(feedSource.id).lastUpdated;
+        FeedVersion latest = createVersion(feedSource, 1, new Date(1000));
+
+        feedSource.updateLatestVersionSummary();
+        FeedSource updated = Persistence.feedSources.getById(feedSource.id);
+        assertThat(updated.latestVersionSummary.feedVersionId, equalTo(latest.id));
+        assertThat(updated.lastUpdated, equalTo(lastUpdated));
+    }
+
+    @Test
+    public void deleteAllRemovesRelatedObjectsAndFiles() throws IOException {
+        FeedSource feedSource = new FeedSource("delete test feed source");
+        Persistence.feedSources.create(feedSource);
+        FeedSource emptyFeedSource = new FeedSource("delete test feed source without versions");
+        Persistence.feedSources.create(emptyFeedSource);
+        FeedVersion feedVersion = createVersion(feedSource, 1, new Date(1000));
+        feedVersion.newGtfsFile(new ByteArrayInputStream(("feed content " + UUID.randomUUID()).getBytes(UTF_8)));
+        Snapshot snapshot = new Snapshot(feedSource.id, "namespace");
+        Persistence.snapshots.create(snapshot);
+        String latestId = feedSource.id + ".zip";
+        assertThat(FeedVersion.feedStore.getFeed(feedVersion.id), notNullValue());
+        assertThat(FeedVersion.feedStore.getFeed(latestId), notNullValue());
+
+        assertThat(FeedSource.deleteAll(Arrays.asList(feedSource, emptyFeedSource)), equalTo(true));
+        assertThat(Persistence.feedSources.getById(feedSource.id), nullValue());
+        assertThat(Persistence.feedSources.getById(emptyFeedSource.id), nullValue());
+        assertThat(Persistence.feedVersions.getById(feedVersion.id), nullValue());
+        assertThat(Persistence.snapshots.getById(snapshot.id), nullValue());
+        assertThat(FeedVersion.feedStore.getFeed(feedVersion.id), nullValue());
+        assertThat(FeedVersion.feedStore.getFeed(latestId), nullValue());
+    }
+
+    private static FeedVersion createVersion(FeedSource feedSource, int version, Date updated) {
+        FeedVersion feedVersion = new FeedVersion();
+        feedVersion.feedSourceId = feedSource.id;
+        feedVersion.version = version;
+        feedVersion.updated = updated;
+        Persistence.feedVersions.create(feedVersion);
+        return feedVersion;
+    }
+}
@@ -0,0 +1,69 @@
+package com.conveyal.datatools.manager.persistence;
+
+import com.google.common.io.Files;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ * Tests that the {@link FeedFileCache} stays within its budget and downloads each file once.
+ */
+public class FeedFileCacheTest {
+
+    @Test
+    public void evictsLeastRecentlyUsedFiles() throws Exception {
+        FeedFileCache cache = new FeedFileCache(Files.createTempDir(), 250);
+        FeedFileCache.Downloader downloader = (key, target) -> Files.write(new byte[100], target);
+        File a = cache.get("gtfs/a", downloader);
+        File b = cache.get("gtfs/b", downloader);
+        // Use the first file again, so that the second is the least recently used.
+        cache.get("gtfs/a", downloader);
+        cache.get("gtfs/c", downloader);
+
+        assertThat(a.getName(), equalTo("a"));
+        assertThat(a.exists(), equalTo(true));
+        assertThat(b.exists(), equalTo(false));
+        assertThat(cache.getBytes(), equalTo(200L));
+        assertThat(cache.getRequestCounts().get("hit"), equalTo(1L));
+        assertThat(cache.getRequestCounts().get("miss"), equalTo(3L));
+    }
+
+    @Test
+    public void sharesConcurrentDownloads() throws Exception {
+        FeedFileCache cache = new FeedFileCache(Files.createTempDir(), 1000);
+        AtomicInteger downloads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        FeedFileCache.Downloader downloader = (key, target) -> {
+            downloads.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            Files.write(new byte[10], target);
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<File> first = executor.submit(() -> cache.get("gtfs/a", downloader));
+        Future<File> second = executor.submit(() -> cache.get("gtfs/a", downloader));
+        // Wait for both requests to be made before letting the download finish.
+        long deadline = System.currentTimeMillis() + 5000;
+        while (cache.getRequestCounts().values().stream().mapToLong(Long::longValue).sum() < 2 &&
+            System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        release.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS), equalTo(second.get(5, TimeUnit.SECONDS)));
+        assertThat(downloads.get(), equalTo(1));
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,95 @@
+package com.conveyal.datatools.manager.persistence;
+
+import com.conveyal.datatools.DatatoolsTest;
+import com.conveyal.datatools.manager.models.FeedBlob;
+import com.conveyal.datatools.manager.utils.HashUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.UUID;
+
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Updates.set;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Tests that a content-addressed {@link FeedStore} stores identical feeds once and deletes content only once it has
+ * been unreferenced for the grace period.
+ */
+public class FeedStoreTest {
+    private static final String SUBDIR = "feed-store-test";
+    private static FeedStore feedStore;
+
+    @BeforeClass
+    public static void setUp() {
+        DatatoolsTest.setUp();
+        Persistence.initialize();
+        new File(FeedStore.basePath, SUBDIR).mkdirs();
+        feedStore = new FeedStore(SUBDIR, true);
+    }
+
+    @Test
+    public void storesIdenticalContentOnce() throws IOException {
+        String content = UUID.randomUUID().toString();
+        File first = feedStore.newFeed(UUID.randomUUID().toString(), stream(content), null);
+        File second = feedStore.newFeed(UUID.randomUUID().toString(), stream(content), null);
+
+        String hash = HashUtils.hashFile(first);
+        assertThat(first, equalTo(second));
+        assertThat(first.getName(), equalTo(hash));
+        assertThat(Persistence.feedBlobReferences.count(eq("hash", hash)), equalTo(2L));
+        FeedBlob blob = Persistence.feedBlobs.getById(hash);
+        assertThat(blob.size, equalTo((long) content.length()));
+    }
+
+    @Test
+    public void keepsContentUntilLastReferenceIsRemoved() throws IOException {
+        String content = UUID.randomUUID().toString();
+        String firstId = UUID.randomUUID().toString();
+        String secondId = UUID.randomUUID().toString();
+        File blob = feedStore.newFeed(firstId, stream(content), null);
+        feedStore.newFeed(secondId, stream(content), null);
+
+        feedStore.deleteFeed(firstId);
+        assertThat(feedStore.getFeed(firstId), nullValue());
+        assertThat(feedStore.getFeed(secondId), equalTo(blob));
+        // The remaining reference keeps the content even without a grace period.
+        FeedStore.deleteUnreferencedBlobs(0);
+        assertThat(feedStore.getFeed(secondId), equalTo(blob));
+        assertThat(blob.exists(), equalTo(true));
+    }
+
+    @Test
+    public void deletesContentOnlyAfterGracePeriod() throws Exception {
+        String content = UUID.randomUUID().toString();
+        String id = UUID.randomUUID().toString();
+        File blob = feedStore.newFeed(id, stream(content), null);
+        String hash = blob.getName();
+        // Backdate the blob, as if it was stored long ago, to check that removing the reference restarts the clock.
+        Persistence.feedBlobs.getMongoCollection().updateOne(eq(hash), set("lastUpdated", new Date(0)));
+
+        feedStore.deleteFeeds(Arrays.asList(id));
+        FeedStore.deleteUnreferencedBlobs(FeedStore.BLOB_GRACE_PERIOD_MILLIS);
+        assertThat(Persistence.feedBlobs.getById(hash), notNullValue());
+        assertThat(blob.exists(), equalTo(true));
+
+        Thread.sleep(10);
+        FeedStore.deleteUnreferencedBlobs(0);
+        assertThat(Persistence.feedBlobs.getById(hash), nullValue());
+        assertThat(blob.exists(), equalTo(false));
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -2,13 +2,30 @@ package com.conveyal.datatools.manager.persistence;
 
 import com.conveyal.datatools.DatatoolsTest;
 import com.conveyal.datatools.manager.models.FeedSource;
+import com.conveyal.datatools.manager.models.Note;
+import com.conveyal.datatools.manager.models.Organization;
 import com.conveyal.datatools.manager.models.Project;
+import com.conveyal.datatools.manager.models.Snapshot;
+import com.mongodb.client.model.Sorts;
+import org.bson.Document;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Created by landon on 9/6/17.
@@ -61,6 +78,143 @@ public class PersistenceTest {
         String retrievedId = Persistence.projects.getById(id).id;
         assertEquals("Found Project ID should equal inserted ID.", id, retrievedId);
     }
+
+    @Test
+    public void canStreamFilteredFeedSources() {
+        Project project = new Project();
+        Persistence.projects.create(project);
+        for (int i = 0; i < 3; i++) {
+            FeedSource feedSource = new FeedSource("streamed feed source " + i);
+            feedSource.projectId = project.id;
+            Persistence.feedSources.create(feedSource);
+        }
+        try (Stream<FeedSource> feedSources = Persistence.feedSources.stream(eq("projectId", project.id))) {
+            assertEquals("Stream should contain all feed sources for project.", 3, feedSources.count());
+        }
+        // Limit and a small batch size should still be respected by the cursor.
+        try (Stream<FeedSource> feedSources = Persistence.feedSources.stream(
+            eq("projectId", project.id), null, Sorts.ascending("name"), 2, 1
+        )) {
+            List<String> names = feedSources.map(feedSource -> feedSource.name).collect(Collectors.toList());
+            assertEquals("Stream should respect limit.", 2, names.size());
+            assertEquals("Stream should respect sort.", "streamed feed source 0", names.get(0));
+        }
+    }
+
+    @Test
+    public void canPaginateWithCursor() {
+        String feedSourceId = "paginated-feed-source";
+        // Include duplicate versions so that the ID tiebreaker is exercised across page boundaries.
+        for (int i = 0; i < 5; i++) {
+            Snapshot snapshot = new Snapshot("snapshot " + i, feedSourceId, null);
+            snapshot.version = i / 2;
+            Persistence.snapshots.create(snapshot);
+        }
+        List<Integer> versions = new ArrayList<>();
+        String after = null;
+        int pageCount = 0;
+        do {
+            Page<Snapshot> page = Persistence.snapshots.getPage(
+                eq(Snapshot.FEED_SOURCE_REF, feedSourceId), null, "version", true, 2, after, true
+            );
+            assertEquals("Total should count all matching objects.", Long.valueOf(5), page.total);
+            page.items.forEach(snapshot -> versions.add(snapshot.version));
+            after = page.next;
+            pageCount++;
+        } while (after != null);
+        assertEquals("Results should be split into three pages.", 3, pageCount);
+        assertEquals("Pages should contain every object once, in order.", Arrays.asList(2, 1, 1, 0, 0), versions);
+    }
+
+    @Test
+    public void canPaginateOverNullSortValues() {
+        String objectId = UUID.randomUUID().toString();
+        // Three notes without a date, so that the notes without a date span a page boundary in both directions.
+        Long[] times = {null, 2000L, null, 1000L, null};
+        for (Long time : times) {
+            Note note = new Note();
+            note.objectId = objectId;
+            note.date = time != null ? new Date(time) : null;
+            Persistence.notes.create(note);
+        }
+        // Null values are sorted before all others (and so after all others when descending).
+        assertEquals(Arrays.asList(null, null, null, 1000L, 2000L), getNoteTimesByPage(objectId, false));
+        assertEquals(Arrays.asList(2000L, 1000L, null, null, null), getNoteTimesByPage(objectId, true));
+    }
+
+    /** Get the note dates (as times) for the object two at a time. */
+    private static List<Long> getNoteTimesByPage(String objectId, boolean descending) {
+        List<Long> times = new ArrayList<>();
+        String after = null;
+        do {
+            Page<Note> page = Persistence.notes.getPage(eq("objectId", objectId), null, "date", descending, 2, after, false);
+            page.items.forEach(note -> times.add(note.date != null ? note.date.getTime() : null));
+            after = page.next;
+        } while (after != null);
+        return times;
+    }
+
+    @Test
+    public void canGetByIdsInRequestedOrder() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Project project = new Project();
+            Persistence.projects.create(project);
+            ids.add(0, project.id);
+        }
+        // Include an ID that does not exist, which should be skipped.
+        ids.add(1, "does-not-exist");
+        List<String> retrievedIds = Persistence.projects.getByIds(ids).stream()
+            .map(project -> project.id)
+            .collect(Collectors.toList());
+        assertEquals(Arrays.asList(ids.get(0), ids.get(2), ids.get(3)), retrievedIds);
+    }
+
+    @Test
+    public void cachedLookupsAreInvalidatedOnUpdate() {
+        // Use an instance of our own, so that the cache does not remain enabled for other tests.
+        TypedPersistence<Organization> organizations =
+            new TypedPersistence<>(Persistence.getMongoDatabase(), Organization.class);
+        organizations.enableCache(10, 60);
+        Organization organization = new Organization();
+        organization.name = "before";
+        organizations.create(organization);
+        long hitsBefore = organizations.getCacheStats().hitCount();
+        // First lookup populates the cache, second is served from memory.
+        organizations.getById(organization.id);
+        Organization cached = organizations.getById(organization.id);
+        assertEquals("Second lookup should be a cache hit.", hitsBefore + 1, organizations.getCacheStats().hitCount());
+        // Mutating a returned object must not affect the cached copy.
+        cached.name = "mutated";
+        assertEquals("before", organizations.getById(organization.id).name);
+        // Updates made through TypedPersistence must be visible immediately.
+        organizations.updateField(organization.id, "name", "after");
+        assertEquals("after", organizations.getById(organization.id).name);
+    }
+
+    /**
+     * Ensure that the queries run most frequently against Mongo (e.g., during feed source serialization) are supported
+     * by the indexes declared on the model classes rather than resulting in collection scans.
+     */
+    @Test
+    public void hotQueriesUseIndexes() {
+        assertUsesIndex(Persistence.feedVersions.explain(eq("feedSourceId", "test"), Sorts.descending("version")));
+        assertUsesIndex(Persistence.feedVersions.explain(eq("feedSourceId", "test"), null));
+        assertUsesIndex(Persistence.feedSources.explain(eq("projectId", "test"), null));
+        assertUsesIndex(Persistence.deployments.explain(eq("projectId", "test"), null));
+        assertUsesIndex(Persistence.snapshots.explain(eq(Snapshot.FEED_SOURCE_REF, "test"), null));
+        assertUsesIndex(Persistence.externalFeedSourceProperties.explain(
+            and(eq("feedSourceId", "test"), eq("resourceType", "test")),
+            null
+        ));
+    }
+
+    private static void assertUsesIndex(Document explain) {
+        Document winningPlan = (Document) ((Document) explain.get("queryPlanner")).get("winningPlan");
+        String plan = winningPlan.toJson();
+        assertTrue("Query plan should use an index scan: " + plan, plan.contains("IXSCAN"));
+        assertFalse("Query plan should not scan the collection: " + plan, plan.contains("COLLSCAN"));
+    }
 //
 //    @Test
 //    public void createDeployment() {
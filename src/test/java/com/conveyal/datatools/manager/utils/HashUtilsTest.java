@@ -0,0 +1,52 @@
+package com.conveyal.datatools.manager.utils;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ * Tests that feed files are hashed by their full content.
+ */
+public class HashUtilsTest {
+
+    @Test
+    public void hashesContentWhileStreaming() throws IOException {
+        byte[] content = "agency_id,agency_name\n1,Test Agency\n".getBytes(StandardCharsets.UTF_8);
+        DigestInputStream hashingStream = HashUtils.hashingStream(new ByteArrayInputStream(content));
+        ByteStreams.copy(hashingStream, ByteStreams.nullOutputStream());
+        File file = File.createTempFile("hash", ".txt");
+        file.deleteOnExit();
+        Files.write(content, file);
+
+        // A hex-encoded SHA-256 hash of the full content, the same whether computed while streaming or from the file.
+        String hash = HashUtils.hashOf(hashingStream);
+        assertThat(hash.length(), equalTo(64));
+        assertThat(hash, equalTo(HashUtils.hashFile(file)));
+    }
+
+    @Test
+    public void detectsChangesBeyondSampledBytes() throws IOException {
+        byte[] content = new byte[100000];
+        File original = File.createTempFile("original", ".zip");
+        original.deleteOnExit();
+        Files.write(content, original);
+        // Change a byte that the legacy hash did not sample (beyond the first 1000 and the 5000 from the middle).
+        content[90000] = 1;
+        File changed = File.createTempFile("changed", ".zip");
+        changed.deleteOnExit();
+        Files.write(content, changed);
+
+        String originalHash = HashUtils.hashFile(original);
+        assertThat(HashUtils.matches(originalHash, HashUtils.hashFile(changed), changed), equalTo(false));
+        assertThat(HashUtils.matches(originalHash, HashUtils.hashFile(original), original), equalTo(true));
+    }
+}